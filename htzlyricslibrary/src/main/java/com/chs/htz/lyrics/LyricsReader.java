@@ -1,18 +1,36 @@
 package com.chs.htz.lyrics;
 
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Base64;
 
 import com.chs.htz.lyrics.formats.LyricsFileReader;
+import com.chs.htz.lyrics.formats.LyricsLineAssembler;
+import com.chs.htz.lyrics.formats.lrc.LrcStreamParser;
 import com.chs.htz.lyrics.model.LyricsInfo;
 import com.chs.htz.lyrics.model.LyricsLineInfo;
 import com.chs.htz.lyrics.model.LyricsTag;
+import com.chs.htz.lyrics.model.LyricsTimeline;
+import com.chs.htz.lyrics.utils.LyricsCacheUtils;
 import com.chs.htz.lyrics.utils.LyricsIOUtils;
 import com.chs.htz.lyrics.utils.LyricsUtils;
+import com.chs.htz.lyrics.utils.ThreadPoolUtils;
 
 import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 歌词读管理器
@@ -49,6 +67,10 @@ public class LyricsReader {
      * 原始歌词列表
      */
     private TreeMap<Integer, LyricsLineInfo> mLrcLineInfos;
+    /**
+     * 原始歌词时间轴
+     */
+    private LyricsTimeline mLyricsTimeline;
     /**
      * 原始翻译行歌词列表
      */
@@ -60,21 +82,44 @@ public class LyricsReader {
 
     private LyricsInfo mLyricsInfo;
 
+    /**
+     * 异步加载序号，每次加载或取消时加一，旧序号的加载结果会被丢弃
+     */
+    private final AtomicInteger mLoadSerial = new AtomicInteger();
+
+    /**
+     * 当前的异步加载任务
+     */
+    private Future<LyricsInfo> mLoadFuture;
+
+    /**
+     * 追加歌词时读取流的缓冲大小
+     */
+    private static final int APPEND_BUFFER_SIZE = 1024;
+
+    /**
+     * 追加歌词的增量解析器
+     */
+    private LrcStreamParser mLrcStreamParser;
+    /**
+     * 增量解析器最后一次生成的歌词数据，歌词被重新加载后增量解析器要重新创建
+     */
+    private LyricsInfo mAppendLyricsInfo;
+
     public LyricsReader() {
 
     }
 
 
     /**
-     * 加载歌词数据
+     * 加载歌词数据，已经缓存的歌词不再读取文件
      *
      * @param lyricsFile
      */
     public void loadLrc(File lyricsFile) throws Exception {
-
+        cancelLoad();
         this.mLrcFilePath = lyricsFile.getPath();
-        LyricsFileReader lyricsFileReader = LyricsIOUtils.getLyricsFileReader(lyricsFile);
-        LyricsInfo lyricsInfo = lyricsFileReader.readFile(lyricsFile);
+        LyricsInfo lyricsInfo = readFile(lyricsFile);
         parser(lyricsInfo);
     }
 
@@ -111,10 +156,10 @@ public class LyricsReader {
      * @param fileName
      */
     public void loadLrc(byte[] base64ByteArray, File saveLrcFile, String fileName) throws Exception {
+        cancelLoad();
         if (saveLrcFile != null)
             mLrcFilePath = saveLrcFile.getPath();
-        LyricsFileReader lyricsFileReader = LyricsIOUtils.getLyricsFileReader(fileName);
-        LyricsInfo lyricsInfo = lyricsFileReader.readLrcText(base64ByteArray, saveLrcFile);
+        LyricsInfo lyricsInfo = readLrcText(base64ByteArray, saveLrcFile, fileName);
         parser(lyricsInfo);
 
     }
@@ -172,6 +217,7 @@ public class LyricsReader {
      * @throws Exception
      */
     public void readLrcText(String dynamicContent, String lrcContent, String extraLrcContent, File saveLrcFile, String fileName) throws Exception {
+        cancelLoad();
         if (saveLrcFile != null)
             mLrcFilePath = saveLrcFile.getPath();
         LyricsFileReader lyricsFileReader = LyricsIOUtils.getLyricsFileReader(fileName);
@@ -180,6 +226,335 @@ public class LyricsReader {
     }
 
 
+    /**
+     * 在后台线程异步加载歌词，结果在主线程回调
+     *
+     * @param lyricsFile 歌词文件
+     * @param listener   加载回调
+     * @return 可取消的加载任务
+     */
+    public Future<LyricsInfo> loadLrcAsync(File lyricsFile, LoadLrcListener listener) {
+        return loadLrcAsync(lyricsFile, null, listener);
+    }
+
+    /**
+     * 在后台线程异步加载歌词，再次加载或者取消时，还没有完成的加载会被丢弃
+     *
+     * @param lyricsFile 歌词文件
+     * @param handler    回调所在线程的handler，为null时在主线程回调
+     * @param listener   加载回调
+     * @return 可取消的加载任务
+     */
+    public Future<LyricsInfo> loadLrcAsync(final File lyricsFile, Handler handler, LoadLrcListener listener) {
+        return submitLoad(lyricsFile.getPath(), new Callable<LyricsInfo>() {
+            @Override
+            public LyricsInfo call() throws Exception {
+                return readFile(lyricsFile);
+            }
+        }, handler, listener);
+    }
+
+    /**
+     * 在后台线程异步加载歌词
+     *
+     * @param base64ByteArray 歌词base64数组
+     * @param saveLrcFile     要保存的的lrc文件
+     * @param fileName        含后缀名的文件名称
+     * @param handler         回调所在线程的handler，为null时在主线程回调
+     * @param listener        加载回调
+     * @return 可取消的加载任务
+     */
+    public Future<LyricsInfo> loadLrcAsync(final byte[] base64ByteArray, final File saveLrcFile, final String fileName, Handler handler, LoadLrcListener listener) {
+        return submitLoad(saveLrcFile != null ? saveLrcFile.getPath() : mLrcFilePath, new Callable<LyricsInfo>() {
+            @Override
+            public LyricsInfo call() throws Exception {
+                return readLrcText(base64ByteArray, saveLrcFile, fileName);
+            }
+        }, handler, listener);
+    }
+
+    /**
+     * 读取歌词文件，优先使用缓存，按文件路径、修改时间和长度缓存，文件修改后重新读取
+     *
+     * @param lyricsFile 歌词文件
+     * @return
+     * @throws Exception
+     */
+    private static LyricsInfo readFile(File lyricsFile) throws Exception {
+        String key = LyricsCacheUtils.getFileKey(lyricsFile);
+        LyricsInfo lyricsInfo = LyricsCacheUtils.get(key);
+        if (lyricsInfo == null) {
+            LyricsFileReader lyricsFileReader = LyricsIOUtils.getLyricsFileReader(lyricsFile);
+            lyricsInfo = lyricsFileReader.readFile(lyricsFile);
+            LyricsCacheUtils.put(key, lyricsInfo);
+        }
+        return lyricsInfo;
+    }
+
+    /**
+     * 解析base64歌词，优先使用缓存，按文件名和歌词内容缓存
+     *
+     * @param base64ByteArray 歌词base64数组
+     * @param saveLrcFile     要保存的的lrc文件
+     * @param fileName        含后缀名的文件名称
+     * @return
+     * @throws Exception
+     */
+    private static LyricsInfo readLrcText(byte[] base64ByteArray, File saveLrcFile, String fileName) throws Exception {
+        String key = LyricsCacheUtils.getContentKey(fileName, base64ByteArray);
+        // 要保存的文件还不存在时，仍然需要解析并保存
+        if (saveLrcFile == null || saveLrcFile.exists()) {
+            LyricsInfo lyricsInfo = LyricsCacheUtils.get(key);
+            if (lyricsInfo != null) return lyricsInfo;
+        }
+        LyricsFileReader lyricsFileReader = LyricsIOUtils.getLyricsFileReader(base64ByteArray, fileName);
+        LyricsInfo lyricsInfo = lyricsFileReader.readLrcText(base64ByteArray, saveLrcFile);
+        LyricsCacheUtils.put(key, lyricsInfo);
+        return lyricsInfo;
+    }
+
+    /**
+     * 追加lrc歌词内容（直播、流式歌词），只解析新收到的完整行，不完整的最后一行留到下一次追加。
+     * 原有的歌词行不会被修改，每次追加生成新的歌词列表和时间轴
+     *
+     * @param lrcText 歌词内容，可以在任意位置截断
+     * @return 第一个新增（或后移）的行号，没有新的歌词行时返回-1
+     * @throws Exception 当前是动感歌词时不能追加
+     */
+    public synchronized int appendLrcText(String lrcText) throws Exception {
+        LyricsLineAssembler lyricsLineAssembler = new LyricsLineAssembler();
+        getLrcStreamParser().feed(lrcText, lyricsLineAssembler);
+        return appendLyricsLines(lyricsLineAssembler);
+    }
+
+    /**
+     * 追加lrc歌词内容
+     *
+     * @param buffer 字符缓冲
+     * @param offset 开始位置
+     * @param count  字符数
+     * @return 第一个新增（或后移）的行号，没有新的歌词行时返回-1
+     * @throws Exception
+     */
+    public synchronized int appendLrcText(char[] buffer, int offset, int count) throws Exception {
+        LyricsLineAssembler lyricsLineAssembler = new LyricsLineAssembler();
+        getLrcStreamParser().feed(buffer, offset, count, lyricsLineAssembler);
+        return appendLyricsLines(lyricsLineAssembler);
+    }
+
+    /**
+     * 歌词追加结束，解析没有行结束符的最后一行
+     *
+     * @return 第一个新增（或后移）的行号，没有新的歌词行时返回-1
+     * @throws Exception
+     */
+    public synchronized int finishAppend() throws Exception {
+        LyricsLineAssembler lyricsLineAssembler = new LyricsLineAssembler();
+        getLrcStreamParser().finish(lyricsLineAssembler);
+        return appendLyricsLines(lyricsLineAssembler);
+    }
+
+    /**
+     * 从流中读取并追加lrc歌词（utf-8编码），会阻塞到流结束，需要在子线程中调用
+     *
+     * @param in       歌词流，如socket、管道，结束后会被关闭
+     * @param listener 有新的歌词行时在读取线程回调
+     * @throws Exception
+     */
+    public void appendLrcStream(InputStream in, AppendLrcListener listener) throws Exception {
+        appendLrcStream(in, Charset.forName("utf-8"), listener);
+    }
+
+    /**
+     * 从流中读取并追加lrc歌词，会阻塞到流结束，需要在子线程中调用
+     *
+     * @param in       歌词流，如socket、管道，结束后会被关闭
+     * @param charset  歌词编码
+     * @param listener 有新的歌词行时在读取线程回调
+     * @throws Exception
+     */
+    public void appendLrcStream(InputStream in, Charset charset, AppendLrcListener listener) throws Exception {
+        Reader reader = new InputStreamReader(in, charset);
+        try {
+            char[] buffer = new char[APPEND_BUFFER_SIZE];
+            int count;
+            while ((count = reader.read(buffer)) != -1) {
+                int fromLineNum = appendLrcText(buffer, 0, count);
+                if (fromLineNum != -1 && listener != null) {
+                    listener.onLrcAppended(this, fromLineNum);
+                }
+            }
+            int fromLineNum = finishAppend();
+            if (fromLineNum != -1 && listener != null) {
+                listener.onLrcAppended(this, fromLineNum);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * 获取增量解析器，歌词被重新加载后重新创建
+     *
+     * @return
+     * @throws Exception
+     */
+    private LrcStreamParser getLrcStreamParser() throws Exception {
+        if (mLrcStreamParser == null || mLyricsInfo != mAppendLyricsInfo) {
+            if (mLyricsInfo != null && mLyricsInfo.getLyricsType() != LyricsInfo.LRC) {
+                throw new Exception("只有lrc歌词支持追加");
+            }
+            mLrcStreamParser = new LrcStreamParser();
+            mAppendLyricsInfo = mLyricsInfo;
+        }
+        return mLrcStreamParser;
+    }
+
+    /**
+     * 把新解析出的歌词行按开始时间合并到歌词列表中。
+     * 正常情况下新行都在最后，只需要复制原有的行；开始时间相同时新行排在后面
+     *
+     * @param lyricsLineAssembler 新解析出的歌词行
+     * @return 第一个新增（或后移）的行号，没有新的歌词行时返回-1
+     */
+    private int appendLyricsLines(LyricsLineAssembler lyricsLineAssembler) {
+        Map<String, Object> lyricsTags = new HashMap<String, Object>();
+        if (mLyricsInfo != null) {
+            lyricsTags.putAll(mLyricsInfo.getLyricsTags());
+        }
+        lyricsTags.putAll(mLrcStreamParser.getLyricsTags());
+        int count = lyricsLineAssembler.size();
+        if (count == 0 && mLyricsInfo != null && lyricsTags.equals(mLyricsInfo.getLyricsTags())) {
+            return -1;
+        }
+
+        TreeMap<Integer, LyricsLineInfo> oldLrcLineInfos = mLrcLineInfos;
+        int oldSize = oldLrcLineInfos == null ? 0 : oldLrcLineInfos.size();
+        TreeMap<Integer, LyricsLineInfo> newLrcLineInfos = lyricsLineAssembler.build();
+        // 新行插入的位置
+        int fromLineNum = oldSize;
+        if (count > 0) {
+            int firstStartTime = newLrcLineInfos.get(0).getStartTime();
+            while (fromLineNum > 0 && oldLrcLineInfos.get(fromLineNum - 1).getStartTime() > firstStartTime) {
+                fromLineNum--;
+            }
+        }
+        // 缓存中的歌词数据是共享的，不能直接修改
+        TreeMap<Integer, LyricsLineInfo> lrcLineInfos = fromLineNum == 0 ? new TreeMap<Integer, LyricsLineInfo>() : new TreeMap<Integer, LyricsLineInfo>(oldLrcLineInfos.headMap(fromLineNum));
+        int oldIndex = fromLineNum;
+        int newIndex = 0;
+        int lineNum = fromLineNum;
+        while (oldIndex < oldSize || newIndex < count) {
+            LyricsLineInfo lyricsLineInfo;
+            if (newIndex == count || (oldIndex < oldSize && oldLrcLineInfos.get(oldIndex).getStartTime() <= newLrcLineInfos.get(newIndex).getStartTime())) {
+                lyricsLineInfo = oldLrcLineInfos.get(oldIndex++);
+            } else {
+                lyricsLineInfo = newLrcLineInfos.get(newIndex++);
+            }
+            lrcLineInfos.put(lineNum++, lyricsLineInfo);
+        }
+
+        LyricsInfo lyricsInfo = new LyricsInfo();
+        lyricsInfo.setLyricsType(LyricsInfo.LRC);
+        lyricsInfo.setLyricsFileExt("lrc");
+        lyricsInfo.setLyricsTags(lyricsTags);
+        lyricsInfo.setLyricsLineInfoTreeMap(lrcLineInfos);
+        if (mLyricsInfo != null) {
+            lyricsInfo.setTranslateLrcLineInfos(mLyricsInfo.getTranslateLrcLineInfos());
+            lyricsInfo.setTransliterationLrcLineInfos(mLyricsInfo.getTransliterationLrcLineInfos());
+        }
+        parser(lyricsInfo);
+        mAppendLyricsInfo = lyricsInfo;
+        return count > 0 ? fromLineNum : -1;
+    }
+
+    /**
+     * 取消还没有完成的异步加载
+     */
+    public void cancelLoad() {
+        mLoadSerial.incrementAndGet();
+        synchronized (mLoadSerial) {
+            if (mLoadFuture != null) {
+                mLoadFuture.cancel(true);
+                mLoadFuture = null;
+            }
+        }
+    }
+
+    /**
+     * 提交加载任务
+     *
+     * @param lrcFilePath 歌词文件路径
+     * @param loader      加载器
+     * @param handler     回调所在线程的handler
+     * @param listener    加载回调
+     * @return
+     */
+    private Future<LyricsInfo> submitLoad(final String lrcFilePath, Callable<LyricsInfo> loader, Handler handler, final LoadLrcListener listener) {
+        final Handler callbackHandler = handler != null ? handler : new Handler(Looper.getMainLooper());
+        final int[] serial = new int[1];
+        FutureTask<LyricsInfo> loadTask = new FutureTask<LyricsInfo>(loader) {
+            @Override
+            protected void done() {
+                // 已经被新的加载取代
+                if (isCancelled() || serial[0] != mLoadSerial.get()) return;
+                LyricsInfo lyricsInfo = null;
+                Exception exception = null;
+                try {
+                    lyricsInfo = get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    exception = cause instanceof Exception ? (Exception) cause : e;
+                } catch (Exception e) {
+                    exception = e;
+                }
+                deliverLoadResult(callbackHandler, serial[0], lrcFilePath, lyricsInfo, exception, listener);
+            }
+        };
+        synchronized (mLoadSerial) {
+            // 丢弃上一次还没有完成的加载
+            if (mLoadFuture != null) {
+                mLoadFuture.cancel(true);
+            }
+            serial[0] = mLoadSerial.incrementAndGet();
+            mLoadFuture = loadTask;
+        }
+        try {
+            ThreadPoolUtils.getLoadExecutor().execute(loadTask);
+        } catch (RejectedExecutionException e) {
+            loadTask.cancel(false);
+            deliverLoadResult(callbackHandler, serial[0], lrcFilePath, null, e, listener);
+        }
+        return loadTask;
+    }
+
+    /**
+     * 在回调线程中应用加载结果
+     */
+    private void deliverLoadResult(Handler callbackHandler, final int serial, final String lrcFilePath, final LyricsInfo lyricsInfo, final Exception exception, final LoadLrcListener listener) {
+        callbackHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (serial != mLoadSerial.get()) return;
+                synchronized (mLoadSerial) {
+                    mLoadFuture = null;
+                }
+                if (exception != null) {
+                    if (listener != null) {
+                        listener.onLoadFailure(LyricsReader.this, exception);
+                    }
+                    return;
+                }
+                if (lrcFilePath != null)
+                    mLrcFilePath = lrcFilePath;
+                parser(lyricsInfo);
+                if (listener != null) {
+                    listener.onLoadSuccess(LyricsReader.this, lyricsInfo);
+                }
+            }
+        });
+    }
+
     /**
      * 解析
      *
@@ -201,6 +576,7 @@ public class LyricsReader {
         }
         //默认歌词行
         mLrcLineInfos = lyricsInfo.getLyricsLineInfoTreeMap();
+        mLyricsTimeline = LyricsTimeline.build(mLyricsType, mLrcLineInfos);
         //翻译歌词集合
         /*if (lyricsInfo.getTranslateLrcLineInfos() != null && lyricsInfo.getTranslateLrcLineInfos().size() > 0)
             mTranslateLrcLineInfos = LyricsUtils.getTranslateLrc(mLyricsType, mLrcLineInfos, lyricsInfo.getTranslateLrcLineInfos());
@@ -222,6 +598,18 @@ public class LyricsReader {
         return mLrcLineInfos;
     }
 
+    /**
+     * 获取歌词时间轴，与原始歌词列表一一对应
+     *
+     * @return
+     */
+    public LyricsTimeline getLyricsTimeline() {
+        if (mLyricsTimeline == null) {
+            mLyricsTimeline = LyricsTimeline.build(mLyricsType, mLrcLineInfos);
+        }
+        return mLyricsTimeline;
+    }
+
     public List<LyricsLineInfo> getTranslateLrcLineInfos() {
         return mTranslateLrcLineInfos;
     }
@@ -260,10 +648,12 @@ public class LyricsReader {
 
     public void setLyricsType(int mLyricsType) {
         this.mLyricsType = mLyricsType;
+        this.mLyricsTimeline = null;
     }
 
     public void setLrcLineInfos(TreeMap<Integer, LyricsLineInfo> mLrcLineInfos) {
         this.mLrcLineInfos = mLrcLineInfos;
+        this.mLyricsTimeline = null;
     }
 
     public void setTranslateLrcLineInfos(List<LyricsLineInfo> mTranslateLrcLineInfos) {
@@ -275,6 +665,7 @@ public class LyricsReader {
     }
 
     public void setLyricsInfo(LyricsInfo lyricsInfo) {
+        cancelLoad();
         /**
          * 重新解析歌词
          */
@@ -291,4 +682,38 @@ public class LyricsReader {
     public long getPlayOffset() {
         return mDefOffset + mOffset;
     }
+
+    /**
+     * 异步加载回调
+     */
+    public interface LoadLrcListener {
+        /**
+         * 加载成功，歌词已经设置到歌词读管理器中
+         *
+         * @param lyricsReader
+         * @param lyricsInfo
+         */
+        void onLoadSuccess(LyricsReader lyricsReader, LyricsInfo lyricsInfo);
+
+        /**
+         * 加载失败
+         *
+         * @param lyricsReader
+         * @param e
+         */
+        void onLoadFailure(LyricsReader lyricsReader, Exception e);
+    }
+
+    /**
+     * 追加歌词回调
+     */
+    public interface AppendLrcListener {
+        /**
+         * 有新的歌词行，可以调用歌词视图的 appendLrcLineInfos 刷新
+         *
+         * @param lyricsReader
+         * @param fromLineNum  第一个新增（或后移）的行号
+         */
+        void onLrcAppended(LyricsReader lyricsReader, int fromLineNum);
+    }
 }
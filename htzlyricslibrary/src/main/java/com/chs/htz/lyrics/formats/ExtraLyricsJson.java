@@ -0,0 +1,479 @@
+package com.chs.htz.lyrics.formats;
+
+import com.chs.htz.lyrics.model.LyricsInfo;
+import com.chs.htz.lyrics.model.LyricsLineInfo;
+import com.chs.htz.lyrics.model.TranslateLrcLineInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 额外歌词（翻译歌词、音译歌词）json的解析和生成
+ * <p>
+ * krc、hrc的额外歌词格式固定：{"content":[{"type":1,"lyricContent":[["第一行"],["第二行"]]}]}，
+ * 类型字段krc为type，hrc为lyricType，1为翻译歌词，0为音译歌词（每个字一个元素）。
+ * 边读取json边生成歌词行，不生成json对象树；生成时直接写入字符串，不依赖org.json
+ */
+public class ExtraLyricsJson {
+
+    /**
+     * 翻译歌词类型
+     */
+    public static final int TYPE_TRANSLATE = 1;
+    /**
+     * 音译歌词类型
+     */
+    public static final int TYPE_TRANSLITERATION = 0;
+    /**
+     * 未知类型
+     */
+    private static final int TYPE_NONE = -1;
+
+    private static final String KEY_CONTENT = "content";
+    private static final String KEY_LYRIC_CONTENT = "lyricContent";
+    private static final String KEY_LANGUAGE = "language";
+
+    /**
+     * 解析额外歌词，只设置还没有的翻译歌词和音译歌词
+     *
+     * @param json       额外歌词json
+     * @param typeKey    类型字段名
+     * @param lyricsIfno 翻译歌词和音译歌词设置到这里
+     * @throws Exception json格式错误或者缺少字段
+     */
+    public static void parse(String json, String typeKey, LyricsInfo lyricsIfno) throws Exception {
+        JsonTokenizer tokenizer = new JsonTokenizer(json);
+        boolean hasContent = false;
+        tokenizer.expect('{');
+        if (!tokenizer.nextIf('}')) {
+            do {
+                String name = tokenizer.nextString();
+                tokenizer.expect(':');
+                if (KEY_CONTENT.equals(name)) {
+                    hasContent = true;
+                    parseContent(tokenizer, typeKey, lyricsIfno);
+                } else {
+                    tokenizer.skipValue();
+                }
+            } while (tokenizer.nextIf(','));
+            tokenizer.expect('}');
+        }
+        if (!hasContent) {
+            throw new Exception("额外歌词缺少" + KEY_CONTENT);
+        }
+    }
+
+    /**
+     * 解析 content 数组
+     */
+    private static void parseContent(JsonTokenizer tokenizer, String typeKey, LyricsInfo lyricsIfno) throws Exception {
+        tokenizer.expect('[');
+        if (tokenizer.nextIf(']')) return;
+        List<String> words = new ArrayList<String>();
+        do {
+            int type = TYPE_NONE;
+            boolean hasType = false;
+            boolean hasLyricContent = false;
+            // lyricContent 在类型字段之前时先保存每行的字，知道类型后再生成歌词行
+            List<String[]> pendingRows = null;
+            List<TranslateLrcLineInfo> translateLrcLineInfos = null;
+            List<LyricsLineInfo> transliterationLrcLineInfos = null;
+            tokenizer.expect('{');
+            if (!tokenizer.nextIf('}')) {
+                do {
+                    String name = tokenizer.nextString();
+                    tokenizer.expect(':');
+                    if (typeKey.equals(name)) {
+                        hasType = true;
+                        type = tokenizer.nextInt();
+                    } else if (KEY_LYRIC_CONTENT.equals(name)) {
+                        hasLyricContent = true;
+                        if (!hasType) {
+                            pendingRows = new ArrayList<String[]>();
+                        } else if (type == TYPE_TRANSLATE) {
+                            translateLrcLineInfos = new ArrayList<TranslateLrcLineInfo>();
+                        } else if (type == TYPE_TRANSLITERATION) {
+                            transliterationLrcLineInfos = new ArrayList<LyricsLineInfo>();
+                        } else {
+                            tokenizer.skipValue();
+                            continue;
+                        }
+                        tokenizer.expect('[');
+                        if (!tokenizer.nextIf(']')) {
+                            do {
+                                nextRow(tokenizer, words);
+                                if (pendingRows != null) {
+                                    pendingRows.add(words.toArray(new String[words.size()]));
+                                } else if (translateLrcLineInfos != null) {
+                                    translateLrcLineInfos.add(newTranslateLrcLineInfo(words));
+                                } else {
+                                    transliterationLrcLineInfos.add(newTransliterationLrcLineInfo(
+                                            words.toArray(new String[words.size()])));
+                                }
+                            } while (tokenizer.nextIf(','));
+                            tokenizer.expect(']');
+                        }
+                    } else {
+                        tokenizer.skipValue();
+                    }
+                } while (tokenizer.nextIf(','));
+                tokenizer.expect('}');
+            }
+            if (!hasType) {
+                throw new Exception("额外歌词缺少" + typeKey);
+            }
+            if (!hasLyricContent) {
+                throw new Exception("额外歌词缺少" + KEY_LYRIC_CONTENT);
+            }
+            if (pendingRows != null) {
+                if (type == TYPE_TRANSLATE) {
+                    translateLrcLineInfos = new ArrayList<TranslateLrcLineInfo>();
+                    for (String[] row : pendingRows) {
+                        translateLrcLineInfos.add(newTranslateLrcLineInfo(Arrays.asList(row)));
+                    }
+                } else if (type == TYPE_TRANSLITERATION) {
+                    transliterationLrcLineInfos = new ArrayList<LyricsLineInfo>();
+                    for (String[] row : pendingRows) {
+                        transliterationLrcLineInfos.add(newTransliterationLrcLineInfo(row));
+                    }
+                }
+            }
+            // 添加翻译歌词
+            if (translateLrcLineInfos != null && translateLrcLineInfos.size() > 0
+                    && (lyricsIfno.getTranslateLrcLineInfos() == null || lyricsIfno.getTranslateLrcLineInfos().size() == 0)) {
+                lyricsIfno.setTranslateLrcLineInfos(translateLrcLineInfos);
+            }
+            // 添加音译歌词
+            if (transliterationLrcLineInfos != null && transliterationLrcLineInfos.size() > 0
+                    && (lyricsIfno.getTransliterationLrcLineInfos() == null || lyricsIfno.getTransliterationLrcLineInfos().size() == 0)) {
+                lyricsIfno.setTransliterationLrcLineInfos(transliterationLrcLineInfos);
+            }
+        } while (tokenizer.nextIf(','));
+        tokenizer.expect(']');
+    }
+
+    /**
+     * 读取一行的所有字
+     */
+    private static void nextRow(JsonTokenizer tokenizer, List<String> words) throws Exception {
+        words.clear();
+        tokenizer.expect('[');
+        if (!tokenizer.nextIf(']')) {
+            do {
+                words.add(tokenizer.nextValueString());
+            } while (tokenizer.nextIf(','));
+            tokenizer.expect(']');
+        }
+    }
+
+    /**
+     * 翻译行歌词，取每行的第一个元素
+     */
+    private static TranslateLrcLineInfo newTranslateLrcLineInfo(List<String> words) throws Exception {
+        if (words.isEmpty()) {
+            throw new Exception("翻译歌词行为空");
+        }
+        TranslateLrcLineInfo translateLrcLineInfo = new TranslateLrcLineInfo();
+        translateLrcLineInfo.setLineLyrics(words.get(0));
+        return translateLrcLineInfo;
+    }
+
+    /**
+     * 音译行歌词，每个字之间加空格
+     */
+    private static LyricsLineInfo newTransliterationLrcLineInfo(String[] lyricsWords) {
+        StringBuilder lineLyrics = new StringBuilder();
+        for (int k = 0; k < lyricsWords.length; k++) {
+            if (k == lyricsWords.length - 1) {
+                lyricsWords[k] = lyricsWords[k].trim();
+            } else {
+                lyricsWords[k] = lyricsWords[k].trim() + " ";
+            }
+            lineLyrics.append(lyricsWords[k]);
+        }
+        LyricsLineInfo transliterationLrcLineInfo = new LyricsLineInfo();
+        transliterationLrcLineInfo.setLineLyrics(lineLyrics.toString());
+        transliterationLrcLineInfo.setLyricsWords(lyricsWords);
+        return transliterationLrcLineInfo;
+    }
+
+    /**
+     * 生成额外歌词json
+     *
+     * @param lyricsIfno   歌词数据
+     * @param typeKey      类型字段名
+     * @param withLanguage 是否添加 language 字段（krc）
+     * @return 没有额外歌词时为 {"content":[]}
+     */
+    public static String write(LyricsInfo lyricsIfno, String typeKey, boolean withLanguage) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"").append(KEY_CONTENT).append("\":[");
+        boolean hasContent = false;
+        // 判断是否有翻译歌词
+        List<TranslateLrcLineInfo> translateLrcLineInfos = lyricsIfno.getTranslateLrcLineInfos();
+        if (translateLrcLineInfos != null && translateLrcLineInfos.size() > 0) {
+            appendContentStart(json, typeKey, TYPE_TRANSLATE, withLanguage);
+            for (int i = 0; i < translateLrcLineInfos.size(); i++) {
+                if (i > 0) json.append(',');
+                json.append('[');
+                appendString(json, translateLrcLineInfos.get(i).getLineLyrics());
+                json.append(']');
+            }
+            json.append("]}");
+            hasContent = true;
+        }
+        // 判断是否有音译歌词
+        List<LyricsLineInfo> transliterationLrcLineInfos = lyricsIfno.getTransliterationLrcLineInfos();
+        if (transliterationLrcLineInfos != null && transliterationLrcLineInfos.size() > 0) {
+            if (hasContent) json.append(',');
+            appendContentStart(json, typeKey, TYPE_TRANSLITERATION, withLanguage);
+            for (int i = 0; i < transliterationLrcLineInfos.size(); i++) {
+                if (i > 0) json.append(',');
+                json.append('[');
+                String[] lyricsWords = transliterationLrcLineInfos.get(i).getLyricsWords();
+                for (int j = 0; j < lyricsWords.length; j++) {
+                    if (j > 0) json.append(',');
+                    appendString(json, lyricsWords[j].trim());
+                }
+                json.append(']');
+            }
+            json.append("]}");
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    private static void appendContentStart(StringBuilder json, String typeKey, int type, boolean withLanguage) {
+        json.append('{');
+        if (withLanguage) {
+            json.append('"').append(KEY_LANGUAGE).append("\":0,");
+        }
+        json.append('"').append(typeKey).append("\":").append(type);
+        json.append(",\"").append(KEY_LYRIC_CONTENT).append("\":[");
+    }
+
+    /**
+     * 写入json字符串，null按空字符串处理
+     */
+    private static void appendString(StringBuilder json, String text) {
+        json.append('"');
+        if (text != null) {
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '"':
+                    case '\\':
+                        json.append('\\').append(c);
+                        break;
+                    case '\n':
+                        json.append("\\n");
+                        break;
+                    case '\r':
+                        json.append("\\r");
+                        break;
+                    case '\t':
+                        json.append("\\t");
+                        break;
+                    case '\b':
+                        json.append("\\b");
+                        break;
+                    case '\f':
+                        json.append("\\f");
+                        break;
+                    default:
+                        if (c < 0x20 || c == 0x2028 || c == 0x2029) {
+                            json.append("\\u");
+                            String hex = Integer.toHexString(c);
+                            for (int k = hex.length(); k < 4; k++) {
+                                json.append('0');
+                            }
+                            json.append(hex);
+                        } else {
+                            json.append(c);
+                        }
+                        break;
+                }
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * json拉取式分词器，调用者按预期的结构依次读取
+     */
+    private static class JsonTokenizer {
+
+        private final String mJson;
+        private int mPosition = 0;
+
+        JsonTokenizer(String json) {
+            this.mJson = json;
+        }
+
+        /**
+         * 跳过空白，返回下一个字符但不读取
+         */
+        private char peek() throws Exception {
+            int length = mJson.length();
+            while (mPosition < length) {
+                char c = mJson.charAt(mPosition);
+                if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                    return c;
+                }
+                mPosition++;
+            }
+            throw new Exception("额外歌词json不完整");
+        }
+
+        void expect(char c) throws Exception {
+            if (peek() != c) {
+                throw new Exception("额外歌词json格式错误，位置" + mPosition + "应为" + c);
+            }
+            mPosition++;
+        }
+
+        /**
+         * 下一个字符是c时读取并返回true
+         */
+        boolean nextIf(char c) throws Exception {
+            if (peek() == c) {
+                mPosition++;
+                return true;
+            }
+            return false;
+        }
+
+        String nextString() throws Exception {
+            expect('"');
+            int start = mPosition;
+            int length = mJson.length();
+            // 没有转义字符时直接截取
+            while (mPosition < length) {
+                char c = mJson.charAt(mPosition);
+                if (c == '"') {
+                    return mJson.substring(start, mPosition++);
+                }
+                if (c == '\\') {
+                    break;
+                }
+                mPosition++;
+            }
+            StringBuilder text = new StringBuilder(mJson.substring(start, mPosition));
+            while (mPosition < length) {
+                char c = mJson.charAt(mPosition++);
+                if (c == '"') {
+                    return text.toString();
+                }
+                if (c != '\\') {
+                    text.append(c);
+                    continue;
+                }
+                if (mPosition >= length) break;
+                char escaped = mJson.charAt(mPosition++);
+                switch (escaped) {
+                    case 'n':
+                        text.append('\n');
+                        break;
+                    case 'r':
+                        text.append('\r');
+                        break;
+                    case 't':
+                        text.append('\t');
+                        break;
+                    case 'b':
+                        text.append('\b');
+                        break;
+                    case 'f':
+                        text.append('\f');
+                        break;
+                    case 'u':
+                        if (mPosition + 4 > length) {
+                            throw new Exception("额外歌词json转义字符不完整");
+                        }
+                        int unicode = 0;
+                        for (int end = mPosition + 4; mPosition < end; mPosition++) {
+                            int digit = Character.digit(mJson.charAt(mPosition), 16);
+                            if (digit == -1) {
+                                throw new Exception("额外歌词json转义字符错误，位置" + mPosition);
+                            }
+                            unicode = (unicode << 4) | digit;
+                        }
+                        text.append((char) unicode);
+                        break;
+                    default:
+                        text.append(escaped);
+                        break;
+                }
+            }
+            throw new Exception("额外歌词json字符串不完整");
+        }
+
+        /**
+         * 读取数字、true、false、null
+         */
+        private String nextLiteral() throws Exception {
+            peek();
+            int start = mPosition;
+            int length = mJson.length();
+            while (mPosition < length) {
+                char c = mJson.charAt(mPosition);
+                if (c == ',' || c == ']' || c == '}' || c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                    break;
+                }
+                mPosition++;
+            }
+            if (start == mPosition) {
+                throw new Exception("额外歌词json格式错误，位置" + mPosition);
+            }
+            return mJson.substring(start, mPosition);
+        }
+
+        /**
+         * 读取字符串，数字等其它值按原文返回
+         */
+        String nextValueString() throws Exception {
+            return peek() == '"' ? nextString() : nextLiteral();
+        }
+
+        /**
+         * 读取整数，也支持数字字符串
+         */
+        int nextInt() throws Exception {
+            String value = nextValueString();
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                try {
+                    return (int) Double.parseDouble(value);
+                } catch (NumberFormatException e1) {
+                    throw new Exception("额外歌词json数字格式错误：" + value);
+                }
+            }
+        }
+
+        /**
+         * 跳过一个值（包括嵌套的对象和数组）
+         */
+        void skipValue() throws Exception {
+            char c = peek();
+            if (c == '"') {
+                nextString();
+            } else if (c == '{' || c == '[') {
+                char close = c == '{' ? '}' : ']';
+                mPosition++;
+                if (nextIf(close)) return;
+                do {
+                    if (close == '}') {
+                        nextString();
+                        expect(':');
+                    }
+                    skipValue();
+                } while (nextIf(','));
+                expect(close);
+            } else {
+                nextLiteral();
+            }
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.chs.htz.lyrics.formats;
+
+import com.chs.htz.lyrics.model.LyricsInfo;
+import com.chs.htz.lyrics.utils.FileUtils;
+import com.chs.htz.lyrics.utils.LyricsIOUtils;
+import com.chs.htz.lyrics.utils.ThreadPoolUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 歌词批量转换器
+ * <p>
+ * 多个工作线程同时解析和保存，提交任务时最多只有 工作线程数 * 2 个文件在等待或转换中，
+ * 单个文件转换失败只记录错误，不会中断整个批次
+ */
+public class LyricsBatchConverter {
+
+    /**
+     * 目标歌词格式后缀名
+     */
+    private final String mTargetExt;
+    /**
+     * 工作线程数
+     */
+    private final int mWorkerCount;
+
+    private ConvertListener mConvertListener;
+
+    /**
+     * @param targetExt   目标歌词格式后缀名，如 lrc、hrc
+     * @param workerCount 工作线程数，小于1时使用cpu核数
+     */
+    public LyricsBatchConverter(String targetExt, int workerCount) {
+        this.mTargetExt = targetExt.toLowerCase();
+        this.mWorkerCount = workerCount < 1 ? Runtime.getRuntime().availableProcessors() : workerCount;
+    }
+
+    public void setConvertListener(ConvertListener convertListener) {
+        this.mConvertListener = convertListener;
+    }
+
+    /**
+     * 转换歌词文件夹（包括子文件夹）中所有能解析的歌词，保持相对路径
+     *
+     * @param sourceDirectory 歌词文件夹
+     * @param targetDirectory 保存的文件夹
+     * @return 转换结果
+     * @throws Exception 目标格式不支持或者转换被中断
+     */
+    public Result convert(File sourceDirectory, File targetDirectory) throws Exception {
+        List<File> sourceFiles = new ArrayList<File>();
+        List<File> targetFiles = new ArrayList<File>();
+        listLyricsFiles(sourceDirectory, targetDirectory, sourceFiles, targetFiles);
+        return convert(sourceFiles, targetFiles);
+    }
+
+    /**
+     * 转换歌词文件，都保存在同一个文件夹中
+     *
+     * @param sourceFiles     歌词文件
+     * @param targetDirectory 保存的文件夹
+     * @return 转换结果
+     * @throws Exception 目标格式不支持或者转换被中断
+     */
+    public Result convert(List<File> sourceFiles, File targetDirectory) throws Exception {
+        List<File> targetFiles = new ArrayList<File>(sourceFiles.size());
+        for (File sourceFile : sourceFiles) {
+            targetFiles.add(getTargetFile(sourceFile, targetDirectory));
+        }
+        return convert(sourceFiles, targetFiles);
+    }
+
+    /**
+     * 转换歌词文件
+     *
+     * @param sourceFiles 歌词文件
+     * @param targetFiles 对应的保存文件
+     * @return 转换结果
+     * @throws Exception 目标格式不支持或者转换被中断
+     */
+    private Result convert(List<File> sourceFiles, final List<File> targetFiles) throws Exception {
+        final LyricsFileWriter lyricsFileWriter = LyricsIOUtils.getLyricsFileWriter("." + mTargetExt);
+        if (!lyricsFileWriter.isFileSupported(mTargetExt)) {
+            throw new Exception("不支持的歌词格式：" + mTargetExt);
+        }
+        final Result result = new Result(sourceFiles.size());
+        final Semaphore pending = new Semaphore(mWorkerCount * 2);
+        ThreadPoolExecutor executor = ThreadPoolUtils.newWorkerExecutor("LyricsConverter", mWorkerCount);
+        try {
+            for (int i = 0; i < sourceFiles.size(); i++) {
+                final File sourceFile = sourceFiles.get(i);
+                final File targetFile = targetFiles.get(i);
+                // 等待中的文件太多时阻塞，避免一次性提交所有任务
+                pending.acquire();
+                try {
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                convert(sourceFile, targetFile, lyricsFileWriter, result);
+                            } finally {
+                                pending.release();
+                            }
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    pending.release();
+                    throw e;
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+            // 等待所有文件转换完成
+        }
+        result.finish();
+        return result;
+    }
+
+    /**
+     * 转换单个文件，在工作线程中调用
+     */
+    private void convert(File sourceFile, File targetFile, LyricsFileWriter lyricsFileWriter, Result result) {
+        try {
+            LyricsFileReader lyricsFileReader = LyricsIOUtils.getLyricsFileReader(sourceFile);
+            LyricsInfo lyricsInfo = lyricsFileReader.readFile(sourceFile);
+            if (lyricsInfo == null) {
+                throw new Exception("歌词解析失败");
+            }
+            if (!lyricsFileWriter.writer(lyricsInfo, targetFile.getPath())) {
+                throw new Exception("歌词保存失败");
+            }
+        } catch (Exception e) {
+            result.addFailure(sourceFile, e);
+            if (mConvertListener != null) {
+                mConvertListener.onConvertFailure(sourceFile, e);
+            }
+            return;
+        }
+        result.addSuccess(sourceFile.length());
+        // 回调不在try中，回调抛出的异常不会把已经成功的文件再记为失败
+        if (mConvertListener != null) {
+            mConvertListener.onConvertSuccess(sourceFile, targetFile);
+        }
+    }
+
+    /**
+     * 获取保存文件
+     */
+    private File getTargetFile(File sourceFile, File targetDirectory) {
+        return new File(targetDirectory, FileUtils.removeExt(sourceFile.getName()) + "." + mTargetExt);
+    }
+
+    /**
+     * 递归获取能解析的歌词文件及对应的保存文件
+     */
+    private void listLyricsFiles(File sourceDirectory, File targetDirectory, List<File> sourceFiles, List<File> targetFiles) {
+        File[] files = sourceDirectory.listFiles();
+        if (files == null) return;
+        List<String> lrcExts = LyricsIOUtils.getSupportLyricsExts();
+        for (File file : files) {
+            if (file.isDirectory()) {
+                listLyricsFiles(file, new File(targetDirectory, file.getName()), sourceFiles, targetFiles);
+            } else if (lrcExts.contains(FileUtils.getFileExt(file))) {
+                sourceFiles.add(file);
+                targetFiles.add(getTargetFile(file, targetDirectory));
+            }
+        }
+    }
+
+    /**
+     * 转换结果
+     */
+    public static class Result {
+        private final int mTotalCount;
+        private final AtomicInteger mSuccessCount = new AtomicInteger();
+        private final AtomicLong mSuccessBytes = new AtomicLong();
+        private final Map<File, Exception> mErrors = Collections.synchronizedMap(new LinkedHashMap<File, Exception>());
+        private final long mStartTime = System.nanoTime();
+        private long mElapsedTime;
+
+        Result(int totalCount) {
+            this.mTotalCount = totalCount;
+        }
+
+        void addSuccess(long bytes) {
+            mSuccessCount.incrementAndGet();
+            mSuccessBytes.addAndGet(bytes);
+        }
+
+        void addFailure(File sourceFile, Exception e) {
+            mErrors.put(sourceFile, e);
+        }
+
+        void finish() {
+            mElapsedTime = System.nanoTime() - mStartTime;
+        }
+
+        public int getTotalCount() {
+            return mTotalCount;
+        }
+
+        public int getSuccessCount() {
+            return mSuccessCount.get();
+        }
+
+        public int getFailureCount() {
+            return mErrors.size();
+        }
+
+        /**
+         * 获取转换失败的文件及原因
+         *
+         * @return
+         */
+        public Map<File, Exception> getErrors() {
+            return mErrors;
+        }
+
+        /**
+         * 获取转换成功的歌词文件总大小
+         *
+         * @return
+         */
+        public long getSuccessBytes() {
+            return mSuccessBytes.get();
+        }
+
+        /**
+         * 获取耗时（毫秒）
+         *
+         * @return
+         */
+        public long getElapsedTime() {
+            return TimeUnit.NANOSECONDS.toMillis(mElapsedTime);
+        }
+
+        /**
+         * 每秒转换的文件数
+         *
+         * @return
+         */
+        public double getFilesPerSecond() {
+            return mElapsedTime == 0 ? 0 : (mSuccessCount.get() + mErrors.size()) * 1e9 / mElapsedTime;
+        }
+
+        /**
+         * 每秒转换的数据量（MB）
+         *
+         * @return
+         */
+        public double getMegabytesPerSecond() {
+            return mElapsedTime == 0 ? 0 : mSuccessBytes.get() / (1024.0 * 1024.0) * 1e9 / mElapsedTime;
+        }
+    }
+
+    /**
+     * 转换回调，在工作线程中调用
+     */
+    public interface ConvertListener {
+        /**
+         * 单个文件转换成功
+         *
+         * @param sourceFile
+         * @param targetFile
+         */
+        void onConvertSuccess(File sourceFile, File targetFile);
+
+        /**
+         * 单个文件转换失败
+         *
+         * @param sourceFile
+         * @param e
+         */
+        void onConvertFailure(File sourceFile, Exception e);
+    }
+}
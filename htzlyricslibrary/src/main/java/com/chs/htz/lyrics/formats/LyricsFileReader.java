@@ -2,12 +2,18 @@ package com.chs.htz.lyrics.formats;
 
 import android.util.Base64;
 
+import com.chs.htz.lyrics.model.LyricsExtraParser;
 import com.chs.htz.lyrics.model.LyricsInfo;
+import com.chs.htz.lyrics.model.LyricsWordsParser;
+import com.chs.htz.lyrics.utils.AtomicFileOutputStream;
+import com.chs.htz.lyrics.utils.CharsetUtils;
+import com.chs.htz.lyrics.utils.LyricsCacheUtils;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
 
@@ -18,10 +24,42 @@ import java.nio.charset.Charset;
  * @Version:
  */
 public abstract class LyricsFileReader {
+    /**
+     * 额外歌词（翻译歌词、音译歌词）在读取时解析
+     */
+    public static final int EXTRA_LYRICS_EAGER = 0;
+    /**
+     * 额外歌词在第一次获取时解析
+     */
+    public static final int EXTRA_LYRICS_LAZY = 1;
+    /**
+     * 额外歌词在后台线程解析，与默认歌词的解析同时进行，获取时还没有解析完成则等待
+     */
+    public static final int EXTRA_LYRICS_BACKGROUND = 2;
     /**
      * 默认编码
      */
     private Charset defaultCharset = Charset.forName("utf-8");
+    /**
+     * 是否自动识别文本歌词的编码，默认不识别，使用默认编码
+     */
+    private boolean charsetDetection = false;
+    /**
+     * 当前线程正在读取的歌词识别出的编码，读取器是共享的，不能保存在普通字段中
+     */
+    private final ThreadLocal<Charset> detectedCharset = new ThreadLocal<Charset>();
+    /**
+     * 是否按需解析动感歌词的字，读取时只扫描行时间标签
+     */
+    private boolean lazyWords = false;
+    /**
+     * 按需解析时常驻的已解析行数
+     */
+    private int residentLineCount = LyricsWordsParser.DEFAULT_RESIDENT_LINE_COUNT;
+    /**
+     * 额外歌词的解析方式
+     */
+    private int extraLyricsMode = EXTRA_LYRICS_EAGER;
 
     /**
      * 读取歌词文件
@@ -31,11 +69,67 @@ public abstract class LyricsFileReader {
      */
     public LyricsInfo readFile(File file) throws Exception {
         if (file != null) {
-            return readInputStream(new FileInputStream(file));
+            if (!isCharsetDetectable()) {
+                return readInputStream(new FileInputStream(file));
+            }
+            return readDetectedInputStream(new BufferedInputStream(new FileInputStream(file),
+                    CharsetUtils.DETECT_SIZE), LyricsCacheUtils.getFileKey(file));
         }
         return null;
     }
 
+    /**
+     * 识别编码后读取歌词，识别出的编码在读取过程中由 getDefaultCharset 返回
+     *
+     * @param in  支持mark的输入流
+     * @param key 编码缓存key，为null时不缓存
+     * @return
+     * @throws Exception
+     */
+    private LyricsInfo readDetectedInputStream(InputStream in, String key) throws Exception {
+        byte[] header = new byte[CharsetUtils.DETECT_SIZE];
+        int length;
+        try {
+            in.mark(header.length);
+            length = readHeader(in, header);
+            in.reset();
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        Charset charset;
+        if (CharsetUtils.isCached(key)) {
+            charset = CharsetUtils.getCachedCharset(key);
+        } else {
+            charset = CharsetUtils.detect(header, length);
+            CharsetUtils.putCachedCharset(key, charset);
+        }
+        // 跳过BOM，不作为第一行的内容
+        int bomLength = CharsetUtils.getBomLength(header, length);
+        if (bomLength > 0 && charset != null && charset.equals(CharsetUtils.getBomCharset(header, length))) {
+            in.skip(bomLength);
+        }
+        Charset oldCharset = detectedCharset.get();
+        detectedCharset.set(charset);
+        try {
+            return readInputStream(in);
+        } finally {
+            detectedCharset.set(oldCharset);
+        }
+    }
+
+    private static int readHeader(InputStream in, byte[] header) throws IOException {
+        int length = 0;
+        while (length < header.length) {
+            int count = in.read(header, length, header.length - length);
+            if (count < 0) {
+                break;
+            }
+            length += count;
+        }
+        return length;
+    }
+
     /**
      * 读取歌词文本内容
      *
@@ -50,13 +144,19 @@ public abstract class LyricsFileReader {
 
         if (saveLrcFile != null) {
             // 生成歌词文件
-            FileOutputStream os = new FileOutputStream(saveLrcFile);
-            os.write(fileContent);
-            os.close();
-
-            os = null;
+            AtomicFileOutputStream os = new AtomicFileOutputStream(saveLrcFile);
+            try {
+                os.write(fileContent);
+                os.close();
+            } catch (Exception e) {
+                os.abort();
+                throw e;
+            }
         }
 
+        if (isCharsetDetectable()) {
+            return readDetectedInputStream(new ByteArrayInputStream(fileContent), null);
+        }
         return readInputStream(new ByteArrayInputStream(fileContent));
     }
 
@@ -72,13 +172,19 @@ public abstract class LyricsFileReader {
                                   File saveLrcFile) throws Exception {
         if (saveLrcFile != null) {
             // 生成歌词文件
-            FileOutputStream os = new FileOutputStream(saveLrcFile);
-            os.write(base64ByteArray);
-            os.close();
-
-            os = null;
+            AtomicFileOutputStream os = new AtomicFileOutputStream(saveLrcFile);
+            try {
+                os.write(base64ByteArray);
+                os.close();
+            } catch (Exception e) {
+                os.abort();
+                throw e;
+            }
         }
 
+        if (isCharsetDetectable()) {
+            return readDetectedInputStream(new ByteArrayInputStream(base64ByteArray), null);
+        }
         return readInputStream(new ByteArrayInputStream(base64ByteArray));
     }
 
@@ -116,11 +222,155 @@ public abstract class LyricsFileReader {
      */
     public abstract String getSupportFileExt();
 
+    /**
+     * 根据文件开头的内容判断是否是该格式的歌词，用于识别后缀名不对的文件
+     *
+     * @param header 文件开头的内容
+     * @param length 有效长度
+     * @return 不能根据内容判断时返回false
+     */
+    public boolean isContentSupported(byte[] header, int length) {
+        return false;
+    }
+
+    /**
+     * 文件开头的内容中是否有以prefix开头的行（跳过utf-8 BOM和行首空白）
+     *
+     * @param header 文件开头的内容
+     * @param length 有效长度
+     * @param prefix ascii前缀
+     * @return
+     */
+    protected static boolean hasLinePrefix(byte[] header, int length, String prefix) {
+        return hasLinePrefix(header, length, prefix, false);
+    }
+
+    /**
+     * 文件开头的内容中是否有以prefix加一个数字开头的行（跳过utf-8 BOM和行首空白）
+     *
+     * @param header 文件开头的内容
+     * @param length 有效长度
+     * @param prefix ascii前缀
+     * @return
+     */
+    protected static boolean hasLinePrefixDigit(byte[] header, int length, String prefix) {
+        return hasLinePrefix(header, length, prefix, true);
+    }
+
+    private static boolean hasLinePrefix(byte[] header, int length, String prefix, boolean digit) {
+        int lineStart = 0;
+        if (length >= 3 && (header[0] & 0xff) == 0xEF && (header[1] & 0xff) == 0xBB && (header[2] & 0xff) == 0xBF) {
+            lineStart = 3;
+        }
+        while (lineStart < length) {
+            int i = lineStart;
+            while (i < length && (header[i] == ' ' || header[i] == '\t')) {
+                i++;
+            }
+            int j = 0;
+            while (j < prefix.length() && i + j < length && header[i + j] == prefix.charAt(j)) {
+                j++;
+            }
+            if (j == prefix.length() && (!digit
+                    || (i + j < length && header[i + j] >= '0' && header[i + j] <= '9'))) {
+                return true;
+            }
+            while (lineStart < length && header[lineStart] != '\n' && header[lineStart] != '\r') {
+                lineStart++;
+            }
+            lineStart++;
+        }
+        return false;
+    }
+
     public void setDefaultCharset(Charset charset) {
         defaultCharset = charset;
     }
 
+    /**
+     * 获取编码，读取文件时返回识别出的编码，识别不出时返回设置的默认编码
+     *
+     * @return
+     */
     public Charset getDefaultCharset() {
-        return defaultCharset;
+        Charset charset = detectedCharset.get();
+        return charset != null ? charset : defaultCharset;
+    }
+
+    /**
+     * 设置是否自动识别文本歌词（lrc、ksc、网易歌词）的编码，根据BOM和文件开头的内容识别utf-8、GBK、Big5、Shift-JIS，
+     * 全部是ascii时使用默认编码。直接调用 readInputStream 时不识别。默认不识别
+     *
+     * @param charsetDetection
+     */
+    public void setCharsetDetection(boolean charsetDetection) {
+        this.charsetDetection = charsetDetection;
+    }
+
+    public boolean isCharsetDetection() {
+        return charsetDetection;
+    }
+
+    /**
+     * 是否识别编码，压缩格式的歌词在子类中返回false
+     *
+     * @return
+     */
+    protected boolean isCharsetDetectable() {
+        return charsetDetection;
+    }
+
+    /**
+     * 设置是否按需解析动感歌词的字（krc、ksc、hrc、网易动感歌词），只显示一两行歌词时可以减少加载时间和内存。
+     * 按需解析时字标签的格式错误在访问该行时才会发现，该行按没有字处理
+     *
+     * @param lazyWords
+     */
+    public void setLazyWords(boolean lazyWords) {
+        this.lazyWords = lazyWords;
+    }
+
+    public boolean isLazyWords() {
+        return lazyWords;
+    }
+
+    /**
+     * 设置按需解析时常驻的已解析行数
+     *
+     * @param residentLineCount
+     */
+    public void setResidentLineCount(int residentLineCount) {
+        this.residentLineCount = residentLineCount;
+    }
+
+    public int getResidentLineCount() {
+        return residentLineCount;
+    }
+
+    /**
+     * 设置额外歌词（krc、hrc的翻译歌词和音译歌词）的解析方式，不需要显示额外歌词时可以加快歌词加载。
+     * 不在读取时解析时，额外歌词的格式错误在获取时才会发现，按没有额外歌词处理
+     *
+     * @param extraLyricsMode EXTRA_LYRICS_EAGER、EXTRA_LYRICS_LAZY 或 EXTRA_LYRICS_BACKGROUND
+     */
+    public void setExtraLyricsMode(int extraLyricsMode) {
+        this.extraLyricsMode = extraLyricsMode;
+    }
+
+    public int getExtraLyricsMode() {
+        return extraLyricsMode;
+    }
+
+    /**
+     * 创建按设置的方式解析的额外歌词，后台解析时立即开始
+     *
+     * @param extraParser
+     * @return
+     */
+    protected LyricsExtraParser startExtraParser(LyricsExtraParser extraParser) {
+        if (extraLyricsMode == EXTRA_LYRICS_BACKGROUND) {
+            extraParser.startInBackground();
+        }
+        return extraParser;
     }
 }
@@ -1,11 +1,15 @@
 package com.chs.htz.lyrics.formats;
 
 import com.chs.htz.lyrics.model.LyricsInfo;
+import com.chs.htz.lyrics.utils.AtomicFileOutputStream;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
+import java.io.Writer;
 import java.nio.charset.Charset;
 
 /**
@@ -17,6 +21,10 @@ import java.nio.charset.Charset;
  * @Throws:
  */
 public abstract class LyricsFileWriter {
+    /**
+     * 写文件缓冲大小
+     */
+    private static final int BUFFER_SIZE = 8192;
     /**
      * 默认编码
      */
@@ -32,6 +40,26 @@ public abstract class LyricsFileWriter {
             throws Exception;
 
 
+    /**
+     * 保存歌词文件到本地，边生成边写入，不生成整个文件的字符串。
+     * 先写入临时文件，写完后再重命名，中途出错或者崩溃时不会留下不完整的歌词文件
+     *
+     * @param lyricsIfno     歌词数据
+     * @param lyricsFilePath 歌词文件路径
+     * @return
+     * @throws Exception
+     */
+    public boolean saveLyricsFile(LyricsInfo lyricsIfno, String lyricsFilePath) throws Exception {
+        AtomicFileOutputStream os = new AtomicFileOutputStream(new File(lyricsFilePath));
+        try {
+            writer(lyricsIfno, new BufferedOutputStream(os, BUFFER_SIZE));
+        } catch (Exception e) {
+            os.abort();
+            throw e;
+        }
+        return true;
+    }
+
     /**
      * 保存歌词文件到本地
      *
@@ -41,27 +69,7 @@ public abstract class LyricsFileWriter {
      * @throws Exception
      */
     public boolean saveLyricsFile(String lyricsContent, String lyricsFilePath) throws Exception {
-
-        File lyricsFile = new File(lyricsFilePath);
-        if (lyricsFile != null) {
-            //
-            if (!lyricsFile.getParentFile().exists()) {
-                lyricsFile.getParentFile().mkdirs();
-            }
-            OutputStreamWriter outstream = new OutputStreamWriter(
-                    new FileOutputStream(lyricsFilePath),
-                    getDefaultCharset());
-            PrintWriter writer = new PrintWriter(outstream);
-            writer.write(lyricsContent);
-            writer.close();
-
-            outstream = null;
-            writer = null;
-
-            return true;
-        }
-
-        return false;
+        return saveLyricsFile(lyricsContent.getBytes(getDefaultCharset()), lyricsFilePath);
     }
 
     /**
@@ -73,22 +81,51 @@ public abstract class LyricsFileWriter {
      * @throws Exception
      */
     public boolean saveLyricsFile(byte[] lyricsContent, String lyricsFilePath) throws Exception {
-
-        File lyricsFile = new File(lyricsFilePath);
-        if (lyricsFile != null) {
-            //
-            if (!lyricsFile.getParentFile().exists()) {
-                lyricsFile.getParentFile().mkdirs();
-            }
-            FileOutputStream os = new FileOutputStream(lyricsFile);
+        AtomicFileOutputStream os = new AtomicFileOutputStream(new File(lyricsFilePath));
+        try {
             os.write(lyricsContent);
             os.close();
+        } catch (Exception e) {
+            os.abort();
+            throw e;
+        }
+        return true;
+    }
 
-            os = null;
+    /**
+     * 将歌词文件内容写入输出流，写完后关闭输出流，出错时不关闭
+     *
+     * @param lyricsIfno 歌词数据
+     * @param out        输出流
+     * @throws Exception
+     */
+    public void writer(LyricsInfo lyricsIfno, OutputStream out) throws Exception {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(
+                wrapOutputStream(out), getDefaultCharset()), BUFFER_SIZE);
+        writeLyricsContent(lyricsIfno, writer);
+        writer.close();
+    }
 
-            return true;
-        }
-        return false;
+    /**
+     * 包装文件输出流，需要压缩、加密的格式重写此方法写入文件头并返回对应的输出流
+     *
+     * @param out 文件输出流
+     * @return 歌词文本写入的输出流
+     * @throws IOException
+     */
+    protected OutputStream wrapOutputStream(OutputStream out) throws IOException {
+        return out;
+    }
+
+    /**
+     * 写入歌词文件内容，默认写入 getLyricsContent 的结果，可以逐行生成内容的格式重写此方法直接写入
+     *
+     * @param lyricsIfno 歌词数据
+     * @param out        歌词文本输出
+     * @throws Exception
+     */
+    protected void writeLyricsContent(LyricsInfo lyricsIfno, Writer out) throws Exception {
+        out.write(getLyricsContent(lyricsIfno));
     }
 
     /**
@@ -0,0 +1,103 @@
+package com.chs.htz.lyrics.formats;
+
+import com.chs.htz.lyrics.model.LyricsLineInfo;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.TreeMap;
+
+/**
+ * 歌词行组装器
+ * <p>
+ * 读取器解析出的歌词行依次添加到数组中，添加时记录是否已经按开始时间排好序，
+ * 只有乱序时才排序，最后生成key为0到n-1的歌词行集合。
+ * <p>
+ * 开始时间相同的行全部保留，按在文件中出现的顺序排列（排序是稳定的）。
+ * 以前按开始时间放入SortedMap时，后出现的行会覆盖前面的行
+ */
+public class LyricsLineAssembler {
+
+    private static final Comparator<LyricsLineInfo> START_TIME_COMPARATOR = new Comparator<LyricsLineInfo>() {
+        @Override
+        public int compare(LyricsLineInfo lhs, LyricsLineInfo rhs) {
+            int lhsStartTime = lhs.getStartTime();
+            int rhsStartTime = rhs.getStartTime();
+            return lhsStartTime < rhsStartTime ? -1 : (lhsStartTime == rhsStartTime ? 0 : 1);
+        }
+    };
+
+    /**
+     * 是否按开始时间排序，字时间需要和翻译歌词按行号对应的格式保持文件中的顺序
+     */
+    private final boolean mSortByStartTime;
+
+    private LyricsLineInfo[] mLyricsLineInfos = new LyricsLineInfo[64];
+    private int mSize = 0;
+    /**
+     * 已添加的行是否已经按开始时间排好序
+     */
+    private boolean mSorted = true;
+
+    /**
+     * 按开始时间排序
+     */
+    public LyricsLineAssembler() {
+        this(true);
+    }
+
+    /**
+     * @param sortByStartTime 是否按开始时间排序，false时保持添加的顺序
+     */
+    public LyricsLineAssembler(boolean sortByStartTime) {
+        this.mSortByStartTime = sortByStartTime;
+    }
+
+    /**
+     * 添加歌词行
+     *
+     * @param lyricsLineInfo
+     */
+    public void add(LyricsLineInfo lyricsLineInfo) {
+        if (mSize == mLyricsLineInfos.length) {
+            mLyricsLineInfos = Arrays.copyOf(mLyricsLineInfos, mSize * 2);
+        }
+        if (mSize > 0 && lyricsLineInfo.getStartTime() < mLyricsLineInfos[mSize - 1].getStartTime()) {
+            mSorted = false;
+        }
+        mLyricsLineInfos[mSize++] = lyricsLineInfo;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public LyricsLineInfo get(int index) {
+        return mLyricsLineInfos[index];
+    }
+
+    /**
+     * 添加的行是否已经按开始时间排好序
+     *
+     * @return
+     */
+    public boolean isSorted() {
+        return mSorted;
+    }
+
+    /**
+     * 生成歌词行集合
+     *
+     * @return key为0到n-1的歌词行
+     */
+    public TreeMap<Integer, LyricsLineInfo> build() {
+        if (mSortByStartTime && !mSorted) {
+            Arrays.sort(mLyricsLineInfos, 0, mSize, START_TIME_COMPARATOR);
+            mSorted = true;
+        }
+        TreeMap<Integer, LyricsLineInfo> lyricsLineInfos = new TreeMap<Integer, LyricsLineInfo>();
+        for (int i = 0; i < mSize; i++) {
+            lyricsLineInfos.put(i, mLyricsLineInfos[i]);
+        }
+        return lyricsLineInfos;
+    }
+}
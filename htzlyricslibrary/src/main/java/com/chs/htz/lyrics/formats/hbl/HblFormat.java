@@ -0,0 +1,89 @@
+package com.chs.htz.lyrics.formats.hbl;
+
+/**
+ * hbl二进制歌词格式常量
+ * <p>
+ * 所有数值都是大端序int，结构如下：
+ * <pre>
+ * 文件头   magic("HBLY") version(short) flags(short)
+ * 基本信息 lyricsType fileExt(字符串索引)
+ * 字符串表 count offsets[count + 1] length utf8[length]
+ * 标签     count (key, value)[count]
+ * 歌词行   行块
+ * 翻译歌词 count(-1表示没有) lineLyrics[count]
+ * 音译歌词 行块，count为-1表示没有
+ *
+ * 行块     count startTimes[count] endTimes[count] lineLyrics[count]
+ *          wordsCounts[count] intervalsCounts[count] words[] intervals[]
+ * </pre>
+ * 字符串都保存在字符串表中，其他地方只保存索引，-1表示null；
+ * 字数和字时间个数为-1表示没有
+ * <p>
+ * 歌词库文件把多首歌词的hbl内容打包在一个文件中：
+ * <pre>
+ * 文件头   magic("HBLL") version(short) flags(short) count keysLength
+ * 目录     (keyHash(long) dataOffset(long) dataLength keyOffset keyLength)[count]，按keyHash排序
+ * 关键字   utf8[keysLength]
+ * 歌词数据 hbl内容依次排列
+ * </pre>
+ * dataOffset是相对文件开头的偏移，keyOffset是相对关键字区开头的偏移
+ */
+final class HblFormat {
+
+    /**
+     * 文件头
+     */
+    static final int MAGIC = 0x48424C59;
+    /**
+     * 当前版本
+     */
+    static final short VERSION = 1;
+    /**
+     * 文件后缀名
+     */
+    static final String FILE_EXT = "hbl";
+
+    /**
+     * 没有数据
+     */
+    static final int NONE = -1;
+
+    /**
+     * 歌词库文件头
+     */
+    static final int LIBRARY_MAGIC = 0x48424C4C;
+    /**
+     * 歌词库当前版本
+     */
+    static final short LIBRARY_VERSION = 1;
+    /**
+     * 歌词库文件后缀名
+     */
+    static final String LIBRARY_FILE_EXT = "hbll";
+    /**
+     * 歌词库文件头大小
+     */
+    static final int LIBRARY_HEADER_SIZE = 16;
+    /**
+     * 目录项大小
+     */
+    static final int TOC_ENTRY_SIZE = 28;
+
+    /**
+     * 计算关键字的64位FNV-1a哈希
+     *
+     * @param key utf8编码的关键字
+     * @return
+     */
+    static long hashKey(byte[] key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private HblFormat() {
+    }
+}
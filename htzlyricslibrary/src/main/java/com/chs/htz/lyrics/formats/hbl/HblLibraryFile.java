@@ -0,0 +1,228 @@
+package com.chs.htz.lyrics.formats.hbl;
+
+import com.chs.htz.lyrics.model.LyricsInfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * hbl歌词库文件
+ * <p>
+ * 多首歌词打包在一个文件中，通过内存映射打开，按关键字（一般是歌曲hash）二分查找目录，
+ * 只有查找到的歌词才会被解码。可以在多个线程中同时查找
+ */
+public class HblLibraryFile {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * 已经打开的歌词库，key为文件路径
+     */
+    private static final Map<String, HblLibraryFile> sLibraries = new HashMap<String, HblLibraryFile>();
+
+    private final File mFile;
+    private final long mLastModified;
+    private final long mFileSize;
+    private final int mCount;
+    private final int mKeysLength;
+    /**
+     * 文件头、目录和关键字区
+     */
+    private final ByteBuffer mIndexBuffer;
+    private final int mKeysOffset;
+    /**
+     * 整个文件的映射，文件超过2G时为null，按需映射单首歌词
+     */
+    private final ByteBuffer mDataBuffer;
+    private final FileChannel mChannel;
+
+    private final HblLyricsFileReader mReader = new HblLyricsFileReader();
+
+    private HblLibraryFile(File file) throws Exception {
+        mFile = file;
+        mLastModified = file.lastModified();
+        mChannel = new RandomAccessFile(file, "r").getChannel();
+        try {
+            mFileSize = mChannel.size();
+            if (mFileSize < HblFormat.LIBRARY_HEADER_SIZE) {
+                throw new Exception("hbl歌词库文件不完整");
+            }
+            ByteBuffer header = mChannel.map(FileChannel.MapMode.READ_ONLY, 0, HblFormat.LIBRARY_HEADER_SIZE);
+            if (header.getInt() != HblFormat.LIBRARY_MAGIC) {
+                throw new Exception("不是hbl歌词库文件");
+            }
+            short version = header.getShort();
+            if (version > HblFormat.LIBRARY_VERSION) {
+                throw new Exception("不支持的hbl歌词库版本：" + version);
+            }
+            header.getShort();
+            mCount = header.getInt();
+            mKeysLength = header.getInt();
+            // 目录和关键字区必须在文件内，并且能用int定位
+            long indexLength = HblFormat.LIBRARY_HEADER_SIZE + (long) mCount * HblFormat.TOC_ENTRY_SIZE + mKeysLength;
+            if (mCount < 0 || mKeysLength < 0 || indexLength > mFileSize || indexLength > Integer.MAX_VALUE) {
+                throw new Exception("hbl歌词库文件已损坏");
+            }
+            mKeysOffset = HblFormat.LIBRARY_HEADER_SIZE + mCount * HblFormat.TOC_ENTRY_SIZE;
+            if (mFileSize <= Integer.MAX_VALUE) {
+                mDataBuffer = mChannel.map(FileChannel.MapMode.READ_ONLY, 0, mFileSize);
+                mIndexBuffer = mDataBuffer;
+            } else {
+                mDataBuffer = null;
+                mIndexBuffer = mChannel.map(FileChannel.MapMode.READ_ONLY, 0, indexLength);
+            }
+        } catch (Exception e) {
+            mChannel.close();
+            throw e;
+        } catch (Error e) {
+            mChannel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 打开歌词库，已经打开且文件没有修改时直接返回
+     *
+     * @param file 歌词库文件
+     * @return
+     * @throws Exception
+     */
+    public static HblLibraryFile open(File file) throws Exception {
+        String path = file.getAbsolutePath();
+        synchronized (sLibraries) {
+            HblLibraryFile library = sLibraries.get(path);
+            if (library != null && library.mLastModified == file.lastModified()) {
+                return library;
+            }
+            if (library != null) {
+                library.close();
+            }
+            library = new HblLibraryFile(file);
+            sLibraries.put(path, library);
+            return library;
+        }
+    }
+
+    /**
+     * 歌词个数
+     *
+     * @return
+     */
+    public int size() {
+        return mCount;
+    }
+
+    public File getFile() {
+        return mFile;
+    }
+
+    /**
+     * 是否包含关键字对应的歌词
+     *
+     * @param key 关键字
+     * @return
+     */
+    public boolean contains(String key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * 获取关键字对应的歌词，只解码这一首歌词
+     *
+     * @param key 关键字，一般是歌曲hash
+     * @return 没有时返回null
+     * @throws Exception
+     */
+    public LyricsInfo getLyricsInfo(String key) throws Exception {
+        int index = indexOf(key);
+        if (index < 0) return null;
+        int entry = HblFormat.LIBRARY_HEADER_SIZE + index * HblFormat.TOC_ENTRY_SIZE;
+        long dataOffset = mIndexBuffer.getLong(entry + 8);
+        int dataLength = mIndexBuffer.getInt(entry + 16);
+        if (dataOffset < mKeysOffset + mKeysLength || dataLength < 0 || dataOffset + dataLength > mFileSize) {
+            throw new Exception("hbl歌词库文件已损坏");
+        }
+        ByteBuffer data;
+        if (mDataBuffer != null) {
+            // 共享映射，duplicate后各线程的位置互不影响
+            data = mDataBuffer.duplicate();
+            data.limit((int) dataOffset + dataLength);
+            data.position((int) dataOffset);
+        } else {
+            data = mChannel.map(FileChannel.MapMode.READ_ONLY, dataOffset, dataLength);
+        }
+        return mReader.readByteBuffer(data);
+    }
+
+    /**
+     * 二分查找目录
+     *
+     * @return 目录项索引，没有时返回-1
+     */
+    private int indexOf(String key) {
+        if (key == null) return -1;
+        byte[] keyBytes = key.getBytes(UTF_8);
+        long keyHash = HblFormat.hashKey(keyBytes);
+        int low = 0;
+        int high = mCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midHash = mIndexBuffer.getLong(HblFormat.LIBRARY_HEADER_SIZE + mid * HblFormat.TOC_ENTRY_SIZE);
+            if (midHash < keyHash) {
+                low = mid + 1;
+            } else if (midHash > keyHash) {
+                high = mid - 1;
+            } else {
+                // 哈希相同时向两边比较关键字
+                for (int i = mid; i >= 0 && getKeyHash(i) == keyHash; i--) {
+                    if (keyEquals(i, keyBytes)) return i;
+                }
+                for (int i = mid + 1; i < mCount && getKeyHash(i) == keyHash; i++) {
+                    if (keyEquals(i, keyBytes)) return i;
+                }
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private long getKeyHash(int index) {
+        return mIndexBuffer.getLong(HblFormat.LIBRARY_HEADER_SIZE + index * HblFormat.TOC_ENTRY_SIZE);
+    }
+
+    private boolean keyEquals(int index, byte[] keyBytes) {
+        int entry = HblFormat.LIBRARY_HEADER_SIZE + index * HblFormat.TOC_ENTRY_SIZE;
+        int keyOffset = mIndexBuffer.getInt(entry + 20);
+        int keyLength = mIndexBuffer.getInt(entry + 24);
+        if (keyLength != keyBytes.length) return false;
+        // 损坏的目录项不会越界读取
+        if (keyOffset < 0 || keyOffset > mKeysLength - keyLength) return false;
+        keyOffset += mKeysOffset;
+        for (int i = 0; i < keyLength; i++) {
+            if (mIndexBuffer.get(keyOffset + i) != keyBytes[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 关闭文件，已经映射的内存在回收后释放
+     */
+    public void close() {
+        synchronized (sLibraries) {
+            if (sLibraries.get(mFile.getAbsolutePath()) == this) {
+                sLibraries.remove(mFile.getAbsolutePath());
+            }
+        }
+        try {
+            mChannel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
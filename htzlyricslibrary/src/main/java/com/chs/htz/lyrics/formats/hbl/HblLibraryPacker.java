@@ -0,0 +1,224 @@
+package com.chs.htz.lyrics.formats.hbl;
+
+import com.chs.htz.lyrics.formats.LyricsFileReader;
+import com.chs.htz.lyrics.model.LyricsInfo;
+import com.chs.htz.lyrics.utils.AtomicFileOutputStream;
+import com.chs.htz.lyrics.utils.FileUtils;
+import com.chs.htz.lyrics.utils.LyricsIOUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * hbl歌词库打包工具
+ * <p>
+ * 把歌词文件夹中所有能解析的歌词打包成一个歌词库文件，关键字为不含后缀名的文件名（一般是歌曲hash）。
+ * 命令行用法：HblLibraryPacker &lt;歌词文件夹&gt; &lt;歌词库文件&gt;
+ */
+public class HblLibraryPacker {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * 目录项
+     */
+    private static class Entry {
+        long mKeyHash;
+        byte[] mKey;
+        long mDataOffset;
+        int mDataLength;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("用法：HblLibraryPacker <歌词文件夹> <歌词库文件>");
+            System.exit(1);
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        Map<File, Exception> skippedFiles = new LinkedHashMap<File, Exception>();
+        int count = pack(new File(args[0]), new File(args[1]), skippedFiles);
+        for (Map.Entry<File, Exception> skipped : skippedFiles.entrySet()) {
+            System.err.println("跳过：" + skipped.getKey().getPath() + " " + skipped.getValue().getMessage());
+        }
+        System.out.println("打包完成：" + count + "首歌词，耗时" + (System.currentTimeMillis() - startTime) + "ms");
+    }
+
+    /**
+     * 打包歌词文件夹（包括子文件夹）
+     *
+     * @param lyricsDirectory 歌词文件夹
+     * @param libraryFile     歌词库文件
+     * @return 打包的歌词个数，解析失败和关键字重复的文件会被跳过
+     * @throws Exception
+     */
+    public static int pack(File lyricsDirectory, File libraryFile) throws Exception {
+        return pack(lyricsDirectory, libraryFile, null);
+    }
+
+    /**
+     * 打包歌词文件夹（包括子文件夹）
+     *
+     * @param lyricsDirectory 歌词文件夹
+     * @param libraryFile     歌词库文件
+     * @param skippedFiles    保存被跳过的文件和原因，可以为null
+     * @return 打包的歌词个数
+     * @throws Exception
+     */
+    public static int pack(File lyricsDirectory, File libraryFile, Map<File, Exception> skippedFiles) throws Exception {
+        List<File> lyricsFiles = new ArrayList<File>();
+        listLyricsFiles(lyricsDirectory, lyricsFiles);
+        Collections.sort(lyricsFiles);
+        return pack(lyricsFiles, libraryFile, skippedFiles);
+    }
+
+    /**
+     * 打包歌词文件
+     *
+     * @param lyricsFiles 歌词文件
+     * @param libraryFile 歌词库文件
+     * @return 打包的歌词个数，解析失败和关键字重复的文件会被跳过
+     * @throws Exception
+     */
+    public static int pack(List<File> lyricsFiles, File libraryFile) throws Exception {
+        return pack(lyricsFiles, libraryFile, null);
+    }
+
+    /**
+     * 打包歌词文件
+     * <p>
+     * 歌词库先写入临时文件，写完后再重命名，已经打开（内存映射）的旧歌词库不会被截断
+     *
+     * @param lyricsFiles  歌词文件
+     * @param libraryFile  歌词库文件
+     * @param skippedFiles 保存被跳过的文件和原因，可以为null
+     * @return 打包的歌词个数
+     * @throws Exception
+     */
+    public static int pack(List<File> lyricsFiles, File libraryFile, Map<File, Exception> skippedFiles) throws Exception {
+        if (libraryFile.getParentFile() != null && !libraryFile.getParentFile().exists()) {
+            libraryFile.getParentFile().mkdirs();
+        }
+        HblLyricsFileWriter writer = new HblLyricsFileWriter();
+        List<Entry> entries = new ArrayList<Entry>(lyricsFiles.size());
+        Set<String> keys = new HashSet<String>();
+
+        // 先把歌词数据依次写入临时文件，目录大小确定后再拼接
+        File dataFile = new File(libraryFile.getPath() + ".data");
+        DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(dataFile), 64 * 1024));
+        long dataLength = 0;
+        int keysLength = 0;
+        try {
+            for (File lyricsFile : lyricsFiles) {
+                String key = FileUtils.removeExt(lyricsFile.getName());
+                if (!keys.add(key)) {
+                    if (skippedFiles != null) {
+                        skippedFiles.put(lyricsFile, new Exception("关键字重复：" + key));
+                    }
+                    continue;
+                }
+                byte[] data;
+                try {
+                    LyricsFileReader reader = LyricsIOUtils.getLyricsFileReader(lyricsFile);
+                    LyricsInfo lyricsInfo = reader.readFile(lyricsFile);
+                    data = writer.getLyricsBytes(lyricsInfo);
+                } catch (Exception e) {
+                    if (skippedFiles != null) {
+                        skippedFiles.put(lyricsFile, e);
+                    }
+                    continue;
+                }
+                Entry entry = new Entry();
+                entry.mKey = key.getBytes(UTF_8);
+                entry.mKeyHash = HblFormat.hashKey(entry.mKey);
+                entry.mDataOffset = dataLength;
+                entry.mDataLength = data.length;
+                entries.add(entry);
+                dataOut.write(data);
+                dataLength += data.length;
+                keysLength += entry.mKey.length;
+            }
+        } finally {
+            dataOut.close();
+        }
+
+        Collections.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry lhs, Entry rhs) {
+                return lhs.mKeyHash < rhs.mKeyHash ? -1 : (lhs.mKeyHash == rhs.mKeyHash ? 0 : 1);
+            }
+        });
+
+        long dataStart = HblFormat.LIBRARY_HEADER_SIZE + (long) entries.size() * HblFormat.TOC_ENTRY_SIZE + keysLength;
+        AtomicFileOutputStream fileOut = new AtomicFileOutputStream(libraryFile);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 64 * 1024));
+            out.writeInt(HblFormat.LIBRARY_MAGIC);
+            out.writeShort(HblFormat.LIBRARY_VERSION);
+            out.writeShort(0);
+            out.writeInt(entries.size());
+            out.writeInt(keysLength);
+            int keyOffset = 0;
+            for (Entry entry : entries) {
+                out.writeLong(entry.mKeyHash);
+                out.writeLong(dataStart + entry.mDataOffset);
+                out.writeInt(entry.mDataLength);
+                out.writeInt(keyOffset);
+                out.writeInt(entry.mKey.length);
+                keyOffset += entry.mKey.length;
+            }
+            for (Entry entry : entries) {
+                out.write(entry.mKey);
+            }
+
+            // 拼接歌词数据
+            InputStream source = new FileInputStream(dataFile);
+            try {
+                byte[] buffer = new byte[64 * 1024];
+                int length;
+                while ((length = source.read(buffer)) != -1) {
+                    out.write(buffer, 0, length);
+                }
+            } finally {
+                source.close();
+            }
+            // 关闭时重命名为歌词库文件
+            out.close();
+        } catch (Exception e) {
+            fileOut.abort();
+            throw e;
+        } finally {
+            dataFile.delete();
+        }
+        return entries.size();
+    }
+
+    /**
+     * 递归获取能解析的歌词文件
+     */
+    private static void listLyricsFiles(File directory, List<File> lyricsFiles) {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+        List<String> lrcExts = LyricsIOUtils.getSupportLyricsExts();
+        for (File file : files) {
+            if (file.isDirectory()) {
+                listLyricsFiles(file, lyricsFiles);
+            } else if (lrcExts.contains(FileUtils.getFileExt(file))) {
+                lyricsFiles.add(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.chs.htz.lyrics.formats.hbl;
+
+import com.chs.htz.lyrics.formats.LyricsFileReader;
+import com.chs.htz.lyrics.formats.LyricsLineAssembler;
+import com.chs.htz.lyrics.model.LyricsInfo;
+import com.chs.htz.lyrics.model.LyricsLineInfo;
+import com.chs.htz.lyrics.model.TranslateLrcLineInfo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * hbl二进制歌词读取器
+ * <p>
+ * 文件通过内存映射读取，行时间和字时间按列批量读出，没有解压和正则解析
+ */
+public class HblLyricsFileReader extends LyricsFileReader {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    public HblLyricsFileReader() {
+    }
+
+    @Override
+    public LyricsInfo readFile(File file) throws Exception {
+        if (file == null) return null;
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return readByteBuffer(buffer);
+        } finally {
+            in.close();
+        }
+    }
+
+    @Override
+    public LyricsInfo readLrcText(String dynamicContent, String lrcContent, String extraLrcContent, String lyricsFilePath) throws Exception {
+        throw new Exception("hbl歌词不支持读取歌词文本");
+    }
+
+    @Override
+    public LyricsInfo readInputStream(InputStream in) throws Exception {
+        if (in == null) return null;
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                out.write(buffer, 0, len);
+            }
+            return readByteBuffer(ByteBuffer.wrap(out.toByteArray()));
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * 读取歌词数据，从buffer当前位置开始
+     *
+     * @param buffer 歌词内容，可以是内存映射的buffer
+     * @return
+     * @throws Exception 不是hbl歌词或者文件不完整、已损坏
+     */
+    public LyricsInfo readByteBuffer(ByteBuffer buffer) throws Exception {
+        try {
+            return readLyricsInfo(buffer);
+        } catch (BufferUnderflowException e) {
+            throw new Exception("hbl歌词文件不完整");
+        }
+    }
+
+    private LyricsInfo readLyricsInfo(ByteBuffer buffer) throws Exception {
+        if (buffer.remaining() < 8 || buffer.getInt() != HblFormat.MAGIC) {
+            throw new Exception("不是hbl歌词文件");
+        }
+        short version = buffer.getShort();
+        if (version > HblFormat.VERSION) {
+            throw new Exception("不支持的hbl歌词版本：" + version);
+        }
+        // flags，当前版本没有使用
+        buffer.getShort();
+
+        LyricsInfo lyricsIfno = new LyricsInfo();
+        lyricsIfno.setLyricsType(buffer.getInt());
+        int extIndex = buffer.getInt();
+        String[] strings = readStringTable(buffer);
+        lyricsIfno.setLyricsFileExt(extIndex == HblFormat.NONE ? getSupportFileExt() : getString(strings, extIndex));
+
+        // 标签
+        int tagsCount = buffer.getInt();
+        checkCount(buffer, tagsCount, 8);
+        int[] tagIndexes = readInts(buffer, tagsCount * 2);
+        Map<String, Object> lyricsTags = new HashMap<String, Object>();
+        for (int i = 0; i < tagsCount; i++) {
+            lyricsTags.put(getString(strings, tagIndexes[2 * i]), getString(strings, tagIndexes[2 * i + 1]));
+        }
+        lyricsIfno.setLyricsTags(lyricsTags);
+
+        // 歌词行
+        List<LyricsLineInfo> lyricsLineInfos = readLines(buffer, strings, buffer.getInt());
+        LyricsLineAssembler lyricsLineAssembler = new LyricsLineAssembler(false);
+        for (int i = 0; i < lyricsLineInfos.size(); i++) {
+            lyricsLineAssembler.add(lyricsLineInfos.get(i));
+        }
+        lyricsIfno.setLyricsLineInfoTreeMap(lyricsLineAssembler.build());
+
+        // 翻译歌词
+        int translateCount = buffer.getInt();
+        if (translateCount != HblFormat.NONE) {
+            checkCount(buffer, translateCount, 4);
+            int[] translateIndexes = readInts(buffer, translateCount);
+            List<TranslateLrcLineInfo> translateLrcLineInfos = new ArrayList<TranslateLrcLineInfo>(translateCount);
+            for (int i = 0; i < translateCount; i++) {
+                TranslateLrcLineInfo translateLrcLineInfo = new TranslateLrcLineInfo();
+                translateLrcLineInfo.setLineLyrics(getString(strings, translateIndexes[i]));
+                translateLrcLineInfos.add(translateLrcLineInfo);
+            }
+            lyricsIfno.setTranslateLrcLineInfos(translateLrcLineInfos);
+        }
+
+        // 音译歌词
+        int transliterationCount = buffer.getInt();
+        if (transliterationCount != HblFormat.NONE) {
+            lyricsIfno.setTransliterationLrcLineInfos(readLines(buffer, strings, transliterationCount));
+        }
+        return lyricsIfno;
+    }
+
+    /**
+     * 读取字符串表
+     */
+    private static String[] readStringTable(ByteBuffer buffer) throws Exception {
+        int count = buffer.getInt();
+        checkCount(buffer, count, 4);
+        int[] offsets = readInts(buffer, count + 1);
+        int length = buffer.getInt();
+        checkCount(buffer, length, 1);
+        for (int i = 0; i < count; i++) {
+            if (offsets[i] < 0 || offsets[i] > offsets[i + 1] || offsets[i + 1] > length) {
+                throw new Exception("hbl歌词字符串表已损坏");
+            }
+        }
+        byte[] utf8;
+        int base;
+        if (buffer.hasArray()) {
+            utf8 = buffer.array();
+            base = buffer.arrayOffset() + buffer.position();
+            buffer.position(buffer.position() + length);
+        } else {
+            utf8 = new byte[length];
+            base = 0;
+            buffer.get(utf8);
+        }
+        String[] strings = new String[count];
+        for (int i = 0; i < count; i++) {
+            strings[i] = new String(utf8, base + offsets[i], offsets[i + 1] - offsets[i], UTF_8);
+        }
+        return strings;
+    }
+
+    /**
+     * 读取行块
+     */
+    private static List<LyricsLineInfo> readLines(ByteBuffer buffer, String[] strings, int count) throws Exception {
+        // 每行至少有5个int
+        checkCount(buffer, count, 20);
+        int[] startTimes = readInts(buffer, count);
+        int[] endTimes = readInts(buffer, count);
+        int[] lineLyrics = readInts(buffer, count);
+        int[] wordsCounts = readInts(buffer, count);
+        int[] intervalsCounts = readInts(buffer, count);
+        long wordsLength = 0;
+        long intervalsLength = 0;
+        for (int i = 0; i < count; i++) {
+            if (wordsCounts[i] < HblFormat.NONE || intervalsCounts[i] < HblFormat.NONE) {
+                throw new Exception("hbl歌词行已损坏");
+            }
+            if (wordsCounts[i] != HblFormat.NONE) wordsLength += wordsCounts[i];
+            if (intervalsCounts[i] != HblFormat.NONE) intervalsLength += intervalsCounts[i];
+        }
+        checkCount(buffer, wordsLength + intervalsLength, 4);
+        int[] words = readInts(buffer, (int) wordsLength);
+        int[] intervals = readInts(buffer, (int) intervalsLength);
+
+        List<LyricsLineInfo> lyricsLineInfos = new ArrayList<LyricsLineInfo>(count);
+        int wordPos = 0;
+        int intervalPos = 0;
+        for (int i = 0; i < count; i++) {
+            LyricsLineInfo lyricsLineInfo = new LyricsLineInfo();
+            lyricsLineInfo.setStartTime(startTimes[i]);
+            lyricsLineInfo.setEndTime(endTimes[i]);
+            String[] lyricsWords = null;
+            if (wordsCounts[i] != HblFormat.NONE) {
+                lyricsWords = new String[wordsCounts[i]];
+                for (int j = 0; j < lyricsWords.length; j++) {
+                    lyricsWords[j] = getString(strings, words[wordPos++]);
+                }
+            }
+            lyricsLineInfo.setParsedLyrics(getString(strings, lineLyrics[i]), lyricsWords);
+            if (intervalsCounts[i] != HblFormat.NONE) {
+                int[] wordsDisInterval = new int[intervalsCounts[i]];
+                System.arraycopy(intervals, intervalPos, wordsDisInterval, 0, wordsDisInterval.length);
+                intervalPos += wordsDisInterval.length;
+                lyricsLineInfo.setWordsDisInterval(wordsDisInterval);
+            }
+            lyricsLineInfos.add(lyricsLineInfo);
+        }
+        return lyricsLineInfos;
+    }
+
+    /**
+     * 批量读取int数组
+     */
+    private static int[] readInts(ByteBuffer buffer, int length) {
+        int[] values = new int[length];
+        if (length == 0) return values;
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + length * 4);
+        return values;
+    }
+
+    /**
+     * 检查个数，避免损坏的文件导致分配过大的数组
+     *
+     * @param buffer      歌词内容
+     * @param count       个数
+     * @param elementSize 每个元素至少占用的字节数
+     * @throws Exception 个数为负数或者超出剩余内容
+     */
+    private static void checkCount(ByteBuffer buffer, long count, int elementSize) throws Exception {
+        if (count < 0 || count * elementSize > buffer.remaining()) {
+            throw new Exception("hbl歌词文件已损坏");
+        }
+    }
+
+    private static String getString(String[] strings, int index) throws Exception {
+        if (index == HblFormat.NONE) return null;
+        if (index < 0 || index >= strings.length) {
+            throw new Exception("hbl歌词字符串索引已损坏");
+        }
+        return strings[index];
+    }
+
+    @Override
+    public boolean isFileSupported(String ext) {
+        return ext.equalsIgnoreCase(HblFormat.FILE_EXT);
+    }
+
+    /**
+     * 二进制歌词库，文本固定为utf-8，不识别编码
+     */
+    @Override
+    protected boolean isCharsetDetectable() {
+        return false;
+    }
+
+    @Override
+    public boolean isContentSupported(byte[] header, int length) {
+        if (length < 4) return false;
+        int magic = ((header[0] & 0xff) << 24) | ((header[1] & 0xff) << 16)
+                | ((header[2] & 0xff) << 8) | (header[3] & 0xff);
+        return magic == HblFormat.MAGIC;
+    }
+
+    @Override
+    public String getSupportFileExt() {
+        return HblFormat.FILE_EXT;
+    }
+}
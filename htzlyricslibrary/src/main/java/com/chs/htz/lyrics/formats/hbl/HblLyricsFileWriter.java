@@ -0,0 +1,267 @@
+package com.chs.htz.lyrics.formats.hbl;
+
+import android.util.Base64;
+
+import com.chs.htz.lyrics.formats.LyricsFileWriter;
+import com.chs.htz.lyrics.model.LyricsInfo;
+import com.chs.htz.lyrics.model.LyricsLineInfo;
+import com.chs.htz.lyrics.model.TranslateLrcLineInfo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * hbl二进制歌词生成器
+ * <p>
+ * 保存已经解析好的歌词数据，读取时不需要再解压、解码和正则解析
+ */
+public class HblLyricsFileWriter extends LyricsFileWriter {
+
+    public HblLyricsFileWriter() {
+    }
+
+    @Override
+    public boolean writer(LyricsInfo lyricsIfno, String lyricsFilePath) throws Exception {
+        return saveLyricsFile(lyricsIfno, lyricsFilePath);
+    }
+
+    /**
+     * 各部分直接写入输出流，不生成整个文件的字节数组
+     */
+    @Override
+    public void writer(LyricsInfo lyricsIfno, OutputStream out) throws Exception {
+        DataOutputStream dataOut = new DataOutputStream(out);
+        writeLyrics(lyricsIfno, dataOut);
+        dataOut.close();
+    }
+
+    /**
+     * 二进制内容无法用文本表示，返回base64编码后的内容，可以直接用 LyricsReader.loadLrc(String, File) 加载
+     *
+     * @param lyricsIfno 歌词内容类
+     * @return
+     * @throws Exception
+     */
+    @Override
+    public String getLyricsContent(LyricsInfo lyricsIfno) throws Exception {
+        return Base64.encodeToString(getLyricsBytes(lyricsIfno), Base64.NO_WRAP);
+    }
+
+    /**
+     * 获取歌词的二进制内容
+     *
+     * @param lyricsIfno 歌词内容类
+     * @return
+     * @throws Exception
+     */
+    public byte[] getLyricsBytes(LyricsInfo lyricsIfno) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeLyrics(lyricsIfno, out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 写入歌词的二进制内容，字符串表和歌词行需要先收集完才能写入各部分的长度，写入时不再复制
+     *
+     * @param lyricsIfno 歌词内容类
+     * @param out        输出流
+     * @throws IOException
+     */
+    private void writeLyrics(LyricsInfo lyricsIfno, DataOutputStream out) throws IOException {
+        StringTable stringTable = new StringTable();
+        int extIndex = stringTable.indexOf(lyricsIfno.getLyricsFileExt());
+
+        // 标签
+        Map<String, Object> tags = lyricsIfno.getLyricsTags();
+        int tagsCount = tags == null ? 0 : tags.size();
+        int[] tagIndexes = new int[tagsCount * 2];
+        if (tags != null) {
+            int i = 0;
+            for (Map.Entry<String, Object> entry : tags.entrySet()) {
+                tagIndexes[i++] = stringTable.indexOf(entry.getKey());
+                tagIndexes[i++] = stringTable.indexOf(entry.getValue() == null ? null : String.valueOf(entry.getValue()));
+            }
+        }
+
+        // 歌词行
+        Collection<LyricsLineInfo> lyricsLineInfos = lyricsIfno.getLyricsLineInfoTreeMap() == null
+                ? new ArrayList<LyricsLineInfo>() : lyricsIfno.getLyricsLineInfoTreeMap().values();
+        LinesBlock linesBlock = new LinesBlock(lyricsLineInfos, stringTable);
+
+        // 翻译歌词
+        List<TranslateLrcLineInfo> translateLrcLineInfos = lyricsIfno.getTranslateLrcLineInfos();
+        int[] translateIndexes = null;
+        if (translateLrcLineInfos != null) {
+            translateIndexes = new int[translateLrcLineInfos.size()];
+            for (int i = 0; i < translateIndexes.length; i++) {
+                translateIndexes[i] = stringTable.indexOf(translateLrcLineInfos.get(i).getLineLyrics());
+            }
+        }
+
+        // 音译歌词
+        List<LyricsLineInfo> transliterationLrcLineInfos = lyricsIfno.getTransliterationLrcLineInfos();
+        LinesBlock transliterationBlock = transliterationLrcLineInfos == null
+                ? null : new LinesBlock(transliterationLrcLineInfos, stringTable);
+
+        out.writeInt(HblFormat.MAGIC);
+        out.writeShort(HblFormat.VERSION);
+        out.writeShort(0);
+        out.writeInt(lyricsIfno.getLyricsType());
+        out.writeInt(extIndex);
+        stringTable.write(out);
+        out.writeInt(tagsCount);
+        writeInts(out, tagIndexes, tagIndexes.length);
+        linesBlock.write(out);
+        if (translateIndexes == null) {
+            out.writeInt(HblFormat.NONE);
+        } else {
+            out.writeInt(translateIndexes.length);
+            writeInts(out, translateIndexes, translateIndexes.length);
+        }
+        if (transliterationBlock == null) {
+            out.writeInt(HblFormat.NONE);
+        } else {
+            transliterationBlock.write(out);
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values, int length) throws IOException {
+        for (int i = 0; i < length; i++) {
+            out.writeInt(values[i]);
+        }
+    }
+
+    /**
+     * 字符串表，相同的字符串只保存一次
+     */
+    private static class StringTable {
+        private final Map<String, Integer> mIndexes = new HashMap<String, Integer>();
+        private final List<byte[]> mValues = new ArrayList<byte[]>();
+        private int mLength = 0;
+
+        int indexOf(String value) throws IOException {
+            if (value == null) return HblFormat.NONE;
+            Integer index = mIndexes.get(value);
+            if (index == null) {
+                byte[] utf8 = value.getBytes("UTF-8");
+                index = mValues.size();
+                mValues.add(utf8);
+                mIndexes.put(value, index);
+                mLength += utf8.length;
+            }
+            return index;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(mValues.size());
+            int offset = 0;
+            out.writeInt(offset);
+            for (byte[] value : mValues) {
+                offset += value.length;
+                out.writeInt(offset);
+            }
+            out.writeInt(mLength);
+            for (byte[] value : mValues) {
+                out.write(value);
+            }
+        }
+    }
+
+    /**
+     * 按列保存的歌词行
+     */
+    private static class LinesBlock {
+        private final int mCount;
+        private final int[] mStartTimes;
+        private final int[] mEndTimes;
+        private final int[] mLineLyrics;
+        private final int[] mWordsCounts;
+        private final int[] mIntervalsCounts;
+        private int[] mWords = new int[64];
+        private int mWordsLength = 0;
+        private int[] mIntervals = new int[64];
+        private int mIntervalsLength = 0;
+
+        LinesBlock(Collection<LyricsLineInfo> lyricsLineInfos, StringTable stringTable) throws IOException {
+            mCount = lyricsLineInfos.size();
+            mStartTimes = new int[mCount];
+            mEndTimes = new int[mCount];
+            mLineLyrics = new int[mCount];
+            mWordsCounts = new int[mCount];
+            mIntervalsCounts = new int[mCount];
+            int i = 0;
+            for (LyricsLineInfo lyricsLineInfo : lyricsLineInfos) {
+                mStartTimes[i] = lyricsLineInfo.getStartTime();
+                mEndTimes[i] = lyricsLineInfo.getEndTime();
+                mLineLyrics[i] = stringTable.indexOf(lyricsLineInfo.getLineLyrics());
+                String[] lyricsWords = lyricsLineInfo.getLyricsWords();
+                if (lyricsWords == null) {
+                    mWordsCounts[i] = HblFormat.NONE;
+                } else {
+                    mWordsCounts[i] = lyricsWords.length;
+                    for (String lyricsWord : lyricsWords) {
+                        addWord(stringTable.indexOf(lyricsWord));
+                    }
+                }
+                int[] wordsDisInterval = lyricsLineInfo.getWordsDisInterval();
+                if (wordsDisInterval == null) {
+                    mIntervalsCounts[i] = HblFormat.NONE;
+                } else {
+                    mIntervalsCounts[i] = wordsDisInterval.length;
+                    for (int interval : wordsDisInterval) {
+                        addInterval(interval);
+                    }
+                }
+                i++;
+            }
+        }
+
+        private void addWord(int index) {
+            if (mWordsLength == mWords.length) {
+                int[] words = new int[mWords.length * 2];
+                System.arraycopy(mWords, 0, words, 0, mWordsLength);
+                mWords = words;
+            }
+            mWords[mWordsLength++] = index;
+        }
+
+        private void addInterval(int interval) {
+            if (mIntervalsLength == mIntervals.length) {
+                int[] intervals = new int[mIntervals.length * 2];
+                System.arraycopy(mIntervals, 0, intervals, 0, mIntervalsLength);
+                mIntervals = intervals;
+            }
+            mIntervals[mIntervalsLength++] = interval;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(mCount);
+            writeInts(out, mStartTimes, mCount);
+            writeInts(out, mEndTimes, mCount);
+            writeInts(out, mLineLyrics, mCount);
+            writeInts(out, mWordsCounts, mCount);
+            writeInts(out, mIntervalsCounts, mCount);
+            writeInts(out, mWords, mWordsLength);
+            writeInts(out, mIntervals, mIntervalsLength);
+        }
+    }
+
+    @Override
+    public boolean isFileSupported(String ext) {
+        return ext.equalsIgnoreCase(HblFormat.FILE_EXT);
+    }
+
+    @Override
+    public String getSupportFileExt() {
+        return HblFormat.FILE_EXT;
+    }
+}
@@ -2,25 +2,23 @@ package com.chs.htz.lyrics.formats.hrc;
 
 import android.util.Base64;
 
+import com.chs.htz.lyrics.formats.ExtraLyricsJson;
 import com.chs.htz.lyrics.formats.LyricsFileReader;
+import com.chs.htz.lyrics.formats.LyricsLineAssembler;
+import com.chs.htz.lyrics.model.LyricsExtraParser;
 import com.chs.htz.lyrics.model.LyricsInfo;
 import com.chs.htz.lyrics.model.LyricsLineInfo;
 import com.chs.htz.lyrics.model.LyricsTag;
-import com.chs.htz.lyrics.model.TranslateLrcLineInfo;
+import com.chs.htz.lyrics.model.LyricsWordsParser;
 import com.chs.htz.lyrics.utils.StringCompressUtils;
 import com.chs.htz.lyrics.utils.StringUtils;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
-
 import java.io.InputStream;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
-import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 /**
  * @Description: hrc歌词解析，乐乐音乐的自定义歌词
@@ -82,27 +80,22 @@ public class HrcLyricsFileReader extends LyricsFileReader {
             String lyricsTextStr = StringCompressUtils.decompress(in,
                     getDefaultCharset());
             String[] lyricsTexts = lyricsTextStr.split("\n");
-            // 这里面key为该行歌词的开始时间，方便后面排序
-            SortedMap<Integer, LyricsLineInfo> lyricsLineInfosTemp = new TreeMap<Integer, LyricsLineInfo>();
+            // 按开始时间组装歌词行，排序是稳定的，开始时间相同的行保持文件中的顺序，与额外歌词的行号对应
+            LyricsLineAssembler lyricsLineAssembler = new LyricsLineAssembler();
             Map<String, Object> lyricsTags = new HashMap<String, Object>();
+            // 按需解析字时，只扫描行时间标签
+            LyricsWordsParser wordsParser = isLazyWords() ? newWordsParser() : null;
             for (int i = 0; i < lyricsTexts.length; i++) {
 
                 // 解析歌词
-                parserLineInfos(lyricsIfno, lyricsLineInfosTemp,
-                        lyricsTags, lyricsTexts[i]);
+                parserLineInfos(lyricsIfno, lyricsLineAssembler,
+                        lyricsTags, lyricsTexts[i], wordsParser);
 
             }
             in.close();
             in = null;
-            // 重新封装
-            TreeMap<Integer, LyricsLineInfo> lyricsLineInfos = new TreeMap<Integer, LyricsLineInfo>();
-            int index = 0;
-            Iterator<Integer> it = lyricsLineInfosTemp.keySet().iterator();
-            while (it.hasNext()) {
-                lyricsLineInfos
-                        .put(index++, lyricsLineInfosTemp.get(it.next()));
-            }
-            it = null;
+            // 按开始时间排好序的歌词行
+            TreeMap<Integer, LyricsLineInfo> lyricsLineInfos = lyricsLineAssembler.build();
             // 设置歌词的标签类
             lyricsIfno.setLyricsTags(lyricsTags);
             //
@@ -114,13 +107,15 @@ public class HrcLyricsFileReader extends LyricsFileReader {
     /**
      * 解析每行的歌词
      *
-     * @param lyricsLineInfos
+     * @param lyricsLineAssembler
      * @param lyricsTags
      * @param lineInfo
+     * @param wordsParser         按需解析字时使用，为null时直接解析字
      */
     private void parserLineInfos(LyricsInfo lyricsIfno,
-                                 SortedMap<Integer, LyricsLineInfo> lyricsLineInfos,
-                                 Map<String, Object> lyricsTags, String lineInfo) throws Exception {
+                                 LyricsLineAssembler lyricsLineAssembler,
+                                 Map<String, Object> lyricsTags, String lineInfo,
+                                 LyricsWordsParser wordsParser) throws Exception {
         if (lineInfo.startsWith(LEGAL_TITLE_PREFIX)) {
 
             int start = LEGAL_TITLE_PREFIX.length();
@@ -174,17 +169,22 @@ public class HrcLyricsFileReader extends LyricsFileReader {
             String translateJsonBase64String = lineInfo.substring(leftIndex + 1,
                     rightIndex);
             if (!translateJsonBase64String.equals("")) {
-                String translateJsonString = new String(
-                        Base64.decode(translateJsonBase64String, Base64.NO_WRAP));
-                parserOtherLrc(lyricsIfno, translateJsonString);
+                if (getExtraLyricsMode() != EXTRA_LYRICS_EAGER && lyricsIfno.getExtraParser() == null) {
+                    // 保存原始内容，获取时再解析
+                    lyricsIfno.setExtraParser(newExtraParser(translateJsonBase64String));
+                } else {
+                    String translateJsonString = new String(
+                            Base64.decode(translateJsonBase64String, Base64.NO_WRAP));
+                    parserOtherLrc(lyricsIfno, translateJsonString);
+                }
             }
 
         } else if (lineInfo.startsWith(LEGAL_LYRICS_LINE_PREFIX)) {
-            int leftIndex = lineInfo.indexOf('\'');
-            int rightIndex = lineInfo.lastIndexOf('\'');
-
-            String[] lineComments = lineInfo.substring(leftIndex + 1, rightIndex)
-                    .split("'\\s*,\\s*'", -1);
+            if (wordsParser != null) {
+                parserLazyLineInfos(lyricsLineAssembler, wordsParser, lineInfo);
+                return;
+            }
+            String[] lineComments = getLineComments(lineInfo);
             // 歌词
             String lineLyricsStr = lineComments[1];
 
@@ -195,171 +195,176 @@ public class HrcLyricsFileReader extends LyricsFileReader {
             String lineLyrics = getLineLyrics(lineLyricsStr);
 
             // 时间标签
-            String timeText = lineComments[0];
-            int timeLeft = timeText.indexOf('<');
-            int timeRight = timeText.lastIndexOf('>');
-            timeText = timeText.substring(timeLeft + 1, timeRight);
-            String[] timeTexts = timeText.split("><");
+            String[] timeTexts = getTagTexts(lineComments[0]);
 
             // 每个歌词的时间标签
-            String wordsDisIntervalText = lineComments[2];
-            int wordsDisIntervalLeft = wordsDisIntervalText.indexOf('<');
-            int wordsDisIntervalRight = wordsDisIntervalText.lastIndexOf('>');
-            wordsDisIntervalText = wordsDisIntervalText.substring(wordsDisIntervalLeft + 1, wordsDisIntervalRight);
-            String[] wordsDisIntervalTexts = wordsDisIntervalText.split("><");
+            String[] wordsDisIntervalTexts = getTagTexts(lineComments[2]);
 
-            parserLineInfos(lyricsLineInfos, lyricsWords, lineLyrics,
+            parserLineInfos(lyricsLineAssembler, lyricsWords, lineLyrics,
                     timeTexts, wordsDisIntervalTexts);
         }
 
     }
 
     /**
-     * 解析翻译和音译歌词
+     * 获取歌词行中用单引号括起来的各部分：时间标签、歌词、字时间标签
      *
-     * @param lyricsIfno
-     * @param translateJsonString
+     * @param lineInfo
+     * @return
      */
-    private void parserOtherLrc(LyricsInfo lyricsIfno,
-                                String translateJsonString) throws Exception {
+    private String[] getLineComments(String lineInfo) {
+        int leftIndex = lineInfo.indexOf('\'');
+        int rightIndex = lineInfo.lastIndexOf('\'');
 
-        JSONObject resultObj = new JSONObject(translateJsonString);
-        JSONArray contentArrayObj = resultObj.getJSONArray("content");
-        for (int i = 0; i < contentArrayObj.length(); i++) {
-            JSONObject dataObj = contentArrayObj.getJSONObject(i);
-            JSONArray lyricContentArrayObj = dataObj
-                    .getJSONArray("lyricContent");
-            int type = dataObj.getInt("lyricType");
-            if (type == 1) {
-                // 解析翻译歌词
-                if (lyricsIfno.getTranslateLrcLineInfos() == null || lyricsIfno.getTranslateLrcLineInfos().size() == 0)
-                    parserTranslateLrc(lyricsIfno, lyricContentArrayObj);
-
-            } else if (type == 0) {
-                // 解析音译歌词
-                if (lyricsIfno.getTransliterationLrcLineInfos() == null || lyricsIfno.getTransliterationLrcLineInfos().size() == 0)
-                    parserTransliterationLrc(lyricsIfno,
-                            lyricContentArrayObj);
-            }
+        return lineInfo.substring(leftIndex + 1, rightIndex)
+                .split("'\\s*,\\s*'", -1);
+    }
+
+    /**
+     * 获取 &lt;...&gt;&lt;...&gt; 形式的标签内容
+     *
+     * @param text
+     * @return
+     */
+    private String[] getTagTexts(String text) {
+        int left = text.indexOf('<');
+        int right = text.lastIndexOf('>');
+        return text.substring(left + 1, right).split("><");
+    }
+
+    /**
+     * 只解析时间标签，创建按需解析字的歌词行，一个原始行可能有多个歌词行
+     *
+     * @param lyricsLineAssembler
+     * @param wordsParser
+     * @param lineInfo
+     */
+    private void parserLazyLineInfos(LyricsLineAssembler lyricsLineAssembler,
+                                     LyricsWordsParser wordsParser, String lineInfo) throws Exception {
+        // 时间标签在第一对单引号中
+        int leftIndex = lineInfo.indexOf('\'');
+        int rightIndex = lineInfo.indexOf('\'', leftIndex + 1);
+        String[] timeTexts = getTagTexts(lineInfo.substring(leftIndex + 1, rightIndex));
+        for (int i = 0; i < timeTexts.length; i++) {
+            String[] timeTextCom = timeTexts[i].split(",");
+            int startTime = Integer.parseInt(timeTextCom[0]);
+            int endTime = Integer.parseInt(timeTextCom[1]);
+            lyricsLineAssembler.add(wordsParser.newLyricsLineInfo(startTime, endTime, lineInfo, i));
         }
     }
 
     /**
-     * 解析音译歌词
+     * 创建按需解析字的解析器，每个文件一个
      *
-     * @param lyricsIfno
-     * @param lyricContentArrayObj
+     * @return
      */
-    private void parserTransliterationLrc(LyricsInfo lyricsIfno,
-                                          JSONArray lyricContentArrayObj) throws Exception {
-
-        // 音译歌词集合
-        List<LyricsLineInfo> transliterationLrcLineInfos = new ArrayList<LyricsLineInfo>();
-        // 获取歌词内容
-        for (int j = 0; j < lyricContentArrayObj.length(); j++) {
-            JSONArray lrcDataArrayObj = lyricContentArrayObj.getJSONArray(j);
-            // 音译行歌词
-            LyricsLineInfo transliterationLrcLineInfo = new LyricsLineInfo();
-            String[] lyricsWords = new String[lrcDataArrayObj.length()];
-            StringBuilder lineLyrics = new StringBuilder();
-            for (int k = 0; k < lrcDataArrayObj.length(); k++) {
-                if (k == lrcDataArrayObj.length() - 1) {
-                    lyricsWords[k] = lrcDataArrayObj.getString(k).trim();
-                } else {
-                    lyricsWords[k] = lrcDataArrayObj.getString(k).trim() + " ";
+    private LyricsWordsParser newWordsParser() {
+        return new LyricsWordsParser(getResidentLineCount()) {
+            @Override
+            protected LyricsLineInfo parseLine(String rawLine, int rawIndex) throws Exception {
+                String[] lineComments = getLineComments(rawLine);
+                String lineLyricsStr = lineComments[1];
+                String[] timeTexts = getTagTexts(lineComments[0]);
+                String[] wordsDisIntervalTexts = getTagTexts(lineComments[2]);
+                if (timeTexts.length != wordsDisIntervalTexts.length) {
+                    throw new Exception("开始与结束的标签个数与行字分配时间的标签个数不相等");
                 }
-                lineLyrics.append(lyricsWords[k]);
+                return createLyricsLineInfo(getLyricsWords(lineLyricsStr), getLineLyrics(lineLyricsStr),
+                        timeTexts[rawIndex], wordsDisIntervalTexts[rawIndex]);
             }
-            transliterationLrcLineInfo.setLineLyrics(lineLyrics.toString());
-            transliterationLrcLineInfo.setLyricsWords(lyricsWords);
+        };
+    }
 
-            transliterationLrcLineInfos.add(transliterationLrcLineInfo);
-        }
-        // 添加音译歌词
-        if (transliterationLrcLineInfos.size() > 0) {
-            lyricsIfno.setTransliterationLrcLineInfos(transliterationLrcLineInfos);
-        }
+    /**
+     * 创建按需解析的额外歌词
+     *
+     * @param translateJsonBase64String json base64字符串
+     * @return
+     */
+    private LyricsExtraParser newExtraParser(String translateJsonBase64String) {
+        return startExtraParser(new LyricsExtraParser(translateJsonBase64String) {
+            @Override
+            protected void parse(String rawContent, LyricsInfo extraLyricsInfo) throws Exception {
+                String translateJsonString = new String(
+                        Base64.decode(rawContent, Base64.NO_WRAP));
+                parserOtherLrc(extraLyricsInfo, translateJsonString);
+            }
+        });
     }
 
     /**
-     * 解析翻译歌词
+     * 解析翻译和音译歌词
      *
      * @param lyricsIfno
-     * @param lyricContentArrayObj
+     * @param translateJsonString
      */
-    private void parserTranslateLrc(LyricsInfo lyricsIfno,
-                                    JSONArray lyricContentArrayObj) throws Exception {
-
-        // 翻译歌词集合
-        List<TranslateLrcLineInfo> translateLrcLineInfos = new ArrayList<TranslateLrcLineInfo>();
-
-        // 获取歌词内容
-        for (int j = 0; j < lyricContentArrayObj.length(); j++) {
-            JSONArray lrcDataArrayObj = lyricContentArrayObj.getJSONArray(j);
-            String lrcComtext = lrcDataArrayObj.getString(0);
-
-            // 翻译行歌词
-            TranslateLrcLineInfo translateLrcLineInfo = new TranslateLrcLineInfo();
-            translateLrcLineInfo.setLineLyrics(lrcComtext);
-
-            translateLrcLineInfos.add(translateLrcLineInfo);
-        }
-        // 添加翻译歌词
-        if (translateLrcLineInfos.size() > 0) {
-            lyricsIfno.setTranslateLrcLineInfos(translateLrcLineInfos);
-        }
+    private void parserOtherLrc(LyricsInfo lyricsIfno,
+                                String translateJsonString) throws Exception {
+        ExtraLyricsJson.parse(translateJsonString, "lyricType", lyricsIfno);
     }
 
     /**
      * 解析每行歌词的数据
      *
-     * @param lyricsLineInfos
+     * @param lyricsLineAssembler
      * @param lyricsWords           歌词
      * @param lineLyrics            该行歌词
      * @param timeTexts             时间文本
      * @param wordsDisIntervalTexts
      */
     private void parserLineInfos(
-            SortedMap<Integer, LyricsLineInfo> lyricsLineInfos,
+            LyricsLineAssembler lyricsLineAssembler,
             String[] lyricsWords, String lineLyrics, String[] timeTexts,
             String[] wordsDisIntervalTexts) throws Exception {
         if (timeTexts.length == wordsDisIntervalTexts.length) {
             for (int i = 0; i < wordsDisIntervalTexts.length; i++) {
+                lyricsLineAssembler.add(createLyricsLineInfo(lyricsWords, lineLyrics,
+                        timeTexts[i], wordsDisIntervalTexts[i]));
+            }
+        } else {
+            throw new Exception("开始与结束的标签个数与行字分配时间的标签个数不相等");
+        }
+    }
 
-                LyricsLineInfo lyricsLineInfo = new LyricsLineInfo();
-
-                // 每一行的开始时间和结束时间
-                String timeTextStr = timeTexts[i];
-                String[] timeTextCom = timeTextStr.split(",");
+    /**
+     * 创建歌词行
+     *
+     * @param lyricsWords          歌词
+     * @param lineLyrics           该行歌词
+     * @param timeText             开始时间和结束时间
+     * @param wordsDisIntervalText 每个字的时间
+     * @return
+     */
+    private LyricsLineInfo createLyricsLineInfo(String[] lyricsWords, String lineLyrics,
+                                                String timeText, String wordsDisIntervalText) throws Exception {
+        LyricsLineInfo lyricsLineInfo = new LyricsLineInfo();
 
-                String startTimeStr = timeTextCom[0];
-                int startTime = Integer.parseInt(startTimeStr);
+        // 每一行的开始时间和结束时间
+        String[] timeTextCom = timeText.split(",");
 
-                String endTimeStr = timeTextCom[1];
-                int endTime = Integer.parseInt(endTimeStr);
+        String startTimeStr = timeTextCom[0];
+        int startTime = Integer.parseInt(startTimeStr);
 
-                lyricsLineInfo.setEndTime(endTime);
-                lyricsLineInfo.setStartTime(startTime);
+        String endTimeStr = timeTextCom[1];
+        int endTime = Integer.parseInt(endTimeStr);
 
-                //
-                lyricsLineInfo.setLineLyrics(lineLyrics);
-                lyricsLineInfo.setLyricsWords(lyricsWords);
+        lyricsLineInfo.setEndTime(endTime);
+        lyricsLineInfo.setStartTime(startTime);
 
-                // 每一行歌词的每个时间
-                int wordsDisInterval[] = getWordsDisIntervalString(wordsDisIntervalTexts[i]);
+        //
+        lyricsLineInfo.setLineLyrics(lineLyrics);
+        lyricsLineInfo.setLyricsWords(lyricsWords);
 
-                //验证
-                if (lyricsWords.length != wordsDisInterval.length) {
-                    throw new Exception("字标签个数与字时间标签个数不相符");
-                }
+        // 每一行歌词的每个时间
+        int wordsDisInterval[] = getWordsDisIntervalString(wordsDisIntervalText);
 
-                lyricsLineInfo.setWordsDisInterval(wordsDisInterval);
-                //
-                lyricsLineInfos.put(startTime, lyricsLineInfo);
-            }
-        } else {
-            throw new Exception("开始与结束的标签个数与行字分配时间的标签个数不相等");
+        //验证
+        if (lyricsWords.length != wordsDisInterval.length) {
+            throw new Exception("字标签个数与字时间标签个数不相符");
         }
+
+        lyricsLineInfo.setWordsDisInterval(wordsDisInterval);
+        return lyricsLineInfo;
     }
 
     /**
@@ -422,6 +427,33 @@ public class HrcLyricsFileReader extends LyricsFileReader {
         return ext.equalsIgnoreCase("hrc");
     }
 
+    /**
+     * 压缩的歌词，解压后的内容按默认编码读取，不识别编码
+     */
+    @Override
+    protected boolean isCharsetDetectable() {
+        return false;
+    }
+
+    @Override
+    public boolean isContentSupported(byte[] header, int length) {
+        // zlib压缩数据：CMF为deflate，(CMF*256+FLG)能被31整除，且开头能正常解压
+        if (length < 2) return false;
+        int cmf = header[0] & 0xff;
+        int flg = header[1] & 0xff;
+        if ((cmf & 0x0f) != 8 || (cmf >> 4) > 7 || ((cmf << 8) | flg) % 31 != 0) return false;
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(header, 0, length);
+            inflater.inflate(new byte[64]);
+            return true;
+        } catch (DataFormatException e) {
+            return false;
+        } finally {
+            inflater.end();
+        }
+    }
+
     @Override
     public String getSupportFileExt() {
         return "hrc";
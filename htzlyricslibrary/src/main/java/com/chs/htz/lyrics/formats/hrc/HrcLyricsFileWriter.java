@@ -2,21 +2,22 @@ package com.chs.htz.lyrics.formats.hrc;
 
 import android.util.Base64;
 
+import com.chs.htz.lyrics.formats.ExtraLyricsJson;
 import com.chs.htz.lyrics.formats.LyricsFileWriter;
 import com.chs.htz.lyrics.model.LyricsInfo;
 import com.chs.htz.lyrics.model.LyricsLineInfo;
 import com.chs.htz.lyrics.model.LyricsTag;
-import com.chs.htz.lyrics.model.TranslateLrcLineInfo;
-import com.chs.htz.lyrics.utils.StringCompressUtils;
-
-import org.json.JSONArray;
-import org.json.JSONObject;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.zip.DeflaterOutputStream;
 
 /**
  * @Description: hrc歌词
@@ -68,15 +69,24 @@ public class HrcLyricsFileWriter extends LyricsFileWriter {
 
     @Override
     public boolean writer(LyricsInfo lyricsIfno, String lyricsFilePath) throws Exception {
-        // 对字符串运行压缩
-        byte[] lyricsContent = StringCompressUtils.compress(
-                getLyricsContent(lyricsIfno), getDefaultCharset());
-        return saveLyricsFile(lyricsContent, lyricsFilePath);
+        return saveLyricsFile(lyricsIfno, lyricsFilePath);
+    }
+
+    @Override
+    protected OutputStream wrapOutputStream(OutputStream out) throws IOException {
+        // 边写边压缩
+        return new DeflaterOutputStream(out);
     }
 
     @Override
     public String getLyricsContent(LyricsInfo lyricsIfno) throws Exception {
-        StringBuilder lyricsCom = new StringBuilder();
+        StringWriter lyricsCom = new StringWriter();
+        writeLyricsContent(lyricsIfno, lyricsCom);
+        return lyricsCom.toString();
+    }
+
+    @Override
+    protected void writeLyricsContent(LyricsInfo lyricsIfno, Writer lyricsCom) throws Exception {
         // 先保存所有的标签数据
         Map<String, Object> tags = lyricsIfno.getLyricsTags();
         for (Map.Entry<String, Object> entry : tags.entrySet()) {
@@ -98,88 +108,56 @@ public class HrcLyricsFileWriter extends LyricsFileWriter {
         }
 
         // 获取额外歌词行（翻译歌词和音译歌词）
-        JSONObject extraLyricsObj = new JSONObject();
-        JSONArray contentArray = new JSONArray();
-        // 判断是否有翻译歌词
-        if (lyricsIfno.getTranslateLrcLineInfos() != null && lyricsIfno.getTranslateLrcLineInfos().size() != 0) {
-            List<TranslateLrcLineInfo> translateLrcLineInfos = lyricsIfno.getTranslateLrcLineInfos();
-            if (translateLrcLineInfos != null
-                    && translateLrcLineInfos.size() > 0) {
-                JSONObject lyricsObj = new JSONObject();
-                JSONArray lyricContentArray = new JSONArray();
-                lyricsObj.put("lyricType", 1);
-                for (int i = 0; i < translateLrcLineInfos.size(); i++) {
-                    JSONArray lyricArray = new JSONArray();
-                    TranslateLrcLineInfo translateLrcLineInfo = translateLrcLineInfos
-                            .get(i);
-                    lyricArray.put(translateLrcLineInfo.getLineLyrics());
-                    lyricContentArray.put(lyricArray);
-                }
-                if (lyricContentArray.length() > 0) {
-                    lyricsObj.put("lyricContent", lyricContentArray);
-                    contentArray.put(lyricsObj);
-                }
-
-            }
-        }
-
-        // 判断是否有音译歌词
-        if (lyricsIfno.getTransliterationLrcLineInfos() != null && lyricsIfno.getTransliterationLrcLineInfos().size() != 0) {
-            List<LyricsLineInfo> lyricsLineInfos = lyricsIfno.getTransliterationLrcLineInfos();
-            if (lyricsLineInfos != null && lyricsLineInfos.size() > 0) {
-                JSONObject lyricsObj = new JSONObject();
-                JSONArray lyricContentArray = new JSONArray();
-                lyricsObj.put("lyricType", 0);
-                for (int i = 0; i < lyricsLineInfos.size(); i++) {
-
-                    LyricsLineInfo lyricsLineInfo = lyricsLineInfos.get(i);
-                    String[] lyricsWords = lyricsLineInfo.getLyricsWords();
-                    JSONArray lyricArray = new JSONArray();
-                    for (int j = 0; j < lyricsWords.length; j++) {
-                        lyricArray.put(lyricsWords[j].trim());
-                    }
-                    lyricContentArray.put(lyricArray);
-                }
-                if (lyricContentArray.length() > 0) {
-                    lyricsObj.put("lyricContent", lyricContentArray);
-                    contentArray.put(lyricsObj);
-                }
-            }
-        }
-        //
-        extraLyricsObj.put("content", contentArray);
+        String extraLyricsJson = ExtraLyricsJson.write(lyricsIfno, "lyricType", false);
         // 添加翻译和音译歌词
         lyricsCom.append(LEGAL_EXTRA_LYRICS_PREFIX
                 + "('"
-                + Base64.encodeToString(extraLyricsObj.toString()
+                + Base64.encodeToString(extraLyricsJson
                 .getBytes(), Base64.NO_WRAP) + "');\n");
 
         // 每行歌词内容
-        TreeMap<Integer, LyricsLineInfo> lyricsLineInfos = lyricsIfno
-                .getLyricsLineInfoTreeMap();
-        // 将每行歌词，放到有序的map，判断已重复的歌词
-        LinkedHashMap<String, List<Integer>> lyricsLineInfoMapResult = new LinkedHashMap<String, List<Integer>>();
+        writeLyricsLines(lyricsIfno.getLyricsLineInfoTreeMap(), lyricsCom);
+    }
+
+    /**
+     * 保存歌词行，歌词相同的行合并为一行，每行有多个时间标签
+     * <p>
+     * 读取时按开始时间稳定排序，开始时间相同的行按在文件中的顺序排列，额外歌词按行号与歌词行对应。
+     * 开始时间与上一行相同的行只合并到上一行所在的一行或者之后的一行，否则读取后这两行的顺序会交换
+     *
+     * @param lyricsLineInfos
+     * @param lyricsCom
+     * @throws IOException
+     */
+    void writeLyricsLines(TreeMap<Integer, LyricsLineInfo> lyricsLineInfos, Writer lyricsCom) throws IOException {
+        // 合并后的每一行的歌词内容和歌词行索引
+        List<String> saveLineLyricsList = new ArrayList<String>();
+        List<List<Integer>> indexsList = new ArrayList<List<Integer>>();
+        // 歌词内容 -> 最后一个该歌词的合并行
+        Map<String, Integer> groupIndexMap = new HashMap<String, Integer>();
+        int lastGroupIndex = -1;
         for (int i = 0; i < lyricsLineInfos.size(); i++) {
             LyricsLineInfo lyricsLineInfo = lyricsLineInfos.get(i);
             String saveLineLyrics = getSaveLineLyrics(lyricsLineInfo
                     .getLyricsWords());
-            List<Integer> indexs = null;
+            Integer groupIndex = groupIndexMap.get(saveLineLyrics);
+            boolean sameStartTime = i > 0 && lyricsLineInfos.get(i - 1).getStartTime() == lyricsLineInfo.getStartTime();
             // 如果已存在该行歌词，则往里面添加歌词行索引
-            if (lyricsLineInfoMapResult.containsKey(saveLineLyrics)) {
-                indexs = lyricsLineInfoMapResult.get(saveLineLyrics);
-            } else {
-                indexs = new ArrayList<Integer>();
+            if (groupIndex == null || (sameStartTime && groupIndex < lastGroupIndex)) {
+                groupIndex = indexsList.size();
+                saveLineLyricsList.add(saveLineLyrics);
+                indexsList.add(new ArrayList<Integer>());
+                groupIndexMap.put(saveLineLyrics, groupIndex);
             }
-            indexs.add(i);
-            lyricsLineInfoMapResult.put(saveLineLyrics, indexs);
+            indexsList.get(groupIndex).add(i);
+            lastGroupIndex = groupIndex;
         }
         // 遍历
-        for (Map.Entry<String, List<Integer>> entry : lyricsLineInfoMapResult
-                .entrySet()) {
+        for (int groupIndex = 0; groupIndex < indexsList.size(); groupIndex++) {
             lyricsCom.append(LEGAL_LYRICS_LINE_PREFIX + "('");
-            List<Integer> indexs = entry.getValue();
+            List<Integer> indexs = indexsList.get(groupIndex);
             // 当前行歌词文本
-            String saveLineLyrics = entry.getKey();
+            String saveLineLyrics = saveLineLyricsList.get(groupIndex);
             StringBuilder timeText = new StringBuilder();// 时间标签内容
             StringBuilder wordsDisIntervalText = new StringBuilder();// 每个歌词时间
 
@@ -207,7 +185,6 @@ public class HrcLyricsFileWriter extends LyricsFileWriter {
             lyricsCom.append(",'" + saveLineLyrics + "'");
             lyricsCom.append(",'" + wordsDisIntervalText.toString() + "');\n");
         }
-        return lyricsCom.toString();
     }
 
     /**
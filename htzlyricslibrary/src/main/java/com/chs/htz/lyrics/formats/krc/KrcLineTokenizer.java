@@ -0,0 +1,223 @@
+package com.chs.htz.lyrics.formats.krc;
+
+import com.chs.htz.lyrics.model.LyricsLineInfo;
+
+/**
+ * @Description: krc歌词行扫描器，单次前向扫描解析 [开始时间,持续时间] 与 &lt;偏移,持续时间,0&gt; 标签，
+ * 不使用正则表达式，解析结果与原正则实现完全一致
+ */
+class KrcLineTokenizer {
+
+    /**
+     * 标签数字，超出int范围时为Long.MAX_VALUE
+     */
+    private final long[] mTagValues = new long[3];
+
+    /**
+     * 字缓存，跨行复用
+     */
+    private String[] mWords = new String[32];
+
+    /**
+     * 字时间缓存，跨行复用
+     */
+    private long[] mWordsDisInterval = new long[32];
+
+    /**
+     * 行歌词缓存
+     */
+    private final StringBuilder mLineLyrics = new StringBuilder();
+
+    /**
+     * 解析歌词行
+     *
+     * @param lineInfo 行内容
+     * @return 不是歌词行时返回null
+     * @throws Exception
+     */
+    LyricsLineInfo parse(String lineInfo) throws Exception {
+        int contentStart = scanHeader(lineInfo);
+        if (contentStart == -1) {
+            return null;
+        }
+
+        LyricsLineInfo lyricsLineInfo = new LyricsLineInfo();
+        // [此行开始时刻距0时刻的毫秒数,此行持续的毫秒数]<0,此字持续的毫秒数,0>歌<此字开始的时刻距此行开始时刻的毫秒数,此字持续的毫秒数,0>词
+        int startTime = getHeaderStartTime();
+        int endTime = getHeaderEndTime();
+        lyricsLineInfo.setEndTime(endTime);
+        lyricsLineInfo.setStartTime(startTime);
+
+        // 按字标签把行内容分为若干片段，第0个片段为第一个字标签之前的内容
+        int length = lineInfo.length();
+        int tagCount = 0;
+        int segmentIndex = 0;
+        int segmentStart = contentStart;
+        int lastNotEmptySegment = -1;
+        mLineLyrics.setLength(0);
+
+        int cursor = contentStart;
+        while (cursor < length) {
+            int tagStart = lineInfo.indexOf('<', cursor);
+            if (tagStart == -1) {
+                break;
+            }
+            int tagEnd = scanTag(lineInfo, tagStart, '>', 3);
+            if (tagEnd == -1) {
+                // 不是字标签，作为普通文本
+                cursor = tagStart + 1;
+                continue;
+            }
+            if (endSegment(lineInfo, segmentIndex, segmentStart, tagStart)) {
+                lastNotEmptySegment = segmentIndex;
+            }
+            ensureCapacity(tagCount + 1);
+            mWordsDisInterval[tagCount++] = mTagValues[1];
+            segmentIndex++;
+            segmentStart = cursor = tagEnd;
+        }
+        if (endSegment(lineInfo, segmentIndex, segmentStart, length)) {
+            lastNotEmptySegment = segmentIndex;
+        }
+
+        // 与 String.split 的规则保持一致：没有字标签时为整段内容，否则去掉末尾的空片段
+        int segmentCount = tagCount == 0 ? 1 : lastNotEmptySegment + 1;
+        int wordsCount = segmentCount < 2 ? segmentCount : segmentCount - 1;
+
+        // 歌词分隔
+        String[] lyricsWords = new String[wordsCount];
+        if (segmentCount >= 2) {
+            System.arraycopy(mWords, 0, lyricsWords, 0, wordsCount);
+        }
+        lyricsLineInfo.setLyricsWords(lyricsWords);
+
+        // 获取每个歌词的时间
+        int wordsDisInterval[] = new int[wordsCount];
+        for (int i = 0; i < tagCount; i++) {
+            //验证
+            if (i >= wordsCount) {
+                throw new Exception("字标签个数与字时间标签个数不相符");
+            }
+            wordsDisInterval[i] = toInt(mWordsDisInterval[i]);
+        }
+        lyricsLineInfo.setWordsDisInterval(wordsDisInterval);
+
+        // 获取当行歌词
+        lyricsLineInfo.setLineLyrics(mLineLyrics.toString());
+
+        return lyricsLineInfo;
+    }
+
+    /**
+     * 只查找第一个 [数字,数字] 行时间标签，不解析字
+     *
+     * @param lineInfo 行内容
+     * @return 行内容开始位置，不是歌词行时返回-1
+     */
+    int scanHeader(String lineInfo) {
+        for (int i = lineInfo.indexOf('['); i != -1; i = lineInfo.indexOf('[', i + 1)) {
+            int contentStart = scanTag(lineInfo, i, ']', 2);
+            if (contentStart != -1) {
+                return contentStart;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 上一次 {@link #scanHeader} 得到的行开始时间
+     */
+    int getHeaderStartTime() {
+        return toInt(mTagValues[0]);
+    }
+
+    /**
+     * 上一次 {@link #scanHeader} 得到的行结束时间
+     */
+    int getHeaderEndTime() {
+        return toInt(mTagValues[0]) + toInt(mTagValues[1]);
+    }
+
+    /**
+     * 结束一个片段
+     *
+     * @return 片段是否非空
+     */
+    private boolean endSegment(String lineInfo, int segmentIndex, int start, int end) {
+        if (segmentIndex > 0) {
+            ensureCapacity(segmentIndex);
+            mWords[segmentIndex - 1] = lineInfo.substring(start, end);
+        }
+        if (end > start) {
+            mLineLyrics.append(lineInfo, start, end);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 解析从start开始、以close结尾、由逗号分隔的数字标签
+     *
+     * @param s          内容
+     * @param start      标签开始位置
+     * @param close      结束字符
+     * @param valueCount 数字个数
+     * @return 标签结束位置（不包含），不是标签时返回-1
+     */
+    private int scanTag(String s, int start, char close, int valueCount) {
+        int length = s.length();
+        int pos = start + 1;
+        for (int i = 0; i < valueCount; i++) {
+            long value = 0;
+            int digitStart = pos;
+            while (pos < length) {
+                char c = s.charAt(pos);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                if (value != Long.MAX_VALUE) {
+                    value = value * 10 + (c - '0');
+                    if (value > Integer.MAX_VALUE) {
+                        value = Long.MAX_VALUE;
+                    }
+                }
+                pos++;
+            }
+            if (pos == digitStart || pos >= length) {
+                return -1;
+            }
+            char separator = s.charAt(pos);
+            if (separator != (i == valueCount - 1 ? close : ',')) {
+                return -1;
+            }
+            mTagValues[i] = value;
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * 与 Integer.parseInt 保持一致，超出范围时抛出异常
+     */
+    private static int toInt(long value) {
+        if (value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("value out of range");
+        }
+        return (int) value;
+    }
+
+    private void ensureCapacity(int size) {
+        if (size > mWords.length) {
+            int newLength = Math.max(size, mWords.length * 2);
+            String[] words = new String[newLength];
+            System.arraycopy(mWords, 0, words, 0, mWords.length);
+            mWords = words;
+        }
+        if (size > mWordsDisInterval.length) {
+            int newLength = Math.max(size, mWordsDisInterval.length * 2);
+            long[] wordsDisInterval = new long[newLength];
+            System.arraycopy(mWordsDisInterval, 0, wordsDisInterval, 0, mWordsDisInterval.length);
+            mWordsDisInterval = wordsDisInterval;
+        }
+    }
+}
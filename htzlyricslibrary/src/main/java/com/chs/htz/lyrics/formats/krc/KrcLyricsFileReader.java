@@ -2,24 +2,22 @@ package com.chs.htz.lyrics.formats.krc;
 
 import android.util.Base64;
 
+import com.chs.htz.lyrics.formats.ExtraLyricsJson;
 import com.chs.htz.lyrics.formats.LyricsFileReader;
+import com.chs.htz.lyrics.formats.LyricsLineAssembler;
+import com.chs.htz.lyrics.model.LyricsExtraParser;
 import com.chs.htz.lyrics.model.LyricsInfo;
 import com.chs.htz.lyrics.model.LyricsLineInfo;
 import com.chs.htz.lyrics.model.LyricsTag;
-import com.chs.htz.lyrics.model.TranslateLrcLineInfo;
-import com.chs.htz.lyrics.utils.StringCompressUtils;
-
-import org.json.JSONArray;
-import org.json.JSONObject;
+import com.chs.htz.lyrics.model.LyricsWordsParser;
 
+import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.InputStream;
-import java.util.ArrayList;
+import java.io.InputStreamReader;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.zip.InflaterInputStream;
 
 /**
  * @Description: krcs歌词读取器
@@ -76,41 +74,44 @@ public class KrcLyricsFileReader extends LyricsFileReader {
         LyricsInfo lyricsIfno = new LyricsInfo();
         lyricsIfno.setLyricsFileExt(getSupportFileExt());
         if (in != null) {
-            byte[] zip_byte = new byte[in.available()];
+            // 跳过文件头 krc1
             byte[] top = new byte[4];
-            in.read(top);
-            in.read(zip_byte);
-            int j = zip_byte.length;
-            for (int k = 0; k < j; k++) {
-                int l = k % 16;
-                int tmp67_65 = k;
-                byte[] tmp67_64 = zip_byte;
-                tmp67_64[tmp67_65] = (byte) (tmp67_64[tmp67_65] ^ key[l]);
+            int offset = 0;
+            while (offset < top.length) {
+                int len = in.read(top, offset, top.length - offset);
+                if (len == -1) {
+                    throw new EOFException("krc文件头不完整");
+                }
+                offset += len;
             }
-            String lyricsTextStr = StringCompressUtils.decompress(zip_byte,
-                    getDefaultCharset());
-            String[] lyricsTexts = lyricsTextStr.split("\n");
-            TreeMap<Integer, LyricsLineInfo> lyricsLineInfos = new TreeMap<Integer, LyricsLineInfo>();
+            // 边解码边解压边按行解析，不再一次性读入整个文件
+            BufferedReader br = new BufferedReader(new InputStreamReader(
+                    new InflaterInputStream(new KrcXorInputStream(in, key)),
+                    getDefaultCharset()));
+            // 保持文件中的顺序，翻译和音译歌词按行号对应
+            LyricsLineAssembler lyricsLineAssembler = new LyricsLineAssembler(false);
             Map<String, Object> lyricsTags = new HashMap<String, Object>();
-            int index = 0;
+            KrcLineTokenizer tokenizer = new KrcLineTokenizer();
+            // 按需解析字时，只扫描行时间标签
+            LyricsWordsParser wordsParser = isLazyWords() ? newWordsParser() : null;
 
-            for (int i = 0; i < lyricsTexts.length; i++) {
-                String lineInfo = lyricsTexts[i];
+            String lineInfo = null;
+            while ((lineInfo = br.readLine()) != null) {
 
                 // 行读取，并解析每行歌词的内容
                 LyricsLineInfo lyricsLineInfo = parserLineInfos(lyricsTags,
-                        lineInfo, lyricsIfno);
+                        lineInfo, lyricsIfno, tokenizer, wordsParser);
                 if (lyricsLineInfo != null) {
-                    lyricsLineInfos.put(index, lyricsLineInfo);
-                    index++;
+                    lyricsLineAssembler.add(lyricsLineInfo);
                 }
             }
+            br.close();
             in.close();
             in = null;
             // 设置歌词的标签类
             lyricsIfno.setLyricsTags(lyricsTags);
             //
-            lyricsIfno.setLyricsLineInfoTreeMap(lyricsLineInfos);
+            lyricsIfno.setLyricsLineInfoTreeMap(lyricsLineAssembler.build());
         }
         return lyricsIfno;
     }
@@ -121,10 +122,13 @@ public class KrcLyricsFileReader extends LyricsFileReader {
      * @param lyricsTags
      * @param lineInfo
      * @param lyricsIfno
+     * @param tokenizer
+     * @param wordsParser 按需解析字时使用，为null时直接解析字
      * @return
      */
     private LyricsLineInfo parserLineInfos(Map<String, Object> lyricsTags,
-                                           String lineInfo, LyricsInfo lyricsIfno) throws Exception {
+                                           String lineInfo, LyricsInfo lyricsIfno,
+                                           KrcLineTokenizer tokenizer, LyricsWordsParser wordsParser) throws Exception {
         LyricsLineInfo lyricsLineInfo = null;
         if (lineInfo.startsWith(LEGAL_SONGNAME_PREFIX)) {
             int startIndex = LEGAL_SONGNAME_PREFIX.length();
@@ -162,197 +166,90 @@ public class KrcLyricsFileReader extends LyricsFileReader {
             // 获取json base64字符串
             String translateJsonBase64String = temp.length == 1 ? "" : temp[1];
             if (!translateJsonBase64String.equals("")) {
-
-                String translateJsonString = new String(
-                        Base64.decode(translateJsonBase64String, Base64.NO_WRAP));
-                parserOtherLrc(lyricsIfno, translateJsonString);
+                if (getExtraLyricsMode() != EXTRA_LYRICS_EAGER && lyricsIfno.getExtraParser() == null) {
+                    // 保存原始内容，获取时再解析
+                    lyricsIfno.setExtraParser(newExtraParser(translateJsonBase64String));
+                } else {
+                    String translateJsonString = new String(
+                            Base64.decode(translateJsonBase64String, Base64.NO_WRAP));
+                    parserOtherLrc(lyricsIfno, translateJsonString);
+                }
+            }
+        } else if (wordsParser != null) {
+            // 只扫描行时间标签
+            if (tokenizer.scanHeader(lineInfo) != -1) {
+                lyricsLineInfo = wordsParser.newLyricsLineInfo(tokenizer.getHeaderStartTime(),
+                        tokenizer.getHeaderEndTime(), lineInfo, 0);
             }
         } else {
             // 匹配歌词行
-            Pattern pattern = Pattern.compile("\\[\\d+,\\d+\\]");
-            Matcher matcher = pattern.matcher(lineInfo);
-            if (matcher.find()) {
-                lyricsLineInfo = new LyricsLineInfo();
-                // [此行开始时刻距0时刻的毫秒数,此行持续的毫秒数]<0,此字持续的毫秒数,0>歌<此字开始的时刻距此行开始时刻的毫秒数,此字持续的毫秒数,0>词<此字开始的时刻距此行开始时刻的毫秒数,此字持续的毫秒数,0>正<此字开始的时刻距此行开始时刻的毫秒数,此字持续的毫秒数,0>文
-                // 获取行的出现时间和结束时间
-                int mStartIndex = matcher.start();
-                int mEndIndex = matcher.end();
-                String lineTime[] = lineInfo.substring(mStartIndex + 1,
-                        mEndIndex - 1).split(",");
-                //
-
-                int startTime = Integer.parseInt(lineTime[0]);
-                int endTime = startTime + Integer.parseInt(lineTime[1]);
-                lyricsLineInfo.setEndTime(endTime);
-                lyricsLineInfo.setStartTime(startTime);
-                // 获取歌词信息
-                String lineContent = lineInfo.substring(mEndIndex,
-                        lineInfo.length());
-
-                // 歌词匹配的正则表达式
-                String regex = "\\<\\d+,\\d+,\\d+\\>";
-                Pattern lyricsWordsPattern = Pattern.compile(regex);
-                Matcher lyricsWordsMatcher = lyricsWordsPattern
-                        .matcher(lineContent);
-
-                if (lyricsWordsMatcher == null) {
-                    return null;
-                }
-
-                // 歌词分隔
-                String lineLyricsTemp[] = lineContent.split(regex);
-                String[] lyricsWords = getLyricsWords(lineLyricsTemp);
-                lyricsLineInfo.setLyricsWords(lyricsWords);
-
-                // 获取每个歌词的时间
-                int wordsDisInterval[] = new int[lyricsWords.length];
-                int index = 0;
-                while (lyricsWordsMatcher.find()) {
-
-                    //验证
-                    if (index >= wordsDisInterval.length) {
-                        throw new Exception("字标签个数与字时间标签个数不相符");
-                    }
-
-                    //
-                    String wordsDisIntervalStr = lyricsWordsMatcher.group();
-                    String wordsDisIntervalStrTemp = wordsDisIntervalStr
-                            .substring(wordsDisIntervalStr.indexOf('<') + 1, wordsDisIntervalStr.lastIndexOf('>'));
-                    String wordsDisIntervalTemp[] = wordsDisIntervalStrTemp
-                            .split(",");
-                    wordsDisInterval[index++] = Integer
-                            .parseInt(wordsDisIntervalTemp[1]);
-                }
-                lyricsLineInfo.setWordsDisInterval(wordsDisInterval);
-
-                // 获取当行歌词
-                String lineLyrics = lyricsWordsMatcher.replaceAll("");
-                lyricsLineInfo.setLineLyrics(lineLyrics);
-            }
-
+            lyricsLineInfo = tokenizer.parse(lineInfo);
         }
         return lyricsLineInfo;
     }
 
     /**
-     * 解析翻译和音译歌词
+     * 创建按需解析字的解析器，每个文件一个
      *
-     * @param lyricsIfno
-     * @param translateJsonString
+     * @return
      */
-    private void parserOtherLrc(LyricsInfo lyricsIfno,
-                                String translateJsonString) throws Exception {
+    private LyricsWordsParser newWordsParser() {
+        return new LyricsWordsParser(getResidentLineCount()) {
 
-        JSONObject resultObj = new JSONObject(translateJsonString);
-        JSONArray contentArrayObj = resultObj.getJSONArray("content");
-        for (int i = 0; i < contentArrayObj.length(); i++) {
-            JSONObject dataObj = contentArrayObj.getJSONObject(i);
-            JSONArray lyricContentArrayObj = dataObj
-                    .getJSONArray("lyricContent");
-            int type = dataObj.getInt("type");
-            if (type == 1) {
-                // 解析翻译歌词
-                if (lyricsIfno.getTranslateLrcLineInfos() == null || lyricsIfno.getTranslateLrcLineInfos().size() == 0)
-                    parserTranslateLrc(lyricsIfno, lyricContentArrayObj);
+            private final KrcLineTokenizer mTokenizer = new KrcLineTokenizer();
 
-            } else if (type == 0) {
-                // 解析音译歌词
-                if (lyricsIfno.getTransliterationLrcLineInfos() == null || lyricsIfno.getTransliterationLrcLineInfos().size() == 0)
-                    parserTransliterationLrc(lyricsIfno,
-                            lyricContentArrayObj);
+            @Override
+            protected LyricsLineInfo parseLine(String rawLine, int rawIndex) throws Exception {
+                return mTokenizer.parse(rawLine);
             }
-        }
+        };
     }
 
     /**
-     * 解析音译歌词
+     * 创建按需解析的额外歌词
      *
-     * @param lyricsIfno
-     * @param lyricContentArrayObj
+     * @param translateJsonBase64String json base64字符串
+     * @return
      */
-    private void parserTransliterationLrc(LyricsInfo lyricsIfno,
-                                          JSONArray lyricContentArrayObj) throws Exception {
-
-        // 音译歌词集合
-        List<LyricsLineInfo> transliterationLrcLineInfos = new ArrayList<LyricsLineInfo>();
-        // 获取歌词内容
-        for (int j = 0; j < lyricContentArrayObj.length(); j++) {
-            JSONArray lrcDataArrayObj = lyricContentArrayObj.getJSONArray(j);
-            // 音译行歌词
-            LyricsLineInfo transliterationLrcLineInfo = new LyricsLineInfo();
-            String[] lyricsWords = new String[lrcDataArrayObj.length()];
-            StringBuilder lineLyrics = new StringBuilder();
-            for (int k = 0; k < lrcDataArrayObj.length(); k++) {
-                if (k == lrcDataArrayObj.length() - 1) {
-                    lyricsWords[k] = lrcDataArrayObj.getString(k).trim();
-                } else {
-                    lyricsWords[k] = lrcDataArrayObj.getString(k).trim() + " ";
-                }
-                lineLyrics.append(lyricsWords[k]);
+    private LyricsExtraParser newExtraParser(String translateJsonBase64String) {
+        return startExtraParser(new LyricsExtraParser(translateJsonBase64String) {
+            @Override
+            protected void parse(String rawContent, LyricsInfo extraLyricsInfo) throws Exception {
+                String translateJsonString = new String(
+                        Base64.decode(rawContent, Base64.NO_WRAP));
+                parserOtherLrc(extraLyricsInfo, translateJsonString);
             }
-            transliterationLrcLineInfo.setLineLyrics(lineLyrics.toString());
-            transliterationLrcLineInfo.setLyricsWords(lyricsWords);
-
-            transliterationLrcLineInfos.add(transliterationLrcLineInfo);
-        }
-        // 添加音译歌词
-        if (transliterationLrcLineInfos.size() > 0) {
-            lyricsIfno
-                    .setTransliterationLrcLineInfos(transliterationLrcLineInfos);
-        }
+        });
     }
 
     /**
-     * 解析翻译歌词
+     * 解析翻译和音译歌词
      *
      * @param lyricsIfno
-     * @param lyricContentArrayObj
+     * @param translateJsonString
      */
-    private void parserTranslateLrc(LyricsInfo lyricsIfno,
-                                    JSONArray lyricContentArrayObj) throws Exception {
-
-        // 翻译歌词集合
-        List<TranslateLrcLineInfo> translateLrcLineInfos = new ArrayList<TranslateLrcLineInfo>();
-
-        // 获取歌词内容
-        for (int j = 0; j < lyricContentArrayObj.length(); j++) {
-            JSONArray lrcDataArrayObj = lyricContentArrayObj.getJSONArray(j);
-            String lrcComtext = lrcDataArrayObj.getString(0);
-
-            // 翻译行歌词
-            TranslateLrcLineInfo translateLrcLineInfo = new TranslateLrcLineInfo();
-            translateLrcLineInfo.setLineLyrics(lrcComtext);
+    private void parserOtherLrc(LyricsInfo lyricsIfno,
+                                String translateJsonString) throws Exception {
+        ExtraLyricsJson.parse(translateJsonString, "type", lyricsIfno);
+    }
 
-            translateLrcLineInfos.add(translateLrcLineInfo);
-        }
-        // 添加翻译歌词
-        if (translateLrcLineInfos.size() > 0) {
-            lyricsIfno.setTranslateLrcLineInfos(translateLrcLineInfos);
-        }
+    @Override
+    public boolean isFileSupported(String ext) {
+        return ext.equalsIgnoreCase("krc");
     }
 
     /**
-     * 分隔每个歌词
-     *
-     * @param lineLyricsTemp
-     * @return
+     * 压缩加密的歌词，解压后的内容按默认编码读取，不识别编码
      */
-    private String[] getLyricsWords(String[] lineLyricsTemp) throws Exception {
-        String temp[] = null;
-        if (lineLyricsTemp.length < 2) {
-            return new String[lineLyricsTemp.length];
-        }
-        //
-        temp = new String[lineLyricsTemp.length - 1];
-        for (int i = 1; i < lineLyricsTemp.length; i++) {
-            temp[i - 1] = lineLyricsTemp[i];
-        }
-        return temp;
+    @Override
+    protected boolean isCharsetDetectable() {
+        return false;
     }
 
     @Override
-    public boolean isFileSupported(String ext) {
-        return ext.equalsIgnoreCase("krc");
+    public boolean isContentSupported(byte[] header, int length) {
+        // 文件头 krc1
+        return length >= 4 && header[0] == 'k' && header[1] == 'r' && header[2] == 'c' && header[3] == '1';
     }
 
     @Override
@@ -2,21 +2,19 @@ package com.chs.htz.lyrics.formats.krc;
 
 import android.util.Base64;
 
+import com.chs.htz.lyrics.formats.ExtraLyricsJson;
 import com.chs.htz.lyrics.formats.LyricsFileWriter;
 import com.chs.htz.lyrics.model.LyricsInfo;
 import com.chs.htz.lyrics.model.LyricsLineInfo;
 import com.chs.htz.lyrics.model.LyricsTag;
-import com.chs.htz.lyrics.model.TranslateLrcLineInfo;
-import com.chs.htz.lyrics.utils.StringCompressUtils;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
-
-import java.io.File;
-import java.io.FileOutputStream;
-import java.util.List;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.zip.DeflaterOutputStream;
 
 /**
  * @Description: krc歌词生成器, 不是生成官方的歌词文件
@@ -58,46 +56,26 @@ public class KrcLyricsFileWriter extends LyricsFileWriter {
 
     @Override
     public boolean writer(LyricsInfo lyricsIfno, String lyricsFilePath) throws Exception {
-        File lyricsFile = new File(lyricsFilePath);
-        if (lyricsFile != null) {
-            //
-            if (!lyricsFile.getParentFile().exists()) {
-                lyricsFile.getParentFile().mkdirs();
-            }
-
-            //
-            // 对字符串运行压缩
-            byte[] content = StringCompressUtils.compress(
-                    getLyricsContent(lyricsIfno), getDefaultCharset());
-
-            int j = content.length;
-            for (int k = 0; k < j; k++) {
-                int l = k % 16;
-                int tmp67_65 = k;
-                byte[] tmp67_64 = content;
-                tmp67_64[tmp67_65] = (byte) (tmp67_64[tmp67_65] ^ key[l]);
-            }
-            String topText = "krc1";
-            byte[] top = new byte[4];
-            for (int i = 0; i < topText.length(); i++) {
-                top[i] = (byte) topText.charAt(i);
-            }
-
-            // 生成歌词文件
-            FileOutputStream os = new FileOutputStream(lyricsFile);
-            os.write(top);
-            os.write(content);
-            os.close();
-            os = null;
+        return saveLyricsFile(lyricsIfno, lyricsFilePath);
+    }
 
-            return true;
-        }
-        return false;
+    @Override
+    protected OutputStream wrapOutputStream(OutputStream out) throws IOException {
+        // 文件头 krc1
+        out.write(new byte[]{'k', 'r', 'c', '1'});
+        // 边写边压缩，压缩后的数据再与密钥异或
+        return new DeflaterOutputStream(new KrcXorOutputStream(out, key));
     }
 
     @Override
     public String getLyricsContent(LyricsInfo lyricsIfno) throws Exception {
-        StringBuilder lyricsCom = new StringBuilder();
+        StringWriter lyricsCom = new StringWriter();
+        writeLyricsContent(lyricsIfno, lyricsCom);
+        return lyricsCom.toString();
+    }
+
+    @Override
+    protected void writeLyricsContent(LyricsInfo lyricsIfno, Writer lyricsCom) throws Exception {
         // 先保存所有的标签数据
         Map<String, Object> tags = lyricsIfno.getLyricsTags();
         for (Map.Entry<String, Object> entry : tags.entrySet()) {
@@ -116,60 +94,11 @@ public class KrcLyricsFileWriter extends LyricsFileWriter {
             lyricsCom.append(val + "]\n");
         }
 
-        JSONObject extraLyricsObj = new JSONObject();
-        JSONArray contentArray = new JSONArray();
-        // 判断是否有翻译歌词
-        if (lyricsIfno.getTranslateLrcLineInfos() != null && lyricsIfno.getTranslateLrcLineInfos().size() != 0) {
-            List<TranslateLrcLineInfo> translateLrcLineInfos = lyricsIfno.getTranslateLrcLineInfos();
-            if (translateLrcLineInfos != null
-                    && translateLrcLineInfos.size() > 0) {
-                JSONObject lyricsObj = new JSONObject();
-                JSONArray lyricContentArray = new JSONArray();
-                lyricsObj.put("language", 0);
-                lyricsObj.put("type", 1);
-                for (int i = 0; i < translateLrcLineInfos.size(); i++) {
-                    JSONArray lyricArray = new JSONArray();
-                    TranslateLrcLineInfo translateLrcLineInfo = translateLrcLineInfos
-                            .get(i);
-                    lyricArray.put(translateLrcLineInfo.getLineLyrics());
-                    lyricContentArray.put(lyricArray);
-                }
-                if (lyricContentArray.length() > 0) {
-                    lyricsObj.put("lyricContent", lyricContentArray);
-                    contentArray.put(lyricsObj);
-                }
-
-            }
-        }
-        // 判断是否有音译歌词
-        if (lyricsIfno.getTransliterationLrcLineInfos() != null && lyricsIfno.getTransliterationLrcLineInfos().size() != 0) {
-            List<LyricsLineInfo> lyricsLineInfos = lyricsIfno.getTransliterationLrcLineInfos();
-            if (lyricsLineInfos != null && lyricsLineInfos.size() > 0) {
-                JSONObject lyricsObj = new JSONObject();
-                JSONArray lyricContentArray = new JSONArray();
-                lyricsObj.put("language", 0);
-                lyricsObj.put("type", 0);
-                for (int i = 0; i < lyricsLineInfos.size(); i++) {
-
-                    LyricsLineInfo lyricsLineInfo = lyricsLineInfos.get(i);
-                    String[] lyricsWords = lyricsLineInfo.getLyricsWords();
-                    JSONArray lyricArray = new JSONArray();
-                    for (int j = 0; j < lyricsWords.length; j++) {
-                        lyricArray.put(lyricsWords[j].trim());
-                    }
-                    lyricContentArray.put(lyricArray);
-                }
-                if (lyricContentArray.length() > 0) {
-                    lyricsObj.put("lyricContent", lyricContentArray);
-                    contentArray.put(lyricsObj);
-                }
-            }
-        }
-        //
-        extraLyricsObj.put("content", contentArray);
+        // 获取额外歌词行（翻译歌词和音译歌词）
+        String extraLyricsJson = ExtraLyricsJson.write(lyricsIfno, "type", true);
         // 添加翻译和音译歌词
         lyricsCom.append(LEGAL_LANGUAGE_PREFIX
-                + Base64.encodeToString(extraLyricsObj.toString()
+                + Base64.encodeToString(extraLyricsJson
                 .getBytes(), Base64.NO_WRAP) + "]\n");
 
         // [1679,1550]<0,399,0>作<399,200,0>词<599,250,0>：<849,301,0>李<1150,400,0>健
@@ -199,7 +128,6 @@ public class KrcLyricsFileWriter extends LyricsFileWriter {
             lyricsCom.append("\n");
         }
 
-        return lyricsCom.toString();
     }
 
     @Override
@@ -0,0 +1,65 @@
+package com.chs.htz.lyrics.formats.krc;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * @Description: krc解码输入流，按位置与密钥异或还原压缩数据，边读边解码
+ */
+class KrcXorInputStream extends FilterInputStream {
+
+    /**
+     * 解码参数
+     */
+    private final char[] mKey;
+
+    /**
+     * 当前已读取的字节数
+     */
+    private long mPosition;
+
+    KrcXorInputStream(InputStream in, char[] key) {
+        super(in);
+        this.mKey = key;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b == -1) {
+            return -1;
+        }
+        return (b ^ mKey[(int) (mPosition++ % mKey.length)]) & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int count = super.read(b, off, len);
+        for (int i = 0; i < count; i++) {
+            b[off + i] = (byte) (b[off + i] ^ mKey[(int) (mPosition++ % mKey.length)]);
+        }
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        mPosition += skipped;
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+}
@@ -0,0 +1,49 @@
+package com.chs.htz.lyrics.formats.krc;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * @Description: krc编码输出流，按位置与密钥异或压缩数据，边写边编码，不修改调用者的数据
+ */
+class KrcXorOutputStream extends FilterOutputStream {
+
+    /**
+     * 解码参数
+     */
+    private final char[] mKey;
+
+    /**
+     * 编码缓冲
+     */
+    private final byte[] mBuffer = new byte[1024];
+
+    /**
+     * 当前已写入的字节数
+     */
+    private long mPosition;
+
+    KrcXorOutputStream(OutputStream out, char[] key) {
+        super(out);
+        this.mKey = key;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write((b ^ mKey[(int) (mPosition++ % mKey.length)]) & 0xff);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int count = Math.min(len, mBuffer.length);
+            for (int i = 0; i < count; i++) {
+                mBuffer[i] = (byte) (b[off + i] ^ mKey[(int) (mPosition++ % mKey.length)]);
+            }
+            out.write(mBuffer, 0, count);
+            off += count;
+            len -= count;
+        }
+    }
+}
@@ -3,9 +3,11 @@ package com.chs.htz.lyrics.formats.ksc;
 import android.text.TextUtils;
 
 import com.chs.htz.lyrics.formats.LyricsFileReader;
+import com.chs.htz.lyrics.formats.LyricsLineAssembler;
 import com.chs.htz.lyrics.model.LyricsInfo;
 import com.chs.htz.lyrics.model.LyricsLineInfo;
 import com.chs.htz.lyrics.model.LyricsTag;
+import com.chs.htz.lyrics.model.LyricsWordsParser;
 import com.chs.htz.lyrics.utils.CharUtils;
 import com.chs.htz.lyrics.utils.StringUtils;
 import com.chs.htz.lyrics.utils.TimeUtils;
@@ -18,7 +20,6 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 
 /**
  * @Description: ksc歌词解析器
@@ -64,18 +65,19 @@ public class KscLyricsFileReader extends LyricsFileReader {
             BufferedReader br = new BufferedReader(new InputStreamReader(in,
                     getDefaultCharset()));
 
-            TreeMap<Integer, LyricsLineInfo> lyricsLineInfos = new TreeMap<Integer, LyricsLineInfo>();
+            // 保持文件中的顺序
+            LyricsLineAssembler lyricsLineAssembler = new LyricsLineAssembler(false);
             Map<String, Object> lyricsTags = new HashMap<String, Object>();
-            int index = 0;
+            // 按需解析字时，只扫描行时间
+            LyricsWordsParser wordsParser = isLazyWords() ? newWordsParser() : null;
             String lineInfo = "";
             while ((lineInfo = br.readLine()) != null) {
 
                 // 行读取，并解析每行歌词的内容
                 LyricsLineInfo lyricsLineInfo = parserLineInfos(lyricsTags,
-                        lineInfo);
+                        lineInfo, wordsParser);
                 if (lyricsLineInfo != null) {
-                    lyricsLineInfos.put(index, lyricsLineInfo);
-                    index++;
+                    lyricsLineAssembler.add(lyricsLineInfo);
                 }
             }
             in.close();
@@ -83,7 +85,7 @@ public class KscLyricsFileReader extends LyricsFileReader {
             // 设置歌词的标签类
             lyricsIfno.setLyricsTags(lyricsTags);
             //
-            lyricsIfno.setLyricsLineInfoTreeMap(lyricsLineInfos);
+            lyricsIfno.setLyricsLineInfoTreeMap(lyricsLineAssembler.build());
         }
         return lyricsIfno;
     }
@@ -94,9 +96,11 @@ public class KscLyricsFileReader extends LyricsFileReader {
         lyricsIfno.setLyricsFileExt(getSupportFileExt());
         if (!TextUtils.isEmpty(lrcContent)) {
 
-            TreeMap<Integer, LyricsLineInfo> lyricsLineInfos = new TreeMap<Integer, LyricsLineInfo>();
+            // 保持文件中的顺序
+            LyricsLineAssembler lyricsLineAssembler = new LyricsLineAssembler(false);
             Map<String, Object> lyricsTags = new HashMap<String, Object>();
-            int index = 0;
+            // 按需解析字时，只扫描行时间
+            LyricsWordsParser wordsParser = isLazyWords() ? newWordsParser() : null;
 
             // 获取歌词内容
             String lrcContents[] = lrcContent.split("\n");
@@ -105,16 +109,15 @@ public class KscLyricsFileReader extends LyricsFileReader {
 
                 // 行读取，并解析每行歌词的内容
                 LyricsLineInfo lyricsLineInfo = parserLineInfos(lyricsTags,
-                        lineInfo);
+                        lineInfo, wordsParser);
                 if (lyricsLineInfo != null) {
-                    lyricsLineInfos.put(index, lyricsLineInfo);
-                    index++;
+                    lyricsLineAssembler.add(lyricsLineInfo);
                 }
             }
 
             // 设置歌词的标签类
             lyricsIfno.setLyricsTags(lyricsTags);
-            lyricsIfno.setLyricsLineInfoTreeMap(lyricsLineInfos);
+            lyricsIfno.setLyricsLineInfoTreeMap(lyricsLineAssembler.build());
         }
         return lyricsIfno;
     }
@@ -124,12 +127,13 @@ public class KscLyricsFileReader extends LyricsFileReader {
      * <p>
      * 歌词列表
      *
-     * @param lyricsTags 歌词标签
-     * @param lineInfo   行歌词内容
+     * @param lyricsTags  歌词标签
+     * @param lineInfo    行歌词内容
+     * @param wordsParser 按需解析字时使用，为null时直接解析字
      * @return
      */
     private LyricsLineInfo parserLineInfos(Map<String, Object> lyricsTags,
-                                           String lineInfo) throws Exception {
+                                           String lineInfo, LyricsWordsParser wordsParser) throws Exception {
         LyricsLineInfo lyricsLineInfo = null;
         if (lineInfo.startsWith(LEGAL_SONGNAME_PREFIX)) {
             String temp[] = lineInfo.split("\'");
@@ -148,44 +152,95 @@ public class KscLyricsFileReader extends LyricsFileReader {
                 lyricsTags.put(temp[0], temp[1]);
             }
         } else if (lineInfo.startsWith(LEGAL_LYRICS_LINE_PREFIX)) {
-            lyricsLineInfo = new LyricsLineInfo();
-
-            int leftIndex = lineInfo.indexOf('\'');
-            int rightIndex = lineInfo.lastIndexOf('\'');
-
-            String[] lineComments = lineInfo.substring(leftIndex + 1, rightIndex)
-                    .split("'\\s*,\\s*'", -1);
-            // 开始时间
-            String startTimeStr = lineComments[0];
-            int startTime = TimeUtils.parseInteger(startTimeStr);
-            lyricsLineInfo.setStartTime(startTime);
-
-            // 结束时间
-            String endTimeStr = lineComments[1];
-            int endTime = TimeUtils.parseInteger(endTimeStr);
-            lyricsLineInfo.setEndTime(endTime);
-
-            // 歌词
-            String lineLyricsStr = lineComments[2];
-            List<String> lineLyricsList = getLyricsWords(lineLyricsStr);
-
-            // 歌词分隔
-            String[] lyricsWords = lineLyricsList
-                    .toArray(new String[lineLyricsList.size()]);
-            lyricsLineInfo.setLyricsWords(lyricsWords);
-
-            // 获取当行歌词
-            String lineLyrics = getLineLyrics(lineLyricsStr);
-            lyricsLineInfo.setLineLyrics(lineLyrics);
-
-            // 获取每个歌词的时间
-            int wordsDisInterval[] = getWordsDisIntervalString(lineComments[3]);
-            lyricsLineInfo.setWordsDisInterval(wordsDisInterval);
-
-            //验证
-            if (lyricsWords.length != wordsDisInterval.length) {
-                throw new Exception("字标签个数与字时间标签个数不相符");
+            if (wordsParser != null) {
+                lyricsLineInfo = newLazyLyricsLineInfo(wordsParser, lineInfo);
+            } else {
+                lyricsLineInfo = parserLyricsLine(lineInfo);
+            }
+        }
+        return lyricsLineInfo;
+    }
+
+    /**
+     * 只解析开始时间和结束时间，创建按需解析字的歌词行
+     *
+     * @param wordsParser
+     * @param lineInfo    行歌词内容
+     * @return
+     */
+    private LyricsLineInfo newLazyLyricsLineInfo(LyricsWordsParser wordsParser, String lineInfo) throws Exception {
+        // karaoke.add('开始时间', '结束时间', '歌词', '字时间');
+        int startTimeLeft = lineInfo.indexOf('\'');
+        int startTimeRight = lineInfo.indexOf('\'', startTimeLeft + 1);
+        int endTimeLeft = lineInfo.indexOf('\'', startTimeRight + 1);
+        int endTimeRight = lineInfo.indexOf('\'', endTimeLeft + 1);
+        if (startTimeLeft == -1 || startTimeRight == -1 || endTimeLeft == -1 || endTimeRight == -1) {
+            // 格式不对，直接解析，与不按需解析时一样报错
+            return parserLyricsLine(lineInfo);
+        }
+        int startTime = TimeUtils.parseInteger(lineInfo.substring(startTimeLeft + 1, startTimeRight));
+        int endTime = TimeUtils.parseInteger(lineInfo.substring(endTimeLeft + 1, endTimeRight));
+        return wordsParser.newLyricsLineInfo(startTime, endTime, lineInfo, 0);
+    }
+
+    /**
+     * 创建按需解析字的解析器，每个文件一个
+     *
+     * @return
+     */
+    private LyricsWordsParser newWordsParser() {
+        return new LyricsWordsParser(getResidentLineCount()) {
+            @Override
+            protected LyricsLineInfo parseLine(String rawLine, int rawIndex) throws Exception {
+                return parserLyricsLine(rawLine);
             }
+        };
+    }
+
+    /**
+     * 解析歌词行
+     *
+     * @param lineInfo 行歌词内容
+     * @return
+     */
+    private LyricsLineInfo parserLyricsLine(String lineInfo) throws Exception {
+        LyricsLineInfo lyricsLineInfo = new LyricsLineInfo();
+
+        int leftIndex = lineInfo.indexOf('\'');
+        int rightIndex = lineInfo.lastIndexOf('\'');
+
+        String[] lineComments = lineInfo.substring(leftIndex + 1, rightIndex)
+                .split("'\\s*,\\s*'", -1);
+        // 开始时间
+        String startTimeStr = lineComments[0];
+        int startTime = TimeUtils.parseInteger(startTimeStr);
+        lyricsLineInfo.setStartTime(startTime);
+
+        // 结束时间
+        String endTimeStr = lineComments[1];
+        int endTime = TimeUtils.parseInteger(endTimeStr);
+        lyricsLineInfo.setEndTime(endTime);
+
+        // 歌词
+        String lineLyricsStr = lineComments[2];
+        List<String> lineLyricsList = getLyricsWords(lineLyricsStr);
+
+        // 歌词分隔
+        String[] lyricsWords = lineLyricsList
+                .toArray(new String[lineLyricsList.size()]);
+        lyricsLineInfo.setLyricsWords(lyricsWords);
+
+        // 获取当行歌词
+        String lineLyrics = getLineLyrics(lineLyricsStr);
+        lyricsLineInfo.setLineLyrics(lineLyrics);
+
+        // 获取每个歌词的时间
+        int wordsDisInterval[] = getWordsDisIntervalString(lineComments[3]);
+        lyricsLineInfo.setWordsDisInterval(wordsDisInterval);
+
+        //验证
+        if (lyricsWords.length != wordsDisInterval.length) {
+            throw new Exception("字标签个数与字时间标签个数不相符");
         }
         return lyricsLineInfo;
     }
@@ -271,6 +326,12 @@ public class KscLyricsFileReader extends LyricsFileReader {
         return ext.equalsIgnoreCase("ksc");
     }
 
+    @Override
+    public boolean isContentSupported(byte[] header, int length) {
+        return hasLinePrefix(header, length, LEGAL_LYRICS_LINE_PREFIX)
+                || hasLinePrefix(header, length, LEGAL_SONGNAME_PREFIX);
+    }
+
     @Override
     public String getSupportFileExt() {
         return "ksc";
@@ -6,6 +6,8 @@ import com.chs.htz.lyrics.model.LyricsLineInfo;
 import com.chs.htz.lyrics.model.LyricsTag;
 import com.chs.htz.lyrics.utils.TimeUtils;
 
+import java.io.StringWriter;
+import java.io.Writer;
 import java.nio.charset.Charset;
 import java.util.Map;
 import java.util.TreeMap;
@@ -59,13 +61,18 @@ public class KscLyricsFileWriter extends LyricsFileWriter {
 
     @Override
     public boolean writer(LyricsInfo lyricsIfno, String lyricsFilePath) throws Exception {
-        String lyricsContent = getLyricsContent(lyricsIfno);
-        return saveLyricsFile(lyricsContent, lyricsFilePath);
+        return saveLyricsFile(lyricsIfno, lyricsFilePath);
     }
 
     @Override
     public String getLyricsContent(LyricsInfo lyricsIfno) throws Exception {
-        StringBuilder lyricsCom = new StringBuilder();
+        StringWriter lyricsCom = new StringWriter();
+        writeLyricsContent(lyricsIfno, lyricsCom);
+        return lyricsCom.toString();
+    }
+
+    @Override
+    protected void writeLyricsContent(LyricsInfo lyricsIfno, Writer lyricsCom) throws Exception {
         // 先保存所有的标签数据
         Map<String, Object> tags = lyricsIfno.getLyricsTags();
         for (Map.Entry<String, Object> entry : tags.entrySet()) {
@@ -85,14 +92,17 @@ public class KscLyricsFileWriter extends LyricsFileWriter {
         // 每行歌词内容
         TreeMap<Integer, LyricsLineInfo> lyricsLineInfos = lyricsIfno
                 .getLyricsLineInfoTreeMap();
+        // 时间标签直接写入，不生成字符串
+        char[] timeText = new char[16];
         for (int i = 0; i < lyricsLineInfos.size(); i++) {
             LyricsLineInfo lyricsLineInfo = lyricsLineInfos.get(i);
 
-            lyricsCom.append(LEGAL_LYRICS_LINE_PREFIX + "('"
-                    + TimeUtils.parseMMSSFFFString(lyricsLineInfo.getStartTime())
-                    + "',");// 添加开始时间
-            lyricsCom.append("'"
-                    + TimeUtils.parseMMSSFFFString(lyricsLineInfo.getEndTime()) + "',");// 添加结束时间
+            lyricsCom.append(LEGAL_LYRICS_LINE_PREFIX + "('");
+            lyricsCom.write(timeText, 0, TimeUtils.formatMMSSFFF(lyricsLineInfo.getStartTime(), timeText, 0));
+            lyricsCom.append("',");// 添加开始时间
+            lyricsCom.append('\'');
+            lyricsCom.write(timeText, 0, TimeUtils.formatMMSSFFF(lyricsLineInfo.getEndTime(), timeText, 0));
+            lyricsCom.append("',");// 添加结束时间
 
             // 获取歌词文本行
             String lyricsText = getLineLyrics(lyricsLineInfo.getLyricsWords());
@@ -109,7 +119,6 @@ public class KscLyricsFileWriter extends LyricsFileWriter {
             }
             lyricsCom.append("'" + wordsDisIntervalText.toString() + "');\n");
         }
-        return lyricsCom.toString();
     }
 
     /**
@@ -0,0 +1,201 @@
+package com.chs.htz.lyrics.formats.lrc;
+
+import com.chs.htz.lyrics.model.LyricsLineInfo;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * lrc歌词行扫描器
+ * <p>
+ * 不使用正则，直接从字符中解析行首连续的时间标签，支持 [mm:ss]、[mm:ss.xx]、[mm:ss.xxx]、[mm:ss:xx]
+ * 以及带小时的 [h:mm:ss.xx]、[h:mm:ss]。毫秒部分为3位时直接使用，否则乘以10（与 TimeUtils.parseInteger 一致）。
+ * 三段都用冒号分隔时，小时为1位、分和秒为2位且小于60的按 [h:mm:ss] 解析，其它按 [mm:ss:xx] 解析。
+ * 有状态，每次解析使用一个新的实例
+ */
+public class LrcLineScanner {
+
+    /**
+     * 每个数字段最多的位数，避免溢出
+     */
+    private static final int MAX_DIGITS = 9;
+
+    /**
+     * 时间标签
+     */
+    private int[] mTimes = new int[4];
+    private int mTimesCount = 0;
+    /**
+     * 歌词内容开始位置
+     */
+    private int mTextStart = 0;
+    /**
+     * 当前标签解析出的时间
+     */
+    private int mTagTime = 0;
+
+    /**
+     * 原始歌词内容 -> 处理后的歌词内容，相同的歌词共用一个字符串
+     */
+    private final Map<String, String> mLineLyricsPool = new HashMap<String, String>();
+
+    /**
+     * 扫描行歌词，查找第一组连续的时间标签
+     *
+     * @param lineInfo 行歌词内容
+     * @return 是否有时间标签
+     */
+    public boolean scan(String lineInfo) {
+        mTimesCount = 0;
+        int length = lineInfo.length();
+        int start = lineInfo.indexOf('[');
+        while (start != -1) {
+            int end = parseTag(lineInfo, start, length);
+            if (end != -1) {
+                addTime(mTagTime);
+                // 连续的时间标签
+                while (end < length && lineInfo.charAt(end) == '[') {
+                    int next = parseTag(lineInfo, end, length);
+                    if (next == -1) break;
+                    addTime(mTagTime);
+                    end = next;
+                }
+                mTextStart = end;
+                return true;
+            }
+            start = lineInfo.indexOf('[', start + 1);
+        }
+        return false;
+    }
+
+    /**
+     * 时间标签个数
+     */
+    public int getTimesCount() {
+        return mTimesCount;
+    }
+
+    /**
+     * 获取第index个时间标签的时间（毫秒）
+     */
+    public int getTime(int index) {
+        return mTimes[index];
+    }
+
+    /**
+     * 歌词内容在行中的开始位置
+     */
+    public int getTextStart() {
+        return mTextStart;
+    }
+
+    /**
+     * 创建歌词行，同一行的多个时间标签以及内容相同的行共用一个歌词字符串
+     *
+     * @param startTime  开始时间
+     * @param lineLyrics 行歌词内容
+     * @return
+     */
+    public LyricsLineInfo newLyricsLineInfo(int startTime, String lineLyrics) {
+        LyricsLineInfo lyricsLineInfo = new LyricsLineInfo();
+        lyricsLineInfo.setStartTime(startTime);
+        String sharedLineLyrics = mLineLyricsPool.get(lineLyrics);
+        if (sharedLineLyrics == null) {
+            lyricsLineInfo.setLineLyrics(lineLyrics);
+            mLineLyricsPool.put(lineLyrics, lyricsLineInfo.getLineLyrics());
+        } else {
+            lyricsLineInfo.setParsedLyrics(sharedLineLyrics, null);
+        }
+        return lyricsLineInfo;
+    }
+
+    private void addTime(int time) {
+        if (mTimesCount == mTimes.length) {
+            int[] times = new int[mTimes.length * 2];
+            System.arraycopy(mTimes, 0, times, 0, mTimesCount);
+            mTimes = times;
+        }
+        mTimes[mTimesCount++] = time;
+    }
+
+    /**
+     * 解析一个时间标签，结果保存在mTagTime
+     *
+     * @param s     行歌词内容
+     * @param start '['的位置
+     * @return ']'之后的位置，不是时间标签时返回-1
+     */
+    private int parseTag(String s, int start, int length) {
+        // 最多4个数字段：[h:]mm:ss[.xx]
+        int v0 = 0, v1 = 0, v2 = 0, v3 = 0;
+        // 第一段和第二段的位数，第二段之后的分隔符
+        int digits0 = 0, digits1 = 0;
+        char separator1 = 0;
+        int lastDigits = 0;
+        int count = 0;
+        int i = start + 1;
+        while (true) {
+            // 数字段
+            int digits = 0;
+            int value = 0;
+            while (i < length) {
+                char c = s.charAt(i);
+                if (c < '0' || c > '9') break;
+                if (++digits > MAX_DIGITS) return -1;
+                value = value * 10 + (c - '0');
+                i++;
+            }
+            if (digits == 0 || i >= length) return -1;
+            switch (count) {
+                case 0:
+                    v0 = value;
+                    digits0 = digits;
+                    break;
+                case 1:
+                    v1 = value;
+                    digits1 = digits;
+                    break;
+                case 2:
+                    v2 = value;
+                    break;
+                default:
+                    v3 = value;
+                    break;
+            }
+            count++;
+            lastDigits = digits;
+
+            char c = s.charAt(i++);
+            if (c == ']') break;
+            if (count == 1) {
+                if (c != ':') return -1;
+            } else if (count == 2 || count == 3) {
+                if (c != '.' && c != ':') return -1;
+                if (count == 2) separator1 = c;
+            } else {
+                return -1;
+            }
+        }
+        if (count < 2) return -1;
+        if (count == 2) {
+            mTagTime = (v0 * 60 + v1) * 1000;
+        } else if (count == 3) {
+            if (separator1 == ':' && digits0 == 1 && digits1 == 2 && lastDigits == 2 && v1 < 60 && v2 < 60) {
+                // [h:mm:ss]
+                mTagTime = ((v0 * 60 + v1) * 60 + v2) * 1000;
+            } else {
+                mTagTime = (v0 * 60 + v1) * 1000 + getMillis(v2, lastDigits);
+            }
+        } else {
+            mTagTime = ((v0 * 60 + v1) * 60 + v2) * 1000 + getMillis(v3, lastDigits);
+        }
+        return i;
+    }
+
+    /**
+     * 毫秒部分，部分lrc歌词只精确到10倍毫秒
+     */
+    private static int getMillis(int value, int digits) {
+        return digits == 3 ? value : value * 10;
+    }
+}
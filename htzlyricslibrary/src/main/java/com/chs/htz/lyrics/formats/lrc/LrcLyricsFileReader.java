@@ -3,21 +3,17 @@ package com.chs.htz.lyrics.formats.lrc;
 import android.text.TextUtils;
 
 import com.chs.htz.lyrics.formats.LyricsFileReader;
+import com.chs.htz.lyrics.formats.LyricsLineAssembler;
 import com.chs.htz.lyrics.model.LyricsInfo;
 import com.chs.htz.lyrics.model.LyricsLineInfo;
 import com.chs.htz.lyrics.model.LyricsTag;
-import com.chs.htz.lyrics.utils.TimeUtils;
 
 import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
-import java.util.SortedMap;
 import java.util.TreeMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * lrc歌词解析器
@@ -61,28 +57,22 @@ public class LrcLyricsFileReader extends LyricsFileReader {
             BufferedReader br = new BufferedReader(new InputStreamReader(in,
                     getDefaultCharset()));
 
-            // 这里面key为该行歌词的开始时间，方便后面排序
-            SortedMap<Integer, LyricsLineInfo> lyricsLineInfosTemp = new TreeMap<Integer, LyricsLineInfo>();
+            // 按开始时间组装歌词行
+            LyricsLineAssembler lyricsLineAssembler = new LyricsLineAssembler();
             Map<String, Object> lyricsTags = new HashMap<String, Object>();
+            LrcLineScanner scanner = new LrcLineScanner();
             String lineInfo = "";
             while ((lineInfo = br.readLine()) != null) {
 
                 // 解析歌词
-                parserLineInfos(lyricsLineInfosTemp,
-                        lyricsTags, lineInfo);
+                parserLineInfos(lyricsLineAssembler,
+                        lyricsTags, lineInfo, scanner);
 
             }
             in.close();
             in = null;
-            // 重新封装
-            TreeMap<Integer, LyricsLineInfo> lyricsLineInfos = new TreeMap<Integer, LyricsLineInfo>();
-            int index = 0;
-            Iterator<Integer> it = lyricsLineInfosTemp.keySet().iterator();
-            while (it.hasNext()) {
-                lyricsLineInfos
-                        .put(index++, lyricsLineInfosTemp.get(it.next()));
-            }
-            it = null;
+            // 按开始时间排好序的歌词行
+            TreeMap<Integer, LyricsLineInfo> lyricsLineInfos = lyricsLineAssembler.build();
             // 设置歌词的标签类
             lyricsInfo.setLyricsTags(lyricsTags);
             //
@@ -99,9 +89,10 @@ public class LrcLyricsFileReader extends LyricsFileReader {
 
         if (!TextUtils.isEmpty(lrcContent)) {
 
-            // 这里面key为该行歌词的开始时间，方便后面排序
-            SortedMap<Integer, LyricsLineInfo> lyricsLineInfosTemp = new TreeMap<Integer, LyricsLineInfo>();
+            // 按开始时间组装歌词行
+            LyricsLineAssembler lyricsLineAssembler = new LyricsLineAssembler();
             Map<String, Object> lyricsTags = new HashMap<String, Object>();
+            LrcLineScanner scanner = new LrcLineScanner();
 
             // 获取歌词内容
             String lrcContents[] = lrcContent.split("\n");
@@ -109,19 +100,12 @@ public class LrcLyricsFileReader extends LyricsFileReader {
                 String lineInfo = lrcContents[i];
 
                 // 解析歌词
-                parserLineInfos(lyricsLineInfosTemp,
-                        lyricsTags, lineInfo);
+                parserLineInfos(lyricsLineAssembler,
+                        lyricsTags, lineInfo, scanner);
             }
 
-            // 重新封装
-            TreeMap<Integer, LyricsLineInfo> lyricsLineInfos = new TreeMap<Integer, LyricsLineInfo>();
-            int index = 0;
-            Iterator<Integer> it = lyricsLineInfosTemp.keySet().iterator();
-            while (it.hasNext()) {
-                lyricsLineInfos
-                        .put(index++, lyricsLineInfosTemp.get(it.next()));
-            }
-            it = null;
+            // 按开始时间排好序的歌词行
+            TreeMap<Integer, LyricsLineInfo> lyricsLineInfos = lyricsLineAssembler.build();
             // 设置歌词的标签类
             lyricsInfo.setLyricsTags(lyricsTags);
             //
@@ -134,13 +118,13 @@ public class LrcLyricsFileReader extends LyricsFileReader {
     /**
      * 解析行歌词
      *
-     * @param lyricsLineInfosTemp 排序集合
+     * @param lyricsLineAssembler 歌词行组装器
      * @param lyricsTags          歌曲标签
      * @param lineInfo            行歌词内容
+     * @param scanner             时间标签扫描器
      * @throws Exception
      */
-    private void parserLineInfos(SortedMap<Integer, LyricsLineInfo> lyricsLineInfosTemp, Map<String, Object> lyricsTags, String lineInfo) throws Exception {
-        LyricsLineInfo lyricsLineInfo = null;
+    static void parserLineInfos(LyricsLineAssembler lyricsLineAssembler, Map<String, Object> lyricsTags, String lineInfo, LrcLineScanner scanner) throws Exception {
         if (lineInfo.startsWith(LEGAL_SONGNAME_PREFIX)) {
             int startIndex = LEGAL_SONGNAME_PREFIX.length();
             int endIndex = lineInfo.lastIndexOf("]");
@@ -166,31 +150,13 @@ public class LrcLyricsFileReader extends LyricsFileReader {
             String temp[] = lineInfo.substring(startIndex, endIndex).split(":");
             lyricsTags.put(temp[0], temp.length == 1 ? "" : temp[1]);
 
-        } else {
-            //时间标签
-            String timeRegex = "\\[\\d+:\\d+.\\d+\\]";
-            String timeRegexs = "(" + timeRegex + ")+";
-            // 如果含有时间标签，则是歌词行
-            Pattern pattern = Pattern.compile(timeRegexs);
-            Matcher matcher = pattern.matcher(lineInfo);
-            if (matcher.find()) {
-                Pattern timePattern = Pattern.compile(timeRegex);
-                Matcher timeMatcher = timePattern
-                        .matcher(matcher.group());
-                //遍历时间标签
-                while (timeMatcher.find()) {
-                    lyricsLineInfo = new LyricsLineInfo();
-                    //获取开始时间
-                    String startTimeString = timeMatcher.group().trim();
-                    int startTime = TimeUtils.parseInteger(startTimeString.substring(startTimeString.indexOf('[') + 1, startTimeString.lastIndexOf(']')));
-                    lyricsLineInfo.setStartTime(startTime);
-                    //获取歌词内容
-                    int timeEndIndex = matcher.end();
-                    String lineLyrics = lineInfo.substring(timeEndIndex,
-                            lineInfo.length()).trim();
-                    lyricsLineInfo.setLineLyrics(lineLyrics);
-                    lyricsLineInfosTemp.put(startTime, lyricsLineInfo);
-                }
+        } else if (scanner.scan(lineInfo)) {
+            // 含有时间标签，则是歌词行
+            String lineLyrics = lineInfo.substring(scanner.getTextStart()).trim();
+            //遍历时间标签，同一行的多个时间标签共用歌词内容
+            for (int i = 0; i < scanner.getTimesCount(); i++) {
+                int startTime = scanner.getTime(i);
+                lyricsLineAssembler.add(scanner.newLyricsLineInfo(startTime, lineLyrics));
             }
         }
     }
@@ -200,6 +166,12 @@ public class LrcLyricsFileReader extends LyricsFileReader {
         return ext.equalsIgnoreCase("lrc");
     }
 
+    @Override
+    public boolean isContentSupported(byte[] header, int length) {
+        // 行首是时间标签 [mm:ss.xx]
+        return hasLinePrefixDigit(header, length, "[");
+    }
+
     @Override
     public String getSupportFileExt() {
         return "lrc";
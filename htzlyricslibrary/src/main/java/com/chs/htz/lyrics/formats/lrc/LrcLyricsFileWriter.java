@@ -6,6 +6,8 @@ import com.chs.htz.lyrics.model.LyricsLineInfo;
 import com.chs.htz.lyrics.model.LyricsTag;
 import com.chs.htz.lyrics.utils.TimeUtils;
 
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -39,13 +41,18 @@ public class LrcLyricsFileWriter extends LyricsFileWriter {
 
     @Override
     public boolean writer(LyricsInfo lyricsIfno, String lyricsFilePath) throws Exception {
-        String lyricsContent = getLyricsContent(lyricsIfno);
-        return saveLyricsFile(lyricsContent, lyricsFilePath);
+        return saveLyricsFile(lyricsIfno, lyricsFilePath);
     }
 
     @Override
     public String getLyricsContent(LyricsInfo lyricsIfno) throws Exception {
-        StringBuilder lyricsCom = new StringBuilder();
+        StringWriter lyricsCom = new StringWriter();
+        writeLyricsContent(lyricsIfno, lyricsCom);
+        return lyricsCom.toString();
+    }
+
+    @Override
+    protected void writeLyricsContent(LyricsInfo lyricsIfno, Writer lyricsCom) throws Exception {
         // 先保存所有的标签数据
         Map<String, Object> tags = lyricsIfno.getLyricsTags();
         for (Map.Entry<String, Object> entry : tags.entrySet()) {
@@ -93,12 +100,12 @@ public class LrcLyricsFileWriter extends LyricsFileWriter {
                 int key = indexs.get(i);
                 LyricsLineInfo lyricsLineInfo = lyricsLineInfos.get(key);
                 // 获取开始时间
-                timeText.append("[" + TimeUtils.parseMMSSFFString(lyricsLineInfo.getStartTime()) + "]");
+                timeText.append('[');
+                TimeUtils.appendMMSSFF(timeText, lyricsLineInfo.getStartTime()).append(']');
             }
             lyricsCom.append(timeText.toString() + "");
             lyricsCom.append("" + saveLineLyrics + "\n");
         }
-        return lyricsCom.toString();
     }
 
     @Override
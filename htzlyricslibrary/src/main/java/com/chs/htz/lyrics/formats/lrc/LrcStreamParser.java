@@ -0,0 +1,114 @@
+package com.chs.htz.lyrics.formats.lrc;
+
+import com.chs.htz.lyrics.formats.LyricsLineAssembler;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * lrc歌词增量解析器
+ * <p>
+ * 用于直播、流式歌词，歌词内容分多次送入，每次只解析新收到的完整行，
+ * 不完整的最后一行保留到下一次。行结束符支持 \n、\r\n 和 \r，与 BufferedReader.readLine 一致
+ */
+public class LrcStreamParser {
+
+    /**
+     * 时间标签扫描器，整个流共用，内容相同的行共用歌词字符串
+     */
+    private final LrcLineScanner mScanner = new LrcLineScanner();
+    /**
+     * 歌曲标签
+     */
+    private final Map<String, Object> mLyricsTags = new HashMap<String, Object>();
+    /**
+     * 还没有收到行结束符的内容
+     */
+    private final StringBuilder mPendingLine = new StringBuilder();
+    /**
+     * 上一个字符是否是\r，用于跳过紧接着的\n
+     */
+    private boolean mLastCR = false;
+
+    /**
+     * 送入歌词内容
+     *
+     * @param lrcText             歌词内容，可以在任意位置截断
+     * @param lyricsLineAssembler 新解析出的歌词行添加到这里
+     * @throws Exception
+     */
+    public void feed(CharSequence lrcText, LyricsLineAssembler lyricsLineAssembler) throws Exception {
+        int length = lrcText.length();
+        for (int i = 0; i < length; i++) {
+            feed(lrcText.charAt(i), lyricsLineAssembler);
+        }
+    }
+
+    /**
+     * 送入歌词内容
+     *
+     * @param buffer              字符缓冲
+     * @param offset              开始位置
+     * @param count               字符数
+     * @param lyricsLineAssembler 新解析出的歌词行添加到这里
+     * @throws Exception
+     */
+    public void feed(char[] buffer, int offset, int count, LyricsLineAssembler lyricsLineAssembler) throws Exception {
+        int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            feed(buffer[i], lyricsLineAssembler);
+        }
+    }
+
+    /**
+     * 流结束，解析最后一行（没有行结束符时）
+     *
+     * @param lyricsLineAssembler 新解析出的歌词行添加到这里
+     * @throws Exception
+     */
+    public void finish(LyricsLineAssembler lyricsLineAssembler) throws Exception {
+        if (mPendingLine.length() > 0) {
+            parserPendingLine(lyricsLineAssembler);
+        }
+        mLastCR = false;
+    }
+
+    /**
+     * 是否有还没有解析的不完整行
+     *
+     * @return
+     */
+    public boolean hasPendingLine() {
+        return mPendingLine.length() > 0;
+    }
+
+    /**
+     * 已经解析出的歌曲标签
+     *
+     * @return
+     */
+    public Map<String, Object> getLyricsTags() {
+        return mLyricsTags;
+    }
+
+    private void feed(char c, LyricsLineAssembler lyricsLineAssembler) throws Exception {
+        if (c == '\n') {
+            if (!mLastCR) {
+                parserPendingLine(lyricsLineAssembler);
+            }
+            mLastCR = false;
+        } else if (c == '\r') {
+            parserPendingLine(lyricsLineAssembler);
+            mLastCR = true;
+        } else {
+            mPendingLine.append(c);
+            mLastCR = false;
+        }
+    }
+
+    private void parserPendingLine(LyricsLineAssembler lyricsLineAssembler) throws Exception {
+        String lineInfo = mPendingLine.toString();
+        mPendingLine.setLength(0);
+        LrcLyricsFileReader.parserLineInfos(lyricsLineAssembler, mLyricsTags, lineInfo, mScanner);
+    }
+}
@@ -4,21 +4,21 @@ import android.text.TextUtils;
 import android.util.Base64;
 
 import com.chs.htz.lyrics.formats.LyricsFileReader;
+import com.chs.htz.lyrics.formats.LyricsLineAssembler;
+import com.chs.htz.lyrics.formats.lrc.LrcLineScanner;
 import com.chs.htz.lyrics.model.LyricsInfo;
 import com.chs.htz.lyrics.model.LyricsLineInfo;
 import com.chs.htz.lyrics.model.LyricsTag;
+import com.chs.htz.lyrics.model.LyricsWordsParser;
 import com.chs.htz.lyrics.model.TranslateLrcLineInfo;
-import com.chs.htz.lyrics.utils.TimeUtils;
 
 import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -68,6 +68,11 @@ public class WYLyricsFileReader extends LyricsFileReader {
      */
     private final static String LEGAL_EXTRA_LYRICS_PREFIX = "wy.extra.lrc";
 
+    /**
+     * 动感歌词行时间标签 [开始时间,持续时间]
+     */
+    private final static Pattern LINE_TIME_PATTERN = Pattern.compile("\\[\\d+,\\d+\\]");
+
     @Override
     public LyricsInfo readInputStream(InputStream in) throws Exception {
         LyricsInfo lyricsIfno = new LyricsInfo();
@@ -230,17 +235,23 @@ public class WYLyricsFileReader extends LyricsFileReader {
      * @param translateLrcContent
      */
     private void parserTranslateLrc(LyricsInfo lyricsIfno, String translateLrcContent) {
-        // 这里面key为该行歌词的开始时间，方便后面排序
-        SortedMap<Integer, LyricsLineInfo> translateLrcInfosTemp = new TreeMap<Integer, LyricsLineInfo>();
+        LyricsLineAssembler lyricsLineAssembler = new LyricsLineAssembler(false);
         Map<String, Object> lyricsTags = new HashMap<String, Object>();
+        LrcLineScanner scanner = new LrcLineScanner();
         String lrcContents[] = translateLrcContent.split("\n");
         for (int i = 0; i < lrcContents.length; i++) {
             String lineInfo = lrcContents[i];
             // 解析lrc歌词行
-            parserLrcLineInfos(translateLrcInfosTemp,
-                    lyricsTags, lineInfo);
+            parserLrcLineInfos(lyricsLineAssembler,
+                    lyricsTags, lineInfo, scanner);
 
         }
+        // 这里面key为该行歌词的开始时间，开始时间相同时使用后面的行
+        Map<Integer, LyricsLineInfo> translateLrcInfosTemp = new HashMap<Integer, LyricsLineInfo>();
+        for (int i = 0; i < lyricsLineAssembler.size(); i++) {
+            LyricsLineInfo lyricsLineInfo = lyricsLineAssembler.get(i);
+            translateLrcInfosTemp.put(lyricsLineInfo.getStartTime(), lyricsLineInfo);
+        }
         // 翻译歌词集合
         List<TranslateLrcLineInfo> translateLrcLineInfos = new ArrayList<TranslateLrcLineInfo>();
         TreeMap<Integer, LyricsLineInfo> lyricsLineInfos = lyricsIfno.getLyricsLineInfoTreeMap();
@@ -269,18 +280,19 @@ public class WYLyricsFileReader extends LyricsFileReader {
      * @param dynamicContent
      */
     private void parseDynamicLrc(LyricsInfo lyricsInfo, String dynamicContent) throws Exception {
-        TreeMap<Integer, LyricsLineInfo> lyricsLineInfos = new TreeMap<Integer, LyricsLineInfo>();
+        // 保持文件中的顺序
+        LyricsLineAssembler lyricsLineAssembler = new LyricsLineAssembler(false);
         Map<String, Object> lyricsTags = new HashMap<String, Object>();
+        // 按需解析字时，只扫描行时间标签
+        LyricsWordsParser wordsParser = isLazyWords() ? newWordsParser() : null;
         String lrcContents[] = dynamicContent.split("\n");
-        int index = 0;
         for (int i = 0; i < lrcContents.length; i++) {
             String lineInfo = lrcContents[i];
             // 解析动感歌词行
             LyricsLineInfo lyricsLineInfo = parserDynamicLrcLineInfos(lyricsTags,
-                    lineInfo);
+                    lineInfo, wordsParser);
             if (lyricsLineInfo != null) {
-                lyricsLineInfos.put(index, lyricsLineInfo);
-                index++;
+                lyricsLineAssembler.add(lyricsLineInfo);
             }
 
         }
@@ -288,16 +300,17 @@ public class WYLyricsFileReader extends LyricsFileReader {
         // 设置歌词的标签类
         lyricsInfo.setLyricsTags(lyricsTags);
         //
-        lyricsInfo.setLyricsLineInfoTreeMap(lyricsLineInfos);
+        lyricsInfo.setLyricsLineInfoTreeMap(lyricsLineAssembler.build());
     }
 
     /**
      * 解析动感歌词行
      *
-     * @param lyricsTags 歌曲标签
-     * @param lineInfo   行歌词内容
+     * @param lyricsTags  歌曲标签
+     * @param lineInfo    行歌词内容
+     * @param wordsParser 按需解析字时使用，为null时直接解析字
      */
-    private LyricsLineInfo parserDynamicLrcLineInfos(Map<String, Object> lyricsTags, String lineInfo) throws Exception {
+    private LyricsLineInfo parserDynamicLrcLineInfos(Map<String, Object> lyricsTags, String lineInfo, LyricsWordsParser wordsParser) throws Exception {
         LyricsLineInfo lyricsLineInfo = null;
         if (lineInfo.startsWith(LEGAL_SONGNAME_PREFIX)) {
             int startIndex = LEGAL_SONGNAME_PREFIX.length();
@@ -324,68 +337,103 @@ public class WYLyricsFileReader extends LyricsFileReader {
             String temp[] = lineInfo.substring(startIndex, endIndex).split(":");
             lyricsTags.put(temp[0], temp.length == 1 ? "" : temp[1]);
 
-        } else {
-            //时间标签
-            Pattern pattern = Pattern.compile("\\[\\d+,\\d+\\]");
-            Matcher matcher = pattern.matcher(lineInfo);
+        } else if (wordsParser != null) {
+            // 只扫描行时间标签
+            Matcher matcher = LINE_TIME_PATTERN.matcher(lineInfo);
             if (matcher.find()) {
-                lyricsLineInfo = new LyricsLineInfo();
-                // [此行开始时刻距0时刻的毫秒数,此行持续的毫秒数](0,此字持续的毫秒数)歌(0,此字持续的毫秒数)词(0,此字持续的毫秒数)正(0,此字持续的毫秒数)文
-                // 获取行的出现时间和结束时间
-                int mStartIndex = matcher.start();
-                int mEndIndex = matcher.end();
-                String lineTime[] = lineInfo.substring(mStartIndex + 1,
-                        mEndIndex - 1).split(",");
-                //
-
+                String lineTime[] = lineInfo.substring(matcher.start() + 1,
+                        matcher.end() - 1).split(",");
                 int startTime = Integer.parseInt(lineTime[0]);
                 int endTime = startTime + Integer.parseInt(lineTime[1]);
-                lyricsLineInfo.setEndTime(endTime);
-                lyricsLineInfo.setStartTime(startTime);
-                // 获取歌词信息
-                String lineContent = lineInfo.substring(mEndIndex,
-                        lineInfo.length());
-
-                // 歌词匹配的正则表达式
-                String regex = "\\(\\d+,\\d+\\)";
-                Pattern lyricsWordsPattern = Pattern.compile(regex);
-                Matcher lyricsWordsMatcher = lyricsWordsPattern
-                        .matcher(lineContent);
-                if (lyricsWordsMatcher == null) {
-                    return null;
-                }
+                lyricsLineInfo = wordsParser.newLyricsLineInfo(startTime, endTime, lineInfo, 0);
+            }
+        } else {
+            lyricsLineInfo = parserDynamicLyricsLine(lineInfo);
+        }
+        return lyricsLineInfo;
+    }
 
-                // 歌词分隔
-                String lineLyricsTemp[] = lineContent.split(regex);
-                String[] lyricsWords = getLyricsWords(lineLyricsTemp);
-                lyricsLineInfo.setLyricsWords(lyricsWords);
-
-                // 获取每个歌词的时间
-                int wordsDisInterval[] = new int[lyricsWords.length];
-                int index = 0;
-                while (lyricsWordsMatcher.find()) {
-
-                    //验证
-                    if (index >= wordsDisInterval.length) {
-                        throw new Exception("字标签个数与字时间标签个数不相符");
-                    }
-
-                    //
-                    String wordsDisIntervalStr = lyricsWordsMatcher.group();
-                    String wordsDisIntervalStrTemp = wordsDisIntervalStr
-                            .substring(wordsDisIntervalStr.indexOf('(') + 1, wordsDisIntervalStr.lastIndexOf(')'));
-                    String wordsDisIntervalTemp[] = wordsDisIntervalStrTemp
-                            .split(",");
-                    wordsDisInterval[index++] = Integer
-                            .parseInt(wordsDisIntervalTemp[1]);
-                }
-                lyricsLineInfo.setWordsDisInterval(wordsDisInterval);
+    /**
+     * 创建按需解析字的解析器，每个文件一个
+     *
+     * @return
+     */
+    private LyricsWordsParser newWordsParser() {
+        return new LyricsWordsParser(getResidentLineCount()) {
+            @Override
+            protected LyricsLineInfo parseLine(String rawLine, int rawIndex) throws Exception {
+                return parserDynamicLyricsLine(rawLine);
+            }
+        };
+    }
 
-                // 获取当行歌词
-                String lineLyrics = lyricsWordsMatcher.replaceAll("");
-                lyricsLineInfo.setLineLyrics(lineLyrics);
+    /**
+     * 解析动感歌词行的时间和字
+     *
+     * @param lineInfo 行歌词内容
+     * @return 没有时间标签时返回null
+     */
+    private LyricsLineInfo parserDynamicLyricsLine(String lineInfo) throws Exception {
+        LyricsLineInfo lyricsLineInfo = null;
+        //时间标签
+        Matcher matcher = LINE_TIME_PATTERN.matcher(lineInfo);
+        if (matcher.find()) {
+            lyricsLineInfo = new LyricsLineInfo();
+            // [此行开始时刻距0时刻的毫秒数,此行持续的毫秒数](0,此字持续的毫秒数)歌(0,此字持续的毫秒数)词(0,此字持续的毫秒数)正(0,此字持续的毫秒数)文
+            // 获取行的出现时间和结束时间
+            int mStartIndex = matcher.start();
+            int mEndIndex = matcher.end();
+            String lineTime[] = lineInfo.substring(mStartIndex + 1,
+                    mEndIndex - 1).split(",");
+            //
+
+            int startTime = Integer.parseInt(lineTime[0]);
+            int endTime = startTime + Integer.parseInt(lineTime[1]);
+            lyricsLineInfo.setEndTime(endTime);
+            lyricsLineInfo.setStartTime(startTime);
+            // 获取歌词信息
+            String lineContent = lineInfo.substring(mEndIndex,
+                    lineInfo.length());
+
+            // 歌词匹配的正则表达式
+            String regex = "\\(\\d+,\\d+\\)";
+            Pattern lyricsWordsPattern = Pattern.compile(regex);
+            Matcher lyricsWordsMatcher = lyricsWordsPattern
+                    .matcher(lineContent);
+            if (lyricsWordsMatcher == null) {
+                return null;
+            }
 
+            // 歌词分隔
+            String lineLyricsTemp[] = lineContent.split(regex);
+            String[] lyricsWords = getLyricsWords(lineLyricsTemp);
+            lyricsLineInfo.setLyricsWords(lyricsWords);
+
+            // 获取每个歌词的时间
+            int wordsDisInterval[] = new int[lyricsWords.length];
+            int index = 0;
+            while (lyricsWordsMatcher.find()) {
+
+                //验证
+                if (index >= wordsDisInterval.length) {
+                    throw new Exception("字标签个数与字时间标签个数不相符");
+                }
+
+                //
+                String wordsDisIntervalStr = lyricsWordsMatcher.group();
+                String wordsDisIntervalStrTemp = wordsDisIntervalStr
+                        .substring(wordsDisIntervalStr.indexOf('(') + 1, wordsDisIntervalStr.lastIndexOf(')'));
+                String wordsDisIntervalTemp[] = wordsDisIntervalStrTemp
+                        .split(",");
+                wordsDisInterval[index++] = Integer
+                        .parseInt(wordsDisIntervalTemp[1]);
             }
+            lyricsLineInfo.setWordsDisInterval(wordsDisInterval);
+
+            // 获取当行歌词
+            String lineLyrics = lyricsWordsMatcher.replaceAll("");
+            lyricsLineInfo.setLineLyrics(lineLyrics);
+
         }
         return lyricsLineInfo;
     }
@@ -418,26 +466,20 @@ public class WYLyricsFileReader extends LyricsFileReader {
      * @param lrcContent
      */
     private void parserLrcCom(LyricsInfo lyricsInfo, String lrcContent) {
-        // 这里面key为该行歌词的开始时间，方便后面排序
-        SortedMap<Integer, LyricsLineInfo> lyricsLineInfosTemp = new TreeMap<Integer, LyricsLineInfo>();
+        // 按开始时间组装歌词行
+        LyricsLineAssembler lyricsLineAssembler = new LyricsLineAssembler();
         Map<String, Object> lyricsTags = new HashMap<String, Object>();
+        LrcLineScanner scanner = new LrcLineScanner();
         String lrcContents[] = lrcContent.split("\n");
         for (int i = 0; i < lrcContents.length; i++) {
             String lineInfo = lrcContents[i];
             // 解析lrc歌词行
-            parserLrcLineInfos(lyricsLineInfosTemp,
-                    lyricsTags, lineInfo);
+            parserLrcLineInfos(lyricsLineAssembler,
+                    lyricsTags, lineInfo, scanner);
 
         }
-        // 重新封装
-        TreeMap<Integer, LyricsLineInfo> lyricsLineInfos = new TreeMap<Integer, LyricsLineInfo>();
-        int index = 0;
-        Iterator<Integer> it = lyricsLineInfosTemp.keySet().iterator();
-        while (it.hasNext()) {
-            lyricsLineInfos
-                    .put(index++, lyricsLineInfosTemp.get(it.next()));
-        }
-        it = null;
+        // 按开始时间排好序的歌词行
+        TreeMap<Integer, LyricsLineInfo> lyricsLineInfos = lyricsLineAssembler.build();
         // 设置歌词的标签类
         lyricsInfo.setLyricsTags(lyricsTags);
         //
@@ -447,13 +489,13 @@ public class WYLyricsFileReader extends LyricsFileReader {
     /**
      * 解析行歌词
      *
-     * @param lyricsLineInfosTemp 排序集合
+     * @param lyricsLineAssembler 歌词行组装器
      * @param lyricsTags          歌曲标签
      * @param lineInfo            行歌词内容
+     * @param scanner             时间标签扫描器
      * @throws Exception
      */
-    private void parserLrcLineInfos(SortedMap<Integer, LyricsLineInfo> lyricsLineInfosTemp, Map<String, Object> lyricsTags, String lineInfo) {
-        LyricsLineInfo lyricsLineInfo = null;
+    private void parserLrcLineInfos(LyricsLineAssembler lyricsLineAssembler, Map<String, Object> lyricsTags, String lineInfo, LrcLineScanner scanner) {
         if (lineInfo.startsWith(LEGAL_SONGNAME_PREFIX)) {
             int startIndex = LEGAL_SONGNAME_PREFIX.length();
             int endIndex = lineInfo.lastIndexOf("]");
@@ -479,31 +521,13 @@ public class WYLyricsFileReader extends LyricsFileReader {
             String temp[] = lineInfo.substring(startIndex, endIndex).split(":");
             lyricsTags.put(temp[0], temp.length == 1 ? "" : temp[1]);
 
-        } else {
-            //时间标签
-            String timeRegex = "\\[\\d+:\\d+.\\d+\\]";
-            String timeRegexs = "(" + timeRegex + ")+";
-            // 如果含有时间标签，则是歌词行
-            Pattern pattern = Pattern.compile(timeRegexs);
-            Matcher matcher = pattern.matcher(lineInfo);
-            if (matcher.find()) {
-                Pattern timePattern = Pattern.compile(timeRegex);
-                Matcher timeMatcher = timePattern
-                        .matcher(matcher.group());
-                //遍历时间标签
-                while (timeMatcher.find()) {
-                    lyricsLineInfo = new LyricsLineInfo();
-                    //获取开始时间
-                    String startTimeString = timeMatcher.group().trim();
-                    int startTime = TimeUtils.parseInteger(startTimeString.substring(startTimeString.indexOf('[') + 1, startTimeString.lastIndexOf(']')));
-                    lyricsLineInfo.setStartTime(startTime);
-                    //获取歌词内容
-                    int timeEndIndex = matcher.end();
-                    String lineLyrics = lineInfo.substring(timeEndIndex,
-                            lineInfo.length()).trim();
-                    lyricsLineInfo.setLineLyrics(lineLyrics);
-                    lyricsLineInfosTemp.put(startTime, lyricsLineInfo);
-                }
+        } else if (scanner.scan(lineInfo)) {
+            // 含有时间标签，则是歌词行
+            String lineLyrics = lineInfo.substring(scanner.getTextStart()).trim();
+            //遍历时间标签，同一行的多个时间标签共用歌词内容
+            for (int i = 0; i < scanner.getTimesCount(); i++) {
+                int startTime = scanner.getTime(i);
+                lyricsLineAssembler.add(scanner.newLyricsLineInfo(startTime, lineLyrics));
             }
         }
     }
@@ -513,6 +537,13 @@ public class WYLyricsFileReader extends LyricsFileReader {
         return ext.equalsIgnoreCase("lrcwy");
     }
 
+    @Override
+    public boolean isContentSupported(byte[] header, int length) {
+        return hasLinePrefix(header, length, LEGAL_LYRICS_LINE_PREFIX)
+                || hasLinePrefix(header, length, LEGAL_DLYRICS_LINE_PREFIX)
+                || hasLinePrefix(header, length, LEGAL_EXTRA_LYRICS_PREFIX);
+    }
+
     @Override
     public String getSupportFileExt() {
         return "lrcwy";
@@ -1,7 +1,7 @@
 package com.chs.htz.lyrics.formats.lrcwy;
 
-import android.text.TextUtils;
 import android.util.Base64;
+import android.util.Base64OutputStream;
 
 import com.chs.htz.lyrics.formats.LyricsFileWriter;
 import com.chs.htz.lyrics.model.LyricsInfo;
@@ -10,6 +10,13 @@ import com.chs.htz.lyrics.model.LyricsTag;
 import com.chs.htz.lyrics.model.TranslateLrcLineInfo;
 import com.chs.htz.lyrics.utils.TimeUtils;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -64,13 +71,18 @@ public class WYLyricsFileWriter extends LyricsFileWriter {
 
     @Override
     public boolean writer(LyricsInfo lyricsIfno, String lyricsFilePath) throws Exception {
-        String lyricsContent = getLyricsContent(lyricsIfno);
-        return saveLyricsFile(lyricsContent, lyricsFilePath);
+        return saveLyricsFile(lyricsIfno, lyricsFilePath);
     }
 
     @Override
     public String getLyricsContent(LyricsInfo lyricsIfno) throws Exception {
-        StringBuilder lyricsCom = new StringBuilder();
+        StringWriter lyricsCom = new StringWriter();
+        writeLyricsContent(lyricsIfno, lyricsCom);
+        return lyricsCom.toString();
+    }
+
+    @Override
+    protected void writeLyricsContent(LyricsInfo lyricsIfno, Writer lyricsCom) throws Exception {
         // 先保存所有的标签数据
         Map<String, Object> tags = lyricsIfno.getLyricsTags();
         for (Map.Entry<String, Object> entry : tags.entrySet()) {
@@ -91,54 +103,46 @@ public class WYLyricsFileWriter extends LyricsFileWriter {
         //判断歌词类型
         if (lyricsIfno.getLyricsType() == LyricsInfo.DYNAMIC) {
             //保存动感歌词
-            String dynamicContent = getDynamicContent(lyricsIfno);
-            lyricsCom.append(dynamicContent);
+            writeDynamicContent(lyricsIfno, lyricsCom);
         } else {
             //保存lrc歌词
-            String lrcContent = getLrcContent(lyricsIfno);
-            lyricsCom.append(lrcContent);
+            writeLrcContent(lyricsIfno, lyricsCom);
         }
 
         //保存额外歌词
-        String extraLrcContent = getExtraLrcContent(lyricsIfno);
-        if (!TextUtils.isEmpty(extraLrcContent)) {
-            lyricsCom.append(extraLrcContent);
-        }
-        return lyricsCom.toString();
+        writeExtraLrcContent(lyricsIfno, lyricsCom);
     }
 
     /**
-     * 获取额外歌词
+     * 保存额外歌词
      *
      * @param lyricsIfno
-     * @return
+     * @param lyricsCom
      */
-    private String getExtraLrcContent(LyricsInfo lyricsIfno) {
-        String result = "";
+    private void writeExtraLrcContent(LyricsInfo lyricsIfno, Writer lyricsCom) throws IOException {
         List<TranslateLrcLineInfo> translateLrcLineInfos = lyricsIfno.getTranslateLrcLineInfos();
         if (translateLrcLineInfos != null && translateLrcLineInfos.size() > 0) {
-            StringBuilder lyricsCom = new StringBuilder();
+            lyricsCom.append(LEGAL_EXTRA_LYRICS_PREFIX + "(");
+            Writer base64Com = newBase64Writer(lyricsCom);
             for (int i = 0; i < translateLrcLineInfos.size(); i++) {
                 TranslateLrcLineInfo translateLrcLineInfo = translateLrcLineInfos.get(i);
-                lyricsCom.append(translateLrcLineInfo.getLineLyrics() + "\n");
+                base64Com.append(translateLrcLineInfo.getLineLyrics() + "\n");
             }
-            result += LEGAL_EXTRA_LYRICS_PREFIX + "(" + Base64.encodeToString(lyricsCom.toString().getBytes(), Base64.NO_WRAP) + ")\n";
+            base64Com.close();
+            lyricsCom.append(")\n");
         }
-        return result;
     }
 
     /**
-     * 获取lrc歌词
+     * 保存lrc歌词
      *
      * @param lyricsIfno
-     * @return
+     * @param lyricsCom
      */
-    private String getLrcContent(LyricsInfo lyricsIfno) {
+    private void writeLrcContent(LyricsInfo lyricsIfno, Writer lyricsCom) throws IOException {
         TreeMap<Integer, LyricsLineInfo> lyricsLineInfos = lyricsIfno
                 .getLyricsLineInfoTreeMap();
-        String result = "";
         if (lyricsLineInfos != null && lyricsLineInfos.size() > 0) {
-            StringBuilder lyricsCom = new StringBuilder();
             // 将每行歌词，放到有序的map，判断已重复的歌词
             LinkedHashMap<String, List<Integer>> lyricsLineInfoMapResult = new LinkedHashMap<String, List<Integer>>();
 
@@ -155,52 +159,74 @@ public class WYLyricsFileWriter extends LyricsFileWriter {
                 indexs.add(i);
                 lyricsLineInfoMapResult.put(saveLineLyrics, indexs);
             }
+            lyricsCom.append(LEGAL_LYRICS_LINE_PREFIX + "(");
+            Writer base64Com = newBase64Writer(lyricsCom);
             // 遍历
+            StringBuilder timeText = new StringBuilder();// 时间标签内容
             for (Map.Entry<String, List<Integer>> entry : lyricsLineInfoMapResult
                     .entrySet()) {
                 List<Integer> indexs = entry.getValue();
                 // 当前行歌词文本
                 String saveLineLyrics = entry.getKey();
-                StringBuilder timeText = new StringBuilder();// 时间标签内容
+                timeText.setLength(0);
 
                 for (int i = 0; i < indexs.size(); i++) {
                     int key = indexs.get(i);
                     LyricsLineInfo lyricsLineInfo = lyricsLineInfos.get(key);
                     // 获取开始时间
-                    timeText.append("[" + TimeUtils.parseMMSSFFString(lyricsLineInfo.getStartTime()) + "]");
+                    timeText.append('[');
+                    TimeUtils.appendMMSSFF(timeText, lyricsLineInfo.getStartTime()).append(']');
                 }
-                lyricsCom.append(timeText.toString() + "");
-                lyricsCom.append("" + saveLineLyrics + "\n");
+                base64Com.append(timeText);
+                base64Com.append(saveLineLyrics + "\n");
             }
-            result += LEGAL_LYRICS_LINE_PREFIX + "(" + Base64.encodeToString(lyricsCom.toString().getBytes(), Base64.NO_WRAP) + ")\n";
+            base64Com.close();
+            lyricsCom.append(")\n");
         }
-        return result;
     }
 
     /**
-     * 获取动感歌词
+     * 保存动感歌词
      *
      * @param lyricsIfno
-     * @return
+     * @param lyricsCom
      */
-    private String getDynamicContent(LyricsInfo lyricsIfno) {
-        String result = "";
+    private void writeDynamicContent(LyricsInfo lyricsIfno, Writer lyricsCom) throws IOException {
         TreeMap<Integer, LyricsLineInfo> lyricsLineInfoTreeMap = lyricsIfno.getLyricsLineInfoTreeMap();
         if (lyricsLineInfoTreeMap != null && lyricsLineInfoTreeMap.size() > 0) {
-            StringBuilder lyricsCom = new StringBuilder();
+            lyricsCom.append(LEGAL_DLYRICS_LINE_PREFIX + "(");
+            Writer base64Com = newBase64Writer(lyricsCom);
             for (int i = 0; i < lyricsLineInfoTreeMap.size(); i++) {
                 LyricsLineInfo lyricsLineInfo = lyricsLineInfoTreeMap.get(i);
-                lyricsCom.append("[" + lyricsLineInfo.getStartTime() + "," + (lyricsLineInfo.getEndTime() - lyricsLineInfo.getStartTime()) + "]");
+                base64Com.append("[" + lyricsLineInfo.getStartTime() + "," + (lyricsLineInfo.getEndTime() - lyricsLineInfo.getStartTime()) + "]");
                 String[] lyricsWords = lyricsLineInfo.getLyricsWords();
                 int[] wordsDisInterval = lyricsLineInfo.getWordsDisInterval();
                 for (int j = 0; j < lyricsWords.length; j++) {
-                    lyricsCom.append("(0" + "," + wordsDisInterval[j] + ")" + lyricsWords[j]);
+                    base64Com.append("(0" + "," + wordsDisInterval[j] + ")" + lyricsWords[j]);
                 }
-                lyricsCom.append("\n");
+                base64Com.append("\n");
             }
-            result += LEGAL_DLYRICS_LINE_PREFIX + "(" + Base64.encodeToString(lyricsCom.toString().getBytes(), Base64.NO_WRAP) + ")\n";
+            base64Com.close();
+            lyricsCom.append(")\n");
         }
-        return result;
+    }
+
+    /**
+     * 创建边写边base64编码的输出，编码结果写入lyricsCom，关闭时写完最后的编码，不关闭lyricsCom
+     *
+     * @param lyricsCom
+     * @return
+     */
+    private static Writer newBase64Writer(final Writer lyricsCom) {
+        // base64编码的结果都是ascii字符，逐字节写入
+        OutputStream base64Out = new Base64OutputStream(new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                lyricsCom.write(b);
+            }
+        }, Base64.NO_WRAP | Base64.NO_CLOSE);
+        // 与原来的 String.getBytes() 一样使用系统默认编码
+        return new BufferedWriter(new OutputStreamWriter(base64Out, Charset.defaultCharset()));
     }
 
     @Override
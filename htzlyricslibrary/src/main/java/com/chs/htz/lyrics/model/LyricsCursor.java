@@ -0,0 +1,136 @@
+package com.chs.htz.lyrics.model;
+
+/**
+ * 歌词行游标
+ * <p>
+ * 保存上次查询得到的行号，每个歌词视图（或每个歌词读管理器）各自持有一个，
+ * 正常播放时只需检查上次的行及其下一行，O(1)即可得到行号；快进、快退时退回二分查找。
+ * 所有方法都是同步的，可以在绘画线程和主线程同时使用
+ *
+ * @author chaihuasong
+ */
+public class LyricsCursor {
+
+    /**
+     * 当前游标所在的时间轴
+     */
+    private LyricsTimeline mLyricsTimeline;
+    /**
+     * 上次查询得到的行号
+     */
+    private int mLineNumber = 0;
+    /**
+     * 上次查询的播放进度
+     */
+    private long mPlayingTime = Long.MIN_VALUE;
+    /**
+     * 命中次数
+     */
+    private long mHitCount = 0;
+    /**
+     * 未命中次数
+     */
+    private long mMissCount = 0;
+
+    /**
+     * 通过播放的进度获取所唱歌词行数，播放进度向前推进时使用缓存的行号，后退时重新定位
+     *
+     * @param lyricsTimeline 歌词时间轴
+     * @param curPlayingTime 当前播放进度
+     * @param playOffset     时间补偿值
+     * @return
+     */
+    public synchronized int getLineNumber(LyricsTimeline lyricsTimeline, long curPlayingTime, long playOffset) {
+        long playingTime = curPlayingTime + playOffset;
+        if (lyricsTimeline != mLyricsTimeline || playingTime < mPlayingTime) {
+            return seek(lyricsTimeline, curPlayingTime, playOffset);
+        }
+        return advance(playingTime);
+    }
+
+    /**
+     * 向前推进游标
+     *
+     * @param playingTime 已加上时间补偿值的播放进度
+     * @return
+     */
+    private int advance(long playingTime) {
+        if (mLyricsTimeline == null || mLyricsTimeline.isEmpty()) return 0;
+        mPlayingTime = playingTime;
+        int lineNumber = mLyricsTimeline.checkHint(playingTime, mLineNumber);
+        if (lineNumber != -1) {
+            mHitCount++;
+        } else {
+            mMissCount++;
+            lineNumber = mLyricsTimeline.getLineNumber(playingTime, mLineNumber);
+        }
+        mLineNumber = lineNumber;
+        return lineNumber;
+    }
+
+    /**
+     * 定位到指定的播放进度（快进、快退、切换歌词时调用）
+     *
+     * @param lyricsTimeline 歌词时间轴
+     * @param curPlayingTime 当前播放进度
+     * @param playOffset     时间补偿值
+     * @return 行号
+     */
+    public synchronized int seek(LyricsTimeline lyricsTimeline, long curPlayingTime, long playOffset) {
+        if (lyricsTimeline != mLyricsTimeline) {
+            mLyricsTimeline = lyricsTimeline;
+            mLineNumber = 0;
+        }
+        mPlayingTime = curPlayingTime + playOffset;
+        if (lyricsTimeline == null || lyricsTimeline.isEmpty()) {
+            mLineNumber = 0;
+            return 0;
+        }
+        mLineNumber = lyricsTimeline.getLineNumber(mPlayingTime, mLineNumber);
+        return mLineNumber;
+    }
+
+    /**
+     * 回到第一行（切换歌曲时调用）
+     */
+    public synchronized void rewind() {
+        mLyricsTimeline = null;
+        mLineNumber = 0;
+        mPlayingTime = Long.MIN_VALUE;
+    }
+
+    /**
+     * 获取上次查询得到的行号
+     *
+     * @return
+     */
+    public synchronized int getLastLineNumber() {
+        return mLineNumber;
+    }
+
+    /**
+     * 获取缓存行号命中次数
+     *
+     * @return
+     */
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * 获取缓存行号未命中次数
+     *
+     * @return
+     */
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * 重置命中统计
+     */
+    public synchronized void resetStatistics() {
+        mHitCount = 0;
+        mMissCount = 0;
+    }
+}
@@ -0,0 +1,119 @@
+package com.chs.htz.lyrics.model;
+
+import com.chs.htz.lyrics.utils.ThreadPoolUtils;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 额外歌词（翻译歌词、音译歌词）解析器
+ * <p>
+ * 读取歌词时只保存额外歌词的原始内容，第一次获取翻译或音译歌词时才解码解析，
+ * 也可以提前在后台线程解析，与默认歌词的解析同时进行。同一份内容只解析一次
+ *
+ * @author chaihuasong
+ */
+public abstract class LyricsExtraParser {
+
+    /**
+     * 额外歌词原始内容
+     */
+    private final String mRawContent;
+
+    /**
+     * 解析任务，后台和访问线程共用，只执行一次
+     */
+    private final FutureTask<LyricsInfo> mTask;
+
+    /**
+     * 解析失败的原因
+     */
+    private volatile Exception mParseException;
+
+    /**
+     * @param rawContent 额外歌词原始内容
+     */
+    protected LyricsExtraParser(String rawContent) {
+        this.mRawContent = rawContent;
+        this.mTask = new FutureTask<LyricsInfo>(new Callable<LyricsInfo>() {
+            @Override
+            public LyricsInfo call() throws Exception {
+                LyricsInfo extraLyricsInfo = new LyricsInfo();
+                parse(mRawContent, extraLyricsInfo);
+                return extraLyricsInfo;
+            }
+        });
+    }
+
+    /**
+     * 解析额外歌词
+     *
+     * @param rawContent      额外歌词原始内容
+     * @param extraLyricsInfo 翻译歌词和音译歌词设置到这里
+     * @throws Exception
+     */
+    protected abstract void parse(String rawContent, LyricsInfo extraLyricsInfo) throws Exception;
+
+    /**
+     * 在歌词加载线程池中提前解析，线程池已满时在第一次访问时解析
+     */
+    public void startInBackground() {
+        try {
+            ThreadPoolUtils.getLoadExecutor().execute(mTask);
+        } catch (RejectedExecutionException e) {
+            // 没有提前解析，第一次访问时在访问线程解析
+        }
+    }
+
+    /**
+     * 原始内容长度，用于估算占用的内存
+     *
+     * @return
+     */
+    public int getRawLength() {
+        return mRawContent.length();
+    }
+
+    /**
+     * 获取解析结果，还没有开始解析时在当前线程解析，正在后台解析时等待解析完成
+     *
+     * @return 解析失败时返回null，失败原因通过 {@link #getParseException} 获取
+     */
+    LyricsInfo getResult() {
+        mTask.run();
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return mTask.get();
+                } catch (InterruptedException e) {
+                    // 后台解析很快，等待完成后再恢复中断状态
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                mParseException = (Exception) cause;
+            } else {
+                mParseException = new Exception("额外歌词解析失败", cause != null ? cause : e);
+            }
+            return null;
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 解析失败的原因
+     *
+     * @return 还没有解析或者解析成功时返回null
+     */
+    public Exception getParseException() {
+        return mParseException;
+    }
+}
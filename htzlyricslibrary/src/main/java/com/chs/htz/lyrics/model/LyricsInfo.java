@@ -44,6 +44,14 @@ public class LyricsInfo {
      * 歌词标签
      */
     private Map<String, Object> mLyricsTags = new HashMap<String, Object>();
+    /**
+     * 还没有解析的额外歌词（翻译歌词、音译歌词），解析后置为null
+     */
+    private volatile LyricsExtraParser mExtraParser;
+    /**
+     * 额外歌词解析失败的原因
+     */
+    private volatile Exception mExtraParseException;
 
     public Map<String, Object> getLyricsTags() {
         return mLyricsTags;
@@ -54,6 +62,7 @@ public class LyricsInfo {
     }
 
     public List<TranslateLrcLineInfo> getTranslateLrcLineInfos() {
+        loadExtraLyrics();
         return mTranslateLrcLineInfos;
     }
 
@@ -62,6 +71,7 @@ public class LyricsInfo {
     }
 
     public List<LyricsLineInfo> getTransliterationLrcLineInfos() {
+        loadExtraLyrics();
         return mTransliterationLrcLineInfos;
     }
 
@@ -69,6 +79,57 @@ public class LyricsInfo {
         this.mTransliterationLrcLineInfos = transliterationLrcLineInfos;
     }
 
+    /**
+     * 设置按需解析的额外歌词，第一次获取翻译或音译歌词时解析，
+     * 只填充还没有设置的翻译歌词和音译歌词
+     *
+     * @param extraParser
+     */
+    public void setExtraParser(LyricsExtraParser extraParser) {
+        this.mExtraParser = extraParser;
+    }
+
+    /**
+     * 获取还没有解析的额外歌词
+     *
+     * @return 没有或者已经解析时返回null
+     */
+    public LyricsExtraParser getExtraParser() {
+        return mExtraParser;
+    }
+
+    /**
+     * 额外歌词解析失败的原因，解析失败时按没有额外歌词处理
+     *
+     * @return 没有失败时返回null
+     */
+    public Exception getExtraParseException() {
+        return mExtraParseException;
+    }
+
+    /**
+     * 解析还没有解析的额外歌词，解析失败时按没有额外歌词处理，失败原因通过 {@link #getExtraParseException} 获取
+     */
+    private void loadExtraLyrics() {
+        if (mExtraParser == null) return;
+        synchronized (this) {
+            LyricsExtraParser extraParser = mExtraParser;
+            if (extraParser == null) return;
+            LyricsInfo extraLyricsInfo = extraParser.getResult();
+            if (extraLyricsInfo != null) {
+                if (mTranslateLrcLineInfos == null || mTranslateLrcLineInfos.size() == 0) {
+                    mTranslateLrcLineInfos = extraLyricsInfo.getTranslateLrcLineInfos();
+                }
+                if (mTransliterationLrcLineInfos == null || mTransliterationLrcLineInfos.size() == 0) {
+                    mTransliterationLrcLineInfos = extraLyricsInfo.getTransliterationLrcLineInfos();
+                }
+            } else {
+                mExtraParseException = extraParser.getParseException();
+            }
+            mExtraParser = null;
+        }
+    }
+
     public String getLyricsFileExt() {
         return mLyricsFileExt;
     }
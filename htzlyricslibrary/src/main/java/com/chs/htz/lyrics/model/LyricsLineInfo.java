@@ -1,7 +1,5 @@
 package com.chs.htz.lyrics.model;
 
-import android.text.TextUtils;
-
 import com.chs.htz.lyrics.utils.LrcTextUtils;
 
 import java.util.Collections;
@@ -35,11 +33,19 @@ public class LyricsLineInfo {
      * 数组，用来存放每个歌词的时间
      */
     private int[] mWordsDisInterval;
+    /**
+     * 每个字开始时间距行开始时间的偏移，长度为字个数+1，最后一个为所有字的总时间
+     */
+    private int[] mWordsStartOffsets;
 
     /**
      * 分割歌词行歌词
      */
-    private List<LyricsLineInfo> mSplitDynamicLrcLineInfos;
+    private volatile List<LyricsLineInfo> mSplitDynamicLrcLineInfos;
+    /**
+     * 第一次获取分割歌词时才分割的分割器
+     */
+    private LineSplitter mLineSplitter;
 
     /**
      * 每个字的累计宽度缓存（性能优化用）
@@ -47,11 +53,36 @@ public class LyricsLineInfo {
      */
     private float[] mCumulativeWidths;
 
+    /**
+     * 按需解析字时使用的解析器，为null时字在读取时已经解析好
+     */
+    private LyricsWordsParser mWordsParser;
+    /**
+     * 原始行内容
+     */
+    private String mRawLine;
+    /**
+     * 同一原始行中的第几个歌词行
+     */
+    private int mRawIndex;
+    /**
+     * 最初创建的歌词行，复制的行与其共用已解析的字
+     */
+    private LyricsLineInfo mWordsOrigin;
+    /**
+     * 按需解析时行歌词是否已经解析
+     */
+    private volatile boolean mLineLyricsLoaded = true;
+
     public List<LyricsLineInfo> getSplitLyricsLineInfos() {
-        if (mSplitDynamicLrcLineInfos == null) {
+        List<LyricsLineInfo> splitDynamicLrcLineInfos = mSplitDynamicLrcLineInfos;
+        if (splitDynamicLrcLineInfos == null) {
+            if (mLineSplitter != null) {
+                return splitOnDemand();
+            }
             return Collections.emptyList();
         }
-        return mSplitDynamicLrcLineInfos;
+        return splitDynamicLrcLineInfos;
     }
 
     public void setSplitLyricsLineInfos(
@@ -59,17 +90,36 @@ public class LyricsLineInfo {
         this.mSplitDynamicLrcLineInfos = splitDynamicLrcLineInfos;
     }
 
+    /**
+     * 设置分割器，第一次获取分割歌词时再分割，按需解析字的行不需要在加载时全部解析
+     *
+     * @param lineSplitter
+     */
+    public void setLineSplitter(LineSplitter lineSplitter) {
+        this.mLineSplitter = lineSplitter;
+    }
+
+    private synchronized List<LyricsLineInfo> splitOnDemand() {
+        if (mSplitDynamicLrcLineInfos == null) {
+            mSplitDynamicLrcLineInfos = mLineSplitter.split(this);
+        }
+        return mSplitDynamicLrcLineInfos;
+    }
+
     public String[] getLyricsWords() {
-        return mLyricsWords;
+        return getWordsLineInfo().mLyricsWords;
     }
 
     public void setLyricsWords(String[] lyricsWords) {
         if (lyricsWords == null) return;
+        detachWordsParser();
         String[] tempArray = new String[lyricsWords.length];
         for (int i = 0; i < lyricsWords.length; i++) {
             String temp = lyricsWords[i];
-            if (TextUtils.isEmpty(temp)) {
+            if (temp == null || temp.length() == 0) {
                 tempArray[i] = "";
+            } else if (temp.indexOf('\r') == -1 && temp.indexOf('\n') == -1) {
+                tempArray[i] = temp;
             } else {
                 tempArray[i] = temp.replaceAll("\r|\n", "");
             }
@@ -78,11 +128,73 @@ public class LyricsLineInfo {
     }
 
     public int[] getWordsDisInterval() {
-        return mWordsDisInterval;
+        return getWordsLineInfo().mWordsDisInterval;
     }
 
     public void setWordsDisInterval(int[] wordsDisInterval) {
+        detachWordsParser();
         this.mWordsDisInterval = wordsDisInterval;
+        if (wordsDisInterval == null) {
+            this.mWordsStartOffsets = null;
+            return;
+        }
+        int[] wordsStartOffsets = new int[wordsDisInterval.length + 1];
+        for (int i = 0; i < wordsDisInterval.length; i++) {
+            wordsStartOffsets[i + 1] = wordsStartOffsets[i] + wordsDisInterval[i];
+        }
+        this.mWordsStartOffsets = wordsStartOffsets;
+    }
+
+    /**
+     * 获取每个字开始时间距行开始时间的偏移
+     *
+     * @return
+     */
+    public int[] getWordsStartOffsets() {
+        return getWordsLineInfo().mWordsStartOffsets;
+    }
+
+    /**
+     * 获取所有字的总时间
+     *
+     * @return
+     */
+    public int getWordsDuration() {
+        LyricsLineInfo wordsLineInfo = getWordsLineInfo();
+        int[] wordsStartOffsets = wordsLineInfo.mWordsStartOffsets;
+        String[] lyricsWords = wordsLineInfo.mLyricsWords;
+        if (wordsStartOffsets == null || lyricsWords == null) return 0;
+        return wordsStartOffsets[Math.min(lyricsWords.length, wordsLineInfo.mWordsDisInterval.length)];
+    }
+
+    /**
+     * 二分查找播放进度所在的字
+     *
+     * @param playingTime 已加上时间补偿值的播放进度
+     * @return 字索引，-1表示该行还没开始，-2表示所有字已经播放完成
+     */
+    public int getWordIndex(long playingTime) {
+        if (playingTime < mStartTime) return -1;
+        // 按需解析时使用解析出的字，开始时间以本行为准
+        LyricsLineInfo wordsLineInfo = getWordsLineInfo();
+        int[] wordsStartOffsets = wordsLineInfo.mWordsStartOffsets;
+        String[] lyricsWords = wordsLineInfo.mLyricsWords;
+        if (wordsStartOffsets == null || lyricsWords == null) return -2;
+        long lineElapsedTime = playingTime - mStartTime;
+        // 第一个结束时间不小于播放进度的字
+        int low = 0;
+        int high = Math.min(lyricsWords.length, wordsLineInfo.mWordsDisInterval.length) - 1;
+        int result = -2;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (wordsStartOffsets[mid + 1] >= lineElapsedTime) {
+                result = mid;
+                high = mid - 1;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return result;
     }
 
     public int getStartTime() {
@@ -102,14 +214,108 @@ public class LyricsLineInfo {
     }
 
     public String getLineLyrics() {
+        if (!mLineLyricsLoaded) {
+            loadLineLyrics();
+        }
         return mLineLyrics;
     }
 
     public void setLineLyrics(String mLineLyrics) {
         String trimLyricText = LrcTextUtils.trimLricText(mLineLyrics);
-        if (!TextUtils.isEmpty(trimLyricText)) {
+        if (trimLyricText != null && trimLyricText.length() > 0) {
             this.mLineLyrics = trimLyricText.replaceAll("\r|\n", "");
         }
+        mLineLyricsLoaded = true;
+    }
+
+    /**
+     * 直接设置已经处理过的行歌词和字，不再裁剪和过滤换行（读取已解析保存的歌词时使用）
+     *
+     * @param lineLyrics  该行歌词
+     * @param lyricsWords 该行歌词的字
+     */
+    public void setParsedLyrics(String lineLyrics, String[] lyricsWords) {
+        detachWordsParser();
+        if (lineLyrics != null)
+            this.mLineLyrics = lineLyrics;
+        this.mLyricsWords = lyricsWords;
+    }
+
+    /**
+     * 设置按需解析字的解析器，由 {@link LyricsWordsParser#newLyricsLineInfo} 调用
+     */
+    void setWordsParser(LyricsWordsParser wordsParser, String rawLine, int rawIndex, LyricsLineInfo wordsOrigin) {
+        this.mWordsParser = wordsParser;
+        this.mRawLine = rawLine;
+        this.mRawIndex = rawIndex;
+        this.mWordsOrigin = wordsOrigin;
+        this.mLineLyricsLoaded = false;
+    }
+
+    /**
+     * 字是否按需解析
+     *
+     * @return
+     */
+    public boolean isLazyWords() {
+        return mWordsParser != null;
+    }
+
+    /**
+     * 按需解析字的解析器，可以用来查看解析次数和解析失败的原因
+     *
+     * @return 字在读取时已经解析好时返回null
+     */
+    public LyricsWordsParser getWordsParser() {
+        return mWordsParser;
+    }
+
+    /**
+     * 按需解析字时的原始行内容
+     *
+     * @return 字在读取时已经解析好时返回null
+     */
+    public String getRawLine() {
+        return mRawLine;
+    }
+
+    /**
+     * 获取保存字数据的歌词行，按需解析时是解析出的行（可能被释放，不要保存），否则是自身
+     */
+    private LyricsLineInfo getWordsLineInfo() {
+        LyricsWordsParser wordsParser = mWordsParser;
+        if (wordsParser == null) return this;
+        return wordsParser.getParsedLine(mWordsOrigin, mRawLine, mRawIndex);
+    }
+
+    /**
+     * 第一次访问时解析行歌词，行歌词解析后一直保留
+     */
+    private synchronized void loadLineLyrics() {
+        if (mLineLyricsLoaded) return;
+        LyricsWordsParser wordsParser = mWordsParser;
+        if (wordsParser != null) {
+            mLineLyrics = wordsParser.getParsedLine(mWordsOrigin, mRawLine, mRawIndex).mLineLyrics;
+        }
+        mLineLyricsLoaded = true;
+    }
+
+    /**
+     * 直接设置字之前，把按需解析的字保存到自身，不再按需解析
+     */
+    private void detachWordsParser() {
+        if (mWordsParser == null) return;
+        LyricsLineInfo wordsLineInfo = getWordsLineInfo();
+        if (!mLineLyricsLoaded) {
+            mLineLyrics = wordsLineInfo.mLineLyrics;
+            mLineLyricsLoaded = true;
+        }
+        mLyricsWords = wordsLineInfo.mLyricsWords;
+        mWordsDisInterval = wordsLineInfo.mWordsDisInterval;
+        mWordsStartOffsets = wordsLineInfo.mWordsStartOffsets;
+        mWordsParser = null;
+        mRawLine = null;
+        mWordsOrigin = null;
     }
 
     /**
@@ -140,19 +346,38 @@ public class LyricsLineInfo {
      * @param orig 原始实体类
      */
     public void copy(LyricsLineInfo dist, LyricsLineInfo orig) {
-        if (orig.getWordsDisInterval() != null) {
-            dist.setWordsDisInterval(orig.getWordsDisInterval());
+        if (orig.mWordsParser != null) {
+            // 按需解析的行，复制后仍然按需解析，与原始行共用已解析的字，行歌词没有解析时也不解析
+            dist.setWordsParser(orig.mWordsParser, orig.mRawLine, orig.mRawIndex, orig.mWordsOrigin);
+            if (orig.mLineLyricsLoaded) {
+                dist.setLineLyrics(orig.mLineLyrics);
+            }
+        } else {
+            if (orig.getWordsDisInterval() != null) {
+                dist.setWordsDisInterval(orig.getWordsDisInterval());
+            }
+            if (orig.getLyricsWords() != null) {
+                dist.setLyricsWords(orig.getLyricsWords());
+            }
+            dist.setLineLyrics(orig.getLineLyrics());
         }
         dist.setStartTime(orig.getStartTime());
         dist.setEndTime(orig.getEndTime());
 
-        if (orig.getLyricsWords() != null) {
-            dist.setLyricsWords(orig.getLyricsWords());
-        }
-
-        dist.setLineLyrics(orig.getLineLyrics());
-
         // 累计宽度不复制，需要重新计算
         dist.clearCumulativeWidths();
     }
+
+    /**
+     * 歌词行分割器
+     */
+    public interface LineSplitter {
+        /**
+         * 分割歌词行
+         *
+         * @param lyricsLineInfo 要分割的歌词行
+         * @return 分割后的歌词行，不需要分割时只含有该行
+         */
+        List<LyricsLineInfo> split(LyricsLineInfo lyricsLineInfo);
+    }
 }
@@ -0,0 +1,83 @@
+package com.chs.htz.lyrics.model;
+
+/**
+ * 播放进度在歌词中的位置
+ * <p>
+ * 可重复使用，避免每帧创建对象
+ *
+ * @author chaihuasong
+ */
+public class LyricsPosition {
+
+    /**
+     * 行号
+     */
+    private int mLyricsLineNum = 0;
+    /**
+     * 分割后的行号
+     */
+    private int mSplitLyricsLineNum = 0;
+    /**
+     * 原始行的字索引，-1表示还没开始，-2表示整句已经播放完成
+     */
+    private int mLyricsWordIndex = -1;
+    /**
+     * 分割后的行的字索引，-1表示还没开始，-2表示整句已经播放完成
+     */
+    private int mSplitLyricsWordIndex = -1;
+    /**
+     * 当前字已经播放的时间
+     */
+    private long mLyricsWordHLTime = 0;
+
+    /**
+     * 重置
+     */
+    public void reset() {
+        mLyricsLineNum = 0;
+        mSplitLyricsLineNum = 0;
+        mLyricsWordIndex = -1;
+        mSplitLyricsWordIndex = -1;
+        mLyricsWordHLTime = 0;
+    }
+
+    public int getLyricsLineNum() {
+        return mLyricsLineNum;
+    }
+
+    public void setLyricsLineNum(int lyricsLineNum) {
+        this.mLyricsLineNum = lyricsLineNum;
+    }
+
+    public int getSplitLyricsLineNum() {
+        return mSplitLyricsLineNum;
+    }
+
+    public void setSplitLyricsLineNum(int splitLyricsLineNum) {
+        this.mSplitLyricsLineNum = splitLyricsLineNum;
+    }
+
+    public int getLyricsWordIndex() {
+        return mLyricsWordIndex;
+    }
+
+    public void setLyricsWordIndex(int lyricsWordIndex) {
+        this.mLyricsWordIndex = lyricsWordIndex;
+    }
+
+    public int getSplitLyricsWordIndex() {
+        return mSplitLyricsWordIndex;
+    }
+
+    public void setSplitLyricsWordIndex(int splitLyricsWordIndex) {
+        this.mSplitLyricsWordIndex = splitLyricsWordIndex;
+    }
+
+    public long getLyricsWordHLTime() {
+        return mLyricsWordHLTime;
+    }
+
+    public void setLyricsWordHLTime(long lyricsWordHLTime) {
+        this.mLyricsWordHLTime = lyricsWordHLTime;
+    }
+}
@@ -0,0 +1,370 @@
+package com.chs.htz.lyrics.model;
+
+import java.util.TreeMap;
+
+/**
+ * 歌词时间轴
+ * <p>
+ * 不可变，使用int数组按列保存每行的开始时间、结束时间以及每个字的偏移和持续时间，
+ * 行号和字索引的查询都是基于数组的二分查找，没有装箱和树查找。
+ * 有按需解析字的歌词行时不创建字的列，字的查询交给所在的歌词行，只解析查询到的行
+ *
+ * @author chaihuasong
+ */
+public final class LyricsTimeline {
+
+    /**
+     * 歌词类型
+     */
+    private final int mLyricsType;
+    /**
+     * 行开始时间
+     */
+    private final int[] mStartTimes;
+    /**
+     * 行结束时间
+     */
+    private final int[] mEndTimes;
+    /**
+     * 字的列，有按需解析字的歌词行时为null
+     */
+    private final WordColumns mWordColumns;
+    /**
+     * 有按需解析字的歌词行时保存歌词行，否则为null
+     */
+    private final LyricsLineInfo[] mLazyLines;
+
+    /**
+     * 字的列
+     */
+    private static final class WordColumns {
+        /**
+         * 每行第一个字在字数组中的位置，长度为行数+1
+         */
+        final int[] mWordIndexes;
+        /**
+         * 字开始时间距行开始时间的偏移
+         */
+        final int[] mWordOffsets;
+        /**
+         * 字持续时间
+         */
+        final int[] mWordDurations;
+
+        WordColumns(int[] wordIndexes, int[] wordOffsets, int[] wordDurations) {
+            this.mWordIndexes = wordIndexes;
+            this.mWordOffsets = wordOffsets;
+            this.mWordDurations = wordDurations;
+        }
+    }
+
+    private LyricsTimeline(int lyricsType, int[] startTimes, int[] endTimes, WordColumns wordColumns, LyricsLineInfo[] lazyLines) {
+        this.mLyricsType = lyricsType;
+        this.mStartTimes = startTimes;
+        this.mEndTimes = endTimes;
+        this.mWordColumns = wordColumns;
+        this.mLazyLines = lazyLines;
+    }
+
+    /**
+     * 根据歌词行创建时间轴
+     *
+     * @param lyricsType        歌词类型 LyricsInfo.LRC OR LyricsInfo.DYNAMIC
+     * @param lyricsLineTreeMap 歌词行，key为0到n-1
+     * @return
+     */
+    public static LyricsTimeline build(int lyricsType, TreeMap<Integer, LyricsLineInfo> lyricsLineTreeMap) {
+        if (lyricsLineTreeMap == null || lyricsLineTreeMap.isEmpty()) {
+            return new LyricsTimeline(lyricsType, new int[0], new int[0], new WordColumns(new int[]{0}, new int[0], new int[0]), null);
+        }
+        int size = lyricsLineTreeMap.size();
+        int[] startTimes = new int[size];
+        int[] endTimes = new int[size];
+        LyricsLineInfo[] lyricsLineInfos = new LyricsLineInfo[size];
+        boolean lazyWords = false;
+        for (int i = 0; i < size; i++) {
+            LyricsLineInfo lyricsLineInfo = lyricsLineTreeMap.get(i);
+            startTimes[i] = lyricsLineInfo.getStartTime();
+            endTimes[i] = lyricsLineInfo.getEndTime();
+            lazyWords |= lyricsLineInfo.isLazyWords();
+            lyricsLineInfos[i] = lyricsLineInfo;
+        }
+        if (lazyWords) {
+            return new LyricsTimeline(lyricsType, startTimes, endTimes, null, lyricsLineInfos);
+        }
+        return new LyricsTimeline(lyricsType, startTimes, endTimes, buildWordColumns(lyricsLineTreeMap), null);
+    }
+
+    /**
+     * 创建字的列
+     */
+    private static WordColumns buildWordColumns(TreeMap<Integer, LyricsLineInfo> lyricsLineTreeMap) {
+        int size = lyricsLineTreeMap.size();
+        int[] wordIndexes = new int[size + 1];
+
+        int wordsCount = 0;
+        for (int i = 0; i < size; i++) {
+            LyricsLineInfo lyricsLineInfo = lyricsLineTreeMap.get(i);
+            wordIndexes[i] = wordsCount;
+            wordsCount += getWordsCount(lyricsLineInfo);
+        }
+        wordIndexes[size] = wordsCount;
+
+        int[] wordOffsets = new int[wordsCount];
+        int[] wordDurations = new int[wordsCount];
+        for (int i = 0; i < size; i++) {
+            LyricsLineInfo lyricsLineInfo = lyricsLineTreeMap.get(i);
+            int[] wordsDisInterval = lyricsLineInfo.getWordsDisInterval();
+            int offset = 0;
+            for (int j = wordIndexes[i]; j < wordIndexes[i + 1]; j++) {
+                int duration = wordsDisInterval[j - wordIndexes[i]];
+                wordOffsets[j] = offset;
+                wordDurations[j] = duration;
+                offset += duration;
+            }
+        }
+        return new WordColumns(wordIndexes, wordOffsets, wordDurations);
+    }
+
+    /**
+     * 获取有时间的字个数
+     */
+    private static int getWordsCount(LyricsLineInfo lyricsLineInfo) {
+        String[] lyricsWords = lyricsLineInfo.getLyricsWords();
+        int[] wordsDisInterval = lyricsLineInfo.getWordsDisInterval();
+        if (lyricsWords == null || wordsDisInterval == null) {
+            return 0;
+        }
+        return Math.min(lyricsWords.length, wordsDisInterval.length);
+    }
+
+    public int getLyricsType() {
+        return mLyricsType;
+    }
+
+    /**
+     * 行数
+     */
+    public int size() {
+        return mStartTimes.length;
+    }
+
+    public boolean isEmpty() {
+        return mStartTimes.length == 0;
+    }
+
+    public int getStartTime(int lineNum) {
+        return mStartTimes[lineNum];
+    }
+
+    public int getEndTime(int lineNum) {
+        return mEndTimes[lineNum];
+    }
+
+    /**
+     * 获取某行的字个数
+     */
+    public int getWordsCount(int lineNum) {
+        if (mLazyLines != null) return getWordsCount(mLazyLines[lineNum]);
+        WordColumns wordColumns = mWordColumns;
+        return wordColumns.mWordIndexes[lineNum + 1] - wordColumns.mWordIndexes[lineNum];
+    }
+
+    /**
+     * 获取某个字的开始时间
+     */
+    public int getWordStartTime(int lineNum, int wordIndex) {
+        if (mLazyLines != null) return mStartTimes[lineNum] + mLazyLines[lineNum].getWordsStartOffsets()[wordIndex];
+        WordColumns wordColumns = mWordColumns;
+        return mStartTimes[lineNum] + wordColumns.mWordOffsets[wordColumns.mWordIndexes[lineNum] + wordIndex];
+    }
+
+    /**
+     * 获取某个字的持续时间
+     */
+    public int getWordDuration(int lineNum, int wordIndex) {
+        if (mLazyLines != null) return mLazyLines[lineNum].getWordsDisInterval()[wordIndex];
+        WordColumns wordColumns = mWordColumns;
+        return wordColumns.mWordDurations[wordColumns.mWordIndexes[lineNum] + wordIndex];
+    }
+
+    /**
+     * 通过播放进度获取所唱歌词行数
+     *
+     * @param playingTime 已加上时间补偿值的播放进度
+     * @return
+     */
+    public int getLineNumber(long playingTime) {
+        return getLineNumber(playingTime, 0);
+    }
+
+    /**
+     * 通过播放进度获取所唱歌词行数，先检查提示行及其下一行，命中时只需要O(1)时间
+     *
+     * @param playingTime 已加上时间补偿值的播放进度
+     * @param hint        上次查询得到的行号
+     * @return
+     */
+    public int getLineNumber(long playingTime, int hint) {
+        int size = mStartTimes.length;
+        if (size == 0) return 0;
+        if (hint < 0 || hint >= size) {
+            hint = 0;
+        }
+        if (mLyricsType == LyricsInfo.LRC) {
+            return getLineNumberLrc(playingTime, hint, size);
+        } else if (mLyricsType == LyricsInfo.DYNAMIC) {
+            return getLineNumberDynamic(playingTime, hint, size);
+        }
+        return 0;
+    }
+
+    /**
+     * 检查提示行是否命中
+     *
+     * @return 命中时返回行号，否则返回-1
+     */
+    public int checkHint(long playingTime, int hint) {
+        int size = mStartTimes.length;
+        if (hint < 0 || hint >= size) return -1;
+        if (mLyricsType == LyricsInfo.LRC) {
+            long nextStartTime = hint + 1 < size ? mStartTimes[hint + 1] : Long.MAX_VALUE;
+            if (playingTime >= mStartTimes[hint] && playingTime < nextStartTime) {
+                return hint;
+            }
+            // 检查是否是下一行
+            if (hint + 1 < size && playingTime >= nextStartTime) {
+                long nextNextStartTime = hint + 2 < size ? mStartTimes[hint + 2] : Long.MAX_VALUE;
+                if (playingTime < nextNextStartTime) {
+                    return hint + 1;
+                }
+            }
+        } else if (mLyricsType == LyricsInfo.DYNAMIC) {
+            // 在当前行的时间范围内
+            if (playingTime >= mStartTimes[hint] && playingTime <= mEndTimes[hint]) {
+                return hint;
+            }
+            if (hint + 1 < size) {
+                // 在当前行结束和下一行开始之间（间隙）
+                if (playingTime > mEndTimes[hint] && playingTime < mStartTimes[hint + 1]) {
+                    return hint;
+                }
+                // 检查下一行
+                if (playingTime >= mStartTimes[hint + 1] && playingTime <= mEndTimes[hint + 1]) {
+                    return hint + 1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * LRC歌词行号查询
+     */
+    private int getLineNumberLrc(long playingTime, int hint, int size) {
+        int lineNum = checkHint(playingTime, hint);
+        if (lineNum != -1) {
+            return lineNum;
+        }
+
+        // 时间在第一行之前
+        if (playingTime < mStartTimes[0]) {
+            return 0;
+        }
+
+        // 二分查找最后一个开始时间不大于播放进度的行
+        int low = 0;
+        int high = size - 1;
+        int result = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (mStartTimes[mid] <= playingTime) {
+                result = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 动感歌词行号查询
+     */
+    private int getLineNumberDynamic(long playingTime, int hint, int size) {
+        int lineNum = checkHint(playingTime, hint);
+        if (lineNum != -1) {
+            return lineNum;
+        }
+
+        // 已经过了最后一行
+        if (playingTime >= mEndTimes[size - 1]) {
+            return size - 1;
+        }
+
+        // 二分查找
+        int low = 0;
+        int high = size - 1;
+        int result = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (playingTime >= mStartTimes[mid]) {
+                result = mid;
+                if (playingTime <= mEndTimes[mid]) {
+                    // 找到精确匹配
+                    return mid;
+                }
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 获取歌词字索引
+     *
+     * @param lineNum     行号
+     * @param playingTime 已加上时间补偿值的播放进度
+     * @return -1表示还没开始，-2表示整句已经播放完成
+     */
+    public int getWordIndex(int lineNum, long playingTime) {
+        if (lineNum < 0)
+            return -1;
+        int lineStartTime = mStartTimes[lineNum];
+        if (playingTime < lineStartTime) return -1;
+        if (mLazyLines != null) return mLazyLines[lineNum].getWordIndex(playingTime);
+
+        WordColumns wordColumns = mWordColumns;
+        int wordIndex = findWord(wordColumns, lineNum, playingTime - lineStartTime);
+        if (wordIndex < 0) {
+            //整句已经播放完成
+            return -2;
+        }
+        return wordIndex - wordColumns.mWordIndexes[lineNum];
+    }
+
+    /**
+     * 二分查找第一个结束时间不小于lineElapsedTime的字
+     *
+     * @return 字在字数组中的位置，没有时返回-1
+     */
+    private static int findWord(WordColumns wordColumns, int lineNum, long lineElapsedTime) {
+        int[] wordOffsets = wordColumns.mWordOffsets;
+        int[] wordDurations = wordColumns.mWordDurations;
+        int low = wordColumns.mWordIndexes[lineNum];
+        int high = wordColumns.mWordIndexes[lineNum + 1] - 1;
+        int result = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if ((long) wordOffsets[mid] + wordDurations[mid] >= lineElapsedTime) {
+                result = mid;
+                high = mid - 1;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return result;
+    }
+}
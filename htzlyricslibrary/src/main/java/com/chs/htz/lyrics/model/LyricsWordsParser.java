@@ -0,0 +1,147 @@
+package com.chs.htz.lyrics.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 按需解析字的歌词行解析器
+ * <p>
+ * 读取动感歌词时只扫描每行的时间标签，行歌词和字在第一次访问时才从原始行内容解析。
+ * 解析出的字只保留最近使用的若干行，超出后释放最久没有使用的行，再次访问时重新解析。
+ * 每个歌词文件使用一个实例，解析在同一把锁内进行，子类的解析方法不需要考虑线程安全
+ *
+ * @author chaihuasong
+ */
+public abstract class LyricsWordsParser {
+
+    /**
+     * 默认常驻行数：当前行、下一行以及分割后的行
+     */
+    public static final int DEFAULT_RESIDENT_LINE_COUNT = 8;
+
+    /**
+     * 常驻的已解析行，key为最初创建的歌词行（复制的行共用同一个key）
+     */
+    private final LinkedHashMap<LyricsLineInfo, LyricsLineInfo> mResidentLines;
+
+    /**
+     * 解析次数
+     */
+    private long mParseCount = 0;
+    /**
+     * 解析失败次数
+     */
+    private long mParseErrorCount = 0;
+    /**
+     * 最近一次解析失败的原因
+     */
+    private Exception mParseException;
+
+    /**
+     * @param residentLineCount 常驻行数
+     */
+    protected LyricsWordsParser(final int residentLineCount) {
+        mResidentLines = new LinkedHashMap<LyricsLineInfo, LyricsLineInfo>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<LyricsLineInfo, LyricsLineInfo> eldest) {
+                return size() > Math.max(1, residentLineCount);
+            }
+        };
+    }
+
+    /**
+     * 创建按需解析字的歌词行
+     *
+     * @param startTime 开始时间
+     * @param endTime   结束时间
+     * @param rawLine   原始行内容
+     * @param rawIndex  同一原始行中的第几个歌词行（一行多个时间标签时使用）
+     * @return
+     */
+    public LyricsLineInfo newLyricsLineInfo(int startTime, int endTime, String rawLine, int rawIndex) {
+        LyricsLineInfo lyricsLineInfo = new LyricsLineInfo();
+        lyricsLineInfo.setStartTime(startTime);
+        lyricsLineInfo.setEndTime(endTime);
+        lyricsLineInfo.setWordsParser(this, rawLine, rawIndex, lyricsLineInfo);
+        return lyricsLineInfo;
+    }
+
+    /**
+     * 从原始行内容解析歌词行
+     *
+     * @param rawLine  原始行内容
+     * @param rawIndex 同一原始行中的第几个歌词行
+     * @return 含有行歌词、字和字时间的歌词行
+     * @throws Exception
+     */
+    protected abstract LyricsLineInfo parseLine(String rawLine, int rawIndex) throws Exception;
+
+    /**
+     * 获取已解析的歌词行，不在常驻行中时重新解析
+     *
+     * @param origin   最初创建的歌词行
+     * @param rawLine  原始行内容
+     * @param rawIndex 同一原始行中的第几个歌词行
+     * @return 解析失败时返回行歌词为空、没有字的歌词行，失败原因通过 {@link #getParseException} 获取
+     */
+    synchronized LyricsLineInfo getParsedLine(LyricsLineInfo origin, String rawLine, int rawIndex) {
+        LyricsLineInfo parsedLine = mResidentLines.get(origin);
+        if (parsedLine == null) {
+            mParseCount++;
+            try {
+                parsedLine = parseLine(rawLine, rawIndex);
+                if (parsedLine == null) {
+                    throw new Exception("歌词行解析结果为空");
+                }
+            } catch (Exception e) {
+                mParseErrorCount++;
+                mParseException = e;
+                parsedLine = new LyricsLineInfo();
+                parsedLine.setStartTime(origin.getStartTime());
+                parsedLine.setEndTime(origin.getEndTime());
+            }
+            if (parsedLine.getLyricsWords() == null || parsedLine.getWordsDisInterval() == null) {
+                parsedLine.setParsedLyrics(null, new String[0]);
+                parsedLine.setWordsDisInterval(new int[0]);
+            }
+            mResidentLines.put(origin, parsedLine);
+        }
+        return parsedLine;
+    }
+
+    /**
+     * 当前常驻的已解析行数
+     *
+     * @return
+     */
+    public synchronized int getResidentCount() {
+        return mResidentLines.size();
+    }
+
+    /**
+     * 解析次数，用于统计常驻行的命中率
+     *
+     * @return
+     */
+    public synchronized long getParseCount() {
+        return mParseCount;
+    }
+
+    /**
+     * 解析失败次数，解析失败的行显示为空行
+     *
+     * @return
+     */
+    public synchronized long getParseErrorCount() {
+        return mParseErrorCount;
+    }
+
+    /**
+     * 最近一次解析失败的原因
+     *
+     * @return 没有解析失败时返回null
+     */
+    public synchronized Exception getParseException() {
+        return mParseException;
+    }
+}
@@ -1,7 +1,5 @@
 package com.chs.htz.lyrics.model;
 
-import android.text.TextUtils;
-
 /**
  * 翻译行歌词
  * Created by chaihuasong on 2017/9/11.
@@ -19,7 +17,11 @@ public class TranslateLrcLineInfo {
     }
 
     public void setLineLyrics(String lineLyrics) {
-        if (!TextUtils.isEmpty(lineLyrics))
+        if (lineLyrics == null || lineLyrics.length() == 0) return;
+        if (lineLyrics.indexOf('\r') == -1 && lineLyrics.indexOf('\n') == -1) {
+            this.mLineLyrics = lineLyrics;
+        } else {
             this.mLineLyrics = lineLyrics.replaceAll("\r|\n", "");
+        }
     }
 }
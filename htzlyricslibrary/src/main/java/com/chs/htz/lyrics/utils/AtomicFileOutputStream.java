@@ -0,0 +1,146 @@
+package com.chs.htz.lyrics.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 原子写文件输出流
+ * <p>
+ * 内容先写入同目录下的临时文件，close 时同步到磁盘再重命名为目标文件，
+ * 写入过程中崩溃或者出错时目标文件保持原样，不会出现写了一半的文件。
+ * 写入出错时调用 abort 删除临时文件，close 失败时临时文件会自动删除。
+ * 不继承 FileOutputStream，避免没有关闭的流在回收时被 finalize 关闭而提交不完整的内容
+ */
+public class AtomicFileOutputStream extends OutputStream {
+
+    /**
+     * 目标文件
+     */
+    private final File mFile;
+    /**
+     * 临时文件
+     */
+    private final File mTempFile;
+    /**
+     * 临时文件输出流
+     */
+    private final FileOutputStream mOut;
+    /**
+     * 是否已经提交或者放弃
+     */
+    private boolean mFinished = false;
+
+    /**
+     * @param file 目标文件，所在的文件夹不存在时自动创建
+     * @throws IOException
+     */
+    public AtomicFileOutputStream(File file) throws IOException {
+        this.mFile = file;
+        this.mTempFile = createTempFile(file);
+        this.mOut = new FileOutputStream(mTempFile);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        mOut.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        mOut.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        mOut.flush();
+    }
+
+    /**
+     * 在目标文件所在的文件夹中创建临时文件，重命名时不需要跨文件系统
+     *
+     * @param file 目标文件
+     * @return
+     * @throws IOException
+     */
+    private static File createTempFile(File file) throws IOException {
+        File parentFile = file.getAbsoluteFile().getParentFile();
+        if (!parentFile.exists()) {
+            parentFile.mkdirs();
+        }
+        return File.createTempFile("." + file.getName() + ".", ".tmp", parentFile);
+    }
+
+    /**
+     * 同步到磁盘并重命名为目标文件，失败时删除临时文件，目标文件保持原样
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (mFinished) {
+            return;
+        }
+        mFinished = true;
+        boolean renamed = false;
+        try {
+            try {
+                mOut.flush();
+                mOut.getFD().sync();
+            } finally {
+                mOut.close();
+            }
+            renameToFile();
+            renamed = true;
+        } finally {
+            if (!renamed) {
+                mTempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * 把临时文件重命名为目标文件
+     * <p>
+     * 部分系统不能覆盖已存在的文件，这时先把目标文件重命名为备份文件，
+     * 临时文件重命名失败时再把备份文件恢复为目标文件，不会同时丢失新旧内容
+     *
+     * @throws IOException
+     */
+    private void renameToFile() throws IOException {
+        if (mTempFile.renameTo(mFile)) {
+            return;
+        }
+        if (!mFile.exists()) {
+            throw new IOException("重命名歌词文件失败：" + mFile.getPath());
+        }
+        File backupFile = new File(mTempFile.getPath() + ".bak");
+        if (!mFile.renameTo(backupFile)) {
+            throw new IOException("备份歌词文件失败：" + mFile.getPath());
+        }
+        if (mTempFile.renameTo(mFile)) {
+            backupFile.delete();
+            return;
+        }
+        if (!backupFile.renameTo(mFile)) {
+            throw new IOException("重命名歌词文件失败，原文件保存在：" + backupFile.getPath());
+        }
+        throw new IOException("重命名歌词文件失败：" + mFile.getPath());
+    }
+
+    /**
+     * 放弃写入，关闭并删除临时文件，目标文件保持原样
+     */
+    public void abort() {
+        if (!mFinished) {
+            mFinished = true;
+            try {
+                mOut.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        mTempFile.delete();
+    }
+}
@@ -0,0 +1,279 @@
+package com.chs.htz.lyrics.utils;
+
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 文本歌词编码识别
+ * <p>
+ * 先判断BOM，没有BOM时对文件开头的内容扫描一遍，同时按utf-8、GBK、Big5、Shift-JIS的编码规则统计
+ * 合法的双字节字符和各编码常用字所在区域的出现次数，取没有非法字节且得分最高的编码。
+ * 全部是ascii时无法判断，由调用者使用默认编码。识别结果按文件缓存，同一个文件只识别一次
+ */
+public class CharsetUtils {
+
+    /**
+     * 识别编码读取的文件开头长度
+     */
+    public static final int DETECT_SIZE = 4096;
+
+    public static final Charset UTF_8 = Charset.forName("UTF-8");
+    public static final Charset UTF_16LE = Charset.forName("UTF-16LE");
+    public static final Charset UTF_16BE = Charset.forName("UTF-16BE");
+    public static final Charset GBK = Charset.forName("GBK");
+    public static final Charset BIG5 = Charset.forName("Big5");
+    public static final Charset SHIFT_JIS = Charset.forName("Shift_JIS");
+
+    /**
+     * 缓存的文件数
+     */
+    private static final int MAX_CACHE_SIZE = 64;
+
+    /**
+     * 文件key -> 识别出的编码，识别不出的文件也缓存（值为null）
+     */
+    private static final LinkedHashMap<String, Charset> sCharsetCache = new LinkedHashMap<String, Charset>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Charset> eldest) {
+            return size() > MAX_CACHE_SIZE;
+        }
+    };
+
+    /**
+     * 是否已经缓存了文件的识别结果
+     *
+     * @param key 缓存key
+     * @return
+     */
+    public static boolean isCached(String key) {
+        if (key == null) return false;
+        synchronized (sCharsetCache) {
+            return sCharsetCache.containsKey(key);
+        }
+    }
+
+    /**
+     * 获取缓存的识别结果
+     *
+     * @param key 缓存key
+     * @return 没有缓存或者识别不出时返回null
+     */
+    public static Charset getCachedCharset(String key) {
+        if (key == null) return null;
+        synchronized (sCharsetCache) {
+            return sCharsetCache.get(key);
+        }
+    }
+
+    /**
+     * 缓存识别结果
+     *
+     * @param key     缓存key
+     * @param charset 识别不出时为null
+     */
+    public static void putCachedCharset(String key, Charset charset) {
+        if (key == null) return;
+        synchronized (sCharsetCache) {
+            sCharsetCache.put(key, charset);
+        }
+    }
+
+    /**
+     * 清空识别结果缓存
+     */
+    public static void clearCache() {
+        synchronized (sCharsetCache) {
+            sCharsetCache.clear();
+        }
+    }
+
+    /**
+     * 获取BOM的长度
+     *
+     * @param header 文件开头的内容
+     * @param length 有效长度
+     * @return 没有BOM时返回0
+     */
+    public static int getBomLength(byte[] header, int length) {
+        if (length >= 3 && (header[0] & 0xff) == 0xEF && (header[1] & 0xff) == 0xBB && (header[2] & 0xff) == 0xBF) {
+            return 3;
+        }
+        if (length >= 2 && (((header[0] & 0xff) == 0xFF && (header[1] & 0xff) == 0xFE)
+                || ((header[0] & 0xff) == 0xFE && (header[1] & 0xff) == 0xFF))) {
+            return 2;
+        }
+        return 0;
+    }
+
+    /**
+     * 根据BOM判断编码
+     *
+     * @param header 文件开头的内容
+     * @param length 有效长度
+     * @return 没有BOM时返回null
+     */
+    public static Charset getBomCharset(byte[] header, int length) {
+        int bomLength = getBomLength(header, length);
+        if (bomLength == 3) {
+            return UTF_8;
+        }
+        if (bomLength == 2) {
+            return (header[0] & 0xff) == 0xFF ? UTF_16LE : UTF_16BE;
+        }
+        return null;
+    }
+
+    /**
+     * 识别编码
+     *
+     * @param header 文件开头的内容
+     * @param length 有效长度
+     * @return 全部是ascii或者识别不出时返回null
+     */
+    public static Charset detect(byte[] header, int length) {
+        Charset charset = getBomCharset(header, length);
+        if (charset != null) {
+            return charset;
+        }
+
+        // utf-8：剩余的后续字节数
+        int utf8Remain = 0;
+        int utf8Errors = 0;
+        int utf8Chars = 0;
+        // 双字节编码：上一个首字节，0表示没有
+        int gbLead = 0;
+        int gbErrors = 0;
+        int gbScore = 0;
+        int big5Lead = 0;
+        int big5Errors = 0;
+        int big5Score = 0;
+        int sjisLead = 0;
+        int sjisErrors = 0;
+        int sjisScore = 0;
+
+        for (int i = 0; i < length; i++) {
+            int b = header[i] & 0xff;
+            if (b < 0x80 && utf8Remain == 0 && gbLead == 0 && big5Lead == 0 && sjisLead == 0) {
+                // ascii，时间标签等占了大部分内容
+                continue;
+            }
+
+            // utf-8
+            if (utf8Remain > 0) {
+                if ((b & 0xC0) == 0x80) {
+                    if (--utf8Remain == 0) {
+                        utf8Chars++;
+                    }
+                } else {
+                    utf8Errors++;
+                    utf8Remain = 0;
+                }
+            } else if (b >= 0xC2 && b <= 0xDF) {
+                utf8Remain = 1;
+            } else if (b >= 0xE0 && b <= 0xEF) {
+                utf8Remain = 2;
+            } else if (b >= 0xF0 && b <= 0xF4) {
+                utf8Remain = 3;
+            } else if (b >= 0x80) {
+                utf8Errors++;
+            }
+
+            // GBK：首字节0x81-0xFE，尾字节0x40-0xFE（不含0x7F）
+            if (gbLead != 0) {
+                if (b >= 0x40 && b <= 0xFE && b != 0x7F) {
+                    if (b >= 0xA1) {
+                        if (gbLead >= 0xB0 && gbLead <= 0xD7) {
+                            // 一级汉字
+                            gbScore += 2;
+                        } else if (gbLead >= 0xA1 && gbLead <= 0xF7) {
+                            // 全角符号、二级汉字
+                            gbScore++;
+                        }
+                    }
+                } else {
+                    gbErrors++;
+                }
+                gbLead = 0;
+            } else if (b >= 0x81 && b <= 0xFE) {
+                gbLead = b;
+            } else if (b == 0x80 || b == 0xFF) {
+                gbErrors++;
+            }
+
+            // Big5：首字节0xA1-0xF9，尾字节0x40-0x7E、0xA1-0xFE
+            if (big5Lead != 0) {
+                if ((b >= 0x40 && b <= 0x7E) || (b >= 0xA1 && b <= 0xFE)) {
+                    if (big5Lead >= 0xA4 && big5Lead <= 0xC6) {
+                        // 常用字
+                        big5Score += 2;
+                    } else if (big5Lead <= 0xA3 || big5Lead >= 0xC9) {
+                        // 符号、次常用字
+                        big5Score++;
+                    }
+                    if (big5Lead == 0xA1 && b <= 0x7E) {
+                        // 全角标点，GB2312中没有这个区域
+                        big5Score++;
+                    }
+                } else {
+                    big5Errors++;
+                }
+                big5Lead = 0;
+            } else if (b >= 0xA1 && b <= 0xF9) {
+                big5Lead = b;
+            } else if (b >= 0x80) {
+                big5Errors++;
+            }
+
+            // Shift-JIS：首字节0x81-0x9F、0xE0-0xFC，尾字节0x40-0x7E、0x80-0xFC，0xA1-0xDF为半角片假名
+            if (sjisLead != 0) {
+                if ((b >= 0x40 && b <= 0x7E) || (b >= 0x80 && b <= 0xFC)) {
+                    if ((sjisLead == 0x82 && b >= 0x9F && b <= 0xF1)
+                            || (sjisLead == 0x83 && b >= 0x40 && b <= 0x96)) {
+                        // 平假名、片假名
+                        sjisScore += 2;
+                    } else if (sjisLead <= 0xEA) {
+                        // 符号、汉字
+                        sjisScore++;
+                    }
+                } else {
+                    sjisErrors++;
+                }
+                sjisLead = 0;
+            } else if ((b >= 0x81 && b <= 0x9F) || (b >= 0xE0 && b <= 0xFC)) {
+                sjisLead = b;
+            } else if (b == 0x80 || b >= 0xFD) {
+                sjisErrors++;
+            }
+        }
+
+        // 最后一个字符可能被截断，不算错误
+        if (utf8Errors == 0 && utf8Chars > 0) {
+            return UTF_8;
+        }
+        if (utf8Chars == 0 && utf8Errors == 0 && utf8Remain == 0) {
+            // 全部是ascii
+            return null;
+        }
+
+        // 取非法字节最少的编码，相同时取得分最高的，再相同时依次优先GBK、Big5、Shift-JIS
+        Charset best = GBK;
+        int bestErrors = gbErrors;
+        int bestScore = gbScore;
+        if (big5Errors < bestErrors || (big5Errors == bestErrors && big5Score > bestScore)) {
+            best = BIG5;
+            bestErrors = big5Errors;
+            bestScore = big5Score;
+        }
+        if (sjisErrors < bestErrors || (sjisErrors == bestErrors && sjisScore > bestScore)) {
+            best = SHIFT_JIS;
+            bestErrors = sjisErrors;
+            bestScore = sjisScore;
+        }
+        if (utf8Errors < bestErrors) {
+            // 个别非法字节的utf-8
+            return UTF_8;
+        }
+        return best;
+    }
+}
@@ -0,0 +1,231 @@
+package com.chs.htz.lyrics.utils;
+
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.os.Build;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 字宽缓存
+ * <p>
+ * 按字体、字号等画笔设置缓存每个字的宽度，整行的字都已经缓存时不再调用 getTextWidths。
+ * 只缓存等宽的汉字、假名、谚文音节和全角字母数字；拉丁字母有字距调整，标点可能被挤压，
+ * 阿拉伯文、泰文、emoji等有连字和组合字符，含有这些字的行每次整行测量
+ */
+public class GlyphAdvanceCache {
+
+    /**
+     * 每页缓存的字数
+     */
+    private static final int PAGE_SIZE = 256;
+
+    /**
+     * 缓存的字体设置数，切换字号时保留之前的几个
+     */
+    private static final int MAX_FONT_COUNT = 4;
+
+    private static final LinkedHashMap<FontKey, float[][]> sFontPages = new LinkedHashMap<FontKey, float[][]>(8, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<FontKey, float[][]> eldest) {
+            return size() > MAX_FONT_COUNT;
+        }
+    };
+
+    /**
+     * 查找用的画笔设置，只在持有 sFontPages 锁时使用，查找时不再创建新的 FontKey
+     */
+    private static final FontKey sProbeKey = new FontKey();
+
+    /**
+     * 影响字宽的画笔设置
+     */
+    private static class FontKey {
+        /**
+         * 影响字宽的画笔标志
+         */
+        private static final int TEXT_FLAGS = Paint.SUBPIXEL_TEXT_FLAG | Paint.LINEAR_TEXT_FLAG;
+
+        Typeface mTypeface;
+        float mTextSize;
+        float mTextScaleX;
+        float mTextSkewX;
+        boolean mFakeBoldText;
+        float mLetterSpacing;
+        int mTextFlags;
+        /**
+         * 语言，同一个字在不同语言中可能使用不同的字形
+         */
+        Object mTextLocale;
+        String mFontFeatureSettings;
+        String mFontVariationSettings;
+
+        FontKey() {
+        }
+
+        FontKey(FontKey fontKey) {
+            this.mTypeface = fontKey.mTypeface;
+            this.mTextSize = fontKey.mTextSize;
+            this.mTextScaleX = fontKey.mTextScaleX;
+            this.mTextSkewX = fontKey.mTextSkewX;
+            this.mFakeBoldText = fontKey.mFakeBoldText;
+            this.mLetterSpacing = fontKey.mLetterSpacing;
+            this.mTextFlags = fontKey.mTextFlags;
+            this.mTextLocale = fontKey.mTextLocale;
+            this.mFontFeatureSettings = fontKey.mFontFeatureSettings;
+            this.mFontVariationSettings = fontKey.mFontVariationSettings;
+        }
+
+        /**
+         * 读取画笔设置
+         *
+         * @param paint
+         */
+        void set(Paint paint) {
+            this.mTypeface = paint.getTypeface();
+            this.mTextSize = paint.getTextSize();
+            this.mTextScaleX = paint.getTextScaleX();
+            this.mTextSkewX = paint.getTextSkewX();
+            this.mFakeBoldText = paint.isFakeBoldText();
+            this.mLetterSpacing = Build.VERSION.SDK_INT >= 21 ? paint.getLetterSpacing() : 0;
+            this.mTextFlags = paint.getFlags() & TEXT_FLAGS;
+            if (Build.VERSION.SDK_INT >= 24) {
+                this.mTextLocale = paint.getTextLocales();
+            } else if (Build.VERSION.SDK_INT >= 17) {
+                this.mTextLocale = paint.getTextLocale();
+            } else {
+                this.mTextLocale = null;
+            }
+            this.mFontFeatureSettings = Build.VERSION.SDK_INT >= 21 ? paint.getFontFeatureSettings() : null;
+            this.mFontVariationSettings = Build.VERSION.SDK_INT >= 26 ? paint.getFontVariationSettings() : null;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof FontKey)) return false;
+            FontKey fontKey = (FontKey) o;
+            return mTypeface == fontKey.mTypeface
+                    && mTextSize == fontKey.mTextSize
+                    && mTextScaleX == fontKey.mTextScaleX
+                    && mTextSkewX == fontKey.mTextSkewX
+                    && mFakeBoldText == fontKey.mFakeBoldText
+                    && mLetterSpacing == fontKey.mLetterSpacing
+                    && mTextFlags == fontKey.mTextFlags
+                    && equals(mTextLocale, fontKey.mTextLocale)
+                    && equals(mFontFeatureSettings, fontKey.mFontFeatureSettings)
+                    && equals(mFontVariationSettings, fontKey.mFontVariationSettings);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = mTypeface != null ? mTypeface.hashCode() : 0;
+            result = 31 * result + Float.floatToIntBits(mTextSize);
+            result = 31 * result + Float.floatToIntBits(mTextScaleX);
+            result = 31 * result + Float.floatToIntBits(mTextSkewX);
+            result = 31 * result + (mFakeBoldText ? 1 : 0);
+            result = 31 * result + Float.floatToIntBits(mLetterSpacing);
+            result = 31 * result + mTextFlags;
+            result = 31 * result + (mTextLocale != null ? mTextLocale.hashCode() : 0);
+            result = 31 * result + (mFontFeatureSettings != null ? mFontFeatureSettings.hashCode() : 0);
+            result = 31 * result + (mFontVariationSettings != null ? mFontVariationSettings.hashCode() : 0);
+            return result;
+        }
+
+        private static boolean equals(Object a, Object b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+
+    /**
+     * 获取文本每个字的宽度
+     *
+     * @param paint
+     * @param text
+     * @param advances 每个字的宽度，长度不小于文本长度
+     * @return 文本总宽度
+     */
+    public static float getTextAdvances(Paint paint, String text, float[] advances) {
+        int length = text.length();
+        float[][] pages;
+        boolean cached = true;
+        synchronized (sFontPages) {
+            sProbeKey.set(paint);
+            pages = sFontPages.get(sProbeKey);
+            if (pages == null) {
+                // 只有新的画笔设置才复制一个保存到缓存
+                pages = new float[(Character.MAX_VALUE + 1) / PAGE_SIZE][];
+                sFontPages.put(new FontKey(sProbeKey), pages);
+            }
+            for (int i = 0; i < length; i++) {
+                char c = text.charAt(i);
+                float[] page = pages[c / PAGE_SIZE];
+                if (!isCacheable(c) || page == null || Float.isNaN(page[c % PAGE_SIZE])) {
+                    cached = false;
+                    break;
+                }
+                advances[i] = page[c % PAGE_SIZE];
+            }
+        }
+        if (!cached) {
+            // 整行测量一次，测量时不持有锁，其它线程可以同时查询和测量
+            paint.getTextWidths(text, advances);
+            synchronized (sFontPages) {
+                for (int i = 0; i < length; i++) {
+                    char c = text.charAt(i);
+                    if (!isCacheable(c)) continue;
+                    float[] page = pages[c / PAGE_SIZE];
+                    if (page == null) {
+                        page = new float[PAGE_SIZE];
+                        Arrays.fill(page, Float.NaN);
+                        pages[c / PAGE_SIZE] = page;
+                    }
+                    page[c % PAGE_SIZE] = advances[i];
+                }
+            }
+        }
+        float width = 0;
+        for (int i = 0; i < length; i++) {
+            width += advances[i];
+        }
+        return width;
+    }
+
+    /**
+     * 获取文本宽度
+     *
+     * @param paint
+     * @param text
+     * @return
+     */
+    public static float getTextWidth(Paint paint, String text) {
+        return getTextAdvances(paint, text, new float[text.length()]);
+    }
+
+    /**
+     * 清空缓存，更换字体文件等画笔设置以外的变化时调用
+     */
+    public static void clear() {
+        synchronized (sFontPages) {
+            sFontPages.clear();
+        }
+    }
+
+    /**
+     * 字宽是否与前后文无关
+     *
+     * @param c
+     * @return
+     */
+    private static boolean isCacheable(char c) {
+        // 部首、假名、注音、汉字（不含中日韩标点，标点可能被挤压为半宽）
+        if (c >= 0x2E80 && c <= 0x2FFF) return true;
+        if (c >= 0x3040 && c <= 0x9FFF) return true;
+        // 谚文音节
+        if (c >= 0xAC00 && c <= 0xD7A3) return true;
+        // 全角数字和字母
+        return (c >= 0xFF10 && c <= 0xFF19) || (c >= 0xFF21 && c <= 0xFF3A) || (c >= 0xFF41 && c <= 0xFF5A);
+    }
+}
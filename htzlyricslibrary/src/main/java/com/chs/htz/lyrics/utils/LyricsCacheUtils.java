@@ -0,0 +1,259 @@
+package com.chs.htz.lyrics.utils;
+
+import com.chs.htz.lyrics.model.LyricsExtraParser;
+import com.chs.htz.lyrics.model.LyricsInfo;
+import com.chs.htz.lyrics.model.LyricsLineInfo;
+import com.chs.htz.lyrics.model.TranslateLrcLineInfo;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 已解析歌词缓存
+ * <p>
+ * 进程内共享，按文件路径、修改时间和长度（或者按歌词内容）缓存解析后的歌词数据，
+ * 超出内存预算时按最近最少使用淘汰。缓存的歌词数据是共享的，取出后不要修改
+ */
+public class LyricsCacheUtils {
+
+    /**
+     * 默认内存预算 8M
+     */
+    private static final long DEFAULT_MAX_MEMORY_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * 对象头及引用的估算大小
+     */
+    private static final int OBJECT_OVERHEAD = 16;
+    private static final int LINE_OVERHEAD = 96;
+    private static final int WORD_OVERHEAD = 48;
+
+    private static final LinkedHashMap<String, Entry> sCache = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+    private static long sMaxMemorySize = DEFAULT_MAX_MEMORY_SIZE;
+    private static long sMemorySize = 0;
+
+    private static long sHitCount = 0;
+    private static long sMissCount = 0;
+    private static long sEvictionCount = 0;
+
+    /**
+     * 缓存项
+     */
+    private static class Entry {
+        final LyricsInfo mLyricsInfo;
+        final long mSize;
+
+        Entry(LyricsInfo lyricsInfo, long size) {
+            this.mLyricsInfo = lyricsInfo;
+            this.mSize = size;
+        }
+    }
+
+    /**
+     * 获取歌词内容对应的缓存key，内容不同时key也不同
+     *
+     * @param fileName 含后缀名的文件名称，决定歌词格式
+     * @param content  歌词内容
+     * @return
+     */
+    public static String getContentKey(String fileName, byte[] content) {
+        // 64位FNV-1a
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : content) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return "content:" + fileName + "@" + content.length + ":" + Long.toHexString(hash);
+    }
+
+    /**
+     * 获取文件对应的缓存key，文件修改后key也会改变
+     *
+     * @param lyricsFile 歌词文件
+     * @return
+     */
+    public static String getFileKey(File lyricsFile) {
+        return "file:" + lyricsFile.getAbsolutePath() + "@" + lyricsFile.lastModified() + ":" + lyricsFile.length();
+    }
+
+    /**
+     * 获取缓存的歌词
+     *
+     * @param key 缓存key
+     * @return 没有缓存时返回null
+     */
+    public static synchronized LyricsInfo get(String key) {
+        if (key == null) return null;
+        Entry entry = sCache.get(key);
+        if (entry == null) {
+            sMissCount++;
+            return null;
+        }
+        sHitCount++;
+        return entry.mLyricsInfo;
+    }
+
+    /**
+     * 缓存歌词
+     *
+     * @param key        缓存key
+     * @param lyricsInfo 歌词数据
+     */
+    public static synchronized void put(String key, LyricsInfo lyricsInfo) {
+        if (key == null || lyricsInfo == null) return;
+        long size = estimateSize(lyricsInfo);
+        Entry old = sCache.remove(key);
+        if (old != null) {
+            sMemorySize -= old.mSize;
+        }
+        // 单个歌词超出预算时不缓存
+        if (size > sMaxMemorySize) return;
+        sCache.put(key, new Entry(lyricsInfo, size));
+        sMemorySize += size;
+        trimToSize(sMaxMemorySize);
+    }
+
+    /**
+     * 删除缓存
+     *
+     * @param key 缓存key
+     */
+    public static synchronized void remove(String key) {
+        if (key == null) return;
+        Entry old = sCache.remove(key);
+        if (old != null) {
+            sMemorySize -= old.mSize;
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public static synchronized void clear() {
+        sCache.clear();
+        sMemorySize = 0;
+    }
+
+    /**
+     * 设置内存预算
+     *
+     * @param maxMemorySize 字节数
+     */
+    public static synchronized void setMaxMemorySize(long maxMemorySize) {
+        sMaxMemorySize = maxMemorySize;
+        trimToSize(maxMemorySize);
+    }
+
+    public static synchronized long getMaxMemorySize() {
+        return sMaxMemorySize;
+    }
+
+    /**
+     * 获取当前缓存估算占用的内存
+     *
+     * @return
+     */
+    public static synchronized long getMemorySize() {
+        return sMemorySize;
+    }
+
+    public static synchronized int getCount() {
+        return sCache.size();
+    }
+
+    public static synchronized long getHitCount() {
+        return sHitCount;
+    }
+
+    public static synchronized long getMissCount() {
+        return sMissCount;
+    }
+
+    public static synchronized long getEvictionCount() {
+        return sEvictionCount;
+    }
+
+    /**
+     * 重置统计
+     */
+    public static synchronized void resetStatistics() {
+        sHitCount = 0;
+        sMissCount = 0;
+        sEvictionCount = 0;
+    }
+
+    /**
+     * 淘汰最近最少使用的缓存直到不超过预算
+     *
+     * @param maxMemorySize
+     */
+    private static void trimToSize(long maxMemorySize) {
+        Iterator<Map.Entry<String, Entry>> it = sCache.entrySet().iterator();
+        while (sMemorySize > maxMemorySize && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            sMemorySize -= eldest.getValue().mSize;
+            it.remove();
+            sEvictionCount++;
+        }
+    }
+
+    /**
+     * 根据行数和字数估算歌词数据占用的内存
+     *
+     * @param lyricsInfo
+     * @return
+     */
+    public static long estimateSize(LyricsInfo lyricsInfo) {
+        long size = OBJECT_OVERHEAD;
+        TreeMap<Integer, LyricsLineInfo> lyricsLineInfos = lyricsInfo.getLyricsLineInfoTreeMap();
+        if (lyricsLineInfos != null) {
+            for (LyricsLineInfo lyricsLineInfo : lyricsLineInfos.values()) {
+                size += estimateSize(lyricsLineInfo);
+            }
+        }
+        LyricsExtraParser extraParser = lyricsInfo.getExtraParser();
+        if (extraParser != null) {
+            // 额外歌词还没有解析时只保存原始内容，不为了估算大小而解析
+            size += OBJECT_OVERHEAD + 2L * extraParser.getRawLength();
+            return size;
+        }
+        List<TranslateLrcLineInfo> translateLrcLineInfos = lyricsInfo.getTranslateLrcLineInfos();
+        if (translateLrcLineInfos != null) {
+            for (TranslateLrcLineInfo translateLrcLineInfo : translateLrcLineInfos) {
+                size += LINE_OVERHEAD + estimateSize(translateLrcLineInfo.getLineLyrics());
+            }
+        }
+        List<LyricsLineInfo> transliterationLrcLineInfos = lyricsInfo.getTransliterationLrcLineInfos();
+        if (transliterationLrcLineInfos != null) {
+            for (LyricsLineInfo lyricsLineInfo : transliterationLrcLineInfos) {
+                size += estimateSize(lyricsLineInfo);
+            }
+        }
+        return size;
+    }
+
+    private static long estimateSize(LyricsLineInfo lyricsLineInfo) {
+        if (lyricsLineInfo.isLazyWords()) {
+            // 按需解析的行只保存原始行内容，不为了估算大小而解析字
+            return LINE_OVERHEAD + estimateSize(lyricsLineInfo.getRawLine());
+        }
+        long size = LINE_OVERHEAD + estimateSize(lyricsLineInfo.getLineLyrics());
+        String[] lyricsWords = lyricsLineInfo.getLyricsWords();
+        if (lyricsWords != null) {
+            for (String lyricsWord : lyricsWords) {
+                // 字符串、时间和偏移
+                size += WORD_OVERHEAD + estimateSize(lyricsWord) + 8;
+            }
+        }
+        return size;
+    }
+
+    private static long estimateSize(String text) {
+        return text == null ? 0 : OBJECT_OVERHEAD + 2L * text.length();
+    }
+}
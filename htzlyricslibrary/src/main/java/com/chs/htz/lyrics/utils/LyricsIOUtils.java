@@ -3,6 +3,8 @@ package com.chs.htz.lyrics.utils;
 
 import com.chs.htz.lyrics.formats.LyricsFileReader;
 import com.chs.htz.lyrics.formats.LyricsFileWriter;
+import com.chs.htz.lyrics.formats.hbl.HblLyricsFileReader;
+import com.chs.htz.lyrics.formats.hbl.HblLyricsFileWriter;
 import com.chs.htz.lyrics.formats.hrc.HrcLyricsFileReader;
 import com.chs.htz.lyrics.formats.hrc.HrcLyricsFileWriter;
 import com.chs.htz.lyrics.formats.krc.KrcLyricsFileReader;
@@ -13,33 +15,116 @@ import com.chs.htz.lyrics.formats.lrc.LrcLyricsFileReader;
 import com.chs.htz.lyrics.formats.lrc.LrcLyricsFileWriter;
 import com.chs.htz.lyrics.formats.lrcwy.WYLyricsFileReader;
 
+import com.chs.htz.lyrics.formats.lrcwy.WYLyricsFileWriter;
+
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 歌词io操作
+ * <p>
+ * 歌词格式按后缀名注册，可以在运行时添加新的格式。读取文件时先根据文件开头的内容识别格式，
+ * 后缀名不对的文件也能找到正确的读取器，识别结果按文件缓存
  * @author chaihuasong
  * 
  */
 public class LyricsIOUtils {
-	private static ArrayList<LyricsFileReader> readers;
-	private static ArrayList<LyricsFileWriter> writers;
+	/**
+	 * 识别格式时读取的文件开头字节数
+	 */
+	private static final int SNIFF_SIZE = 4096;
+	/**
+	 * 缓存的识别结果数
+	 */
+	private static final int MAX_FORMAT_CACHE_SIZE = 64;
+
+	/**
+	 * 后缀名 -> 读取器/保存器，注册时整体替换（写时复制），读取时不需要加锁
+	 */
+	private static volatile LinkedHashMap<String, LyricsFileReader> sReaders = new LinkedHashMap<String, LyricsFileReader>();
+	private static volatile LinkedHashMap<String, LyricsFileWriter> sWriters = new LinkedHashMap<String, LyricsFileWriter>();
+
+	/**
+	 * 文件key -> 识别出的格式后缀名
+	 */
+	private static final LinkedHashMap<String, String> sFormatCache = new LinkedHashMap<String, String>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+			return size() > MAX_FORMAT_CACHE_SIZE;
+		}
+	};
+
+	/**
+	 * 通过本类设置的读取器参数，为null时没有设置过，使用读取器自己的设置。之后注册的读取器也使用这些设置
+	 */
+	private static Boolean sLazyWords;
+	private static Integer sExtraLyricsMode;
+	private static Boolean sCharsetDetection;
+
+	/**
+	 * 识别不出格式且后缀名没有注册时使用的读取器
+	 */
+	private static final LyricsFileReader sDefaultReader = new LrcLyricsFileReader();
 
 	static {
-		readers = new ArrayList<LyricsFileReader>();
-		readers.add(new HrcLyricsFileReader());
-		readers.add(new KscLyricsFileReader());
-		readers.add(new KrcLyricsFileReader());
-		readers.add(new LrcLyricsFileReader());
-		readers.add(new WYLyricsFileReader());
-		//
-		writers = new ArrayList<LyricsFileWriter>();
-		writers.add(new HrcLyricsFileWriter());
-		writers.add(new KscLyricsFileWriter());
-		writers.add(new KrcLyricsFileWriter());
-		writers.add(new LrcLyricsFileWriter());
-		readers.add(new WYLyricsFileReader());
+		registerLyricsFormat(new HrcLyricsFileReader(), new HrcLyricsFileWriter());
+		registerLyricsFormat(new KscLyricsFileReader(), new KscLyricsFileWriter());
+		registerLyricsFormat(new KrcLyricsFileReader(), new KrcLyricsFileWriter());
+		registerLyricsFormat(new LrcLyricsFileReader(), new LrcLyricsFileWriter());
+		registerLyricsFormat(new WYLyricsFileReader(), new WYLyricsFileWriter());
+		registerLyricsFormat(new HblLyricsFileReader(), new HblLyricsFileWriter());
+	}
+
+	/**
+	 * 注册歌词格式，后缀名相同时替换原有的读取器和保存器
+	 *
+	 * @param lyricsFileReader 读取器
+	 * @param lyricsFileWriter 保存器，为null时只注册读取器
+	 */
+	public static void registerLyricsFormat(LyricsFileReader lyricsFileReader, LyricsFileWriter lyricsFileWriter) {
+		registerLyricsFileReader(lyricsFileReader);
+		if (lyricsFileWriter != null) {
+			registerLyricsFileWriter(lyricsFileWriter);
+		}
+	}
+
+	/**
+	 * 注册歌词读取器
+	 *
+	 * @param lyricsFileReader
+	 */
+	public static synchronized void registerLyricsFileReader(LyricsFileReader lyricsFileReader) {
+		applySettings(lyricsFileReader);
+		LinkedHashMap<String, LyricsFileReader> readers = new LinkedHashMap<String, LyricsFileReader>(sReaders);
+		readers.put(lyricsFileReader.getSupportFileExt().toLowerCase(), lyricsFileReader);
+		sReaders = readers;
+		clearFormatCache();
+	}
+
+	/**
+	 * 注册歌词保存器
+	 *
+	 * @param lyricsFileWriter
+	 */
+	public static synchronized void registerLyricsFileWriter(LyricsFileWriter lyricsFileWriter) {
+		LinkedHashMap<String, LyricsFileWriter> writers = new LinkedHashMap<String, LyricsFileWriter>(sWriters);
+		writers.put(lyricsFileWriter.getSupportFileExt().toLowerCase(), lyricsFileWriter);
+		sWriters = writers;
+	}
+
+	/**
+	 * 清空格式识别结果的缓存
+	 */
+	public static void clearFormatCache() {
+		synchronized (sFormatCache) {
+			sFormatCache.clear();
+		}
 	}
 
 	/**
@@ -48,21 +133,106 @@ public class LyricsIOUtils {
 	 * @return
 	 */
 	public static List<String> getSupportLyricsExts() {
-		List<String> lrcExts = new ArrayList<String>();
-		for (LyricsFileReader lyricsFileReader : readers) {
-			lrcExts.add(lyricsFileReader.getSupportFileExt());
+		return new ArrayList<String>(sReaders.keySet());
+	}
+
+	/**
+	 * 设置所有歌词读取器是否按需解析动感歌词的字，包括之后注册的读取器
+	 *
+	 * @param lazyWords
+	 * @see LyricsFileReader#setLazyWords(boolean)
+	 */
+	public static synchronized void setLazyWords(boolean lazyWords) {
+		sLazyWords = lazyWords;
+		applySettings();
+	}
+
+	/**
+	 * 设置所有歌词读取器额外歌词（翻译歌词、音译歌词）的解析方式，包括之后注册的读取器
+	 *
+	 * @param extraLyricsMode
+	 * @see LyricsFileReader#setExtraLyricsMode(int)
+	 */
+	public static synchronized void setExtraLyricsMode(int extraLyricsMode) {
+		sExtraLyricsMode = extraLyricsMode;
+		applySettings();
+	}
+
+	/**
+	 * 设置所有歌词读取器是否自动识别文本歌词的编码，包括之后注册的读取器
+	 *
+	 * @param charsetDetection
+	 * @see LyricsFileReader#setCharsetDetection(boolean)
+	 */
+	public static synchronized void setCharsetDetection(boolean charsetDetection) {
+		sCharsetDetection = charsetDetection;
+		applySettings();
+	}
+
+	/**
+	 * 把设置应用到已注册的读取器和默认读取器
+	 */
+	private static void applySettings() {
+		for (LyricsFileReader lyricsFileReader : sReaders.values()) {
+			applySettings(lyricsFileReader);
+		}
+		applySettings(sDefaultReader);
+	}
+
+	private static void applySettings(LyricsFileReader lyricsFileReader) {
+		if (sLazyWords != null) {
+			lyricsFileReader.setLazyWords(sLazyWords);
+		}
+		if (sExtraLyricsMode != null) {
+			lyricsFileReader.setExtraLyricsMode(sExtraLyricsMode);
+		}
+		if (sCharsetDetection != null) {
+			lyricsFileReader.setCharsetDetection(sCharsetDetection);
 		}
-		return lrcExts;
 	}
 
 	/**
-	 * 获取歌词文件读取器
+	 * 获取歌词文件读取器，根据文件内容识别格式，识别不出时按后缀名
 	 * 
 	 * @param file
 	 * @return
 	 */
 	public static LyricsFileReader getLyricsFileReader(File file) {
-		return getLyricsFileReader(file.getName());
+		String key = LyricsCacheUtils.getFileKey(file);
+		String ext;
+		synchronized (sFormatCache) {
+			ext = sFormatCache.get(key);
+		}
+		if (ext != null) {
+			LyricsFileReader lyricsFileReader = sReaders.get(ext);
+			if (lyricsFileReader != null) {
+				return lyricsFileReader;
+			}
+		}
+		byte[] header = new byte[SNIFF_SIZE];
+		int length;
+		try {
+			length = readHeader(file, header);
+		} catch (IOException e) {
+			// 读不到内容时交给读取器报错
+			return getLyricsFileReader(file.getName());
+		}
+		LyricsFileReader lyricsFileReader = getLyricsFileReader(header, length, file.getName());
+		synchronized (sFormatCache) {
+			sFormatCache.put(key, lyricsFileReader.getSupportFileExt().toLowerCase());
+		}
+		return lyricsFileReader;
+	}
+
+	/**
+	 * 获取歌词文件读取器，根据文件内容识别格式，识别不出时按后缀名
+	 *
+	 * @param content  文件内容
+	 * @param fileName 含后缀名的文件名称
+	 * @return
+	 */
+	public static LyricsFileReader getLyricsFileReader(byte[] content, String fileName) {
+		return getLyricsFileReader(content, Math.min(content.length, SNIFF_SIZE), fileName);
 	}
 
 	/**
@@ -73,12 +243,48 @@ public class LyricsIOUtils {
 	 */
 	public static LyricsFileReader getLyricsFileReader(String fileName) {
 		String ext = FileUtils.getFileExt(fileName);
-		for (LyricsFileReader lyricsFileReader : readers) {
-			if (lyricsFileReader.isFileSupported(ext)) {
+		LyricsFileReader lyricsFileReader = sReaders.get(ext);
+		if (lyricsFileReader != null) {
+			return lyricsFileReader;
+		}
+		return sDefaultReader;
+	}
+
+	/**
+	 * 先检查后缀名对应的格式，内容不符合时再检查其它格式
+	 */
+	private static LyricsFileReader getLyricsFileReader(byte[] header, int length, String fileName) {
+		LinkedHashMap<String, LyricsFileReader> readers = sReaders;
+		LyricsFileReader extReader = readers.get(FileUtils.getFileExt(fileName));
+		if (extReader != null && extReader.isContentSupported(header, length)) {
+			return extReader;
+		}
+		for (LyricsFileReader lyricsFileReader : readers.values()) {
+			if (lyricsFileReader != extReader && lyricsFileReader.isContentSupported(header, length)) {
 				return lyricsFileReader;
 			}
 		}
-		return new LrcLyricsFileReader();
+		return getLyricsFileReader(fileName);
+	}
+
+	/**
+	 * 读取文件开头的内容
+	 *
+	 * @return 读取到的字节数
+	 */
+	private static int readHeader(File file, byte[] header) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			int length = 0;
+			while (length < header.length) {
+				int len = in.read(header, length, header.length - length);
+				if (len == -1) break;
+				length += len;
+			}
+			return length;
+		} finally {
+			in.close();
+		}
 	}
 
 	/**
@@ -99,10 +305,9 @@ public class LyricsIOUtils {
 	 */
 	public static LyricsFileWriter getLyricsFileWriter(String fileName) {
 		String ext = FileUtils.getFileExt(fileName);
-		for (LyricsFileWriter lyricsFileWriter : writers) {
-			if (lyricsFileWriter.isFileSupported(ext)) {
-				return lyricsFileWriter;
-			}
+		LyricsFileWriter lyricsFileWriter = sWriters.get(ext);
+		if (lyricsFileWriter != null) {
+			return lyricsFileWriter;
 		}
 		return new LrcLyricsFileWriter();
 	}
@@ -6,8 +6,12 @@ import android.graphics.Paint;
 import android.graphics.Shader;
 import android.text.TextUtils;
 
+import com.chs.htz.lyrics.formats.hbl.HblLibraryFile;
+import com.chs.htz.lyrics.model.LyricsCursor;
 import com.chs.htz.lyrics.model.LyricsInfo;
 import com.chs.htz.lyrics.model.LyricsLineInfo;
+import com.chs.htz.lyrics.model.LyricsPosition;
+import com.chs.htz.lyrics.model.LyricsTimeline;
 import com.chs.htz.lyrics.model.TranslateLrcLineInfo;
 
 import java.io.File;
@@ -92,7 +96,6 @@ public class LyricsUtils {
     public static void clearAllCache() {
         clearGradientCache();
         clearTextHeightCache();
-        resetLineNumberCache();
     }
 
     /**
@@ -397,6 +400,19 @@ public class LyricsUtils {
         return null;
     }
 
+    /**
+     * 从歌词库文件中获取歌词，只解码查找到的歌词
+     *
+     * @param hash        歌曲hash（打包时不含后缀名的歌词文件名）
+     * @param libraryFile 由 HblLibraryPacker 生成的歌词库文件
+     * @return 没有时返回null
+     * @throws Exception
+     */
+    public static LyricsInfo getLrcFromLibrary(String hash, File libraryFile) throws Exception {
+        if (libraryFile == null || !libraryFile.exists()) return null;
+        return HblLibraryFile.open(libraryFile).getLyricsInfo(hash);
+    }
+
     /**
      * 从默认歌词中获取翻译歌词所需的歌词字时间(注：不支持lrc歌词获取歌词的字时间)
      *
@@ -564,20 +580,16 @@ public class LyricsUtils {
     }
 
     /**
-     * 缓存上次查询的行号，用于优化查询性能
-     */
-    private static int sLastLineNumber = 0;
-
-    /**
-     * 重置行号缓存（切换歌曲时调用）
+     * 重置行号缓存
+     * <p>
+     * 行号缓存已经移到每个视图各自持有的 {@link LyricsCursor} 中，此方法不再有作用
      */
+    @Deprecated
     public static void resetLineNumberCache() {
-        sLastLineNumber = 0;
     }
 
     /**
      * 通过播放的进度，获取所唱歌词行数
-     * 优化：从上次行号附近开始查询，大多数情况下只需要O(1)时间
      *
      * @param lyricsType        歌词类型 LyricsInfo.LRC OR LyricsInfo.DYNAMIC
      * @param lyricsLineTreeMap 歌词集合
@@ -592,50 +604,20 @@ public class LyricsUtils {
         //添加歌词增量
         long newPlayingTime = curPlayingTime + playOffset;
 
-        // 确保缓存行号在有效范围内
-        if (sLastLineNumber < 0 || sLastLineNumber >= size) {
-            sLastLineNumber = 0;
-        }
-
         if (lyricsType == LyricsInfo.LRC) {
-            // LRC歌词：优化查询，从上次行号开始
             return getLineNumberLrc(lyricsLineTreeMap, newPlayingTime, size);
         } else if (lyricsType == LyricsInfo.DYNAMIC) {
-            // 动感歌词：优化查询，从上次行号开始
             return getLineNumberDynamic(lyricsLineTreeMap, newPlayingTime, size);
         }
         return 0;
     }
 
     /**
-     * LRC歌词行号查询优化
+     * LRC歌词行号查询
      */
     private static int getLineNumberLrc(TreeMap<Integer, LyricsLineInfo> lyricsLineTreeMap, long newPlayingTime, int size) {
-        // 快速检查：当前时间是否在上次行号范围内
-        LyricsLineInfo lastLine = lyricsLineTreeMap.get(sLastLineNumber);
-        if (lastLine != null) {
-            long startTime = lastLine.getStartTime();
-            long nextStartTime = (sLastLineNumber + 1 < size) ?
-                    lyricsLineTreeMap.get(sLastLineNumber + 1).getStartTime() : Long.MAX_VALUE;
-
-            if (newPlayingTime >= startTime && newPlayingTime < nextStartTime) {
-                return sLastLineNumber;
-            }
-
-            // 检查是否是下一行
-            if (sLastLineNumber + 1 < size && newPlayingTime >= nextStartTime) {
-                long nextNextStartTime = (sLastLineNumber + 2 < size) ?
-                        lyricsLineTreeMap.get(sLastLineNumber + 2).getStartTime() : Long.MAX_VALUE;
-                if (newPlayingTime < nextNextStartTime) {
-                    sLastLineNumber = sLastLineNumber + 1;
-                    return sLastLineNumber;
-                }
-            }
-        }
-
         // 时间在第一行之前
         if (newPlayingTime < lyricsLineTreeMap.get(0).getStartTime()) {
-            sLastLineNumber = 0;
             return 0;
         }
 
@@ -655,46 +637,16 @@ public class LyricsUtils {
                 high = mid - 1;
             }
         }
-
-        sLastLineNumber = result;
         return result;
     }
 
     /**
-     * 动感歌词行号查询优化
+     * 动感歌词行号查询
      */
     private static int getLineNumberDynamic(TreeMap<Integer, LyricsLineInfo> lyricsLineTreeMap, long newPlayingTime, int size) {
-        // 快速检查：当前时间是否在上次行号范围内
-        LyricsLineInfo lastLine = lyricsLineTreeMap.get(sLastLineNumber);
-        if (lastLine != null) {
-            long startTime = lastLine.getStartTime();
-            long endTime = lastLine.getEndTime();
-
-            // 在当前行的时间范围内
-            if (newPlayingTime >= startTime && newPlayingTime <= endTime) {
-                return sLastLineNumber;
-            }
-
-            // 在当前行结束和下一行开始之间（间隙）
-            if (sLastLineNumber + 1 < size) {
-                long nextStartTime = lyricsLineTreeMap.get(sLastLineNumber + 1).getStartTime();
-                if (newPlayingTime > endTime && newPlayingTime <= nextStartTime) {
-                    return sLastLineNumber;
-                }
-
-                // 检查下一行
-                LyricsLineInfo nextLine = lyricsLineTreeMap.get(sLastLineNumber + 1);
-                if (newPlayingTime >= nextLine.getStartTime() && newPlayingTime <= nextLine.getEndTime()) {
-                    sLastLineNumber = sLastLineNumber + 1;
-                    return sLastLineNumber;
-                }
-            }
-        }
-
         // 已经过了最后一行
         LyricsLineInfo lastLineInfo = lyricsLineTreeMap.get(size - 1);
         if (newPlayingTime >= lastLineInfo.getEndTime()) {
-            sLastLineNumber = size - 1;
             return size - 1;
         }
 
@@ -711,7 +663,6 @@ public class LyricsUtils {
                 result = mid;
                 if (newPlayingTime <= midLine.getEndTime()) {
                     // 找到精确匹配
-                    sLastLineNumber = mid;
                     return mid;
                 }
                 low = mid + 1;
@@ -719,11 +670,36 @@ public class LyricsUtils {
                 high = mid - 1;
             }
         }
-
-        sLastLineNumber = result;
         return result;
     }
 
+    /**
+     * 通过播放的进度，基于歌词时间轴获取所唱歌词行数
+     *
+     * @param lyricsTimeline 歌词时间轴
+     * @param curPlayingTime 当前播放进度
+     * @param playOffset     时间补偿值
+     * @return
+     */
+    public static int getLineNumber(LyricsTimeline lyricsTimeline, long curPlayingTime, long playOffset) {
+        if (lyricsTimeline == null || lyricsTimeline.isEmpty()) return 0;
+        return lyricsTimeline.getLineNumber(curPlayingTime + playOffset);
+    }
+
+    /**
+     * 通过播放的进度，基于歌词时间轴和行游标获取所唱歌词行数，正常播放时只需要O(1)时间
+     *
+     * @param lyricsCursor   行游标
+     * @param lyricsTimeline 歌词时间轴
+     * @param curPlayingTime 当前播放进度
+     * @param playOffset     时间补偿值
+     * @return
+     */
+    public static int getLineNumber(LyricsCursor lyricsCursor, LyricsTimeline lyricsTimeline, long curPlayingTime, long playOffset) {
+        if (lyricsCursor == null) return getLineNumber(lyricsTimeline, curPlayingTime, playOffset);
+        return lyricsCursor.getLineNumber(lyricsTimeline, curPlayingTime, playOffset);
+    }
+
 
     /**
      * 获取当前时间对应的行歌词文本
@@ -737,6 +713,26 @@ public class LyricsUtils {
     public static String getLineLrc(int lyricsType, TreeMap<Integer, LyricsLineInfo> lrcLineInfos, long curPlayingTime, long playOffset) {
         if (lrcLineInfos == null) return null;
         int lyricsLineNum = getLineNumber(lyricsType, lrcLineInfos, curPlayingTime, playOffset);
+        return getLineLrc(lrcLineInfos, lyricsLineNum);
+    }
+
+    /**
+     * 基于歌词时间轴和行游标获取当前时间对应的行歌词文本
+     *
+     * @param lyricsCursor   行游标
+     * @param lyricsTimeline 歌词时间轴
+     * @param lrcLineInfos   歌词集合
+     * @param curPlayingTime 当前播放进度
+     * @param playOffset     时间补偿值
+     * @return
+     */
+    public static String getLineLrc(LyricsCursor lyricsCursor, LyricsTimeline lyricsTimeline, TreeMap<Integer, LyricsLineInfo> lrcLineInfos, long curPlayingTime, long playOffset) {
+        if (lrcLineInfos == null || lyricsTimeline == null) return null;
+        int lyricsLineNum = getLineNumber(lyricsCursor, lyricsTimeline, curPlayingTime, playOffset);
+        return getLineLrc(lrcLineInfos, lyricsLineNum);
+    }
+
+    private static String getLineLrc(TreeMap<Integer, LyricsLineInfo> lrcLineInfos, int lyricsLineNum) {
         if (lyricsLineNum >= lrcLineInfos.size())
             return null;
 
@@ -759,22 +755,27 @@ public class LyricsUtils {
     public static String getSplitLineLrc(int lyricsType, TreeMap<Integer, LyricsLineInfo> lrcLineInfos, long curPlayingTime, long playOffset) {
         if (lrcLineInfos == null) return null;
         int lyricsLineNum = getLineNumber(lyricsType, lrcLineInfos, curPlayingTime, playOffset);
-        if (lyricsLineNum >= lrcLineInfos.size())
-            return null;
-        int splitLyricsLineNum = -1;
-        if (lyricsType == LyricsInfo.DYNAMIC) {
-            splitLyricsLineNum = getSplitDynamicLyricsLineNum(lrcLineInfos, lyricsLineNum, curPlayingTime, playOffset);
-        } else {
-            splitLyricsLineNum = getSplitLrcLyricsLineNum(lrcLineInfos, lyricsLineNum, curPlayingTime, playOffset);
-        }
-
-        List<LyricsLineInfo> splitLyricsLineInfos = lrcLineInfos.get(lyricsLineNum).getSplitLyricsLineInfos();
-        if (splitLyricsLineNum == -1 || splitLyricsLineNum >= splitLyricsLineInfos.size()) {
-            return null;
-        }
+        return getSplitLineLrc(lyricsType, lrcLineInfos, lyricsLineNum, curPlayingTime, playOffset);
+    }
 
-        LyricsLineInfo lyricsLineInfo = splitLyricsLineInfos.get(splitLyricsLineNum);
+    /**
+     * 基于歌词时间轴和行游标获取分割后歌词的当前时间对应的行歌词文本
+     *
+     * @param lyricsCursor   行游标
+     * @param lyricsTimeline 歌词时间轴
+     * @param lrcLineInfos   歌词集合
+     * @param curPlayingTime 当前播放进度
+     * @param playOffset     时间补偿值
+     * @return
+     */
+    public static String getSplitLineLrc(LyricsCursor lyricsCursor, LyricsTimeline lyricsTimeline, TreeMap<Integer, LyricsLineInfo> lrcLineInfos, long curPlayingTime, long playOffset) {
+        if (lrcLineInfos == null || lyricsTimeline == null) return null;
+        int lyricsLineNum = getLineNumber(lyricsCursor, lyricsTimeline, curPlayingTime, playOffset);
+        return getSplitLineLrc(lyricsTimeline.getLyricsType(), lrcLineInfos, lyricsLineNum, curPlayingTime, playOffset);
+    }
 
+    private static String getSplitLineLrc(int lyricsType, TreeMap<Integer, LyricsLineInfo> lrcLineInfos, int lyricsLineNum, long curPlayingTime, long playOffset) {
+        LyricsLineInfo lyricsLineInfo = getSplitLineInfo(lyricsType, lrcLineInfos, lyricsLineNum, curPlayingTime, playOffset);
         if (lyricsLineInfo == null)
             return null;
         return lyricsLineInfo.getLineLyrics();
@@ -792,6 +793,26 @@ public class LyricsUtils {
     public static int getLineLrcStartTime(int lyricsType, TreeMap<Integer, LyricsLineInfo> lrcLineInfos, long curPlayingTime, long playOffset) {
         if (lrcLineInfos == null) return -1;
         int lyricsLineNum = getLineNumber(lyricsType, lrcLineInfos, curPlayingTime, playOffset);
+        return getLineLrcStartTime(lrcLineInfos, lyricsLineNum);
+    }
+
+    /**
+     * 基于歌词时间轴和行游标获取当前时间对应的行歌词开始时间
+     *
+     * @param lyricsCursor   行游标
+     * @param lyricsTimeline 歌词时间轴
+     * @param lrcLineInfos   歌词集合
+     * @param curPlayingTime 当前播放进度
+     * @param playOffset     时间补偿值
+     * @return
+     */
+    public static int getLineLrcStartTime(LyricsCursor lyricsCursor, LyricsTimeline lyricsTimeline, TreeMap<Integer, LyricsLineInfo> lrcLineInfos, long curPlayingTime, long playOffset) {
+        if (lrcLineInfos == null || lyricsTimeline == null) return -1;
+        int lyricsLineNum = getLineNumber(lyricsCursor, lyricsTimeline, curPlayingTime, playOffset);
+        return getLineLrcStartTime(lrcLineInfos, lyricsLineNum);
+    }
+
+    private static int getLineLrcStartTime(TreeMap<Integer, LyricsLineInfo> lrcLineInfos, int lyricsLineNum) {
         if (lyricsLineNum >= lrcLineInfos.size())
             return -1;
 
@@ -814,8 +835,40 @@ public class LyricsUtils {
     public static int getSplitLineLrcStartTime(int lyricsType, TreeMap<Integer, LyricsLineInfo> lrcLineInfos, long curPlayingTime, long playOffset) {
         if (lrcLineInfos == null) return -1;
         int lyricsLineNum = getLineNumber(lyricsType, lrcLineInfos, curPlayingTime, playOffset);
-        if (lyricsLineNum >= lrcLineInfos.size())
+        return getSplitLineLrcStartTime(lyricsType, lrcLineInfos, lyricsLineNum, curPlayingTime, playOffset);
+    }
+
+    /**
+     * 基于歌词时间轴和行游标获取分割后歌词的当前时间对应的行歌词开始时间
+     *
+     * @param lyricsCursor   行游标
+     * @param lyricsTimeline 歌词时间轴
+     * @param lrcLineInfos   歌词集合
+     * @param curPlayingTime 当前播放进度
+     * @param playOffset     时间补偿值
+     * @return
+     */
+    public static int getSplitLineLrcStartTime(LyricsCursor lyricsCursor, LyricsTimeline lyricsTimeline, TreeMap<Integer, LyricsLineInfo> lrcLineInfos, long curPlayingTime, long playOffset) {
+        if (lrcLineInfos == null || lyricsTimeline == null) return -1;
+        int lyricsLineNum = getLineNumber(lyricsCursor, lyricsTimeline, curPlayingTime, playOffset);
+        return getSplitLineLrcStartTime(lyricsTimeline.getLyricsType(), lrcLineInfos, lyricsLineNum, curPlayingTime, playOffset);
+    }
+
+    private static int getSplitLineLrcStartTime(int lyricsType, TreeMap<Integer, LyricsLineInfo> lrcLineInfos, int lyricsLineNum, long curPlayingTime, long playOffset) {
+        LyricsLineInfo lyricsLineInfo = getSplitLineInfo(lyricsType, lrcLineInfos, lyricsLineNum, curPlayingTime, playOffset);
+        if (lyricsLineInfo == null)
             return -1;
+        return lyricsLineInfo.getStartTime();
+    }
+
+    /**
+     * 获取行号对应歌词行中当前时间所在的分割行
+     *
+     * @return 没有对应的分割行时返回null
+     */
+    private static LyricsLineInfo getSplitLineInfo(int lyricsType, TreeMap<Integer, LyricsLineInfo> lrcLineInfos, int lyricsLineNum, long curPlayingTime, long playOffset) {
+        if (lyricsLineNum >= lrcLineInfos.size())
+            return null;
         int splitLyricsLineNum = -1;
         if (lyricsType == LyricsInfo.DYNAMIC) {
             splitLyricsLineNum = getSplitDynamicLyricsLineNum(lrcLineInfos, lyricsLineNum, curPlayingTime, playOffset);
@@ -825,14 +878,9 @@ public class LyricsUtils {
 
         List<LyricsLineInfo> splitLyricsLineInfos = lrcLineInfos.get(lyricsLineNum).getSplitLyricsLineInfos();
         if (splitLyricsLineNum < 0 || splitLyricsLineNum >= splitLyricsLineInfos.size()) {
-            return -1;
+            return null;
         }
-
-        LyricsLineInfo lyricsLineInfo = splitLyricsLineInfos.get(splitLyricsLineNum);
-
-        if (lyricsLineInfo == null)
-            return -1;
-        return lyricsLineInfo.getStartTime();
+        return splitLyricsLineInfos.get(splitLyricsLineNum);
     }
 
 //////////////////////////////////分割歌词///////////////////////////////////////////
@@ -860,6 +908,35 @@ public class LyricsUtils {
         return lyricsLineTreeMap;
     }
 
+    /**
+     * 追加歌词后获取分割lrc歌词，fromLineNum之前的行直接使用已经分割好的行，只分割之后的行
+     *
+     * @param defLyricsLineTreeMap   原始歌词集合
+     * @param splitLyricsLineTreeMap 追加前已经分割好的歌词集合，不会被修改
+     * @param fromLineNum            第一个新增（或后移）的行号
+     * @param textMaxWidth
+     * @param paint
+     * @return 新的含有分割歌词的集合
+     */
+    public static TreeMap<Integer, LyricsLineInfo> getSplitLrcLyrics(TreeMap<Integer, LyricsLineInfo> defLyricsLineTreeMap, TreeMap<Integer, LyricsLineInfo> splitLyricsLineTreeMap, int fromLineNum, float textMaxWidth, Paint paint) {
+        if (defLyricsLineTreeMap == null) return null;
+        if (splitLyricsLineTreeMap == null || fromLineNum <= 0) {
+            return getSplitLrcLyrics(defLyricsLineTreeMap, textMaxWidth, paint);
+        }
+        fromLineNum = Math.min(fromLineNum, splitLyricsLineTreeMap.size());
+        TreeMap<Integer, LyricsLineInfo> lyricsLineTreeMap = new TreeMap<Integer, LyricsLineInfo>(splitLyricsLineTreeMap.headMap(fromLineNum));
+        for (int i = fromLineNum; i < defLyricsLineTreeMap.size(); i++) {
+            LyricsLineInfo lyricsLineInfo = new LyricsLineInfo();
+            //复制
+            lyricsLineInfo.copy(lyricsLineInfo, defLyricsLineTreeMap.get(i));
+            //分割歌词
+            splitLrcLyrics(lyricsLineInfo, paint, textMaxWidth);
+
+            lyricsLineTreeMap.put(i, lyricsLineInfo);
+        }
+        return lyricsLineTreeMap;
+    }
+
     /**
      * 获取分割动感歌词
      *
@@ -868,14 +945,41 @@ public class LyricsUtils {
      * @return 对原始歌词集合进行修改，并返回含有分割歌词的集合
      */
     public static TreeMap<Integer, LyricsLineInfo> getSplitDynamicLyrics(TreeMap<Integer, LyricsLineInfo> defLyricsLineTreeMap, float textMaxWidth, Paint paint) {
+        return getSplitDynamicLyrics(defLyricsLineTreeMap, textMaxWidth, paint, false);
+    }
+
+    /**
+     * 获取分割动感歌词
+     *
+     * @param textMaxWidth  歌词行最大宽度
+     * @param paint
+     * @param splitOnDemand 按需解析字的行是否在第一次获取分割歌词时再分割，这样加载时不需要解析所有行
+     * @return 对原始歌词集合进行修改，并返回含有分割歌词的集合
+     */
+    public static TreeMap<Integer, LyricsLineInfo> getSplitDynamicLyrics(TreeMap<Integer, LyricsLineInfo> defLyricsLineTreeMap, final float textMaxWidth, Paint paint, boolean splitOnDemand) {
         if (defLyricsLineTreeMap == null) return null;
+        LyricsLineInfo.LineSplitter lineSplitter = null;
+        if (splitOnDemand) {
+            //复制画笔，绘画时会修改画笔
+            final Paint splitPaint = new Paint(paint);
+            lineSplitter = new LyricsLineInfo.LineSplitter() {
+                @Override
+                public List<LyricsLineInfo> split(LyricsLineInfo lyricsLineInfo) {
+                    return getSplitLineLyrics(lyricsLineInfo, splitPaint, textMaxWidth);
+                }
+            };
+        }
         TreeMap<Integer, LyricsLineInfo> lyricsLineTreeMap = new TreeMap<Integer, LyricsLineInfo>();
         for (int i = 0; i < defLyricsLineTreeMap.size(); i++) {
             LyricsLineInfo lyricsLineInfo = new LyricsLineInfo();
             //复制
             lyricsLineInfo.copy(lyricsLineInfo, defLyricsLineTreeMap.get(i));
             //分割歌词
-            splitLyrics(lyricsLineInfo, paint, textMaxWidth);
+            if (lineSplitter != null && lyricsLineInfo.isLazyWords()) {
+                lyricsLineInfo.setLineSplitter(lineSplitter);
+            } else {
+                lyricsLineInfo.setSplitLyricsLineInfos(getSplitLineLyrics(lyricsLineInfo, paint, textMaxWidth));
+            }
 
             lyricsLineTreeMap.put(i, lyricsLineInfo);
         }
@@ -888,8 +992,9 @@ public class LyricsUtils {
      * @param lyricsLineInfo
      * @param paint
      * @param textMaxWidth
+     * @return 分割后的歌词行
      */
-    private static void splitLyrics(LyricsLineInfo lyricsLineInfo, Paint paint, float textMaxWidth) {
+    private static List<LyricsLineInfo> getSplitLineLyrics(LyricsLineInfo lyricsLineInfo, Paint paint, float textMaxWidth) {
 
         final List<LyricsLineInfo> lyricsLineInfos = new ArrayList<LyricsLineInfo>();
         splitLineLyrics(lyricsLineInfo, paint, textMaxWidth, new ForeachListener() {
@@ -899,7 +1004,7 @@ public class LyricsUtils {
             }
         });
 
-        lyricsLineInfo.setSplitLyricsLineInfos(lyricsLineInfos);
+        return lyricsLineInfos;
 
     }
 
@@ -915,45 +1020,31 @@ public class LyricsUtils {
         String lineLyrics = lyricsLineInfo.getLineLyrics().trim();
         // 行歌词数组
         String[] lyricsWords = lyricsLineInfo.getLyricsWords();
+        if (lyricsWords == null || lyricsLineInfo.getWordsDisInterval() == null) {
+            // 没有字（例如解析失败的行）时不分割
+            if (foreachListener != null) {
+                foreachListener.foreach(lyricsLineInfo);
+            }
+            return;
+        }
         // 每行的歌词长度
-        int lineWidth = (int) paint.measureText(lineLyrics);
+        int lineWidth = (int) GlyphAdvanceCache.getTextWidth(paint, lineLyrics);
         float maxLineWidth = textMaxWidth;
         if (lineWidth > maxLineWidth) {
 
-            int lyricsWordsWidth = 0;
+            // 每个字宽度的前缀和
+            int[] widthSums = getWordsWidthSums(paint, lyricsWords);
             //开始索引和结束索引
             int startIndex = 0;
-            for (int i = 0; i < lyricsWords.length; i++) {
-                // 当前的歌词宽度
-                lyricsWordsWidth += (int) paint.measureText(lyricsWords[i]);
-                //下一个字的宽度
-                int nextLyricsWordWidth = 0;
-                if ((i + 1) < lyricsWords.length) {
-                    nextLyricsWordWidth = (int) paint.measureText(lyricsWords[(i + 1)]);
-                }
-                if (lyricsWordsWidth + nextLyricsWordWidth > maxLineWidth) {
-
-                    LyricsLineInfo newLyricsLineInfo = getNewLyricsLineInfo(
-                            lyricsLineInfo, startIndex, i);
-
-                    if (newLyricsLineInfo != null && foreachListener != null) {
-                        foreachListener.foreach(newLyricsLineInfo);
-                    }
+            while (startIndex < lyricsWords.length) {
+                int lastIndex = getSplitLastIndex(widthSums, lyricsWords.length, startIndex, maxLineWidth);
+                LyricsLineInfo newLyricsLineInfo = getNewLyricsLineInfo(
+                        lyricsLineInfo, startIndex, lastIndex);
 
-                    //
-                    lyricsWordsWidth = 0;
-                    startIndex = i + 1;
-                    if (startIndex == lyricsWords.length) {
-                        startIndex = lyricsWords.length - 1;
-                    }
-                } else if (i == lyricsWords.length - 1) {
-                    LyricsLineInfo newLyricsLineInfo = getNewLyricsLineInfo(
-                            lyricsLineInfo, startIndex, lyricsWords.length - 1);
-
-                    if (newLyricsLineInfo != null && foreachListener != null) {
-                        foreachListener.foreach(newLyricsLineInfo);
-                    }
+                if (newLyricsLineInfo != null && foreachListener != null) {
+                    foreachListener.foreach(newLyricsLineInfo);
                 }
+                startIndex = lastIndex + 1;
             }
 
         } else {
@@ -973,23 +1064,26 @@ public class LyricsUtils {
     private static void splitLrcLyrics(LyricsLineInfo lyricsLineInfo, Paint paint, float textMaxWidth) {
         List<LyricsLineInfo> lyricsLineInfos = new ArrayList<LyricsLineInfo>();
         String lineLyrics = lyricsLineInfo.getLineLyrics().trim();
+        // 每个字的宽度
+        float[] advances = new float[lineLyrics.length()];
         // 每行的歌词长度
-        int lineWidth = (int) paint.measureText(lineLyrics);
+        int lineWidth = (int) GlyphAdvanceCache.getTextAdvances(paint, lineLyrics, advances);
         float maxLineWidth = textMaxWidth;
         if (lineWidth > maxLineWidth) {
 
-            int lyricsWordsWidth = 0;
+            // 每个字宽度的前缀和
+            int length = lineLyrics.length();
+            int[] widthSums = new int[length + 1];
+            for (int i = 0; i < length; i++) {
+                widthSums[i + 1] = widthSums[i] + (int) advances[i];
+            }
             //开始索引和结束索引
             int startIndex = 0;
-            for (int i = 0; i < lineLyrics.length(); i++) {
-                // 当前的歌词宽度
-                lyricsWordsWidth += (int) paint.measureText(lineLyrics.charAt(i) + "");
-                //下一个字的宽度
-                int nextLyricsWordWidth = 0;
-                if ((i + 1) < lineLyrics.length()) {
-                    nextLyricsWordWidth = (int) paint.measureText(lineLyrics.charAt(i + 1) + "");
-                }
-                if (lyricsWordsWidth + nextLyricsWordWidth > maxLineWidth) {
+            while (startIndex < length) {
+                int i = getSplitLastIndex(widthSums, length, startIndex, maxLineWidth);
+                if (widthSums[Math.min(i + 2, length)] - widthSums[startIndex] > maxLineWidth) {
+                    // 当前的歌词宽度
+                    int lyricsWordsWidth = widthSums[i + 1] - widthSums[startIndex];
                     if (lineWidth - maxLineWidth < 3 * lyricsWordsWidth) {
                         int index = i / 2 + 1;
                         if (lyricsLineInfo.toString().contains("，")) {
@@ -1006,28 +1100,14 @@ public class LyricsUtils {
                             lyricsLineInfos.add(secondLyricsLineInfo);
                         }
                         break;
-                    } else {
-                        LyricsLineInfo newLyricsLineInfo = getNewLrcLyricsLineInfo(
-                                lyricsLineInfo, startIndex, i);
-                        if (newLyricsLineInfo != null) {
-                            lyricsLineInfos.add(newLyricsLineInfo);
-                        }
-                    }
-
-                    //
-                    lyricsWordsWidth = 0;
-                    startIndex = i + 1;
-                    if (startIndex == lineLyrics.length()) {
-                        startIndex = lineLyrics.length() - 1;
-                    }
-                } else if (i == lineLyrics.length() - 1) {
-                    LyricsLineInfo newLyricsLineInfo = getNewLrcLyricsLineInfo(
-                            lyricsLineInfo, startIndex, lineLyrics.length() - 1);
-
-                    if (newLyricsLineInfo != null) {
-                        lyricsLineInfos.add(newLyricsLineInfo);
                     }
                 }
+                LyricsLineInfo newLyricsLineInfo = getNewLrcLyricsLineInfo(
+                        lyricsLineInfo, startIndex, i);
+                if (newLyricsLineInfo != null) {
+                    lyricsLineInfos.add(newLyricsLineInfo);
+                }
+                startIndex = i + 1;
             }
 
         } else {
@@ -1036,6 +1116,51 @@ public class LyricsUtils {
         lyricsLineInfo.setSplitLyricsLineInfos(lyricsLineInfos);
     }
 
+    /**
+     * 逐个测量每个字的宽度，返回宽度的前缀和，第i个字到第j个字的宽度为 widthSums[j + 1] - widthSums[i]
+     *
+     * @param paint
+     * @param lyricsWords
+     * @return
+     */
+    private static int[] getWordsWidthSums(Paint paint, String[] lyricsWords) {
+        int maxWordLength = 0;
+        for (int i = 0; i < lyricsWords.length; i++) {
+            maxWordLength = Math.max(maxWordLength, lyricsWords[i].length());
+        }
+        // 每个字单独测量，与逐字 measureText 的分割位置相同，字与字之间的字距调整不计入
+        float[] advances = new float[maxWordLength];
+        int[] widthSums = new int[lyricsWords.length + 1];
+        for (int i = 0; i < lyricsWords.length; i++) {
+            float wordWidth = GlyphAdvanceCache.getTextAdvances(paint, lyricsWords[i], advances);
+            widthSums[i + 1] = widthSums[i] + (int) wordWidth;
+        }
+        return widthSums;
+    }
+
+    /**
+     * 二分查找分割后一行的最后一个字：从startIndex开始，加上下一个字后超出最大宽度的第一个字，都不超出时为最后一个字
+     *
+     * @param widthSums    宽度前缀和
+     * @param count        字数
+     * @param startIndex   开始索引
+     * @param maxLineWidth 最大宽度
+     * @return
+     */
+    private static int getSplitLastIndex(int[] widthSums, int count, int startIndex, float maxLineWidth) {
+        int low = startIndex;
+        int high = count - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (widthSums[Math.min(mid + 2, count)] - widthSums[startIndex] > maxLineWidth) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
     /**
      * 根据新歌词的索引和旧歌词数据，构造新的歌词数据
      *
@@ -1146,7 +1271,7 @@ public class LyricsUtils {
             lyricsLineInfo.copy(lyricsLineInfo, lrcLineInfos.get(i));
 
             //分隔歌词
-            splitLyrics(lyricsLineInfo, mExtraLrcPaint, mTextMaxWidth);
+            lyricsLineInfo.setSplitLyricsLineInfos(getSplitLineLyrics(lyricsLineInfo, mExtraLrcPaint, mTextMaxWidth));
             extraLrcLineInfos.add(lyricsLineInfo);
         }
 
@@ -1297,18 +1422,24 @@ public class LyricsUtils {
         //添加歌词增量
         long curPlayingTime = oldPlayingTime + playOffset;
         LyricsLineInfo lyrLine = lyricsLineTreeMap.get(lyricsLineNum);
+        return getSplitLyricsWordIndex(lyrLine.getSplitLyricsLineInfos(), curPlayingTime);
+    }
 
-        List<LyricsLineInfo> lyricsLineInfos = lyrLine.getSplitLyricsLineInfos();
+    /**
+     * 在分割后的歌词行中查找字索引
+     *
+     * @param lyricsLineInfos 分割后的歌词行
+     * @param curPlayingTime  已加上时间补偿值的播放进度
+     * @return
+     */
+    private static int getSplitLyricsWordIndex(List<LyricsLineInfo> lyricsLineInfos, long curPlayingTime) {
         for (int i = 0; i < lyricsLineInfos.size(); i++) {
             LyricsLineInfo temp = lyricsLineInfos.get(i);
-            int elapseTime = temp.getStartTime();
-            if (curPlayingTime < elapseTime) return -1;
-            for (int j = 0; j < temp.getLyricsWords().length; j++) {
-                elapseTime += temp.getWordsDisInterval()[j];
-                if (curPlayingTime <= elapseTime) {
-                    return j;
-                }
+            int wordIndex = temp.getWordIndex(curPlayingTime);
+            if (wordIndex != -2) {
+                return wordIndex;
             }
+            int elapseTime = temp.getStartTime() + temp.getWordsDuration();
             int endTime = temp.getEndTime();
             if (elapseTime < curPlayingTime && curPlayingTime <= endTime) {
                 break;
@@ -1334,18 +1465,7 @@ public class LyricsUtils {
         //添加歌词增量
         long curPlayingTime = oldPlayingTime + playOffset;
         LyricsLineInfo lyrLine = lyricsLineTreeMap.get(lyricsLineNum);
-        int elapseTime = lyrLine.getStartTime();
-        if (curPlayingTime < elapseTime) return -1;
-
-        for (int j = 0; j < lyrLine.getLyricsWords().length; j++) {
-            elapseTime += lyrLine.getWordsDisInterval()[j];
-            if (curPlayingTime <= elapseTime) {
-                return j;
-            }
-        }
-
-        //整句已经播放完成
-        return -2;
+        return lyrLine.getWordIndex(curPlayingTime);
     }
 
     /**
@@ -1363,25 +1483,7 @@ public class LyricsUtils {
         //添加歌词增量
         long curPlayingTime = oldPlayingTime + playOffset;
         LyricsLineInfo lyrLine = lyricsLineInfos.get(lyricsLineNum);
-        List<LyricsLineInfo> newLyricsLineInfos = lyrLine.getSplitLyricsLineInfos();
-        for (int i = 0; i < newLyricsLineInfos.size(); i++) {
-            LyricsLineInfo temp = newLyricsLineInfos.get(i);
-            int elapseTime = temp.getStartTime();
-            if (curPlayingTime < elapseTime) return -1;
-            for (int j = 0; j < temp.getLyricsWords().length; j++) {
-                elapseTime += temp.getWordsDisInterval()[j];
-                if (curPlayingTime <= elapseTime) {
-                    return j;
-                }
-            }
-            int endTime = temp.getEndTime();
-            if (elapseTime < curPlayingTime && curPlayingTime <= endTime) {
-                break;
-            }
-
-        }
-        //整句已经播放完成
-        return -2;
+        return getSplitLyricsWordIndex(lyrLine.getSplitLyricsLineInfos(), curPlayingTime);
     }
 
     /**
@@ -1399,17 +1501,7 @@ public class LyricsUtils {
         //添加歌词增量
         long curPlayingTime = oldPlayingTime + playOffset;
         LyricsLineInfo lyrLine = lyricsLineInfos.get(lyricsLineNum);
-        int elapseTime = lyrLine.getStartTime();
-        if (curPlayingTime < elapseTime) return -1;
-        for (int j = 0; j < lyrLine.getLyricsWords().length; j++) {
-            elapseTime += lyrLine.getWordsDisInterval()[j];
-            if (curPlayingTime <= elapseTime) {
-                return j;
-            }
-        }
-
-        //整句已经播放完成
-        return -2;
+        return lyrLine.getWordIndex(curPlayingTime);
     }
 
     /**
@@ -1424,17 +1516,20 @@ public class LyricsUtils {
             return 0;
         //添加歌词增量
         long curPlayingTime = oldPlayingTime + playOffset;
-        LyricsLineInfo lyrLine = lyricsLineTreeMap.get(lyricsLineNum);
-        int elapseTime = lyrLine.getStartTime();
-        if (curPlayingTime < elapseTime) return 0;
-        for (int i = 0; i < lyrLine.getLyricsWords().length; i++) {
-            elapseTime += lyrLine.getWordsDisInterval()[i];
-            if (curPlayingTime <= elapseTime) {
-                return lyrLine.getWordsDisInterval()[i] - (elapseTime - curPlayingTime);
-            }
-        }
+        return getDisWordsIndexLenTime(lyricsLineTreeMap.get(lyricsLineNum), curPlayingTime);
+    }
 
-        return 0;
+    /**
+     * 获取当前字已经播放的时间
+     *
+     * @param lyrLine        歌词行
+     * @param curPlayingTime 已加上时间补偿值的播放进度
+     * @return
+     */
+    private static long getDisWordsIndexLenTime(LyricsLineInfo lyrLine, long curPlayingTime) {
+        int wordIndex = lyrLine.getWordIndex(curPlayingTime);
+        if (wordIndex < 0) return 0;
+        return curPlayingTime - lyrLine.getStartTime() - lyrLine.getWordsStartOffsets()[wordIndex];
     }
 
     /**
@@ -1451,16 +1546,59 @@ public class LyricsUtils {
             return 0;
         //添加歌词增量
         long curPlayingTime = oldPlayingTime + playOffset;
-        LyricsLineInfo lyrLine = lyricsLineInfos.get(lyricsLineNum);
-        int elapseTime = lyrLine.getStartTime();
-        if (curPlayingTime < elapseTime) return 0;
-        for (int i = 0; i < lyrLine.getLyricsWords().length; i++) {
-            elapseTime += lyrLine.getWordsDisInterval()[i];
-            if (curPlayingTime <= elapseTime) {
-                return lyrLine.getWordsDisInterval()[i] - (elapseTime - curPlayingTime);
-            }
+        return getDisWordsIndexLenTime(lyricsLineInfos.get(lyricsLineNum), curPlayingTime);
+    }
+
+    /**
+     * 一次查询获取行号、分割后的行号、字索引以及当前字已经播放的时间（动感歌词）
+     *
+     * @param lyricsCursor      行游标，可以为null
+     * @param lyricsTimeline    歌词时间轴
+     * @param lyricsLineTreeMap 分割后的歌词集合
+     * @param oldPlayingTime    当前播放进度
+     * @param playOffset        时间补偿值
+     * @param lyricsPosition    查询结果
+     * @return
+     */
+    public static LyricsPosition getLyricsPosition(LyricsCursor lyricsCursor, LyricsTimeline lyricsTimeline, TreeMap<Integer, LyricsLineInfo> lyricsLineTreeMap, long oldPlayingTime, long playOffset, LyricsPosition lyricsPosition) {
+        int lyricsLineNum = getLineNumber(lyricsCursor, lyricsTimeline, oldPlayingTime, playOffset);
+        return getLyricsPosition(lyricsTimeline, lyricsLineTreeMap, lyricsLineNum, oldPlayingTime, playOffset, lyricsPosition);
+    }
+
+    /**
+     * 一次查询获取分割后的行号、原始行和分割后的行的字索引以及当前字已经播放的时间（动感歌词）
+     * <p>
+     * 原始行的字索引和播放时间从时间轴中查询，分割后的行号和字索引从分割后的歌词行中查询
+     *
+     * @param lyricsTimeline    歌词时间轴
+     * @param lyricsLineTreeMap 分割后的歌词集合
+     * @param lyricsLineNum     行号
+     * @param oldPlayingTime    当前播放进度
+     * @param playOffset        时间补偿值
+     * @param lyricsPosition    查询结果
+     * @return
+     */
+    public static LyricsPosition getLyricsPosition(LyricsTimeline lyricsTimeline, TreeMap<Integer, LyricsLineInfo> lyricsLineTreeMap, int lyricsLineNum, long oldPlayingTime, long playOffset, LyricsPosition lyricsPosition) {
+        lyricsPosition.reset();
+        lyricsPosition.setLyricsLineNum(lyricsLineNum);
+        if (lyricsTimeline == null || lyricsLineTreeMap == null || lyricsLineNum < 0
+                || lyricsLineNum >= lyricsLineTreeMap.size() || lyricsLineNum >= lyricsTimeline.size())
+            return lyricsPosition;
+
+        //添加歌词增量
+        long curPlayingTime = oldPlayingTime + playOffset;
+        List<LyricsLineInfo> splitLyricsLineInfos = lyricsLineTreeMap.get(lyricsLineNum).getSplitLyricsLineInfos();
+
+        if (!splitLyricsLineInfos.isEmpty()) {
+            lyricsPosition.setSplitLyricsLineNum(getSplitLyricsLineNum(splitLyricsLineInfos, curPlayingTime, 0));
         }
-        return 0;
+        int wordIndex = lyricsTimeline.getWordIndex(lyricsLineNum, curPlayingTime);
+        lyricsPosition.setLyricsWordIndex(wordIndex);
+        lyricsPosition.setSplitLyricsWordIndex(getSplitLyricsWordIndex(splitLyricsLineInfos, curPlayingTime));
+        if (wordIndex >= 0) {
+            lyricsPosition.setLyricsWordHLTime(curPlayingTime - lyricsTimeline.getWordStartTime(lyricsLineNum, wordIndex));
+        }
+        return lyricsPosition;
     }
 
     /**
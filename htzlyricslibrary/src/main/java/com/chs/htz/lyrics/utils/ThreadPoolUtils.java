@@ -0,0 +1,87 @@
+package com.chs.htz.lyrics.utils;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 歌词后台线程池
+ * <p>
+ * 线程数和等待队列都是有限的，队列满时提交任务会抛出 RejectedExecutionException
+ */
+public class ThreadPoolUtils {
+
+    /**
+     * 线程数
+     */
+    private static final int POOL_SIZE = 2;
+    /**
+     * 等待队列大小
+     */
+    private static final int QUEUE_SIZE = 16;
+    /**
+     * 空闲线程存活时间（秒）
+     */
+    private static final int KEEP_ALIVE_SECONDS = 30;
+
+    private static volatile ExecutorService sLoadExecutor;
+
+    /**
+     * 获取歌词加载线程池
+     *
+     * @return
+     */
+    public static ExecutorService getLoadExecutor() {
+        if (sLoadExecutor == null) {
+            synchronized (ThreadPoolUtils.class) {
+                if (sLoadExecutor == null) {
+                    ThreadPoolExecutor executor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE,
+                            KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<Runnable>(QUEUE_SIZE),
+                            new LyricsThreadFactory("LyricsLoader"));
+                    executor.allowCoreThreadTimeOut(true);
+                    sLoadExecutor = executor;
+                }
+            }
+        }
+        return sLoadExecutor;
+    }
+
+    /**
+     * 创建固定线程数的工作线程池，用于批量任务，用完后需要调用shutdown
+     *
+     * @param name     线程名称前缀
+     * @param poolSize 线程数
+     * @return
+     */
+    public static ThreadPoolExecutor newWorkerExecutor(String name, int poolSize) {
+        return new ThreadPoolExecutor(poolSize, poolSize,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new LyricsThreadFactory(name));
+    }
+
+    /**
+     * 后台线程工厂
+     */
+    private static class LyricsThreadFactory implements ThreadFactory {
+
+        private final String mName;
+        private final AtomicInteger mCount = new AtomicInteger(1);
+
+        LyricsThreadFactory(String name) {
+            this.mName = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, mName + "-" + mCount.getAndIncrement());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    }
+}
@@ -35,6 +35,11 @@ public class TimeUtils {
         return 0;
     }
 
+    /**
+     * 格式化时间的最大字符数（含负数）
+     */
+    private static final int MAX_TIME_LENGTH = 16;
+
     /**
      * 毫秒转时间字符串
      *
@@ -42,12 +47,8 @@ public class TimeUtils {
      * @return 00:00.000
      */
     public static String parseMMSSFFFString(int msecTotal) {
-        int msec = msecTotal % 1000;
-        msecTotal /= 1000;
-        int minute = msecTotal / 60;
-        int second = msecTotal % 60;
-        minute %= 60;
-        return String.format("%02d:%02d.%03d", minute, second, msec);
+        char[] buffer = new char[MAX_TIME_LENGTH];
+        return new String(buffer, 0, formatMMSSFFF(msecTotal, buffer, 0));
     }
 
     /**
@@ -57,12 +58,8 @@ public class TimeUtils {
      * @return 00:00.00
      */
     public static String parseMMSSFFString(int msecTotal) {
-        int msec = msecTotal % 1000 / 10;
-        msecTotal /= 1000;
-        int minute = msecTotal / 60;
-        int second = msecTotal % 60;
-        minute %= 60;
-        return String.format("%02d:%02d.%02d", minute, second, msec);
+        char[] buffer = new char[MAX_TIME_LENGTH];
+        return new String(buffer, 0, formatMMSSFF(msecTotal, buffer, 0));
     }
 
     /**
@@ -72,10 +69,188 @@ public class TimeUtils {
      * @return 00:00
      */
     public static String parseMMSSString(int msecTotal) {
+        char[] buffer = new char[MAX_TIME_LENGTH];
+        return new String(buffer, 0, formatMMSS(msecTotal, buffer, 0));
+    }
+
+    /**
+     * 毫秒转时间字符串，写入调用者提供的字符数组，不分配内存
+     *
+     * @param msecTotal
+     * @param buffer    字符数组，从offset开始至少留16个字符
+     * @param offset    开始位置
+     * @return 写入的字符数，00:00.000 为9
+     */
+    public static int formatMMSSFFF(int msecTotal, char[] buffer, int offset) {
+        int msec = msecTotal % 1000;
+        msecTotal /= 1000;
+        int index = formatMMSSInternal(msecTotal, buffer, offset);
+        buffer[index++] = '.';
+        index = writeDigits(buffer, index, msec, 3);
+        return index - offset;
+    }
+
+    /**
+     * 毫秒转时间字符串，写入调用者提供的字符数组，不分配内存
+     *
+     * @param msecTotal
+     * @param buffer    字符数组，从offset开始至少留16个字符
+     * @param offset    开始位置
+     * @return 写入的字符数，00:00.00 为8
+     */
+    public static int formatMMSSFF(int msecTotal, char[] buffer, int offset) {
+        int msec = msecTotal % 1000 / 10;
+        msecTotal /= 1000;
+        int index = formatMMSSInternal(msecTotal, buffer, offset);
+        buffer[index++] = '.';
+        index = writeDigits(buffer, index, msec, 2);
+        return index - offset;
+    }
+
+    /**
+     * 毫秒转时间字符串，写入调用者提供的字符数组，不分配内存
+     *
+     * @param msecTotal
+     * @param buffer    字符数组，从offset开始至少留16个字符
+     * @param offset    开始位置
+     * @return 写入的字符数，00:00 为5
+     */
+    public static int formatMMSS(int msecTotal, char[] buffer, int offset) {
+        return formatMMSSInternal(msecTotal / 1000, buffer, offset) - offset;
+    }
+
+    /**
+     * 毫秒转时间字符串，追加到调用者提供的StringBuilder
+     *
+     * @param builder
+     * @param msecTotal
+     * @return builder
+     */
+    public static StringBuilder appendMMSSFFF(StringBuilder builder, int msecTotal) {
+        int msec = msecTotal % 1000;
+        msecTotal /= 1000;
+        appendMMSSInternal(builder, msecTotal);
+        builder.append('.');
+        return appendDigits(builder, msec, 3);
+    }
+
+    /**
+     * 毫秒转时间字符串，追加到调用者提供的StringBuilder
+     *
+     * @param builder
+     * @param msecTotal
+     * @return builder
+     */
+    public static StringBuilder appendMMSSFF(StringBuilder builder, int msecTotal) {
+        int msec = msecTotal % 1000 / 10;
         msecTotal /= 1000;
-        int minute = msecTotal / 60;
-        int second = msecTotal % 60;
-        minute %= 60;
-        return String.format("%02d:%02d", minute, second);
+        appendMMSSInternal(builder, msecTotal);
+        builder.append('.');
+        return appendDigits(builder, msec, 2);
+    }
+
+    /**
+     * 毫秒转时间字符串，追加到调用者提供的StringBuilder
+     *
+     * @param builder
+     * @param msecTotal
+     * @return builder
+     */
+    public static StringBuilder appendMMSS(StringBuilder builder, int msecTotal) {
+        return appendMMSSInternal(builder, msecTotal / 1000);
+    }
+
+    /**
+     * @param secondTotal 总秒数
+     * @return 写入后的位置
+     */
+    private static int formatMMSSInternal(int secondTotal, char[] buffer, int index) {
+        int minute = secondTotal / 60 % 60;
+        int second = secondTotal % 60;
+        index = writeDigits(buffer, index, minute, 2);
+        buffer[index++] = ':';
+        return writeDigits(buffer, index, second, 2);
+    }
+
+    private static StringBuilder appendMMSSInternal(StringBuilder builder, int secondTotal) {
+        int minute = secondTotal / 60 % 60;
+        int second = secondTotal % 60;
+        appendDigits(builder, minute, 2);
+        builder.append(':');
+        return appendDigits(builder, second, 2);
+    }
+
+    /**
+     * 按固定宽度写入数字，不足时补0，与 %02d/%03d 一致（负号占一位宽度）
+     *
+     * @return 写入后的位置
+     */
+    private static int writeDigits(char[] buffer, int index, int value, int width) {
+        if (value < 0) {
+            buffer[index++] = '-';
+            value = -value;
+            width--;
+        }
+        int length = 1;
+        for (int v = value / 10; v > 0; v /= 10) {
+            length++;
+        }
+        for (int i = length; i < width; i++) {
+            buffer[index++] = '0';
+        }
+        int end = index + length;
+        for (int i = end - 1; i >= index; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return end;
+    }
+
+    private static StringBuilder appendDigits(StringBuilder builder, int value, int width) {
+        if (value < 0) {
+            builder.append('-');
+            value = -value;
+            width--;
+        }
+        int length = 1;
+        for (int v = value / 10; v > 0; v /= 10) {
+            length++;
+        }
+        for (int i = length; i < width; i++) {
+            builder.append('0');
+        }
+        return builder.append(value);
+    }
+
+    /**
+     * 缓存上一次结果的 00:00 格式化器，同一秒内重复调用直接返回上一次的字符串，
+     * 用于拖动歌词时每帧绘画的时间指示器。非线程安全，每个使用者一个实例
+     */
+    public static class MMSSFormatter {
+
+        /**
+         * 上一次格式化的总秒数
+         */
+        private int mLastSecond;
+        /**
+         * 上一次格式化的结果
+         */
+        private String mLastString;
+        private final char[] mBuffer = new char[MAX_TIME_LENGTH];
+
+        /**
+         * 毫秒转时间字符串
+         *
+         * @param msecTotal
+         * @return 00:00
+         */
+        public String format(int msecTotal) {
+            int second = msecTotal / 1000;
+            if (mLastString == null || second != mLastSecond) {
+                mLastString = new String(mBuffer, 0, formatMMSS(msecTotal, mBuffer, 0));
+                mLastSecond = second;
+            }
+            return mLastString;
+        }
     }
 }
@@ -6,6 +6,7 @@ import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.RectF;
 import android.graphics.Typeface;
+import android.os.Build;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Looper;
@@ -13,18 +14,25 @@ import android.os.Message;
 import android.os.Process;
 import android.os.SystemClock;
 import android.util.AttributeSet;
+import android.view.Choreographer;
 import android.view.View;
 
 import com.chs.htz.lyrics.LyricsReader;
+import com.chs.htz.lyrics.model.LyricsCursor;
 import com.chs.htz.lyrics.model.LyricsInfo;
 import com.chs.htz.lyrics.model.LyricsLineInfo;
+import com.chs.htz.lyrics.model.LyricsPosition;
 import com.chs.htz.lyrics.utils.ColorUtils;
 import com.chs.htz.lyrics.utils.LyricsUtils;
+import com.chs.htz.lyrics.utils.ThreadPoolUtils;
 import com.chs.htzlyricslibrary.R;
 
 import java.lang.ref.WeakReference;
+import java.util.Arrays;
 import java.util.List;
 import java.util.TreeMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * @Description: 歌词抽象视图
@@ -324,17 +332,27 @@ public abstract class AbstractLrcView extends View {
     private LyricsReader mLyricsReader;
 
     /**
-     * 歌词列表
+     * 行游标，每个视图各自保存上次的行号
      */
-    private TreeMap<Integer, LyricsLineInfo> mLrcLineInfos;
+    private final LyricsCursor mLyricsCursor = new LyricsCursor();
+
+    /**
+     * 字索引查询结果，每帧复用
+     */
+    private final LyricsPosition mLyricsPosition = new LyricsPosition();
+
+    /**
+     * 分割后的歌词（默认歌词、翻译歌词、音译歌词），重新分割完成后整体替换
+     */
+    private final AtomicReference<LrcLayout> mLrcLayout = new AtomicReference<LrcLayout>();
     /**
-     * 翻译行歌词列表
+     * 分割版本号，每次请求分割时加1，后台分割完成时版本号已经改变则丢弃结果
      */
-    private List<LyricsLineInfo> mTranslateLrcLineInfos;
+    private int mLayoutVersion = 0;
     /**
-     * 音译歌词行
+     * 是否有还没完成的后台分割
      */
-    private List<LyricsLineInfo> mTransliterationLrcLineInfos;
+    private boolean mLayoutPending = false;
 
     ///////////////////////////////歌词绘画播放器//////////////////////////////////
 
@@ -373,6 +391,33 @@ public abstract class AbstractLrcView extends View {
      */
     private Handler mUIHandler;
 
+    /**
+     * 主线程消息：后台分割完成，替换分割结果，obj为替换任务
+     */
+    private static final int UI_MSG_LAYOUT = 1;
+
+    /**
+     * 子线程消息：开始按屏幕刷新（vsync）驱动播放
+     */
+    private static final int WORKER_MSG_FRAME = 1;
+    /**
+     * 子线程消息：线程池拒绝时在子线程分割歌词，obj为分割任务
+     */
+    private static final int WORKER_MSG_LAYOUT = 2;
+    /**
+     * 是否按屏幕刷新（vsync）驱动播放，api16以下使用Handler延时
+     */
+    private boolean mVsyncEnabled = false;
+    /**
+     * 子线程的Choreographer，帧回调在子线程执行
+     */
+    private volatile Choreographer mChoreographer;
+    private Choreographer.FrameCallback mFrameCallback;
+    /**
+     * 上一次刷新时的歌词状态，没有变化时不重绘
+     */
+    private final float[] mFrameState = new float[9];
+
     private WeakReference<Context> mActivityWR;
 
 
@@ -461,12 +506,16 @@ public abstract class AbstractLrcView extends View {
         mUIHandler = new Handler(Looper.getMainLooper()) {
             @Override
             public void handleMessage(Message msg) {
+                if (msg.what == UI_MSG_LAYOUT) {
+                    ((Runnable) msg.obj).run();
+                    return;
+                }
                 Context ctx = mActivityWR.get();
                 if (ctx != null) {
                     synchronized (lock) {
                         if (mLrcPlayerStatus == LRCPLAYERSTATUS_PLAY && mLyricsReader != null) {
                             invalidateView();
-                            long endTime = System.currentTimeMillis();
+                            long endTime = SystemClock.uptimeMillis();
                             long updateTime = (endTime - mPlayerStartTime) - mPlayerSpendTime;
                             mPlayerSpendTime = (endTime - mPlayerStartTime);
                             long delayMs = mRefreshTime - updateTime;
@@ -485,11 +534,21 @@ public abstract class AbstractLrcView extends View {
         mWorkerHandler = new Handler(mHandlerThread.getLooper(), new Handler.Callback() {
             @Override
             public boolean handleMessage(Message msg) {
+                if (msg.what == WORKER_MSG_FRAME) {
+                    postPlayFrame(0);
+                    return false;
+                }
+                if (msg.what == WORKER_MSG_LAYOUT) {
+                    ((Runnable) msg.obj).run();
+                    return false;
+                }
                 Context context = mActivityWR.get();
                 if (context != null) {
                     synchronized (lock) {
                         if (mLyricsReader != null) {
-                            updateView(getUpdateTime());
+                            if (mLrcLayout.get() != null) {
+                                updateView(getUpdateTime());
+                            }
                             if (mLrcPlayerStatus == LRCPLAYERSTATUS_PLAY) {
                                 mUIHandler.sendEmptyMessage(0);
                             } else if (mLrcPlayerStatus == LRCPLAYERSTATUS_SEEKTO) {
@@ -511,7 +570,15 @@ public abstract class AbstractLrcView extends View {
     }
 
     public void setSpeed(float speed) {
-        mSpeed = speed;
+        synchronized (lock) {
+            if (mLrcPlayerStatus == LRCPLAYERSTATUS_PLAY && isVsyncPlay()) {
+                //按原来的速度结算已经播放的进度，之后按新的速度推算
+                mCurPlayingTime += getPlayerSpendProgress();
+                mPlayerStartTime = SystemClock.uptimeMillis();
+                mPlayerSpendTime = 0;
+            }
+            mSpeed = speed;
+        }
     }
 
     public float getSpeed() {
@@ -813,9 +880,10 @@ public abstract class AbstractLrcView extends View {
      * @return
      */
     public int getSplitLineLrcStartTime(int playProgress) {
-        if (mLyricsReader == null || mLrcLineInfos == null || mLrcLineInfos.size() == 0)
+        TreeMap<Integer, LyricsLineInfo> lrcLineInfos = getLrcLineInfos();
+        if (mLyricsReader == null || lrcLineInfos == null || lrcLineInfos.size() == 0)
             return -1;
-        return LyricsUtils.getSplitLineLrcStartTime(mLyricsReader.getLyricsType(), mLrcLineInfos, playProgress, mLyricsReader.getPlayOffset());
+        return LyricsUtils.getSplitLineLrcStartTime(mLyricsCursor, mLyricsReader.getLyricsTimeline(), lrcLineInfos, playProgress, mLyricsReader.getPlayOffset());
 
     }
 
@@ -826,9 +894,10 @@ public abstract class AbstractLrcView extends View {
      * @return
      */
     public int getLineLrcStartTime(int playProgress) {
-        if (mLyricsReader == null || mLrcLineInfos == null || mLrcLineInfos.size() == 0)
+        TreeMap<Integer, LyricsLineInfo> lrcLineInfos = getLrcLineInfos();
+        if (mLyricsReader == null || lrcLineInfos == null || lrcLineInfos.size() == 0)
             return -1;
-        return LyricsUtils.getLineLrcStartTime(mLyricsReader.getLyricsType(), mLrcLineInfos, playProgress, mLyricsReader.getPlayOffset());
+        return LyricsUtils.getLineLrcStartTime(mLyricsCursor, mLyricsReader.getLyricsTimeline(), lrcLineInfos, playProgress, mLyricsReader.getPlayOffset());
     }
 
     /**
@@ -838,9 +907,10 @@ public abstract class AbstractLrcView extends View {
      * @return
      */
     public String getSplitLineLrc(int playProgress) {
-        if (mLyricsReader == null || mLrcLineInfos == null || mLrcLineInfos.size() == 0)
+        TreeMap<Integer, LyricsLineInfo> lrcLineInfos = getLrcLineInfos();
+        if (mLyricsReader == null || lrcLineInfos == null || lrcLineInfos.size() == 0)
             return null;
-        return LyricsUtils.getSplitLineLrc(mLyricsReader.getLyricsType(), mLrcLineInfos, playProgress, mLyricsReader.getPlayOffset());
+        return LyricsUtils.getSplitLineLrc(mLyricsCursor, mLyricsReader.getLyricsTimeline(), lrcLineInfos, playProgress, mLyricsReader.getPlayOffset());
     }
 
     /**
@@ -850,9 +920,10 @@ public abstract class AbstractLrcView extends View {
      * @return
      */
     public String getLineLrc(int playProgress) {
-        if (mLyricsReader == null || mLrcLineInfos == null || mLrcLineInfos.size() == 0)
+        TreeMap<Integer, LyricsLineInfo> lrcLineInfos = getLrcLineInfos();
+        if (mLyricsReader == null || lrcLineInfos == null || lrcLineInfos.size() == 0)
             return null;
-        return LyricsUtils.getLineLrc(mLyricsReader.getLyricsType(), mLrcLineInfos, playProgress, mLyricsReader.getPlayOffset());
+        return LyricsUtils.getLineLrc(mLyricsCursor, mLyricsReader.getLyricsTimeline(), lrcLineInfos, playProgress, mLyricsReader.getPlayOffset());
 
     }
 
@@ -893,22 +964,37 @@ public abstract class AbstractLrcView extends View {
             synchronized (lock) {
                 removeCallbacksAndMessages();
                 //更新行和索引等数据
-                updateView(getUpdateTime());
+                if (mLrcLayout.get() != null) {
+                    updateView(getUpdateTime());
+                }
                 invalidateView();
                 if (mLrcPlayerStatus == LRCPLAYERSTATUS_PLAY) {
-                    mWorkerHandler.sendEmptyMessageDelayed(0, mRefreshTime);
+                    startPlayFrames(mRefreshTime);
                 }
             }
         }
     }
 
     private long getUpdateTime() {
+        if (mLrcPlayerStatus == LRCPLAYERSTATUS_PLAY && isVsyncPlay()) {
+            //按帧时间推算的播放进度，调用updateProgress时校正
+            return mCurPlayingTime + getPlayerSpendProgress();
+        }
         return mCurPlayingTime;
     }
 
+    /**
+     * 开始播放后经历的时长按播放速度换算成的歌曲进度
+     *
+     * @return
+     */
+    private long getPlayerSpendProgress() {
+        return (long) (mPlayerSpendTime * mSpeed);
+    }
+
     public void updateProgress(long progress) {
         this.mCurPlayingTime = progress;
-        mPlayerStartTime = System.currentTimeMillis();
+        mPlayerStartTime = SystemClock.uptimeMillis();
         mPlayerSpendTime = 0;
     }
 
@@ -933,9 +1019,9 @@ public abstract class AbstractLrcView extends View {
             }
             mLrcPlayerStatus = LRCPLAYERSTATUS_PLAY;
             this.mCurPlayingTime = playProgress;
-            mPlayerStartTime = System.currentTimeMillis();
+            mPlayerStartTime = SystemClock.uptimeMillis();
             mPlayerSpendTime = 0;
-            mWorkerHandler.sendEmptyMessageDelayed(0, 0);
+            startPlayFrames(0);
         }
     }
 
@@ -948,7 +1034,8 @@ public abstract class AbstractLrcView extends View {
                 mLrcPlayerStatus = LRCPLAYERSTATUS_INIT;
                 removeCallbacksAndMessages();
             }
-            mCurPlayingTime += mPlayerSpendTime;
+            //只有按帧推算的进度需要按速度换算，Handler刷新时与原来一样直接累加
+            mCurPlayingTime += isVsyncPlay() ? getPlayerSpendProgress() : mPlayerSpendTime;
             mPlayerSpendTime = 0;
         }
     }
@@ -966,7 +1053,7 @@ public abstract class AbstractLrcView extends View {
                 mLrcPlayerStatus = LRCPLAYERSTATUS_SEEKTO;
 
                 this.mCurPlayingTime = playProgress;
-                mPlayerStartTime = System.currentTimeMillis();
+                mPlayerStartTime = SystemClock.uptimeMillis();
                 mPlayerSpendTime = 0;
                 mWorkerHandler.sendEmptyMessageDelayed(0, 0);
             }
@@ -979,9 +1066,9 @@ public abstract class AbstractLrcView extends View {
     public void resume() {
         synchronized (lock) {
             mLrcPlayerStatus = LRCPLAYERSTATUS_PLAY;
-            mPlayerStartTime = System.currentTimeMillis();
+            mPlayerStartTime = SystemClock.uptimeMillis();
             mPlayerSpendTime = 0;
-            mWorkerHandler.sendEmptyMessageDelayed(0, 0);
+            startPlayFrames(0);
         }
     }
 
@@ -1003,7 +1090,7 @@ public abstract class AbstractLrcView extends View {
         synchronized (lock) {
             this.mLyricsReader = lyricsReader;
             resetData();
-            if (!hasLrcLineInfos()) {
+            if (!hasReaderLineInfos()) {
 
                 if (mSearchLyricsListener != null) {
                     mLrcStatus = LRCSTATUS_NOLRC_GOTOSEARCH;
@@ -1012,10 +1099,9 @@ public abstract class AbstractLrcView extends View {
                 }
 
             } else {
-                //是否有歌词数据
-                mLrcStatus = LRCSTATUS_LRC;
-
-                updateView(mCurPlayingTime);
+                //在后台分割歌词，分割完成前显示加载中
+                mLrcStatus = LRCSTATUS_LOADING;
+                requestLrcLayout();
             }
             initExtraLrcTypeAndCallBack();
             invalidateView();
@@ -1023,50 +1109,218 @@ public abstract class AbstractLrcView extends View {
     }
 
     /**
-     * 是否有歌词数据
+     * 歌词读管理器追加了歌词行（直播、流式歌词），只分割新增的行，不重置播放状态
      *
-     * @return
+     * @param fromLineNum 第一个新增（或后移）的行号，见 {@link LyricsReader#appendLrcText(String)}
      */
-    public boolean hasLrcLineInfos() {
-        if (mLyricsReader != null && mLyricsReader.getLrcLineInfos() != null && mLyricsReader.getLrcLineInfos().size() > 0) {
-            //获取分割歌词集合
-            if (mLyricsReader.getLyricsType() == LyricsInfo.LRC) {
-                //lrc歌词
-                mLrcLineInfos = LyricsUtils.getSplitLrcLyrics(mLyricsReader.getLrcLineInfos(), mTextMaxWidth, mPaint);
-                //翻译歌词
-                mTranslateLrcLineInfos = LyricsUtils.getSplitLrcExtraLyrics(mLyricsReader.getTranslateLrcLineInfos(), mTextMaxWidth, mExtraLrcPaint);
-                //该lrc歌词不支持音译歌词
+    public void appendLrcLineInfos(int fromLineNum) {
+        synchronized (lock) {
+            if (mLyricsReader == null || fromLineNum < 0) return;
+            LrcLayout lrcLayout = mLrcLayout.get();
+            if (lrcLayout == null || mLyricsReader.getLyricsType() != LyricsInfo.LRC) {
+                //第一次有歌词数据
+                if (!hasLrcLineInfos()) return;
+            } else if (mLayoutPending) {
+                //正在后台重新分割，重新请求分割，完成后包含追加的行
+                requestLrcLayout();
             } else {
-                //动感歌词
-                //默认歌词
-                mLrcLineInfos = LyricsUtils.getSplitDynamicLyrics(mLyricsReader.getLrcLineInfos(), mTextMaxWidth, mPaint);
-                //翻译歌词
-                mTranslateLrcLineInfos = LyricsUtils.getSplitDynamicExtraLyrics(mLyricsReader.getTranslateLrcLineInfos(), mTextMaxWidth, mExtraLrcPaint);
-                //音译歌词
-                mTransliterationLrcLineInfos = LyricsUtils.getSplitDynamicExtraLyrics(mLyricsReader.getTransliterationLrcLineInfos(), mTextMaxWidth, mExtraLrcPaint);
+                mLrcLayout.set(new LrcLayout(LyricsUtils.getSplitLrcLyrics(mLyricsReader.getLrcLineInfos(), lrcLayout.mLrcLineInfos, fromLineNum, mTextMaxWidth, mPaint),
+                        lrcLayout.mTranslateLrcLineInfos, lrcLayout.mTransliterationLrcLineInfos));
             }
+            onLrcLineInfosAppended(fromLineNum);
+            if (mLrcStatus != LRCSTATUS_LRC) {
+                mLrcStatus = LRCSTATUS_LRC;
+                initExtraLrcTypeAndCallBack();
+            }
+            updateView(mCurPlayingTime);
+            invalidateView();
+        }
+    }
+
+    /**
+     * 追加歌词行后回调，子类在这里让与行数相关的缓存失效
+     *
+     * @param fromLineNum 第一个新增（或后移）的行号
+     */
+    protected void onLrcLineInfosAppended(int fromLineNum) {
 
+    }
+
+    /**
+     * 是否有歌词数据
+     *
+     * @return
+     */
+    public boolean hasLrcLineInfos() {
+        if (hasReaderLineInfos()) {
+            //放弃还没完成的后台分割
+            mLayoutVersion++;
+            mLayoutPending = false;
+            mLrcLayout.set(buildLrcLayout(mLyricsReader.getLyricsType(), mLyricsReader.getLrcLineInfos(), mLyricsReader.getTranslateLrcLineInfos(),
+                    mLyricsReader.getTransliterationLrcLineInfos(), mTextMaxWidth, mPaint, mExtraLrcPaint, isSplitOnDemand()));
             return true;
         }
 
         return false;
     }
 
+    private boolean hasReaderLineInfos() {
+        return mLyricsReader != null && mLyricsReader.getLrcLineInfos() != null && mLyricsReader.getLrcLineInfos().size() > 0;
+    }
+
+    /**
+     * 在后台重新分割歌词，分割完成前继续绘画原来的分割结果，完成后在主线程整体替换并刷新。
+     * 还没有分割结果时显示加载中，第一次分割完成后再显示歌词
+     *
+     * @return 是否有分割结果可以用来更新视图
+     */
+    private boolean requestLrcLayout() {
+        if (!hasReaderLineInfos()) {
+            return false;
+        }
+        final int layoutVersion = ++mLayoutVersion;
+        mLayoutPending = true;
+        final LyricsReader lyricsReader = mLyricsReader;
+        //保存分割需要的歌词数据，后台分割时不再访问歌词读管理器
+        final int lyricsType = lyricsReader.getLyricsType();
+        final TreeMap<Integer, LyricsLineInfo> lrcLineInfos = lyricsReader.getLrcLineInfos();
+        final List<LyricsLineInfo> translateLrcLineInfos = lyricsReader.getTranslateLrcLineInfos();
+        final List<LyricsLineInfo> transliterationLrcLineInfos = lyricsReader.getTransliterationLrcLineInfos();
+        final float textMaxWidth = mTextMaxWidth;
+        //复制画笔，绘画时会修改画笔的透明度和渐变
+        final Paint paint = new Paint(mPaint);
+        final Paint extraLrcPaint = new Paint(mExtraLrcPaint);
+        final boolean splitOnDemand = isSplitOnDemand();
+        Runnable layoutTask = new Runnable() {
+            @Override
+            public void run() {
+                final LrcLayout lrcLayout = buildLrcLayout(lyricsType, lrcLineInfos, translateLrcLineInfos, transliterationLrcLineInfos,
+                        textMaxWidth, paint, extraLrcPaint, splitOnDemand);
+                //在主线程替换，子类回调会修改滚动位置等视图状态
+                mUIHandler.sendMessage(mUIHandler.obtainMessage(UI_MSG_LAYOUT, new Runnable() {
+                    @Override
+                    public void run() {
+                        synchronized (lock) {
+                            if (layoutVersion != mLayoutVersion || lyricsReader != mLyricsReader) {
+                                //已经重新请求分割或者更换了歌词
+                                return;
+                            }
+                            mLayoutPending = false;
+                            if (mLrcLayout.getAndSet(lrcLayout) == null && mLrcStatus == LRCSTATUS_LOADING) {
+                                //第一次分割完成
+                                mLrcStatus = LRCSTATUS_LRC;
+                            }
+                            onLrcLayoutChanged();
+                            updateView(getUpdateTime());
+                            invalidateView();
+                        }
+                    }
+                }));
+            }
+        };
+        try {
+            ThreadPoolUtils.getLoadExecutor().execute(layoutTask);
+        } catch (RejectedExecutionException e) {
+            //线程池已满或已关闭，改在子线程分割，不在主线程分割
+            mWorkerHandler.sendMessage(mWorkerHandler.obtainMessage(WORKER_MSG_LAYOUT, layoutTask));
+        }
+        return mLrcLayout.get() != null;
+    }
+
+    /**
+     * 后台重新分割完成并替换后在主线程回调，子类在这里让与分割行相关的缓存失效
+     */
+    protected void onLrcLayoutChanged() {
+
+    }
+
+    /**
+     * 按需解析字的动感歌词行是否在第一次绘画时再分割。只绘画当前行的视图返回true，
+     * 加载时不需要解析所有行；需要所有行高度的视图返回false
+     *
+     * @return
+     */
+    protected boolean isSplitOnDemand() {
+        return false;
+    }
+
+    /**
+     * 分割歌词
+     *
+     * @param lyricsType                  歌词类型
+     * @param lrcLineInfos                默认歌词
+     * @param translateLrcLineInfos       翻译歌词
+     * @param transliterationLrcLineInfos 音译歌词
+     * @param textMaxWidth  歌词行最大宽度
+     * @param paint         默认歌词画笔
+     * @param extraLrcPaint 额外歌词画笔
+     * @param splitOnDemand 按需解析字的行是否在第一次绘画时再分割
+     * @return
+     */
+    private static LrcLayout buildLrcLayout(int lyricsType, TreeMap<Integer, LyricsLineInfo> lrcLineInfos, List<LyricsLineInfo> translateLrcLineInfos,
+                                            List<LyricsLineInfo> transliterationLrcLineInfos, float textMaxWidth, Paint paint, Paint extraLrcPaint,
+                                            boolean splitOnDemand) {
+        //获取分割歌词集合
+        if (lyricsType == LyricsInfo.LRC) {
+            //lrc歌词
+            TreeMap<Integer, LyricsLineInfo> splitLrcLineInfos = LyricsUtils.getSplitLrcLyrics(lrcLineInfos, textMaxWidth, paint);
+            //翻译歌词
+            List<LyricsLineInfo> splitTranslateLrcLineInfos = LyricsUtils.getSplitLrcExtraLyrics(translateLrcLineInfos, textMaxWidth, extraLrcPaint);
+            //该lrc歌词不支持音译歌词
+            return new LrcLayout(splitLrcLineInfos, splitTranslateLrcLineInfos, null);
+        }
+        //动感歌词
+        //默认歌词
+        TreeMap<Integer, LyricsLineInfo> splitLrcLineInfos = LyricsUtils.getSplitDynamicLyrics(lrcLineInfos, textMaxWidth, paint, splitOnDemand);
+        //翻译歌词
+        List<LyricsLineInfo> splitTranslateLrcLineInfos = LyricsUtils.getSplitDynamicExtraLyrics(translateLrcLineInfos, textMaxWidth, extraLrcPaint);
+        //音译歌词
+        List<LyricsLineInfo> splitTransliterationLrcLineInfos = LyricsUtils.getSplitDynamicExtraLyrics(transliterationLrcLineInfos, textMaxWidth, extraLrcPaint);
+        return new LrcLayout(splitLrcLineInfos, splitTranslateLrcLineInfos, splitTransliterationLrcLineInfos);
+    }
+
+    /**
+     * 分割后的歌词，生成后不再修改，默认歌词、翻译歌词和音译歌词一起替换
+     */
+    private static class LrcLayout {
+        /**
+         * 歌词列表
+         */
+        final TreeMap<Integer, LyricsLineInfo> mLrcLineInfos;
+        /**
+         * 翻译行歌词列表
+         */
+        final List<LyricsLineInfo> mTranslateLrcLineInfos;
+        /**
+         * 音译歌词行
+         */
+        final List<LyricsLineInfo> mTransliterationLrcLineInfos;
+
+        LrcLayout(TreeMap<Integer, LyricsLineInfo> lrcLineInfos, List<LyricsLineInfo> translateLrcLineInfos, List<LyricsLineInfo> transliterationLrcLineInfos) {
+            this.mLrcLineInfos = lrcLineInfos;
+            this.mTranslateLrcLineInfos = translateLrcLineInfos;
+            this.mTransliterationLrcLineInfos = transliterationLrcLineInfos;
+        }
+    }
+
     /**
      * 初始化额外歌词类型
      */
     private void initExtraLrcTypeAndCallBack() {
         int extraLrcStatus = EXTRALRCSTATUS_NOSHOWEXTRALRC;
+        //分割后的额外歌词与歌词读管理器中的行数相同，不需要等待分割完成
+        List<LyricsLineInfo> translateLrcLineInfos = mLyricsReader == null ? null : mLyricsReader.getTranslateLrcLineInfos();
+        List<LyricsLineInfo> transliterationLrcLineInfos = mLyricsReader == null ? null : mLyricsReader.getTransliterationLrcLineInfos();
         //判断音译和翻译歌词
-        if (mTranslateLrcLineInfos != null && mTranslateLrcLineInfos.size() > 0 && mTransliterationLrcLineInfos != null && mTransliterationLrcLineInfos.size() > 0) {
+        if (translateLrcLineInfos != null && translateLrcLineInfos.size() > 0 && transliterationLrcLineInfos != null && transliterationLrcLineInfos.size() > 0) {
             //有翻译歌词和音译歌词
             mExtraLrcType = EXTRALRCTYPE_BOTH;
             extraLrcStatus = EXTRALRCSTATUS_SHOWTRANSLITERATIONLRC;
-        } else if (mTranslateLrcLineInfos != null && mTranslateLrcLineInfos.size() > 0) {
+        } else if (translateLrcLineInfos != null && translateLrcLineInfos.size() > 0) {
             //有翻译歌词
             mExtraLrcType = EXTRALRCTYPE_TRANSLATELRC;
             extraLrcStatus = EXTRALRCSTATUS_SHOWTRANSLATELRC;
-        } else if (mTransliterationLrcLineInfos != null && mTransliterationLrcLineInfos.size() > 0) {
+        } else if (transliterationLrcLineInfos != null && transliterationLrcLineInfos.size() > 0) {
             //音译歌词
             mExtraLrcType = EXTRALRCTYPE_TRANSLITERATIONLRC;
             extraLrcStatus = EXTRALRCSTATUS_SHOWTRANSLITERATIONLRC;
@@ -1089,6 +1343,7 @@ public abstract class AbstractLrcView extends View {
 
         // 重置所有缓存（行号、渐变、文本高度）
         LyricsUtils.clearAllCache();
+        mLyricsCursor.rewind();
 
         //player
         mCurPlayingTime = 0;
@@ -1104,9 +1359,9 @@ public abstract class AbstractLrcView extends View {
         mLyricsWordHLTime = 0;
 
         //
-        mLrcLineInfos = null;
-        mTranslateLrcLineInfos = null;
-        mTransliterationLrcLineInfos = null;
+        mLayoutVersion++;
+        mLayoutPending = false;
+        mLrcLayout.set(null);
         mExtraSplitLyricsLineNum = 0;
         mExtraLyricsWordIndex = -1;
         mExtraSplitLyricsWordIndex = -1;
@@ -1131,7 +1386,7 @@ public abstract class AbstractLrcView extends View {
                 setFontSize(fontSize, false);
                 setExtraLrcFontSize(extraFontSize, false);
                 if (isReloadData) {
-                    if (hasLrcLineInfos()) {
+                    if (requestLrcLayout()) {
                         updateView(getUpdateTime());
                     }
                     invalidateView();
@@ -1173,7 +1428,7 @@ public abstract class AbstractLrcView extends View {
 
             if (isReloadData) {
                 //加载歌词数据
-                if (hasLrcLineInfos()) {
+                if (requestLrcLayout()) {
                     updateView(getUpdateTime());
                 }
                 invalidateView();
@@ -1198,7 +1453,7 @@ public abstract class AbstractLrcView extends View {
 
 
             if (isReloadData) {
-                if (hasLrcLineInfos()) {
+                if (requestLrcLayout()) {
                     updateView(getUpdateTime());
                 }
                 invalidateView();
@@ -1212,36 +1467,40 @@ public abstract class AbstractLrcView extends View {
      * @param playProgress
      */
     public void updateSplitData(long playProgress) {
+        LrcLayout lrcLayout = mLrcLayout.get();
+        if (lrcLayout == null) return;
+        TreeMap<Integer, LyricsLineInfo> lrcLineInfos = lrcLayout.mLrcLineInfos;
+        List<LyricsLineInfo> translateLrcLineInfos = lrcLayout.mTranslateLrcLineInfos;
+        List<LyricsLineInfo> transliterationLrcLineInfos = lrcLayout.mTransliterationLrcLineInfos;
         //动感歌词
         if (mLyricsReader.getLyricsType() == LyricsInfo.DYNAMIC) {
-            //获取分割后的索引
-            mSplitLyricsLineNum = LyricsUtils.getSplitDynamicLyricsLineNum(mLrcLineInfos, mLyricsLineNum, playProgress, mLyricsReader.getPlayOffset());
-            //获取原始的歌词字索引
-            mLyricsWordIndex = LyricsUtils.getLyricsWordIndex(mLrcLineInfos, mLyricsLineNum, playProgress, mLyricsReader.getPlayOffset());
-            //获取分割后的歌词字索引
-            mSplitLyricsWordIndex = LyricsUtils.getSplitLyricsWordIndex(mLrcLineInfos, mLyricsLineNum, playProgress, mLyricsReader.getPlayOffset());
-            mLyricsWordHLTime = LyricsUtils.getDisWordsIndexLenTime(mLrcLineInfos, mLyricsLineNum, playProgress, mLyricsReader.getPlayOffset());
+            //一次查询获取分割后的索引、原始的歌词字索引、分割后的歌词字索引和高亮时间
+            LyricsUtils.getLyricsPosition(mLyricsCursor, mLyricsReader.getLyricsTimeline(), lrcLineInfos, playProgress, mLyricsReader.getPlayOffset(), mLyricsPosition);
+            mSplitLyricsLineNum = mLyricsPosition.getSplitLyricsLineNum();
+            mLyricsWordIndex = mLyricsPosition.getLyricsWordIndex();
+            mSplitLyricsWordIndex = mLyricsPosition.getSplitLyricsWordIndex();
+            mLyricsWordHLTime = mLyricsPosition.getLyricsWordHLTime();
         } else {
             //lrc歌词
             //获取分割后的索引
-            mSplitLyricsLineNum = LyricsUtils.getSplitLrcLyricsLineNum(mLrcLineInfos, mLyricsLineNum, playProgress, mLyricsReader.getPlayOffset());
+            mSplitLyricsLineNum = LyricsUtils.getSplitLrcLyricsLineNum(lrcLineInfos, mLyricsLineNum, playProgress, mLyricsReader.getPlayOffset());
         }
         if (mLyricsReader.getLyricsType() == LyricsInfo.DYNAMIC && mExtraLrcStatus == EXTRALRCSTATUS_SHOWTRANSLATELRC && mTranslateDrawType == TRANSLATE_DRAW_TYPE_DYNAMIC) {
             //显示翻译歌词且歌词类型是动感歌词且以动感歌词的形式绘画翻译歌词
-            if (mTranslateLrcLineInfos != null && mTranslateLrcLineInfos.size() > 0) {
-                mExtraSplitLyricsLineNum = LyricsUtils.getSplitExtraLyricsLineNum(mTranslateLrcLineInfos, mLyricsLineNum, playProgress, mLyricsReader.getPlayOffset());
+            if (translateLrcLineInfos != null && translateLrcLineInfos.size() > 0) {
+                mExtraSplitLyricsLineNum = LyricsUtils.getSplitExtraLyricsLineNum(translateLrcLineInfos, mLyricsLineNum, playProgress, mLyricsReader.getPlayOffset());
 
-                mExtraLyricsWordIndex = LyricsUtils.getExtraLyricsWordIndex(mTranslateLrcLineInfos, mLyricsLineNum, playProgress, mLyricsReader.getPlayOffset());
-                mExtraSplitLyricsWordIndex = LyricsUtils.getSplitExtraLyricsWordIndex(mTranslateLrcLineInfos, mLyricsLineNum, playProgress, mLyricsReader.getPlayOffset());
-                mTranslateLyricsWordHLTime = LyricsUtils.getTranslateLrcDisWordsIndexLenTime(mTranslateLrcLineInfos, mLyricsLineNum, playProgress, mLyricsReader.getPlayOffset());
+                mExtraLyricsWordIndex = LyricsUtils.getExtraLyricsWordIndex(translateLrcLineInfos, mLyricsLineNum, playProgress, mLyricsReader.getPlayOffset());
+                mExtraSplitLyricsWordIndex = LyricsUtils.getSplitExtraLyricsWordIndex(translateLrcLineInfos, mLyricsLineNum, playProgress, mLyricsReader.getPlayOffset());
+                mTranslateLyricsWordHLTime = LyricsUtils.getTranslateLrcDisWordsIndexLenTime(translateLrcLineInfos, mLyricsLineNum, playProgress, mLyricsReader.getPlayOffset());
             }
         } else if (mExtraLrcStatus == EXTRALRCSTATUS_SHOWTRANSLITERATIONLRC) {
             //显示音译歌词
-            if (mTransliterationLrcLineInfos != null && mTransliterationLrcLineInfos.size() > 0) {
-                mExtraSplitLyricsLineNum = LyricsUtils.getSplitExtraLyricsLineNum(mTransliterationLrcLineInfos, mLyricsLineNum, playProgress, mLyricsReader.getPlayOffset());
+            if (transliterationLrcLineInfos != null && transliterationLrcLineInfos.size() > 0) {
+                mExtraSplitLyricsLineNum = LyricsUtils.getSplitExtraLyricsLineNum(transliterationLrcLineInfos, mLyricsLineNum, playProgress, mLyricsReader.getPlayOffset());
 
-                mExtraLyricsWordIndex = LyricsUtils.getExtraLyricsWordIndex(mTransliterationLrcLineInfos, mLyricsLineNum, playProgress, mLyricsReader.getPlayOffset());
-                mExtraSplitLyricsWordIndex = LyricsUtils.getSplitExtraLyricsWordIndex(mTransliterationLrcLineInfos, mLyricsLineNum, playProgress, mLyricsReader.getPlayOffset());
+                mExtraLyricsWordIndex = LyricsUtils.getExtraLyricsWordIndex(transliterationLrcLineInfos, mLyricsLineNum, playProgress, mLyricsReader.getPlayOffset());
+                mExtraSplitLyricsWordIndex = LyricsUtils.getSplitExtraLyricsWordIndex(transliterationLrcLineInfos, mLyricsLineNum, playProgress, mLyricsReader.getPlayOffset());
             }
         }
     }
@@ -1255,11 +1514,147 @@ public abstract class AbstractLrcView extends View {
         this.mTranslateDrawType = translateDrawType;
     }
 
+    /**
+     * 开始播放刷新
+     *
+     * @param delayMillis 延时
+     */
+    private void startPlayFrames(long delayMillis) {
+        if (isVsyncPlay()) {
+            //第一帧一定重绘
+            Arrays.fill(mFrameState, Float.NaN);
+            mWorkerHandler.sendEmptyMessageDelayed(WORKER_MSG_FRAME, delayMillis);
+        } else {
+            mWorkerHandler.sendEmptyMessageDelayed(0, delayMillis);
+        }
+    }
+
+    /**
+     * 是否按屏幕刷新驱动播放
+     *
+     * @return
+     */
+    private boolean isVsyncPlay() {
+        return mVsyncEnabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+    }
+
+    /**
+     * 注册帧回调，在子线程调用，回调也在子线程执行
+     *
+     * @param delayMillis 延时，到时后的下一帧回调
+     */
+    private void postPlayFrame(long delayMillis) {
+        if (mChoreographer == null) {
+            mFrameCallback = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    onPlayFrame(frameTimeNanos);
+                }
+            };
+            mChoreographer = Choreographer.getInstance();
+        }
+        mChoreographer.removeFrameCallback(mFrameCallback);
+        mChoreographer.postFrameCallbackDelayed(mFrameCallback, delayMillis);
+    }
+
+    /**
+     * 每帧更新歌词，歌词有可见变化时才重绘
+     *
+     * @param frameTimeNanos 帧时间，与SystemClock.uptimeMillis()是同一个时钟
+     */
+    private void onPlayFrame(long frameTimeNanos) {
+        Context context = mActivityWR.get();
+        if (context == null) {
+            return;
+        }
+        synchronized (lock) {
+            if (mLrcPlayerStatus != LRCPLAYERSTATUS_PLAY || mLyricsReader == null || !isVsyncPlay()) {
+                return;
+            }
+            mPlayerSpendTime = Math.max(0, frameTimeNanos / 1000000 - mPlayerStartTime);
+            if (mLrcLayout.get() == null) {
+                //还在分割歌词，分割完成后替换时会更新视图
+                postPlayFrame(mRefreshTime);
+                return;
+            }
+            updateView(getUpdateTime());
+            if (isFrameChanged()) {
+                invalidateView();
+                postPlayFrame(0);
+            } else {
+                //当前字没有变化，降低回调频率
+                postPlayFrame(mRefreshTime);
+            }
+        }
+    }
+
+    /**
+     * 歌词状态与上一次重绘时相比是否有可见的变化
+     *
+     * @return
+     */
+    private boolean isFrameChanged() {
+        float translateLyricsWordHLTime = 0;
+        if (mExtraLrcStatus == EXTRALRCSTATUS_SHOWTRANSLATELRC && mTranslateDrawType == TRANSLATE_DRAW_TYPE_DYNAMIC) {
+            translateLyricsWordHLTime = mTranslateLyricsWordHLTime;
+        }
+        boolean changed = setFrameState(0, mLyricsLineNum);
+        changed |= setFrameState(1, mSplitLyricsLineNum);
+        changed |= setFrameState(2, mLyricsWordIndex);
+        changed |= setFrameState(3, mSplitLyricsWordIndex);
+        changed |= setFrameState(4, getVisibleWordHLTime());
+        changed |= setFrameState(5, mExtraSplitLyricsLineNum);
+        changed |= setFrameState(6, mExtraLyricsWordIndex);
+        changed |= setFrameState(7, mExtraSplitLyricsWordIndex);
+        changed |= setFrameState(8, translateLyricsWordHLTime);
+        return changed;
+    }
+
+    private boolean setFrameState(int index, float value) {
+        if (mFrameState[index] == value) {
+            return false;
+        }
+        mFrameState[index] = value;
+        return true;
+    }
+
+    /**
+     * 获取影响绘画的高亮时间，当前字唱完后高亮宽度不再变化
+     *
+     * @return
+     */
+    private float getVisibleWordHLTime() {
+        if (mLyricsReader.getLyricsType() != LyricsInfo.DYNAMIC) {
+            //lrc歌词整行绘画
+            return 0;
+        }
+        if (mExtraLrcStatus == EXTRALRCSTATUS_SHOWTRANSLITERATIONLRC || mSplitLyricsWordIndex < 0) {
+            return mLyricsWordHLTime;
+        }
+        TreeMap<Integer, LyricsLineInfo> lrcLineInfos = getLrcLineInfos();
+        LyricsLineInfo lyricsLineInfo = lrcLineInfos == null ? null : lrcLineInfos.get(mLyricsLineNum);
+        if (lyricsLineInfo == null) {
+            return mLyricsWordHLTime;
+        }
+        List<LyricsLineInfo> splitLyricsLineInfos = lyricsLineInfo.getSplitLyricsLineInfos();
+        if (splitLyricsLineInfos == null || mSplitLyricsLineNum < 0 || mSplitLyricsLineNum >= splitLyricsLineInfos.size()) {
+            return mLyricsWordHLTime;
+        }
+        int[] wordsDisInterval = splitLyricsLineInfos.get(mSplitLyricsLineNum).getWordsDisInterval();
+        if (wordsDisInterval == null || mSplitLyricsWordIndex >= wordsDisInterval.length) {
+            return mLyricsWordHLTime;
+        }
+        return Math.min(mLyricsWordHLTime, wordsDisInterval[mSplitLyricsWordIndex]);
+    }
+
     /**
      * 释放
      */
     public void release() {
         removeCallbacksAndMessages();
+        if (mUIHandler != null) {
+            mUIHandler.removeCallbacksAndMessages(null);
+        }
         //关闭线程
         if (mHandlerThread != null)
             mHandlerThread.quit();
@@ -1269,14 +1664,21 @@ public abstract class AbstractLrcView extends View {
      *
      */
     private void removeCallbacksAndMessages() {
-        //移除队列任务
+        //移除队列任务，后台分割完成的替换消息保留
         if (mUIHandler != null) {
-            mUIHandler.removeCallbacksAndMessages(null);
+            mUIHandler.removeMessages(0);
         }
 
-        //移除队列任务
+        //移除队列任务，子线程的分割任务保留
         if (mWorkerHandler != null) {
-            mWorkerHandler.removeCallbacksAndMessages(null);
+            mWorkerHandler.removeMessages(0);
+            mWorkerHandler.removeMessages(WORKER_MSG_FRAME);
+        }
+
+        //移除帧回调
+        Choreographer choreographer = mChoreographer;
+        if (choreographer != null) {
+            choreographer.removeFrameCallback(mFrameCallback);
         }
 
     }
@@ -1308,6 +1710,27 @@ public abstract class AbstractLrcView extends View {
         this.mRefreshTime = refreshTime;
     }
 
+    /**
+     * 设置是否按屏幕刷新（vsync）驱动播放：每帧按帧时间推算播放进度，歌词没有可见的变化时不重绘，
+     * 当前字没有变化时按刷新延时时间回调。api16以下仍使用Handler延时刷新
+     *
+     * @param vsyncEnabled
+     */
+    public void setVsyncEnabled(boolean vsyncEnabled) {
+        synchronized (lock) {
+            if (mVsyncEnabled == vsyncEnabled) return;
+            mVsyncEnabled = vsyncEnabled;
+            if (mLrcPlayerStatus == LRCPLAYERSTATUS_PLAY) {
+                removeCallbacksAndMessages();
+                startPlayFrames(0);
+            }
+        }
+    }
+
+    public boolean isVsyncEnabled() {
+        return mVsyncEnabled;
+    }
+
     public void setTextMaxWidth(float mTextMaxWidth) {
         this.mTextMaxWidth = mTextMaxWidth;
     }
@@ -1413,15 +1836,22 @@ public abstract class AbstractLrcView extends View {
     }
 
     public TreeMap<Integer, LyricsLineInfo> getLrcLineInfos() {
-        return mLrcLineInfos;
+        LrcLayout lrcLayout = mLrcLayout.get();
+        return lrcLayout == null ? null : lrcLayout.mLrcLineInfos;
+    }
+
+    public LyricsCursor getLyricsCursor() {
+        return mLyricsCursor;
     }
 
     public List<LyricsLineInfo> getTranslateLrcLineInfos() {
-        return mTranslateLrcLineInfos;
+        LrcLayout lrcLayout = mLrcLayout.get();
+        return lrcLayout == null ? null : lrcLayout.mTranslateLrcLineInfos;
     }
 
     public List<LyricsLineInfo> getTransliterationLrcLineInfos() {
-        return mTransliterationLrcLineInfos;
+        LrcLayout lrcLayout = mLrcLayout.get();
+        return lrcLayout == null ? null : lrcLayout.mTransliterationLrcLineInfos;
     }
 
     public Paint getPaint() {
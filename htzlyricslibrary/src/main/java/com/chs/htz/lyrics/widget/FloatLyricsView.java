@@ -81,6 +81,16 @@ public class FloatLyricsView extends AbstractLrcView {
         updateFloatLrcView(playProgress);
     }
 
+    /**
+     * 只绘画当前行，按需解析字的行在绘画时再分割
+     *
+     * @return
+     */
+    @Override
+    protected boolean isSplitOnDemand() {
+        return true;
+    }
+
 
     /**
      * 绘画歌词
@@ -134,7 +144,6 @@ public class FloatLyricsView extends AbstractLrcView {
         float textX = 0;
         // 当前歌词行的y坐标
         float textY = 0;
-        int splitLyricsRealLineNum = LyricsUtils.getSplitLyricsRealLineNum(lrcLineInfos, lyricsLineNum, splitLyricsLineNum);
         float topPadding = (getHeight() - spaceLineHeight - 2 * LyricsUtils.getTextHeight(paint)) / 2;
         if (mOrientation == ORIENTATION_LEFT) {
             textX = paddingLeftOrRight;
@@ -142,7 +151,6 @@ public class FloatLyricsView extends AbstractLrcView {
             textX = (getWidth() - curLrcTextWidth) / 2;
         }
         textY = topPadding + LyricsUtils.getTextHeight(paint);
-        //android.util.Log.d("huasong", "curLyrics:" + curLyrics + " splitLyricsRealLineNum:" + splitLyricsRealLineNum + " size:" + splitLyricsLineInfos.size() + " splitLyricsLineNum:" + splitLyricsLineNum);
         if (splitLyricsLineNum > 0) {
             float nextLrcTextY = textY + spaceLineHeight + LyricsUtils.getTextHeight(paint);
 
@@ -240,8 +248,7 @@ public class FloatLyricsView extends AbstractLrcView {
      */
     private void updateFloatLrcView(long playProgress) {
         LyricsReader lyricsReader = getLyricsReader();
-        TreeMap<Integer, LyricsLineInfo> lrcLineInfos = getLrcLineInfos();
-        int lyricsLineNum = LyricsUtils.getLineNumber(lyricsReader.getLyricsType(), lrcLineInfos, playProgress, lyricsReader.getPlayOffset());
+        int lyricsLineNum = LyricsUtils.getLineNumber(getLyricsCursor(), lyricsReader.getLyricsTimeline(), playProgress, lyricsReader.getPlayOffset());
         setLyricsLineNum(lyricsLineNum);
         updateSplitData(playProgress);
     }
@@ -84,6 +84,10 @@ public class ManyLyricsView extends AbstractLrcView {
      * 播放按钮区域
      */
     private Rect mPlayBtnRect;
+    /**
+     * 时间指示器格式化，同一秒内不重复生成字符串
+     */
+    private final TimeUtils.MMSSFormatter mIndicatorTimeFormatter = new TimeUtils.MMSSFormatter();
 
     /**
      * 是否在播放按钮区域
@@ -173,6 +177,13 @@ public class ManyLyricsView extends AbstractLrcView {
      */
     private int[] mLineHeightCache;
     private boolean mLineHeightCacheValid = false;
+    /**
+     * 分割行数累计缓存，与行高度缓存一起构建，绘画时用来直接定位可见的第一行
+     * mSplitLineCountCache[i] = 第i行之前的分割歌词行数
+     * mExtraSplitLineCountCache[i] = 第i行之前显示的额外歌词分割行数
+     */
+    private int[] mSplitLineCountCache;
+    private int[] mExtraSplitLineCountCache;
 
     /**
      * Handler处理滑动指示器隐藏和歌词滚动到当前播放的位置
@@ -342,6 +353,10 @@ public class ManyLyricsView extends AbstractLrcView {
             float nextY = startBaseline;  // ★ 用修正后的起始 baseline
 
             for (int i = 0; i < lrcLineInfos.size(); i++) {
+                // 超出下视图，后面的行都不用画
+                if (nextY + spaceLineHeight > getHeight()) {
+                    break;
+                }
                 LyricsLineInfo lineInfo = lrcLineInfos.get(i);
                 if (lineInfo == null) continue;
                 List<LyricsLineInfo> splits = lineInfo.getSplitLyricsLineInfos();
@@ -404,8 +419,20 @@ public class ManyLyricsView extends AbstractLrcView {
                 mCentreY
         );
 
+        // 只画可见的行：用分割行数累计缓存跳过视图之外的行，超出视图后结束
+        boolean splitLineCountCacheValid = isSplitLineCountCacheValid(lrcLineInfos.size());
+
         // 画当前行之后（向下）
-        for (int i = lyricsLineNum + 1; i < lrcLineInfos.size(); i++) {
+        int firstDownLineNum = lyricsLineNum + 1;
+        if (splitLineCountCacheValid && firstDownLineNum < lrcLineInfos.size()) {
+            firstDownLineNum = getFirstDownVisibleLineNum(lyricsLineNum + 1, lrcLineInfos.size(), lineBottomY, lineHeight);
+            lineBottomY += lineHeight * (mSplitLineCountCache[firstDownLineNum] - mSplitLineCountCache[lyricsLineNum + 1]);
+        }
+        for (int i = firstDownLineNum; i < lrcLineInfos.size(); i++) {
+            // 超出下视图，后面的行都不用画
+            if (lineBottomY + spaceLineHeight > getHeight()) {
+                break;
+            }
             LyricsLineInfo down = lrcLineInfos.get(i);
             if (down == null) continue;
             List<LyricsLineInfo> splits = down.getSplitLyricsLineInfos();
@@ -421,7 +448,21 @@ public class ManyLyricsView extends AbstractLrcView {
 
         // 画当前行之前（向上，含额外/翻译/音译）
         float lineTopY = mCentreY;
-        for (int i = lyricsLineNum - 1; i >= 0; i--) {
+        // 向上绘画时歌词和额外歌词都用额外歌词画笔，额外歌词不加空行
+        final float extraTextHeight = LyricsUtils.getTextHeight(extraLrcPaint);
+        final float upLineHeight = extraTextHeight + spaceLineHeight;
+        final float upMinY = isExtraLrcShowing() ? extraTextHeight : upLineHeight;
+        int firstUpLineNum = lyricsLineNum - 1;
+        if (splitLineCountCacheValid && firstUpLineNum >= 0) {
+            firstUpLineNum = getFirstUpVisibleLineNum(lyricsLineNum - 1, lineTopY, upLineHeight, extraTextHeight);
+            lineTopY -= upLineHeight * (mSplitLineCountCache[lyricsLineNum] - mSplitLineCountCache[firstUpLineNum + 1])
+                    + extraTextHeight * (mExtraSplitLineCountCache[lyricsLineNum] - mExtraSplitLineCountCache[firstUpLineNum + 1]);
+        }
+        for (int i = firstUpLineNum; i >= 0; i--) {
+            // 超出上视图，前面的行都不用画
+            if (lineTopY - upLineHeight < upMinY) {
+                break;
+            }
             LyricsLineInfo up = lrcLineInfos.get(i);
             if (up == null) continue;
             List<LyricsLineInfo> splits = up.getSplitLyricsLineInfos();
@@ -674,7 +715,7 @@ public class ManyLyricsView extends AbstractLrcView {
      * @param canvas
      */
     private void drawIndicator(Canvas canvas, int startTime) {
-        String timeString = TimeUtils.parseMMSSString(startTime);
+        String timeString = mIndicatorTimeFormatter.format(startTime);
         int textHeight = LyricsUtils.getTextHeight(mPaintIndicator);
         float textWidth = LyricsUtils.getTextWidth(mPaintIndicator, timeString);
         int padding = 10;
@@ -760,12 +801,11 @@ public class ManyLyricsView extends AbstractLrcView {
         if (mIsTouchIntercept) return;
         // 获取数据
         LyricsReader lyricsReader = getLyricsReader();
-        TreeMap<Integer, LyricsLineInfo> lrcLineInfos = getLrcLineInfos();
         int lyricsLineNum = getLyricsLineNum();
 
         // ---------- 顶部模式处理已移至 onDrawLrcView，这里只做滚动控制 ----------
 
-        int newLyricsLineNum = LyricsUtils.getLineNumber(lyricsReader.getLyricsType(), lrcLineInfos, playProgress, lyricsReader.getPlayOffset());
+        int newLyricsLineNum = LyricsUtils.getLineNumber(getLyricsCursor(), lyricsReader.getLyricsTimeline(), playProgress, lyricsReader.getPlayOffset());
         // 防止newLyricsLineNum为-1
         newLyricsLineNum = Math.max(0, newLyricsLineNum);
 
@@ -817,7 +857,7 @@ public class ManyLyricsView extends AbstractLrcView {
         // 获取数据
         LyricsReader lyricsReader = getLyricsReader();
         TreeMap<Integer, LyricsLineInfo> lrcLineInfos = getLrcLineInfos();
-        int newLyricsLineNum = LyricsUtils.getLineNumber(lyricsReader.getLyricsType(), lrcLineInfos, playProgress, lyricsReader.getPlayOffset());
+        int newLyricsLineNum = LyricsUtils.getLineNumber(getLyricsCursor(), lyricsReader.getLyricsTimeline(), playProgress, lyricsReader.getPlayOffset());
         newLyricsLineNum = Math.max(0, newLyricsLineNum);
         int splitLyricsLineNum = getSplitLyricsLineNum();
 
@@ -997,17 +1037,19 @@ public class ManyLyricsView extends AbstractLrcView {
         }
 
         // 检查是否可以使用缓存
-        if (mLineHeightCacheValid && mLineHeightCache != null &&
-                lyricsLineNum < mLineHeightCache.length) {
-            return mLineHeightCache[lyricsLineNum];
+        int[] lineHeightCache = mLineHeightCache;
+        if (mLineHeightCacheValid && lineHeightCache != null &&
+                lyricsLineNum < lineHeightCache.length) {
+            return lineHeightCache[lyricsLineNum];
         }
 
         // 重建缓存
         buildLineHeightCache();
 
         // 使用缓存
-        if (mLineHeightCache != null && lyricsLineNum < mLineHeightCache.length) {
-            return mLineHeightCache[lyricsLineNum];
+        lineHeightCache = mLineHeightCache;
+        if (lineHeightCache != null && lyricsLineNum < lineHeightCache.length) {
+            return lineHeightCache[lyricsLineNum];
         }
 
         return 0;
@@ -1020,6 +1062,8 @@ public class ManyLyricsView extends AbstractLrcView {
         TreeMap<Integer, LyricsLineInfo> lrcLineInfos = getLrcLineInfos();
         if (lrcLineInfos == null || lrcLineInfos.isEmpty()) {
             mLineHeightCache = null;
+            mSplitLineCountCache = null;
+            mExtraSplitLineCountCache = null;
             mLineHeightCacheValid = false;
             return;
         }
@@ -1033,33 +1077,57 @@ public class ManyLyricsView extends AbstractLrcView {
         List<LyricsLineInfo> transliterationLrcLineInfos = getTransliterationLrcLineInfos();
 
         int size = lrcLineInfos.size();
-        mLineHeightCache = new int[size + 1]; // 多一个用于存储总高度
-        mLineHeightCache[0] = 0;
+        int[] lineHeightCache = new int[size + 1]; // 多一个用于存储总高度
+        int[] splitLineCountCache = new int[size + 1];
+        int[] extraSplitLineCountCache = new int[size + 1];
 
         int lineAtHeightY = 0;
+        int splitLineCount = 0;
+        int extraSplitLineCount = 0;
         for (int i = 0; i < size; i++) {
-            mLineHeightCache[i] = lineAtHeightY;
+            lineHeightCache[i] = lineAtHeightY;
+            splitLineCountCache[i] = splitLineCount;
+            extraSplitLineCountCache[i] = extraSplitLineCount;
 
             LyricsLineInfo lyricsLineInfo = lrcLineInfos.get(i);
             List<LyricsLineInfo> lyricsLineInfos = lyricsLineInfo.getSplitLyricsLineInfos();
             lineAtHeightY += (LyricsUtils.getTextHeight(paint) + spaceLineHeight) * lyricsLineInfos.size();
+            splitLineCount += lyricsLineInfos.size();
 
             if (extraLrcStatus == AbstractLrcView.EXTRALRCSTATUS_SHOWTRANSLATELRC) {
                 if (translateLrcLineInfos != null && i < translateLrcLineInfos.size()) {
                     List<LyricsLineInfo> tempTranslateLrcLineInfos = translateLrcLineInfos.get(i).getSplitLyricsLineInfos();
                     lineAtHeightY += (LyricsUtils.getTextHeight(extraLrcPaint) + extraLrcSpaceLineHeight) * tempTranslateLrcLineInfos.size();
+                    extraSplitLineCount += tempTranslateLrcLineInfos.size();
                 }
             } else if (extraLrcStatus == AbstractLrcView.EXTRALRCSTATUS_SHOWTRANSLITERATIONLRC) {
                 if (transliterationLrcLineInfos != null && i < transliterationLrcLineInfos.size()) {
                     List<LyricsLineInfo> tempTransliterationLrcLineInfos = transliterationLrcLineInfos.get(i).getSplitLyricsLineInfos();
                     lineAtHeightY += (LyricsUtils.getTextHeight(extraLrcPaint) + extraLrcSpaceLineHeight) * tempTransliterationLrcLineInfos.size();
+                    extraSplitLineCount += tempTransliterationLrcLineInfos.size();
                 }
             }
         }
-        mLineHeightCache[size] = lineAtHeightY;
+        lineHeightCache[size] = lineAtHeightY;
+        splitLineCountCache[size] = splitLineCount;
+        extraSplitLineCountCache[size] = extraSplitLineCount;
+        //全部计算完成后再替换，其它地方不会读到没有填充的缓存
+        mLineHeightCache = lineHeightCache;
+        mSplitLineCountCache = splitLineCountCache;
+        mExtraSplitLineCountCache = extraSplitLineCountCache;
         mLineHeightCacheValid = true;
     }
 
+    @Override
+    protected void onLrcLineInfosAppended(int fromLineNum) {
+        invalidateLineHeightCache();
+    }
+
+    @Override
+    protected void onLrcLayoutChanged() {
+        resetScrollerFinalY();
+    }
+
     /**
      * 使缓存失效（字体大小、额外歌词状态改变时调用）
      */
@@ -1068,47 +1136,115 @@ public class ManyLyricsView extends AbstractLrcView {
     }
 
     /**
-     * 获取滑动的当前行
+     * 分割行数累计缓存是否对应当前的歌词
      *
+     * @param size 歌词行数
      * @return
      */
-    private int getScrollLrcLineNum(float offsetY) {
-        // 获取数据
-        TreeMap<Integer, LyricsLineInfo> lrcLineInfos = getLrcLineInfos();
-        Paint paint = getPaint();
-        Paint extraLrcPaint = getExtraLrcPaint();
-        float spaceLineHeight = getSpaceLineHeight();
-        float extraLrcSpaceLineHeight = getExtraLrcSpaceLineHeight();
+    private boolean isSplitLineCountCacheValid(int size) {
+        return mLineHeightCacheValid && mSplitLineCountCache != null && mSplitLineCountCache.length == size + 1
+                && mExtraSplitLineCountCache != null && mExtraSplitLineCountCache.length == size + 1;
+    }
+
+    /**
+     * 是否在显示额外歌词（翻译歌词、音译歌词）
+     *
+     * @return
+     */
+    private boolean isExtraLrcShowing() {
         int extraLrcStatus = getExtraLrcStatus();
-        List<LyricsLineInfo> translateLrcLineInfos = getTranslateLrcLineInfos();
-        List<LyricsLineInfo> transliterationLrcLineInfos = getTransliterationLrcLineInfos();
+        if (extraLrcStatus == AbstractLrcView.EXTRALRCSTATUS_SHOWTRANSLATELRC) {
+            List<LyricsLineInfo> translateLrcLineInfos = getTranslateLrcLineInfos();
+            return translateLrcLineInfos != null && translateLrcLineInfos.size() > 0;
+        } else if (extraLrcStatus == AbstractLrcView.EXTRALRCSTATUS_SHOWTRANSLITERATIONLRC) {
+            List<LyricsLineInfo> transliterationLrcLineInfos = getTransliterationLrcLineInfos();
+            return transliterationLrcLineInfos != null && transliterationLrcLineInfos.size() > 0;
+        }
+        return false;
+    }
 
-        int scrollLrcLineNum = -1;
-        int lineHeight = 0;
-        for (int i = 0; i < lrcLineInfos.size(); i++) {
-            LyricsLineInfo lyricsLineInfo = lrcLineInfos.get(i);
-            List<LyricsLineInfo> lyricsLineInfos = lyricsLineInfo.getSplitLyricsLineInfos();
-            lineHeight += (LyricsUtils.getTextHeight(paint) + spaceLineHeight) * lyricsLineInfos.size();
-            if (extraLrcStatus == AbstractLrcView.EXTRALRCSTATUS_SHOWTRANSLATELRC) {
-                if (translateLrcLineInfos != null && translateLrcLineInfos.size() > 0) {
-                    List<LyricsLineInfo> tempTranslateLrcLineInfos = translateLrcLineInfos.get(i).getSplitLyricsLineInfos();
-                    lineHeight += (LyricsUtils.getTextHeight(extraLrcPaint) + extraLrcSpaceLineHeight) * tempTranslateLrcLineInfos.size();
-                }
-            } else if (extraLrcStatus == AbstractLrcView.EXTRALRCSTATUS_SHOWTRANSLITERATIONLRC) {
-                if (transliterationLrcLineInfos != null && transliterationLrcLineInfos.size() > 0) {
-                    List<LyricsLineInfo> tempTransliterationLrcLineInfos = transliterationLrcLineInfos.get(i).getSplitLyricsLineInfos();
-                    lineHeight += (LyricsUtils.getTextHeight(extraLrcPaint) + extraLrcSpaceLineHeight) * tempTransliterationLrcLineInfos.size();
-                }
+    /**
+     * 向下绘画时，二分查找第一个没有完全超出上视图的行
+     *
+     * @param fromLineNum 开始绘画的行
+     * @param size        歌词行数
+     * @param lineBottomY 开始行第一个分割行的位置
+     * @param lineHeight  歌词和空行高度
+     * @return 所有行都超出上视图时返回size
+     */
+    private int getFirstDownVisibleLineNum(int fromLineNum, int size, float lineBottomY, float lineHeight) {
+        int[] splitLineCountCache = mSplitLineCountCache;
+        int low = fromLineNum;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            // 该行最后一个分割行的位置
+            float lastLineY = lineBottomY + lineHeight * (splitLineCountCache[mid + 1] - splitLineCountCache[fromLineNum] - 1);
+            if (lastLineY < lineHeight) {
+                low = mid + 1;
+            } else {
+                high = mid;
             }
-            if (lineHeight > offsetY) {
-                scrollLrcLineNum = i;
-                break;
+        }
+        return low;
+    }
+
+    /**
+     * 向上绘画时，二分查找第一个没有完全超出下视图的行
+     *
+     * @param fromLineNum     开始绘画的行
+     * @param lineTopY        开始行的下边界
+     * @param lineHeight      歌词和空行高度
+     * @param extraLineHeight 额外歌词行高度
+     * @return 所有行都超出下视图时返回-1
+     */
+    private int getFirstUpVisibleLineNum(int fromLineNum, float lineTopY, float lineHeight, float extraLineHeight) {
+        int[] splitLineCountCache = mSplitLineCountCache;
+        int[] extraSplitLineCountCache = mExtraSplitLineCountCache;
+        int low = 0;
+        int high = fromLineNum + 1;
+        // 查找第一个最上面的分割行也超出下视图的行，它之前的行就是要找的行
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            float firstLineY = lineTopY - lineHeight * (splitLineCountCache[fromLineNum + 1] - splitLineCountCache[mid])
+                    - extraLineHeight * (extraSplitLineCountCache[fromLineNum + 1] - extraSplitLineCountCache[mid]);
+            if (firstLineY > getHeight()) {
+                high = mid;
+            } else {
+                low = mid + 1;
             }
         }
-        if (scrollLrcLineNum == -1) {
-            scrollLrcLineNum = lrcLineInfos.size() - 1;
+        return low - 1;
+    }
+
+    /**
+     * 获取滑动的当前行（在行高度累计缓存中二分查找）
+     *
+     * @return
+     */
+    private int getScrollLrcLineNum(float offsetY) {
+        // 确保缓存已经构建
+        getLineAtHeightY(0);
+        int[] lineHeightCache = mLineHeightCache;
+        if (!mLineHeightCacheValid || lineHeightCache == null) {
+            return -1;
+        }
+        int size = lineHeightCache.length - 1;
+        // 查找第一个结束位置超过offsetY的行
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (lineHeightCache[mid + 1] > offsetY) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        if (low == size) {
+            return size - 1;
         }
-        return scrollLrcLineNum;
+        return low;
     }
 
     /**
@@ -1153,9 +1289,8 @@ public class ManyLyricsView extends AbstractLrcView {
                         + ", isFinished=" + mScroller.isFinished());
                 mScrollLogCounter = 0;
             }
+            // 每帧只请求一次重绘（invalidateView在主线程直接invalidate，动画在下一帧继续）
             invalidateView();
-            // Android 12+ 兼容性：使用多种方式确保动画持续
-            postInvalidateOnAnimation();
         } else {
             if (mTouchEventStatus == TOUCHEVENTSTATUS_FLINGSCROLL) {
                 resetLrcView();
@@ -1325,6 +1460,24 @@ public class ManyLyricsView extends AbstractLrcView {
         setExtraLrcSpaceLineHeight(extraLrcSpaceLineHeight, false);
     }
 
+    @Override
+    public void setSpaceLineHeight(float spaceLineHeight, boolean isInvalidateView) {
+        invalidateLineHeightCache();  // 空行改变，缓存失效
+        super.setSpaceLineHeight(spaceLineHeight, isInvalidateView);
+    }
+
+    @Override
+    public void setExtraLrcSpaceLineHeight(float extraLrcSpaceLineHeight, boolean isInvalidateView) {
+        invalidateLineHeightCache();  // 空行改变，缓存失效
+        super.setExtraLrcSpaceLineHeight(extraLrcSpaceLineHeight, isInvalidateView);
+    }
+
+    @Override
+    public void setExtraLrcStatus(int extraLrcStatus, boolean isReloadData) {
+        invalidateLineHeightCache();  // 额外歌词状态改变，缓存失效
+        super.setExtraLrcStatus(extraLrcStatus, isReloadData);
+    }
+
     /**
      * 设置额外歌词的显示状态
      *
@@ -1398,7 +1551,7 @@ public class ManyLyricsView extends AbstractLrcView {
             }
         }
         // ★ 关键：重置行号为-1，确保下次updateView时一定会触发滚动动画
-        // 因为super.setLyricsReader()内部会调用updateView()并设置lyricsLineNum
+        // 因为分割完成后会调用updateView()并设置lyricsLineNum
         // 如果不重置，后续play()触发的updateView()可能因为行号相同而不触发滚动
         setLyricsLineNum(-1);
         Log.d("ManyLyricsView", "setLyricsReader: reset lyricsLineNum to -1 for animation trigger");
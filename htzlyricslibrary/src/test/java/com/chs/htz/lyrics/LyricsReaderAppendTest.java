@@ -0,0 +1,155 @@
+package com.chs.htz.lyrics;
+
+import com.chs.htz.lyrics.model.LyricsLineInfo;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @Description: 通过管道流追加lrc歌词，流按任意字节截断时的解析结果
+ */
+public class LyricsReaderAppendTest {
+
+    private static final Charset UTF_8 = Charset.forName("utf-8");
+
+    @Test
+    public void chunksSplitLines() throws Exception {
+        String lrc = "[00:01.00]第一行歌词\n[00:02.50]second line\n[00:04.00]第三行 third\n";
+        // 每次1个字节，行、时间标签和中文字符都会被截断
+        LyricsReader lyricsReader = appendStream(lrc, new int[]{1});
+        assertLines(lyricsReader, new int[]{1000, 2500, 4000}, new String[]{"第一行歌词", "second line", "第三行 third"});
+
+        Random random = new Random(13);
+        for (int i = 0; i < 50; i++) {
+            lyricsReader = appendStream(lrc, new int[]{1 + random.nextInt(7), 1 + random.nextInt(20)});
+            assertLines(lyricsReader, new int[]{1000, 2500, 4000}, new String[]{"第一行歌词", "second line", "第三行 third"});
+        }
+    }
+
+    @Test
+    public void crLfLineEnds() throws Exception {
+        String lrc = "[00:01.00]a\r\n[00:02.00]b\r[00:03.00]c\n\r\n[00:04.00]d\r\n";
+        String[] texts = new String[]{"a", "b", "c", "d"};
+        int[] startTimes = new int[]{1000, 2000, 3000, 4000};
+        // "\r" 与 "\n" 分在两次写入中
+        int crIndex = lrc.indexOf('\r');
+        LyricsReader lyricsReader = appendStream(lrc, new int[]{crIndex + 1, lrc.length()});
+        assertLines(lyricsReader, startTimes, texts);
+
+        for (int size = 1; size <= 12; size++) {
+            lyricsReader = appendStream(lrc, new int[]{size});
+            assertLines(lyricsReader, startTimes, texts);
+        }
+    }
+
+    @Test
+    public void outOfOrderLines() throws Exception {
+        String lrc = "[00:01.00]a\n[00:03.00]c\n[00:05.00]e\n[00:02.00]b\n[00:04.00]d\n[00:06.00]f\n";
+        final List<Integer> fromLineNums = new ArrayList<Integer>();
+        LyricsReader lyricsReader = appendStream(lrc, new int[]{3}, fromLineNums);
+        assertLines(lyricsReader, new int[]{1000, 2000, 3000, 4000, 5000, 6000}, new String[]{"a", "b", "c", "d", "e", "f"});
+        // 读取时分成几次追加与管道的调度有关，只检查第一次从第0行开始
+        assertEquals(0, (int) fromLineNums.get(0));
+        for (int fromLineNum : fromLineNums) {
+            assertTrue(fromLineNum >= 0 && fromLineNum < 6);
+        }
+
+        // b 插入到第1行之前
+        lyricsReader = new LyricsReader();
+        assertEquals(0, lyricsReader.appendLrcText("[00:01.00]a\n[00:03.00]c\n"));
+        assertEquals(1, lyricsReader.appendLrcText("[00:02.00]b\n"));
+        assertEquals(3, lyricsReader.appendLrcText("[00:04.00]d\n"));
+        assertEquals(-1, lyricsReader.appendLrcText("[00:05.00]partial"));
+        assertLines(lyricsReader, new int[]{1000, 2000, 3000, 4000}, new String[]{"a", "b", "c", "d"});
+    }
+
+    @Test
+    public void lastLineWithoutNewline() throws Exception {
+        String lrc = "[offset:300]\n[00:01.00]a\n[00:02.00]最后一行";
+        final List<Integer> fromLineNums = new ArrayList<Integer>();
+        LyricsReader lyricsReader = appendStream(lrc, new int[]{5}, fromLineNums);
+        assertLines(lyricsReader, new int[]{1000, 2000}, new String[]{"a", "最后一行"});
+        assertEquals(300, lyricsReader.getPlayOffset());
+        // 最后一行在流结束后才解析
+        assertEquals(1, (int) fromLineNums.get(fromLineNums.size() - 1));
+
+        lyricsReader = new LyricsReader();
+        lyricsReader.appendLrcText("[00:01.00]a\n[00:02.00]b");
+        assertEquals(1, lyricsReader.getLrcLineInfos().size());
+        assertEquals(1, lyricsReader.finishAppend());
+        assertEquals(-1, lyricsReader.finishAppend());
+        assertLines(lyricsReader, new int[]{1000, 2000}, new String[]{"a", "b"});
+    }
+
+    private static LyricsReader appendStream(String lrc, int[] chunkSizes) throws Exception {
+        return appendStream(lrc, chunkSizes, new ArrayList<Integer>());
+    }
+
+    /**
+     * 在写入线程中按给定的字节数分块写入管道，当前线程读取并追加
+     */
+    private static LyricsReader appendStream(String lrc, final int[] chunkSizes, final List<Integer> fromLineNums) throws Exception {
+        final byte[] data = lrc.getBytes(UTF_8);
+        final PipedInputStream in = new PipedInputStream(16);
+        final PipedOutputStream out = new PipedOutputStream(in);
+        final IOException[] writeError = new IOException[1];
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    int offset = 0;
+                    int chunk = 0;
+                    while (offset < data.length) {
+                        int size = Math.min(chunkSizes[chunk++ % chunkSizes.length], data.length - offset);
+                        out.write(data, offset, size);
+                        out.flush();
+                        offset += size;
+                    }
+                } catch (IOException e) {
+                    writeError[0] = e;
+                } finally {
+                    try {
+                        out.close();
+                    } catch (IOException e) {
+                        writeError[0] = e;
+                    }
+                }
+            }
+        });
+        writer.start();
+        LyricsReader lyricsReader = new LyricsReader();
+        lyricsReader.appendLrcStream(in, new LyricsReader.AppendLrcListener() {
+            @Override
+            public void onLrcAppended(LyricsReader lyricsReader, int fromLineNum) {
+                fromLineNums.add(fromLineNum);
+            }
+        });
+        writer.join();
+        if (writeError[0] != null) throw writeError[0];
+        return lyricsReader;
+    }
+
+    private static void assertLines(LyricsReader lyricsReader, int[] startTimes, String[] texts) {
+        TreeMap<Integer, LyricsLineInfo> lrcLineInfos = lyricsReader.getLrcLineInfos();
+        assertEquals(startTimes.length, lrcLineInfos.size());
+        for (int i = 0; i < startTimes.length; i++) {
+            LyricsLineInfo lyricsLineInfo = lrcLineInfos.get(i);
+            assertEquals(startTimes[i], lyricsLineInfo.getStartTime());
+            assertEquals(texts[i], lyricsLineInfo.getLineLyrics());
+            if (i > 0) {
+                assertTrue(lrcLineInfos.get(i - 1).getEndTime() <= lyricsLineInfo.getStartTime());
+            }
+        }
+    }
+}
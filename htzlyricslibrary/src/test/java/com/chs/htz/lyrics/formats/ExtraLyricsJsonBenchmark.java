@@ -0,0 +1,77 @@
+package com.chs.htz.lyrics.formats;
+
+import com.chs.htz.lyrics.model.LyricsInfo;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+/**
+ * @Description: 额外歌词json边读边生成与原org.json对象树解析的耗时对比，结果输出到标准输出
+ */
+public class ExtraLyricsJsonBenchmark {
+
+    private static final int LINE_COUNT = 60;
+    private static final int WORD_COUNT = 10;
+    private static final int PARSE_COUNT = 200;
+    private static final int WARMUP_ROUNDS = 10;
+    private static final int ROUNDS = 10;
+
+    @Test
+    public void benchmark() throws Exception {
+        StringBuilder builder = new StringBuilder("{\"content\":[{\"language\":0,\"type\":1,\"lyricContent\":[");
+        for (int i = 0; i < LINE_COUNT; i++) {
+            if (i > 0) builder.append(',');
+            builder.append("[\"第").append(i).append("行的翻译歌词 translated line\"]");
+        }
+        builder.append("]},{\"language\":0,\"type\":0,\"lyricContent\":[");
+        for (int i = 0; i < LINE_COUNT; i++) {
+            if (i > 0) builder.append(',');
+            builder.append('[');
+            for (int j = 0; j < WORD_COUNT; j++) {
+                if (j > 0) builder.append(',');
+                builder.append("\"yin").append(j).append(" \"");
+            }
+            builder.append(']');
+        }
+        builder.append("]}]}");
+        String json = builder.toString();
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            parseWithTree(json);
+            parseWithTokenizer(json);
+        }
+        long treeTime = Long.MAX_VALUE;
+        long tokenizerTime = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            parseWithTree(json);
+            treeTime = Math.min(treeTime, System.nanoTime() - start);
+            start = System.nanoTime();
+            parseWithTokenizer(json);
+            tokenizerTime = Math.min(tokenizerTime, System.nanoTime() - start);
+        }
+        System.out.println(String.format(Locale.US, "extra lyrics json %d chars x %d: org.json %.2f ms, ExtraLyricsJson %.2f ms",
+                json.length(), PARSE_COUNT, treeTime / 1e6, tokenizerTime / 1e6));
+    }
+
+    private static int parseWithTree(String json) throws Exception {
+        int lines = 0;
+        for (int i = 0; i < PARSE_COUNT; i++) {
+            LyricsInfo lyricsInfo = new LyricsInfo();
+            ExtraLyricsTreeParser.parse(json, "type", lyricsInfo);
+            lines += lyricsInfo.getTransliterationLrcLineInfos().size();
+        }
+        return lines;
+    }
+
+    private static int parseWithTokenizer(String json) throws Exception {
+        int lines = 0;
+        for (int i = 0; i < PARSE_COUNT; i++) {
+            LyricsInfo lyricsInfo = new LyricsInfo();
+            ExtraLyricsJson.parse(json, "type", lyricsInfo);
+            lines += lyricsInfo.getTransliterationLrcLineInfos().size();
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,219 @@
+package com.chs.htz.lyrics.formats;
+
+import com.chs.htz.lyrics.model.LyricsInfo;
+import com.chs.htz.lyrics.model.LyricsLineInfo;
+import com.chs.htz.lyrics.model.TranslateLrcLineInfo;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * @Description: 额外歌词json的解析和生成，与原org.json实现对比
+ */
+public class ExtraLyricsJsonTest {
+
+    private static final String SPECIAL_CHARS = "a \"q\" \\ / \t\b\f\u0001\u001f\u2028\u2029\u00e9中文\ud83c\udfb5";
+
+    @Test
+    public void roundTrip() throws Exception {
+        Random random = new Random(19);
+        for (int i = 0; i < 2000; i++) {
+            LyricsInfo lyricsInfo = newLyricsInfo(random);
+            for (String typeKey : new String[]{"type", "lyricType"}) {
+                boolean withLanguage = "type".equals(typeKey);
+                String json = ExtraLyricsJson.write(lyricsInfo, typeKey, withLanguage);
+
+                LyricsInfo parsed = new LyricsInfo();
+                ExtraLyricsJson.parse(json, typeKey, parsed);
+                assertSameExtraLyrics(lyricsInfo, parsed);
+
+                // 生成的json能被org.json解析，结果与原实现一致
+                LyricsInfo treeParsed = new LyricsInfo();
+                ExtraLyricsTreeParser.parse(json, typeKey, treeParsed);
+                assertSameExtraLyrics(treeParsed, parsed);
+            }
+        }
+    }
+
+    @Test
+    public void writeEscapes() throws Exception {
+        LyricsInfo lyricsInfo = new LyricsInfo();
+        List<TranslateLrcLineInfo> translateLrcLineInfos = new ArrayList<TranslateLrcLineInfo>();
+        translateLrcLineInfos.add(newTranslateLrcLineInfo(SPECIAL_CHARS));
+        lyricsInfo.setTranslateLrcLineInfos(translateLrcLineInfos);
+        String json = ExtraLyricsJson.write(lyricsInfo, "type", true);
+        assertEquals("{\"content\":[{\"language\":0,\"type\":1,\"lyricContent\":[[\"a \\\"q\\\" \\\\ / \\t\\b\\f\\u0001\\u001f\\u2028\\u2029\u00e9中文\ud83c\udfb5\"]]}]}", json);
+        String text = new JSONObject(json).getJSONArray("content").getJSONObject(0)
+                .getJSONArray("lyricContent").getJSONArray(0).getString(0);
+        assertEquals(SPECIAL_CHARS, text);
+    }
+
+    @Test
+    public void parseEscapes() throws Exception {
+        LyricsInfo lyricsInfo = parse("{\"content\":[{\"type\":1,\"lyricContent\":[[\"\\\"\\\\\\/\\t\\b\\f\\u4e2D\\ud83c\\udfb5\\n\\r\"]]}]}");
+        assertEquals("\"\\/\t\b\f中\ud83c\udfb5", lyricsInfo.getTranslateLrcLineInfos().get(0).getLineLyrics());
+    }
+
+    @Test
+    public void parseSurrogates() throws Exception {
+        // 转义的代理对、原文的代理对和单独的代理字符都原样保留
+        LyricsInfo lyricsInfo = parse("{\"content\":[{\"type\":0,\"lyricContent\":[[\"\\uD83C\\uDFB5\",\"\ud83c\udfb6\",\"\\ud83c\"]]}]}");
+        assertArrayEquals(new String[]{"\ud83c\udfb5 ", "\ud83c\udfb6 ", "\ud83c"},
+                lyricsInfo.getTransliterationLrcLineInfos().get(0).getLyricsWords());
+    }
+
+    @Test
+    public void skipUnknownKeys() throws Exception {
+        String json = "{ \"version\" : 2, \"extra\":{\"a\":[1,{\"b\":null}],\"c\":\"]}\"}, \"content\" : [ "
+                + "{\"language\":0, \"flag\":true, \"type\":\"1\", \"meta\":[[],{}], \"lyricContent\":[[\"翻译\", 3, \"多余\"]], \"tail\":-1.5e3},"
+                + "{\"type\":2, \"lyricContent\":[[\"未知类型\"]]},"
+                + "{\"type\":0, \"lyricContent\":[[\" yin \", 1.5, false]]}"
+                + " ], \"end\": \"}\" }";
+        LyricsInfo lyricsInfo = parse(json);
+        assertEquals(1, lyricsInfo.getTranslateLrcLineInfos().size());
+        assertEquals("翻译", lyricsInfo.getTranslateLrcLineInfos().get(0).getLineLyrics());
+        assertArrayEquals(new String[]{"yin ", "1.5 ", "false"},
+                lyricsInfo.getTransliterationLrcLineInfos().get(0).getLyricsWords());
+    }
+
+    @Test
+    public void lyricContentBeforeType() throws Exception {
+        String json = "{\"content\":[{\"lyricContent\":[[\"第一行\"],[\"第二行\"]],\"type\":1},"
+                + "{\"lyricContent\":[[\"a\",\"b\"]],\"language\":0,\"type\":0},"
+                + "{\"lyricContent\":[[\"跳过\"]],\"type\":1}]}";
+        LyricsInfo lyricsInfo = parse(json);
+        List<TranslateLrcLineInfo> translateLrcLineInfos = lyricsInfo.getTranslateLrcLineInfos();
+        assertEquals(2, translateLrcLineInfos.size());
+        assertEquals("第一行", translateLrcLineInfos.get(0).getLineLyrics());
+        assertEquals("第二行", translateLrcLineInfos.get(1).getLineLyrics());
+        assertEquals("a b", lyricsInfo.getTransliterationLrcLineInfos().get(0).getLineLyrics());
+        assertSameExtraLyrics(treeParse(json), lyricsInfo);
+    }
+
+    @Test
+    public void emptyContent() throws Exception {
+        LyricsInfo lyricsInfo = parse("{\"content\":[]}");
+        assertNull(lyricsInfo.getTranslateLrcLineInfos());
+        assertNull(lyricsInfo.getTransliterationLrcLineInfos());
+        assertEquals("{\"content\":[]}", ExtraLyricsJson.write(new LyricsInfo(), "type", true));
+        lyricsInfo = parse("{\"content\":[{\"type\":1,\"lyricContent\":[]}]}");
+        assertNull(lyricsInfo.getTranslateLrcLineInfos());
+    }
+
+    @Test
+    public void errors() {
+        String[] jsons = {
+                "",
+                "   ",
+                "[]",
+                "{}",
+                "{\"content\":{}}",
+                "{\"content\":[{\"lyricContent\":[[\"a\"]]}]}",
+                "{\"content\":[{\"type\":1}]}",
+                "{\"content\":[{\"type\":\"x\",\"lyricContent\":[[\"a\"]]}]}",
+                "{\"content\":[{\"type\":1,\"lyricContent\":[[]]}]}",
+                "{\"content\":[{\"type\":1,\"lyricContent\":[\"a\"]}]}",
+                "{\"content\":[{\"type\":1,\"lyricContent\":[[\"a\"]]}]",
+                "{\"content\":[{\"type\":1,\"lyricContent\":[[\"a]]}]}",
+                "{\"content\":[{\"type\":1,\"lyricContent\":[[\"\\u12\"]]}]}",
+                "{\"content\":[{\"type\":1,\"lyricContent\":[[\"\\u12g4\"]]}]}",
+                "{\"content\":[{\"type\":1,\"lyricContent\":[[\"a\"],]}]}",
+                "{\"content\":[{\"type\":1 \"lyricContent\":[[\"a\"]]}]}",
+                "{\"content\":[{type:1,\"lyricContent\":[[\"a\"]]}]}",
+                "{\"content\":[{\"type\":1,\"lyricContent\":[[\"a\"]]}],}",
+        };
+        for (String json : jsons) {
+            try {
+                parse(json);
+                fail(json);
+            } catch (RuntimeException e) {
+                fail(json + " " + e);
+            } catch (Exception e) {
+                // 预期的格式错误
+            }
+        }
+    }
+
+    private static LyricsInfo parse(String json) throws Exception {
+        LyricsInfo lyricsInfo = new LyricsInfo();
+        ExtraLyricsJson.parse(json, "type", lyricsInfo);
+        return lyricsInfo;
+    }
+
+    private static LyricsInfo treeParse(String json) throws Exception {
+        LyricsInfo lyricsInfo = new LyricsInfo();
+        ExtraLyricsTreeParser.parse(json, "type", lyricsInfo);
+        return lyricsInfo;
+    }
+
+    private static LyricsInfo newLyricsInfo(Random random) {
+        LyricsInfo lyricsInfo = new LyricsInfo();
+        int lineCount = random.nextInt(4);
+        if (lineCount > 0) {
+            List<TranslateLrcLineInfo> translateLrcLineInfos = new ArrayList<TranslateLrcLineInfo>();
+            for (int i = 0; i < lineCount; i++) {
+                translateLrcLineInfos.add(newTranslateLrcLineInfo(randomText(random)));
+            }
+            lyricsInfo.setTranslateLrcLineInfos(translateLrcLineInfos);
+        }
+        lineCount = random.nextInt(4);
+        if (lineCount > 0) {
+            List<LyricsLineInfo> transliterationLrcLineInfos = new ArrayList<LyricsLineInfo>();
+            for (int i = 0; i < lineCount; i++) {
+                String[] lyricsWords = new String[1 + random.nextInt(5)];
+                StringBuilder lineLyrics = new StringBuilder();
+                for (int j = 0; j < lyricsWords.length; j++) {
+                    lyricsWords[j] = randomText(random).trim();
+                    if (j < lyricsWords.length - 1) lyricsWords[j] += " ";
+                    lineLyrics.append(lyricsWords[j]);
+                }
+                LyricsLineInfo lyricsLineInfo = new LyricsLineInfo();
+                lyricsLineInfo.setLineLyrics(lineLyrics.toString());
+                lyricsLineInfo.setLyricsWords(lyricsWords);
+                transliterationLrcLineInfos.add(lyricsLineInfo);
+            }
+            lyricsInfo.setTransliterationLrcLineInfos(transliterationLrcLineInfos);
+        }
+        return lyricsInfo;
+    }
+
+    private static String randomText(Random random) {
+        StringBuilder text = new StringBuilder();
+        int length = 1 + random.nextInt(8);
+        for (int i = 0; i < length; i++) {
+            text.append(SPECIAL_CHARS.charAt(random.nextInt(SPECIAL_CHARS.length())));
+        }
+        return text.toString();
+    }
+
+    private static TranslateLrcLineInfo newTranslateLrcLineInfo(String lineLyrics) {
+        TranslateLrcLineInfo translateLrcLineInfo = new TranslateLrcLineInfo();
+        translateLrcLineInfo.setLineLyrics(lineLyrics);
+        return translateLrcLineInfo;
+    }
+
+    private static void assertSameExtraLyrics(LyricsInfo expected, LyricsInfo actual) {
+        List<TranslateLrcLineInfo> expectedTranslate = expected.getTranslateLrcLineInfos();
+        List<TranslateLrcLineInfo> actualTranslate = actual.getTranslateLrcLineInfos();
+        assertEquals(expectedTranslate == null ? 0 : expectedTranslate.size(), actualTranslate == null ? 0 : actualTranslate.size());
+        for (int i = 0; expectedTranslate != null && i < expectedTranslate.size(); i++) {
+            assertEquals(expectedTranslate.get(i).getLineLyrics(), actualTranslate.get(i).getLineLyrics());
+        }
+        List<LyricsLineInfo> expectedTransliteration = expected.getTransliterationLrcLineInfos();
+        List<LyricsLineInfo> actualTransliteration = actual.getTransliterationLrcLineInfos();
+        assertEquals(expectedTransliteration == null ? 0 : expectedTransliteration.size(), actualTransliteration == null ? 0 : actualTransliteration.size());
+        for (int i = 0; expectedTransliteration != null && i < expectedTransliteration.size(); i++) {
+            assertEquals(expectedTransliteration.get(i).getLineLyrics(), actualTransliteration.get(i).getLineLyrics());
+            assertArrayEquals(expectedTransliteration.get(i).getLyricsWords(), actualTransliteration.get(i).getLyricsWords());
+        }
+    }
+}
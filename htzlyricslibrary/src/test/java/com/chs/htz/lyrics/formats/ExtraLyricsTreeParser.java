@@ -0,0 +1,71 @@
+package com.chs.htz.lyrics.formats;
+
+import com.chs.htz.lyrics.model.LyricsInfo;
+import com.chs.htz.lyrics.model.LyricsLineInfo;
+import com.chs.htz.lyrics.model.TranslateLrcLineInfo;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @Description: 原来基于org.json对象树的额外歌词解析，用于对比解析结果和耗时
+ */
+class ExtraLyricsTreeParser {
+
+    static void parse(String json, String typeKey, LyricsInfo lyricsIfno) throws Exception {
+        JSONObject resultObj = new JSONObject(json);
+        JSONArray contentArrayObj = resultObj.getJSONArray("content");
+        for (int i = 0; i < contentArrayObj.length(); i++) {
+            JSONObject dataObj = contentArrayObj.getJSONObject(i);
+            JSONArray lyricContentArrayObj = dataObj.getJSONArray("lyricContent");
+            int type = dataObj.getInt(typeKey);
+            if (type == 1) {
+                if (lyricsIfno.getTranslateLrcLineInfos() == null || lyricsIfno.getTranslateLrcLineInfos().size() == 0)
+                    parserTranslateLrc(lyricsIfno, lyricContentArrayObj);
+            } else if (type == 0) {
+                if (lyricsIfno.getTransliterationLrcLineInfos() == null || lyricsIfno.getTransliterationLrcLineInfos().size() == 0)
+                    parserTransliterationLrc(lyricsIfno, lyricContentArrayObj);
+            }
+        }
+    }
+
+    private static void parserTransliterationLrc(LyricsInfo lyricsIfno, JSONArray lyricContentArrayObj) throws Exception {
+        List<LyricsLineInfo> transliterationLrcLineInfos = new ArrayList<LyricsLineInfo>();
+        for (int j = 0; j < lyricContentArrayObj.length(); j++) {
+            JSONArray lrcDataArrayObj = lyricContentArrayObj.getJSONArray(j);
+            LyricsLineInfo transliterationLrcLineInfo = new LyricsLineInfo();
+            String[] lyricsWords = new String[lrcDataArrayObj.length()];
+            StringBuilder lineLyrics = new StringBuilder();
+            for (int k = 0; k < lrcDataArrayObj.length(); k++) {
+                if (k == lrcDataArrayObj.length() - 1) {
+                    lyricsWords[k] = lrcDataArrayObj.getString(k).trim();
+                } else {
+                    lyricsWords[k] = lrcDataArrayObj.getString(k).trim() + " ";
+                }
+                lineLyrics.append(lyricsWords[k]);
+            }
+            transliterationLrcLineInfo.setLineLyrics(lineLyrics.toString());
+            transliterationLrcLineInfo.setLyricsWords(lyricsWords);
+            transliterationLrcLineInfos.add(transliterationLrcLineInfo);
+        }
+        if (transliterationLrcLineInfos.size() > 0) {
+            lyricsIfno.setTransliterationLrcLineInfos(transliterationLrcLineInfos);
+        }
+    }
+
+    private static void parserTranslateLrc(LyricsInfo lyricsIfno, JSONArray lyricContentArrayObj) throws Exception {
+        List<TranslateLrcLineInfo> translateLrcLineInfos = new ArrayList<TranslateLrcLineInfo>();
+        for (int j = 0; j < lyricContentArrayObj.length(); j++) {
+            JSONArray lrcDataArrayObj = lyricContentArrayObj.getJSONArray(j);
+            TranslateLrcLineInfo translateLrcLineInfo = new TranslateLrcLineInfo();
+            translateLrcLineInfo.setLineLyrics(lrcDataArrayObj.getString(0));
+            translateLrcLineInfos.add(translateLrcLineInfo);
+        }
+        if (translateLrcLineInfos.size() > 0) {
+            lyricsIfno.setTranslateLrcLineInfos(translateLrcLineInfos);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.chs.htz.lyrics.formats;
+
+import com.chs.htz.lyrics.model.LyricsInfo;
+import com.chs.htz.lyrics.utils.LyricsIOUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @Description: 批量转换时每个文件只记为成功或失败一次，回调抛出异常不影响转换结果
+ */
+public class LyricsBatchConverterTest {
+
+    private static final String SOURCE_EXT = "cvs";
+    private static final String TARGET_EXT = "cvt";
+
+    private File mDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        LyricsIOUtils.registerLyricsFormat(new TestLyricsFileReader(), null);
+        LyricsIOUtils.registerLyricsFileWriter(new TestLyricsFileWriter());
+        mDirectory = File.createTempFile("convert", "");
+        mDirectory.delete();
+        mDirectory.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    @Test
+    public void listenerThrows() throws Exception {
+        List<File> sourceFiles = new ArrayList<File>();
+        for (int i = 0; i < 6; i++) {
+            // 内容为空的文件解析失败
+            sourceFiles.add(writeFile("a" + i + "." + SOURCE_EXT, i % 3 == 0 ? "" : "歌词" + i));
+        }
+        final AtomicInteger successCount = new AtomicInteger();
+        final AtomicInteger failureCount = new AtomicInteger();
+        LyricsBatchConverter converter = new LyricsBatchConverter(TARGET_EXT, 2);
+        converter.setConvertListener(new LyricsBatchConverter.ConvertListener() {
+            @Override
+            public void onConvertSuccess(File sourceFile, File targetFile) {
+                successCount.incrementAndGet();
+                throw new IllegalStateException("回调出错");
+            }
+
+            @Override
+            public void onConvertFailure(File sourceFile, Exception e) {
+                failureCount.incrementAndGet();
+            }
+        });
+        File targetDirectory = new File(mDirectory, "target");
+        targetDirectory.mkdirs();
+        LyricsBatchConverter.Result result = converter.convert(sourceFiles, targetDirectory);
+
+        assertEquals(6, result.getTotalCount());
+        assertEquals(4, result.getSuccessCount());
+        assertEquals(2, result.getFailureCount());
+        assertEquals(4, successCount.get());
+        assertEquals(2, failureCount.get());
+        assertTrue(new File(targetDirectory, "a1." + TARGET_EXT).exists());
+        for (File file : targetDirectory.listFiles()) {
+            file.delete();
+        }
+        targetDirectory.delete();
+    }
+
+    private File writeFile(String name, String content) throws IOException {
+        File file = new File(mDirectory, name);
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(content.getBytes("utf-8"));
+        out.close();
+        return file;
+    }
+
+    /**
+     * 整个文件作为一行歌词，内容为空时解析失败
+     */
+    private static class TestLyricsFileReader extends LyricsFileReader {
+
+        @Override
+        public LyricsInfo readInputStream(InputStream in) throws Exception {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            in.close();
+            if (out.size() == 0) {
+                throw new Exception("歌词为空");
+            }
+            LyricsInfo lyricsInfo = new LyricsInfo();
+            lyricsInfo.setLyricsFileExt(SOURCE_EXT);
+            return lyricsInfo;
+        }
+
+        @Override
+        public LyricsInfo readLrcText(String dynamicContent, String lrcContent, String extraLrcContent, String lyricsFilePath) {
+            return null;
+        }
+
+        @Override
+        public boolean isFileSupported(String ext) {
+            return SOURCE_EXT.equalsIgnoreCase(ext);
+        }
+
+        @Override
+        public String getSupportFileExt() {
+            return SOURCE_EXT;
+        }
+    }
+
+    private static class TestLyricsFileWriter extends LyricsFileWriter {
+
+        @Override
+        public boolean writer(LyricsInfo lyricsIfno, String lyricsFilePath) throws Exception {
+            return saveLyricsFile(lyricsIfno, lyricsFilePath);
+        }
+
+        @Override
+        public String getLyricsContent(LyricsInfo lyricsIfno) {
+            return lyricsIfno.getLyricsFileExt();
+        }
+
+        @Override
+        public boolean isFileSupported(String ext) {
+            return TARGET_EXT.equalsIgnoreCase(ext);
+        }
+
+        @Override
+        public String getSupportFileExt() {
+            return TARGET_EXT;
+        }
+    }
+}
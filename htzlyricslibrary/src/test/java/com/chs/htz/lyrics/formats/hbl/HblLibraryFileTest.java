@@ -0,0 +1,172 @@
+package com.chs.htz.lyrics.formats.hbl;
+
+import com.chs.htz.lyrics.model.LyricsInfo;
+import com.chs.htz.lyrics.model.LyricsLineInfo;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @Description: hbl歌词库打包和查找，重新打包不影响已经打开的歌词库，损坏的歌词库只抛出普通的Exception
+ */
+public class HblLibraryFileTest {
+
+    private File mDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        mDirectory = File.createTempFile("hbl", "");
+        mDirectory.delete();
+        mDirectory.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        delete(mDirectory);
+    }
+
+    @Test
+    public void packAndFind() throws Exception {
+        List<File> lyricsFiles = new ArrayList<File>();
+        lyricsFiles.add(writeLyrics("a.hbl", "歌词a"));
+        lyricsFiles.add(writeLyrics("b.hbl", "歌词b"));
+        File duplicateFile = writeLyrics("sub/a.hbl", "歌词a2");
+        lyricsFiles.add(duplicateFile);
+        File badFile = writeBytes("bad.hbl", new byte[]{1, 2, 3});
+        lyricsFiles.add(badFile);
+
+        File libraryFile = new File(mDirectory, "library.hbl");
+        Map<File, Exception> skippedFiles = new LinkedHashMap<File, Exception>();
+        assertEquals(2, HblLibraryPacker.pack(lyricsFiles, libraryFile, skippedFiles));
+        assertEquals(2, skippedFiles.size());
+        assertTrue(skippedFiles.containsKey(duplicateFile));
+        assertTrue(skippedFiles.containsKey(badFile));
+
+        HblLibraryFile library = HblLibraryFile.open(libraryFile);
+        assertEquals(2, library.size());
+        assertEquals("歌词a", library.getLyricsInfo("a").getLyricsLineInfoTreeMap().get(0).getLineLyrics());
+        assertEquals("歌词b", library.getLyricsInfo("b").getLyricsLineInfoTreeMap().get(0).getLineLyrics());
+        assertNull(library.getLyricsInfo("c"));
+        // 临时文件都已删除
+        String[] names = mDirectory.list();
+        for (String name : names) {
+            assertTrue(name, !name.startsWith(".library.hbl") && !name.endsWith(".data"));
+        }
+        library.close();
+    }
+
+    @Test
+    public void repackWhileOpen() throws Exception {
+        List<File> lyricsFiles = new ArrayList<File>();
+        lyricsFiles.add(writeLyrics("a.hbl", "歌词a"));
+        File libraryFile = new File(mDirectory, "library.hbl");
+        HblLibraryPacker.pack(lyricsFiles, libraryFile);
+        HblLibraryFile library = HblLibraryFile.open(libraryFile);
+
+        lyricsFiles.add(writeLyrics("b.hbl", "歌词b"));
+        HblLibraryPacker.pack(lyricsFiles, libraryFile);
+        // 旧的映射仍然指向原来的文件内容
+        assertEquals(1, library.size());
+        assertEquals("歌词a", library.getLyricsInfo("a").getLyricsLineInfoTreeMap().get(0).getLineLyrics());
+        library.close();
+
+        library = HblLibraryFile.open(libraryFile);
+        assertEquals(2, library.size());
+        assertEquals("歌词b", library.getLyricsInfo("b").getLyricsLineInfoTreeMap().get(0).getLineLyrics());
+        library.close();
+    }
+
+    @Test
+    public void openCorruptedHeader() throws Exception {
+        List<File> lyricsFiles = new ArrayList<File>();
+        lyricsFiles.add(writeLyrics("a.hbl", "歌词a"));
+        File libraryFile = new File(mDirectory, "library.hbl");
+        HblLibraryPacker.pack(lyricsFiles, libraryFile);
+        long fileSize = libraryFile.length();
+
+        // 歌词个数和关键字长度
+        int[] positions = {8, 12};
+        int[] values = {-1, 0x7fffffff, 0x10000000, (int) fileSize};
+        for (int position : positions) {
+            for (int value : values) {
+                File corruptedFile = new File(mDirectory, "corrupted" + position + "_" + value + ".hbl");
+                copyWithInt(libraryFile, corruptedFile, position, value);
+                assertOpenCorrupted(corruptedFile);
+            }
+        }
+        File truncatedFile = writeBytes("truncated.hbl", new byte[]{0x48, 0x42});
+        assertOpenCorrupted(truncatedFile);
+    }
+
+    private static void assertOpenCorrupted(File file) {
+        try {
+            HblLibraryFile.open(file).close();
+            fail(file.getName());
+        } catch (Exception e) {
+            assertEquals(Exception.class, e.getClass());
+        }
+        // 打开失败时文件已经关闭，可以删除
+        assertTrue(file.delete());
+    }
+
+    private static void copyWithInt(File source, File target, int position, int value) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(source, "r");
+        byte[] data = new byte[(int) in.length()];
+        in.readFully(data);
+        in.close();
+        ByteBuffer.wrap(data).putInt(position, value);
+        FileOutputStream out = new FileOutputStream(target);
+        out.write(data);
+        out.close();
+    }
+
+    private File writeLyrics(String name, String lineLyrics) throws Exception {
+        LyricsInfo lyricsInfo = new LyricsInfo();
+        lyricsInfo.setLyricsType(LyricsInfo.LRC);
+        lyricsInfo.setLyricsFileExt("lrc");
+        TreeMap<Integer, LyricsLineInfo> lyricsLineInfos = new TreeMap<Integer, LyricsLineInfo>();
+        LyricsLineInfo lyricsLineInfo = new LyricsLineInfo();
+        lyricsLineInfo.setStartTime(1000);
+        lyricsLineInfo.setEndTime(2000);
+        lyricsLineInfo.setLineLyrics(lineLyrics);
+        lyricsLineInfos.put(0, lyricsLineInfo);
+        lyricsInfo.setLyricsLineInfoTreeMap(lyricsLineInfos);
+        return writeBytes(name, new HblLyricsFileWriter().getLyricsBytes(lyricsInfo));
+    }
+
+    private File writeBytes(String name, byte[] data) throws IOException {
+        File file = new File(mDirectory, name);
+        file.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(data);
+        out.close();
+        return file;
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
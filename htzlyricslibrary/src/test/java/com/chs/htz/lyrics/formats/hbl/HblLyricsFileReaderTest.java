@@ -0,0 +1,109 @@
+package com.chs.htz.lyrics.formats.hbl;
+
+import com.chs.htz.lyrics.model.LyricsInfo;
+import com.chs.htz.lyrics.model.LyricsLineInfo;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * @Description: hbl歌词读取器，不完整或已损坏的文件只抛出普通的Exception
+ */
+public class HblLyricsFileReaderTest {
+
+    @Test
+    public void readWrittenLyrics() throws Exception {
+        LyricsInfo lyricsInfo = new HblLyricsFileReader().readByteBuffer(ByteBuffer.wrap(newLyricsBytes()));
+        assertEquals(LyricsInfo.DYNAMIC, lyricsInfo.getLyricsType());
+        assertEquals("歌名", lyricsInfo.getLyricsTags().get("ti"));
+        assertEquals(20, lyricsInfo.getLyricsLineInfoTreeMap().size());
+        LyricsLineInfo lyricsLineInfo = lyricsInfo.getLyricsLineInfoTreeMap().get(3);
+        assertEquals(3000, lyricsLineInfo.getStartTime());
+        assertEquals("歌词3", lyricsLineInfo.getLineLyrics());
+        assertArrayEquals(new String[]{"歌", "词3"}, lyricsLineInfo.getLyricsWords());
+        assertArrayEquals(new int[]{400, 500}, lyricsLineInfo.getWordsDisInterval());
+    }
+
+    @Test
+    public void readTruncatedLyrics() throws Exception {
+        byte[] lyricsBytes = newLyricsBytes();
+        for (int length = 0; length < lyricsBytes.length; length++) {
+            assertCorrupted(Arrays.copyOf(lyricsBytes, length));
+        }
+    }
+
+    @Test
+    public void readCorruptedCounts() throws Exception {
+        byte[] lyricsBytes = newLyricsBytes();
+        int[] values = {-2, -1, 0x7fffffff, 0x3fffffff, 0x10000000, 1 << 20};
+        for (int position = 8; position + 4 <= lyricsBytes.length; position += 4) {
+            for (int value : values) {
+                byte[] corrupted = lyricsBytes.clone();
+                ByteBuffer.wrap(corrupted).putInt(position, value);
+                readOrCorrupted(corrupted);
+            }
+        }
+        Random random = new Random(8);
+        for (int i = 0; i < 5000; i++) {
+            byte[] corrupted = lyricsBytes.clone();
+            corrupted[8 + random.nextInt(corrupted.length - 8)] = (byte) random.nextInt();
+            readOrCorrupted(corrupted);
+        }
+    }
+
+    @Test(expected = Exception.class)
+    public void readLrcTextUnsupported() throws Exception {
+        new HblLyricsFileReader().readLrcText(null, "[00:01.00]歌词", null, "a.hbl");
+    }
+
+    private static byte[] newLyricsBytes() throws Exception {
+        LyricsInfo lyricsInfo = new LyricsInfo();
+        lyricsInfo.setLyricsType(LyricsInfo.DYNAMIC);
+        lyricsInfo.setLyricsFileExt("krc");
+        Map<String, Object> lyricsTags = new HashMap<String, Object>();
+        lyricsTags.put("ti", "歌名");
+        lyricsInfo.setLyricsTags(lyricsTags);
+        TreeMap<Integer, LyricsLineInfo> lyricsLineInfos = new TreeMap<Integer, LyricsLineInfo>();
+        for (int i = 0; i < 20; i++) {
+            LyricsLineInfo lyricsLineInfo = new LyricsLineInfo();
+            lyricsLineInfo.setStartTime(i * 1000);
+            lyricsLineInfo.setEndTime(i * 1000 + 900);
+            lyricsLineInfo.setLyricsWords(new String[]{"歌", "词" + i});
+            lyricsLineInfo.setWordsDisInterval(new int[]{400, 500});
+            lyricsLineInfo.setLineLyrics("歌词" + i);
+            lyricsLineInfos.put(i, lyricsLineInfo);
+        }
+        lyricsInfo.setLyricsLineInfoTreeMap(lyricsLineInfos);
+        return new HblLyricsFileWriter().getLyricsBytes(lyricsInfo);
+    }
+
+    private static void assertCorrupted(byte[] lyricsBytes) {
+        try {
+            new HblLyricsFileReader().readByteBuffer(ByteBuffer.wrap(lyricsBytes));
+            fail("length " + lyricsBytes.length);
+        } catch (Exception e) {
+            assertEquals(Exception.class, e.getClass());
+        }
+    }
+
+    /**
+     * 损坏的内容可能仍然可以读取（例如时间被修改），否则只能抛出普通的Exception
+     */
+    private static void readOrCorrupted(byte[] lyricsBytes) {
+        try {
+            new HblLyricsFileReader().readByteBuffer(ByteBuffer.wrap(lyricsBytes));
+        } catch (Exception e) {
+            assertEquals(Exception.class, e.getClass());
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.chs.htz.lyrics.formats.hrc;
+
+import com.chs.htz.lyrics.model.LyricsInfo;
+import com.chs.htz.lyrics.model.LyricsLineInfo;
+import com.chs.htz.lyrics.utils.StringCompressUtils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @Description: hrc歌词开始时间相同的行保存后再读取，行的顺序不变，额外歌词按行号仍然对应原来的行
+ */
+public class HrcLyricsFileTest {
+
+    private static final Charset UTF_8 = Charset.forName("utf-8");
+
+    @Test
+    public void duplicateStartTimes() throws Exception {
+        // 第2行与第1行开始时间相同，歌词与第0行相同，合并到第0行时读取后会排在第1行之前
+        String[] texts = {"A", "B", "A", "C", "B", "A"};
+        int[] startTimes = {0, 1000, 1000, 2000, 2000, 2000};
+        TreeMap<Integer, LyricsLineInfo> lyricsLineInfos = new TreeMap<Integer, LyricsLineInfo>();
+        for (int i = 0; i < texts.length; i++) {
+            LyricsLineInfo lyricsLineInfo = new LyricsLineInfo();
+            lyricsLineInfo.setStartTime(startTimes[i]);
+            lyricsLineInfo.setEndTime(startTimes[i] + 500 + i);
+            lyricsLineInfo.setLineLyrics(texts[i]);
+            lyricsLineInfo.setLyricsWords(new String[]{texts[i]});
+            lyricsLineInfo.setWordsDisInterval(new int[]{500 + i});
+            lyricsLineInfos.put(i, lyricsLineInfo);
+        }
+        StringWriter lyricsCom = new StringWriter();
+        new HrcLyricsFileWriter().writeLyricsLines(lyricsLineInfos, lyricsCom);
+        byte[] data = StringCompressUtils.compress(lyricsCom.toString(), UTF_8);
+
+        for (boolean lazyWords : new boolean[]{false, true}) {
+            HrcLyricsFileReader lyricsFileReader = new HrcLyricsFileReader();
+            lyricsFileReader.setLazyWords(lazyWords);
+            LyricsInfo lyricsInfo = lyricsFileReader.readInputStream(new ByteArrayInputStream(data));
+            TreeMap<Integer, LyricsLineInfo> readLyricsLineInfos = lyricsInfo.getLyricsLineInfoTreeMap();
+            assertEquals(texts.length, readLyricsLineInfos.size());
+            for (int i = 0; i < texts.length; i++) {
+                LyricsLineInfo lyricsLineInfo = readLyricsLineInfos.get(i);
+                assertEquals(lazyWords + " " + i, texts[i], lyricsLineInfo.getLineLyrics());
+                assertEquals(startTimes[i], lyricsLineInfo.getStartTime());
+                assertEquals(startTimes[i] + 500 + i, lyricsLineInfo.getEndTime());
+                assertEquals(500 + i, lyricsLineInfo.getWordsDisInterval()[0]);
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.chs.htz.lyrics.formats.krc;
+
+import com.chs.htz.lyrics.model.LyricsLineInfo;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+/**
+ * @Description: krc歌词行扫描器与原正则实现的解析耗时对比，结果输出到标准输出
+ */
+public class KrcLineTokenizerBenchmark {
+
+    private static final int LINE_COUNT = 5000;
+    private static final int WORD_COUNT = 12;
+    private static final int WARMUP_ROUNDS = 10;
+    private static final int ROUNDS = 10;
+
+    @Test
+    public void benchmark() throws Exception {
+        String[] lines = new String[LINE_COUNT];
+        for (int i = 0; i < LINE_COUNT; i++) {
+            StringBuilder builder = new StringBuilder();
+            builder.append('[').append(i * 3000).append(",2800]");
+            for (int j = 0; j < WORD_COUNT; j++) {
+                builder.append('<').append(j * 230).append(",230,0>词").append(j);
+            }
+            lines[i] = builder.toString();
+        }
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            parseWithRegex(lines);
+            parseWithTokenizer(lines);
+        }
+        long regexTime = Long.MAX_VALUE;
+        long tokenizerTime = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            parseWithRegex(lines);
+            regexTime = Math.min(regexTime, System.nanoTime() - start);
+            start = System.nanoTime();
+            parseWithTokenizer(lines);
+            tokenizerTime = Math.min(tokenizerTime, System.nanoTime() - start);
+        }
+        System.out.println(String.format(Locale.US, "krc %d lines x %d words: regex %.2f ms, tokenizer %.2f ms",
+                LINE_COUNT, WORD_COUNT, regexTime / 1e6, tokenizerTime / 1e6));
+    }
+
+    private static int parseWithRegex(String[] lines) throws Exception {
+        int words = 0;
+        for (String line : lines) {
+            LyricsLineInfo lineInfo = KrcRegexLineParser.parse(line);
+            words += lineInfo.getLyricsWords().length;
+        }
+        return words;
+    }
+
+    private static int parseWithTokenizer(String[] lines) throws Exception {
+        KrcLineTokenizer tokenizer = new KrcLineTokenizer();
+        int words = 0;
+        for (String line : lines) {
+            LyricsLineInfo lineInfo = tokenizer.parse(line);
+            words += lineInfo.getLyricsWords().length;
+        }
+        return words;
+    }
+}
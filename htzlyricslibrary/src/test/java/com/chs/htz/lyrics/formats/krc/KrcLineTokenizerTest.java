@@ -0,0 +1,137 @@
+package com.chs.htz.lyrics.formats.krc;
+
+import com.chs.htz.lyrics.model.LyricsLineInfo;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * @Description: krc歌词行扫描器与原正则实现的输出对比
+ */
+public class KrcLineTokenizerTest {
+
+    /**
+     * 随机行使用的片段，覆盖合法标签、残缺标签、超出int范围的数字和换行
+     */
+    private static final String[] FUZZ_PIECES = {
+            "[", "]", "<", ">", ",", "0", "7", "12", "300", "2147483647", "2147483648", "99999999999",
+            "[1000,2000]", "<0,300,0>", "<300,250,0>", "<1,2>", "<1,2,3,4>", "[1,2,3]",
+            "歌", "词", "a", " ", "\r", "\n", "🎵"
+    };
+
+    @Test
+    public void parseNormalLine() throws Exception {
+        LyricsLineInfo lineInfo = new KrcLineTokenizer().parse("[1000,2000]<0,300,0>歌<300,250,0>词<550,450,0>正文");
+        assertEquals(1000, lineInfo.getStartTime());
+        assertEquals(3000, lineInfo.getEndTime());
+        assertEquals("歌词正文", lineInfo.getLineLyrics());
+        assertArrayEquals(new String[]{"歌", "词", "正文"}, lineInfo.getLyricsWords());
+        assertArrayEquals(new int[]{300, 250, 450}, lineInfo.getWordsDisInterval());
+        assertSameAsRegex("[1000,2000]<0,300,0>歌<300,250,0>词<550,450,0>正文");
+    }
+
+    @Test
+    public void parseNotLyricsLine() throws Exception {
+        assertNull(new KrcLineTokenizer().parse("[ti:歌名]"));
+        assertNull(new KrcLineTokenizer().parse("<0,300,0>歌"));
+        assertNull(new KrcLineTokenizer().parse(""));
+    }
+
+    @Test
+    public void parseEdgeCases() throws Exception {
+        String[] lines = {
+                // 第一个字标签之前的内容
+                "[0,100]前<0,50,0>歌<50,50,0>词",
+                // 末尾的空字
+                "[0,100]<0,50,0>歌<50,50,0>",
+                "[0,100]<0,50,0><50,50,0>",
+                // 没有字标签
+                "[0,100]歌词",
+                "[0,100]",
+                // 残缺的标签作为普通文本
+                "[0,100]<0,50>歌<0,50,0>词<x,1,0>",
+                "[a,b][5,10]<0,5,0>歌",
+                // 换行
+                "[0,100]<0,50,0>歌\r<50,50,0>词\n",
+                // 超出int范围
+                "[2147483647,0]<0,1,0>歌",
+                "[2147483647,1]<0,1,0>歌",
+                "[2147483648,1]<0,1,0>歌",
+                "[0,100]<0,2147483648,0>歌",
+                // 字标签个数与字个数不相符
+                "[0,100]<0,50,0><50,50,0>词",
+        };
+        for (String line : lines) {
+            assertSameAsRegex(line);
+        }
+    }
+
+    @Test
+    public void parseFuzzLinesSameAsRegex() throws Exception {
+        Random random = new Random(20171225L);
+        KrcLineTokenizer tokenizer = new KrcLineTokenizer();
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 50000; i++) {
+            builder.setLength(0);
+            if (random.nextInt(4) != 0) {
+                builder.append("[").append(random.nextInt(100000)).append(",").append(random.nextInt(10000)).append("]");
+            }
+            int count = random.nextInt(24);
+            for (int j = 0; j < count; j++) {
+                builder.append(FUZZ_PIECES[random.nextInt(FUZZ_PIECES.length)]);
+            }
+            // 同一个扫描器跨行复用
+            assertSameAsRegex(tokenizer, builder.toString());
+        }
+    }
+
+    private static void assertSameAsRegex(String line) throws Exception {
+        assertSameAsRegex(new KrcLineTokenizer(), line);
+    }
+
+    private static void assertSameAsRegex(KrcLineTokenizer tokenizer, String line) throws Exception {
+        LyricsLineInfo expected = null;
+        Exception expectedException = null;
+        try {
+            expected = KrcRegexLineParser.parse(line);
+        } catch (Exception e) {
+            expectedException = e;
+        }
+        LyricsLineInfo actual = null;
+        try {
+            actual = tokenizer.parse(line);
+        } catch (Exception e) {
+            if (expectedException == null) {
+                throw e;
+            }
+            assertEquals(line, expectedException.getClass(), e.getClass());
+            if (!(e instanceof NumberFormatException)) {
+                assertEquals(line, expectedException.getMessage(), e.getMessage());
+            }
+            return;
+        }
+        if (expectedException != null) {
+            fail(line + " expected " + expectedException);
+        }
+        assertLineEquals(line, expected, actual);
+    }
+
+    static void assertLineEquals(String line, LyricsLineInfo expected, LyricsLineInfo actual) {
+        if (expected == null) {
+            assertNull(line, actual);
+            return;
+        }
+        assertEquals(line, expected.getStartTime(), actual.getStartTime());
+        assertEquals(line, expected.getEndTime(), actual.getEndTime());
+        assertEquals(line, expected.getLineLyrics(), actual.getLineLyrics());
+        assertEquals(line, Arrays.asList(expected.getLyricsWords()), Arrays.asList(actual.getLyricsWords()));
+        assertArrayEquals(line, expected.getWordsDisInterval(), actual.getWordsDisInterval());
+    }
+}
@@ -0,0 +1,89 @@
+package com.chs.htz.lyrics.formats.krc;
+
+import com.chs.htz.lyrics.model.LyricsLineInfo;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @Description: 原正则表达式实现的krc歌词行解析，作为 {@link KrcLineTokenizer} 的对照
+ */
+class KrcRegexLineParser {
+
+    static LyricsLineInfo parse(String lineInfo) throws Exception {
+        LyricsLineInfo lyricsLineInfo = null;
+        // 匹配歌词行
+        Pattern pattern = Pattern.compile("\\[\\d+,\\d+\\]");
+        Matcher matcher = pattern.matcher(lineInfo);
+        if (matcher.find()) {
+            lyricsLineInfo = new LyricsLineInfo();
+            // 获取行的出现时间和结束时间
+            int mStartIndex = matcher.start();
+            int mEndIndex = matcher.end();
+            String lineTime[] = lineInfo.substring(mStartIndex + 1,
+                    mEndIndex - 1).split(",");
+            //
+
+            int startTime = Integer.parseInt(lineTime[0]);
+            int endTime = startTime + Integer.parseInt(lineTime[1]);
+            lyricsLineInfo.setEndTime(endTime);
+            lyricsLineInfo.setStartTime(startTime);
+            // 获取歌词信息
+            String lineContent = lineInfo.substring(mEndIndex,
+                    lineInfo.length());
+
+            // 歌词匹配的正则表达式
+            String regex = "\\<\\d+,\\d+,\\d+\\>";
+            Pattern lyricsWordsPattern = Pattern.compile(regex);
+            Matcher lyricsWordsMatcher = lyricsWordsPattern
+                    .matcher(lineContent);
+
+            // 歌词分隔
+            String lineLyricsTemp[] = lineContent.split(regex);
+            String[] lyricsWords = getLyricsWords(lineLyricsTemp);
+            lyricsLineInfo.setLyricsWords(lyricsWords);
+
+            // 获取每个歌词的时间
+            int wordsDisInterval[] = new int[lyricsWords.length];
+            int index = 0;
+            while (lyricsWordsMatcher.find()) {
+
+                //验证
+                if (index >= wordsDisInterval.length) {
+                    throw new Exception("字标签个数与字时间标签个数不相符");
+                }
+
+                //
+                String wordsDisIntervalStr = lyricsWordsMatcher.group();
+                String wordsDisIntervalStrTemp = wordsDisIntervalStr
+                        .substring(wordsDisIntervalStr.indexOf('<') + 1, wordsDisIntervalStr.lastIndexOf('>'));
+                String wordsDisIntervalTemp[] = wordsDisIntervalStrTemp
+                        .split(",");
+                wordsDisInterval[index++] = Integer
+                        .parseInt(wordsDisIntervalTemp[1]);
+            }
+            lyricsLineInfo.setWordsDisInterval(wordsDisInterval);
+
+            // 获取当行歌词
+            String lineLyrics = lyricsWordsMatcher.replaceAll("");
+            lyricsLineInfo.setLineLyrics(lineLyrics);
+        }
+        return lyricsLineInfo;
+    }
+
+    /**
+     * 分隔每个歌词
+     */
+    private static String[] getLyricsWords(String[] lineLyricsTemp) {
+        String temp[] = null;
+        if (lineLyricsTemp.length < 2) {
+            return new String[lineLyricsTemp.length];
+        }
+        //
+        temp = new String[lineLyricsTemp.length - 1];
+        for (int i = 1; i < lineLyricsTemp.length; i++) {
+            temp[i - 1] = lineLyricsTemp[i];
+        }
+        return temp;
+    }
+}
@@ -0,0 +1,77 @@
+package com.chs.htz.lyrics.formats.lrc;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @Description: lrc时间标签的各种格式，带小时的标签，以及根据文件开头的内容识别lrc歌词
+ */
+public class LrcLineScannerTest {
+
+    private static final Charset UTF_8 = Charset.forName("utf-8");
+
+    @Test
+    public void timeFormats() {
+        assertTime(12000, "[00:12]a");
+        assertTime(12340, "[00:12.34]a");
+        assertTime(12345, "[00:12.345]a");
+        assertTime(12340, "[00:12:34]a");
+        assertTime(62030, "[1:02.3]a");
+        assertTime(3723500, "[1:02:03.50]a");
+    }
+
+    @Test
+    public void hourWithoutFraction() {
+        assertTime(3723000, "[1:02:03]a");
+        assertTime(7200000, "[2:00:00]a");
+        // 分为2位时仍然是 [mm:ss:xx]
+        assertTime(62030, "[01:02:03]a");
+        // 分或秒不小于60时不是小时
+        assertTime(135030, "[1:75:03]a");
+        // 最后一段不是2位时是毫秒
+        assertTime(62003, "[1:02:003]a");
+    }
+
+    @Test
+    public void repeatedTags() {
+        LrcLineScanner scanner = new LrcLineScanner();
+        String lineInfo = "[1:00:00][00:01.00][ti:x]歌词";
+        assertTrue(scanner.scan(lineInfo));
+        assertEquals(2, scanner.getTimesCount());
+        assertEquals(3600000, scanner.getTime(0));
+        assertEquals(1000, scanner.getTime(1));
+        assertEquals("[ti:x]歌词", lineInfo.substring(scanner.getTextStart()));
+
+        assertTrue(!scanner.scan("[ti:x]"));
+        assertTrue(!scanner.scan("[00]"));
+        assertTrue(!scanner.scan("[00:01"));
+    }
+
+    @Test
+    public void contentSupported() {
+        LrcLyricsFileReader lyricsFileReader = new LrcLyricsFileReader();
+        assertTrue(isContentSupported(lyricsFileReader, "[00:01.00]a\n"));
+        assertTrue(isContentSupported(lyricsFileReader, "[ti:x]\r\n  [9:00]a"));
+        assertTrue(isContentSupported(lyricsFileReader, "﻿[00:01.00]a"));
+        assertTrue(!isContentSupported(lyricsFileReader, "[ti:x]\n[ar:y]\n"));
+        assertTrue(!isContentSupported(lyricsFileReader, "a[00:01.00]\n["));
+        assertTrue(!isContentSupported(lyricsFileReader, ""));
+    }
+
+    private static boolean isContentSupported(LrcLyricsFileReader lyricsFileReader, String content) {
+        byte[] header = content.getBytes(UTF_8);
+        return lyricsFileReader.isContentSupported(header, header.length);
+    }
+
+    private static void assertTime(int time, String lineInfo) {
+        LrcLineScanner scanner = new LrcLineScanner();
+        assertTrue(lineInfo, scanner.scan(lineInfo));
+        assertEquals(lineInfo, 1, scanner.getTimesCount());
+        assertEquals(lineInfo, time, scanner.getTime(0));
+        assertEquals(lineInfo, "a", lineInfo.substring(scanner.getTextStart()));
+    }
+}
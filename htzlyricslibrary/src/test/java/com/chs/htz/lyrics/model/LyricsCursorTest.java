@@ -0,0 +1,68 @@
+package com.chs.htz.lyrics.model;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @Description: 行游标与不带提示行的时间轴查询结果对比
+ */
+public class LyricsCursorTest {
+
+    @Test
+    public void dynamicLinesWithGaps() {
+        assertSameAsTimeline(LyricsInfo.DYNAMIC);
+    }
+
+    @Test
+    public void lrcLines() {
+        assertSameAsTimeline(LyricsInfo.LRC);
+    }
+
+    @Test
+    public void dynamicLineStartAfterGap() {
+        TreeMap<Integer, LyricsLineInfo> lyricsLineInfos = new TreeMap<Integer, LyricsLineInfo>();
+        lyricsLineInfos.put(0, newLyricsLineInfo(0, 1000));
+        lyricsLineInfos.put(1, newLyricsLineInfo(1500, 2500));
+        LyricsTimeline lyricsTimeline = LyricsTimeline.build(LyricsInfo.DYNAMIC, lyricsLineInfos);
+        LyricsCursor lyricsCursor = new LyricsCursor();
+        assertEquals(0, lyricsCursor.getLineNumber(lyricsTimeline, 1200, 0));
+        // 间隙之后下一行开始的时刻已经是下一行
+        assertEquals(1, lyricsCursor.getLineNumber(lyricsTimeline, 1500, 0));
+    }
+
+    private static void assertSameAsTimeline(int lyricsType) {
+        Random random = new Random(lyricsType);
+        TreeMap<Integer, LyricsLineInfo> lyricsLineInfos = new TreeMap<Integer, LyricsLineInfo>();
+        int time = 500;
+        for (int i = 0; i < 200; i++) {
+            int startTime = time;
+            int endTime = startTime + 200 + random.nextInt(3000);
+            lyricsLineInfos.put(i, newLyricsLineInfo(startTime, endTime));
+            // 一半的行之间有较长的间隙，前后两行的时间不重合
+            time = endTime + (random.nextBoolean() ? 1 : 1 + random.nextInt(2000));
+        }
+        LyricsTimeline lyricsTimeline = LyricsTimeline.build(lyricsType, lyricsLineInfos);
+        LyricsCursor lyricsCursor = new LyricsCursor();
+        for (long playingTime = 0; playingTime < time + 1000; playingTime++) {
+            assertEquals("playingTime=" + playingTime, lyricsTimeline.getLineNumber(playingTime),
+                    lyricsCursor.getLineNumber(lyricsTimeline, playingTime, 0));
+        }
+        // 正常播放时几乎都命中缓存的行号
+        assertTrue(lyricsCursor.getMissCount() * 100 < lyricsCursor.getHitCount());
+    }
+
+    private static LyricsLineInfo newLyricsLineInfo(int startTime, int endTime) {
+        LyricsLineInfo lyricsLineInfo = new LyricsLineInfo();
+        lyricsLineInfo.setStartTime(startTime);
+        lyricsLineInfo.setEndTime(endTime);
+        lyricsLineInfo.setLineLyrics("歌词");
+        lyricsLineInfo.setLyricsWords(new String[]{"歌", "词"});
+        lyricsLineInfo.setWordsDisInterval(new int[]{(endTime - startTime) / 2, (endTime - startTime) / 2});
+        return lyricsLineInfo;
+    }
+}
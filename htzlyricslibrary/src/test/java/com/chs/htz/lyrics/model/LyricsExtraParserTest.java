@@ -0,0 +1,88 @@
+package com.chs.htz.lyrics.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @Description: 按需和后台解析额外歌词，解析失败时按没有额外歌词处理并记录失败原因
+ */
+public class LyricsExtraParserTest {
+
+    @Test
+    public void parseOnDemand() {
+        LyricsInfo lyricsInfo = new LyricsInfo();
+        lyricsInfo.setExtraParser(new TestExtraParser("翻译"));
+        assertEquals("翻译", lyricsInfo.getTranslateLrcLineInfos().get(0).getLineLyrics());
+        assertNull(lyricsInfo.getExtraParser());
+        assertNull(lyricsInfo.getExtraParseException());
+    }
+
+    @Test
+    public void parseInBackground() {
+        LyricsInfo lyricsInfo = new LyricsInfo();
+        TestExtraParser extraParser = new TestExtraParser("翻译");
+        extraParser.startInBackground();
+        lyricsInfo.setExtraParser(extraParser);
+        assertEquals("翻译", lyricsInfo.getTranslateLrcLineInfos().get(0).getLineLyrics());
+        assertNull(extraParser.getParseException());
+    }
+
+    @Test
+    public void parseFailure() {
+        LyricsInfo lyricsInfo = new LyricsInfo();
+        TestExtraParser extraParser = new TestExtraParser(null);
+        extraParser.startInBackground();
+        lyricsInfo.setExtraParser(extraParser);
+        assertNull(lyricsInfo.getTranslateLrcLineInfos());
+        assertNull(lyricsInfo.getTransliterationLrcLineInfos());
+        assertEquals("额外歌词为空", lyricsInfo.getExtraParseException().getMessage());
+        assertTrue(extraParser.getParseException() == lyricsInfo.getExtraParseException());
+    }
+
+    @Test
+    public void parseError() {
+        LyricsInfo lyricsInfo = new LyricsInfo();
+        lyricsInfo.setExtraParser(new LyricsExtraParser("") {
+            @Override
+            protected void parse(String rawContent, LyricsInfo extraLyricsInfo) {
+                throw new StackOverflowError();
+            }
+        });
+        assertNull(lyricsInfo.getTranslateLrcLineInfos());
+        // Error 包装为普通的Exception
+        Exception parseException = lyricsInfo.getExtraParseException();
+        assertEquals(Exception.class, parseException.getClass());
+        assertTrue(parseException.getCause() instanceof StackOverflowError);
+    }
+
+    /**
+     * 原始内容作为一行翻译歌词，为null时解析失败
+     */
+    private static class TestExtraParser extends LyricsExtraParser {
+
+        private final String mLineLyrics;
+
+        TestExtraParser(String lineLyrics) {
+            super("");
+            this.mLineLyrics = lineLyrics;
+        }
+
+        @Override
+        protected void parse(String rawContent, LyricsInfo extraLyricsInfo) throws Exception {
+            if (mLineLyrics == null) {
+                throw new Exception("额外歌词为空");
+            }
+            List<TranslateLrcLineInfo> translateLrcLineInfos = new ArrayList<TranslateLrcLineInfo>();
+            TranslateLrcLineInfo translateLrcLineInfo = new TranslateLrcLineInfo();
+            translateLrcLineInfo.setLineLyrics(mLineLyrics);
+            translateLrcLineInfos.add(translateLrcLineInfo);
+            extraLyricsInfo.setTranslateLrcLineInfos(translateLrcLineInfos);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.chs.htz.lyrics.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @Description: 按需解析字的歌词行，复制、时间轴和分割都不会提前解析所有行，解析失败时返回空行
+ */
+public class LyricsWordsParserTest {
+
+    private static final int LINE_COUNT = 2000;
+
+    @Test
+    public void copyKeepsLazy() {
+        TestWordsParser wordsParser = new TestWordsParser();
+        TreeMap<Integer, LyricsLineInfo> lyricsLineInfos = newLazyLines(wordsParser);
+        List<LyricsLineInfo> copies = new ArrayList<LyricsLineInfo>();
+        for (int i = 0; i < LINE_COUNT; i++) {
+            LyricsLineInfo copy = new LyricsLineInfo();
+            copy.copy(copy, lyricsLineInfos.get(i));
+            copies.add(copy);
+        }
+        assertEquals(0, wordsParser.getParseCount());
+
+        LyricsLineInfo copy = copies.get(10);
+        assertTrue(copy.isLazyWords());
+        assertTrue(copy.getWordsParser() == wordsParser);
+        assertEquals("第10行", copy.getLineLyrics());
+        assertArrayEquals(new String[]{"第10", "行"}, copy.getLyricsWords());
+        // 原始行与复制的行共用已解析的行
+        assertArrayEquals(new String[]{"第10", "行"}, lyricsLineInfos.get(10).getLyricsWords());
+        assertEquals(1, wordsParser.getParseCount());
+        assertNull(wordsParser.getParseException());
+    }
+
+    /**
+     * 与加载后绘画一帧相同的访问：复制所有行并设置按需分割器，创建时间轴，查询当前行的字并分割当前行
+     */
+    @Test
+    public void loadAndDrawOneFrame() {
+        TestWordsParser wordsParser = new TestWordsParser();
+        TreeMap<Integer, LyricsLineInfo> lyricsLineInfos = newLazyLines(wordsParser);
+        final int[] splitCount = {0};
+        LyricsLineInfo.LineSplitter lineSplitter = new LyricsLineInfo.LineSplitter() {
+            @Override
+            public List<LyricsLineInfo> split(LyricsLineInfo lyricsLineInfo) {
+                splitCount[0]++;
+                lyricsLineInfo.getLineLyrics();
+                return Collections.singletonList(lyricsLineInfo);
+            }
+        };
+        TreeMap<Integer, LyricsLineInfo> splitLyricsLineInfos = new TreeMap<Integer, LyricsLineInfo>();
+        for (int i = 0; i < LINE_COUNT; i++) {
+            LyricsLineInfo copy = new LyricsLineInfo();
+            copy.copy(copy, lyricsLineInfos.get(i));
+            copy.setLineSplitter(lineSplitter);
+            splitLyricsLineInfos.put(i, copy);
+        }
+        LyricsTimeline lyricsTimeline = LyricsTimeline.build(LyricsInfo.DYNAMIC, lyricsLineInfos);
+        assertEquals(0, wordsParser.getParseCount());
+        assertEquals(0, splitCount[0]);
+
+        long playingTime = 1000 * 1000 + 150;
+        int lineNum = new LyricsCursor().getLineNumber(lyricsTimeline, playingTime, 0);
+        assertEquals(1000, lineNum);
+        assertEquals(1, lyricsTimeline.getWordIndex(lineNum, playingTime));
+        assertEquals(2, lyricsTimeline.getWordsCount(lineNum));
+        assertEquals(1000 * 1000 + 100, lyricsTimeline.getWordStartTime(lineNum, 1));
+        List<LyricsLineInfo> splits = splitLyricsLineInfos.get(lineNum).getSplitLyricsLineInfos();
+        assertEquals("第1000行", splits.get(0).getLineLyrics());
+        // 下一行
+        splitLyricsLineInfos.get(lineNum + 1).getSplitLyricsLineInfos();
+        assertEquals(2, splitCount[0]);
+        assertEquals(2, wordsParser.getParseCount());
+        // 再次获取不再分割
+        splitLyricsLineInfos.get(lineNum).getSplitLyricsLineInfos();
+        assertEquals(2, splitCount[0]);
+    }
+
+    @Test
+    public void residentLinesBounded() {
+        TestWordsParser wordsParser = new TestWordsParser();
+        TreeMap<Integer, LyricsLineInfo> lyricsLineInfos = newLazyLines(wordsParser);
+        for (int i = 0; i < LINE_COUNT; i++) {
+            lyricsLineInfos.get(i).getWordIndex(i * 1000 + 50);
+        }
+        assertEquals(LINE_COUNT, wordsParser.getParseCount());
+        assertEquals(LyricsWordsParser.DEFAULT_RESIDENT_LINE_COUNT, wordsParser.getResidentCount());
+    }
+
+    @Test
+    public void parseFailureGivesEmptyLine() {
+        TestWordsParser wordsParser = new TestWordsParser();
+        LyricsLineInfo lyricsLineInfo = wordsParser.newLyricsLineInfo(1000, 1500, "坏行", 0);
+        LyricsLineInfo copy = new LyricsLineInfo();
+        copy.copy(copy, lyricsLineInfo);
+
+        assertEquals("", copy.getLineLyrics());
+        assertArrayEquals(new String[0], copy.getLyricsWords());
+        assertArrayEquals(new int[0], copy.getWordsDisInterval());
+        assertEquals(0, copy.getWordsDuration());
+        assertEquals(-2, copy.getWordIndex(1200));
+        assertEquals(1, wordsParser.getParseErrorCount());
+        assertEquals("无法解析：坏行", wordsParser.getParseException().getMessage());
+
+        TreeMap<Integer, LyricsLineInfo> lyricsLineInfos = new TreeMap<Integer, LyricsLineInfo>();
+        lyricsLineInfos.put(0, lyricsLineInfo);
+        LyricsTimeline lyricsTimeline = LyricsTimeline.build(LyricsInfo.DYNAMIC, lyricsLineInfos);
+        assertEquals(0, lyricsTimeline.getWordsCount(0));
+        assertEquals(-2, lyricsTimeline.getWordIndex(0, 1200));
+    }
+
+    private static TreeMap<Integer, LyricsLineInfo> newLazyLines(LyricsWordsParser wordsParser) {
+        TreeMap<Integer, LyricsLineInfo> lyricsLineInfos = new TreeMap<Integer, LyricsLineInfo>();
+        for (int i = 0; i < LINE_COUNT; i++) {
+            lyricsLineInfos.put(i, wordsParser.newLyricsLineInfo(i * 1000, i * 1000 + 300, "第" + i + "|行", 0));
+        }
+        return lyricsLineInfos;
+    }
+
+    /**
+     * 原始行为用“|”分隔的字，每个字100毫秒，没有“|”时解析失败
+     */
+    private static class TestWordsParser extends LyricsWordsParser {
+
+        TestWordsParser() {
+            super(DEFAULT_RESIDENT_LINE_COUNT);
+        }
+
+        @Override
+        protected LyricsLineInfo parseLine(String rawLine, int rawIndex) throws Exception {
+            int index = rawLine.indexOf('|');
+            if (index < 0) {
+                throw new Exception("无法解析：" + rawLine);
+            }
+            String[] lyricsWords = {rawLine.substring(0, index), rawLine.substring(index + 1)};
+            LyricsLineInfo lyricsLineInfo = new LyricsLineInfo();
+            lyricsLineInfo.setLineLyrics(lyricsWords[0] + lyricsWords[1]);
+            lyricsLineInfo.setLyricsWords(lyricsWords);
+            lyricsLineInfo.setWordsDisInterval(new int[]{100, 100});
+            return lyricsLineInfo;
+        }
+    }
+}
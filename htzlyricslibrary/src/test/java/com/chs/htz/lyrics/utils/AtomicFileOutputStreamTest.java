@@ -0,0 +1,134 @@
+package com.chs.htz.lyrics.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @Description: 原子写文件在提交、放弃和重命名失败时目标文件的内容
+ */
+public class AtomicFileOutputStreamTest {
+
+    private static final Charset UTF_8 = Charset.forName("utf-8");
+
+    private File mDir;
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mDir = File.createTempFile("atomic", "");
+        mDir.delete();
+        mDir.mkdirs();
+        mFile = new File(mDir, "a.lrc");
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDir.delete();
+    }
+
+    @Test
+    public void closeReplacesFile() throws IOException {
+        write(mFile, "old");
+        AtomicFileOutputStream os = new AtomicFileOutputStream(mFile);
+        os.write("new".getBytes(UTF_8));
+        assertEquals("old", read(mFile));
+        os.close();
+        os.close();
+        assertEquals("new", read(mFile));
+        assertOnlyFile();
+    }
+
+    @Test
+    public void closeCreatesParentDir() throws IOException {
+        File file = new File(new File(mDir, "sub"), "b.lrc");
+        AtomicFileOutputStream os = new AtomicFileOutputStream(file);
+        os.write("new".getBytes(UTF_8));
+        os.close();
+        assertEquals("new", read(file));
+        file.delete();
+        file.getParentFile().delete();
+    }
+
+    @Test
+    public void abortKeepsFile() throws IOException {
+        write(mFile, "old");
+        AtomicFileOutputStream os = new AtomicFileOutputStream(mFile);
+        os.write("new".getBytes(UTF_8));
+        os.abort();
+        os.close();
+        assertEquals("old", read(mFile));
+        assertOnlyFile();
+    }
+
+    @Test
+    public void renameFailureRestoresFile() throws IOException {
+        write(mFile, "old");
+        AtomicFileOutputStream os = new AtomicFileOutputStream(mFile);
+        os.write("new".getBytes(UTF_8));
+        // 临时文件被删除后重命名一定失败，备份的原文件需要恢复
+        for (File file : mDir.listFiles()) {
+            if (!file.equals(mFile)) {
+                assertTrue(file.delete());
+            }
+        }
+        try {
+            os.close();
+            fail();
+        } catch (IOException e) {
+            // 预期的重命名失败
+        }
+        assertEquals("old", read(mFile));
+        assertOnlyFile();
+    }
+
+    /**
+     * 文件夹中只剩下目标文件，没有残留的临时文件和备份文件
+     */
+    private void assertOnlyFile() {
+        File[] files = mDir.listFiles();
+        assertEquals(1, files.length);
+        assertEquals(mFile, files[0]);
+    }
+
+    private static void write(File file, String text) throws IOException {
+        FileOutputStream os = new FileOutputStream(file);
+        try {
+            os.write(text.getBytes(UTF_8));
+        } finally {
+            os.close();
+        }
+    }
+
+    private static String read(File file) throws IOException {
+        FileInputStream is = new FileInputStream(file);
+        try {
+            byte[] data = new byte[(int) file.length()];
+            int offset = 0;
+            while (offset < data.length) {
+                int count = is.read(data, offset, data.length - offset);
+                if (count == -1) break;
+                offset += count;
+            }
+            return new String(data, 0, offset, UTF_8);
+        } finally {
+            is.close();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.chs.htz.lyrics.utils;
+
+import com.chs.htz.lyrics.formats.LyricsFileReader;
+import com.chs.htz.lyrics.model.LyricsInfo;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @Description: 文本歌词编码识别，BOM、被截断的多字节字符和识别结果缓存
+ */
+public class CharsetUtilsTest {
+
+    private static final String LRC = "[00:01.00]第一行歌词\n[00:02.00]第二行歌词\n";
+
+    @After
+    public void tearDown() {
+        CharsetUtils.clearCache();
+    }
+
+    @Test
+    public void detectGbk() {
+        assertEquals(CharsetUtils.GBK, detect(LRC.getBytes(CharsetUtils.GBK)));
+    }
+
+    @Test
+    public void detectUtf8() {
+        byte[] data = LRC.getBytes(CharsetUtils.UTF_8);
+        assertEquals(CharsetUtils.UTF_8, detect(data));
+        assertEquals(0, CharsetUtils.getBomLength(data, data.length));
+
+        byte[] bomData = withBom(new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF}, data);
+        assertEquals(CharsetUtils.UTF_8, detect(bomData));
+        assertEquals(3, CharsetUtils.getBomLength(bomData, bomData.length));
+    }
+
+    @Test
+    public void detectUtf16() {
+        byte[] le = withBom(new byte[]{(byte) 0xFF, (byte) 0xFE}, LRC.getBytes(CharsetUtils.UTF_16LE));
+        assertEquals(CharsetUtils.UTF_16LE, detect(le));
+        assertEquals(2, CharsetUtils.getBomLength(le, le.length));
+        byte[] be = withBom(new byte[]{(byte) 0xFE, (byte) 0xFF}, LRC.getBytes(CharsetUtils.UTF_16BE));
+        assertEquals(CharsetUtils.UTF_16BE, detect(be));
+    }
+
+    @Test
+    public void detectAscii() {
+        assertNull(detect("[00:01.00]ascii only\n".getBytes(CharsetUtils.UTF_8)));
+    }
+
+    /**
+     * 识别长度的最后一个字符被截断时仍然识别为原来的编码
+     */
+    @Test
+    public void multibyteCutAtBoundary() {
+        for (Charset charset : new Charset[]{CharsetUtils.UTF_8, CharsetUtils.GBK}) {
+            StringBuilder text = new StringBuilder();
+            while (text.toString().getBytes(charset).length < CharsetUtils.DETECT_SIZE * 2) {
+                text.append(LRC);
+            }
+            byte[] data = text.toString().getBytes(charset);
+            for (int cut = 0; cut < 3; cut++) {
+                int length = CharsetUtils.DETECT_SIZE - cut;
+                assertEquals(charset.name() + " " + length, charset, CharsetUtils.detect(data, length));
+            }
+        }
+    }
+
+    @Test
+    public void cacheBounded() {
+        for (int i = 0; i < 65; i++) {
+            CharsetUtils.putCachedCharset("key" + i, i % 2 == 0 ? CharsetUtils.GBK : null);
+        }
+        // 最早的一个被移除，识别不出的结果也缓存
+        assertTrue(!CharsetUtils.isCached("key0"));
+        assertTrue(CharsetUtils.isCached("key1"));
+        assertNull(CharsetUtils.getCachedCharset("key1"));
+        assertEquals(CharsetUtils.GBK, CharsetUtils.getCachedCharset("key64"));
+        assertTrue(!CharsetUtils.isCached(null));
+    }
+
+    /**
+     * 开启识别后读取带BOM的utf-8文件，BOM不作为第一行的内容；没有开启时使用默认编码
+     */
+    @Test
+    public void readFileSkipsBom() throws Exception {
+        File file = File.createTempFile("charset", ".lrc");
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            out.write(withBom(new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF}, LRC.getBytes(CharsetUtils.UTF_8)));
+            out.close();
+
+            TextFileReader lyricsFileReader = new TextFileReader();
+            assertTrue(!lyricsFileReader.isCharsetDetection());
+            lyricsFileReader.readFile(file);
+            assertEquals("\uFEFF" + LRC, lyricsFileReader.mText);
+
+            lyricsFileReader.setCharsetDetection(true);
+            lyricsFileReader.readFile(file);
+            assertEquals(LRC, lyricsFileReader.mText);
+
+            out = new FileOutputStream(file);
+            out.write(LRC.getBytes(CharsetUtils.GBK));
+            out.close();
+            CharsetUtils.clearCache();
+            lyricsFileReader.readFile(file);
+            assertEquals(LRC, lyricsFileReader.mText);
+            // 识别结束后恢复默认编码
+            assertEquals(CharsetUtils.UTF_8, lyricsFileReader.getDefaultCharset());
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * 按 getDefaultCharset 读取全部文本
+     */
+    private static class TextFileReader extends LyricsFileReader {
+
+        String mText;
+
+        @Override
+        public LyricsInfo readInputStream(InputStream in) throws Exception {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            in.close();
+            mText = new String(out.toByteArray(), getDefaultCharset());
+            return new LyricsInfo();
+        }
+
+        @Override
+        public LyricsInfo readLrcText(String dynamicContent, String lrcContent, String extraLrcContent, String lyricsFilePath) {
+            return null;
+        }
+
+        @Override
+        public boolean isFileSupported(String ext) {
+            return "txt".equalsIgnoreCase(ext);
+        }
+
+        @Override
+        public String getSupportFileExt() {
+            return "txt";
+        }
+    }
+
+    private static Charset detect(byte[] data) {
+        return CharsetUtils.detect(Arrays.copyOf(data, Math.min(data.length, CharsetUtils.DETECT_SIZE)),
+                Math.min(data.length, CharsetUtils.DETECT_SIZE));
+    }
+
+    private static byte[] withBom(byte[] bom, byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(bom, 0, bom.length);
+        out.write(data, 0, data.length);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,59 @@
+package com.chs.htz.lyrics.utils;
+
+import com.chs.htz.lyrics.formats.LyricsFileReader;
+import com.chs.htz.lyrics.formats.lrc.LrcLyricsFileReader;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @Description: 全局的读取器设置对之后注册的读取器和默认读取器同样生效
+ */
+public class LyricsIOUtilsTest {
+
+    @After
+    public void tearDown() {
+        LyricsIOUtils.setLazyWords(false);
+        LyricsIOUtils.setExtraLyricsMode(LyricsFileReader.EXTRA_LYRICS_EAGER);
+    }
+
+    @Test
+    public void settingsApplyToLaterReaders() {
+        LyricsIOUtils.setLazyWords(true);
+        LyricsIOUtils.setExtraLyricsMode(LyricsFileReader.EXTRA_LYRICS_LAZY);
+
+        LyricsFileReader lyricsFileReader = new TestLyricsFileReader();
+        LyricsIOUtils.registerLyricsFileReader(lyricsFileReader);
+        assertTrue(LyricsIOUtils.getLyricsFileReader("a.tst") == lyricsFileReader);
+        assertTrue(lyricsFileReader.isLazyWords());
+        assertEquals(LyricsFileReader.EXTRA_LYRICS_LAZY, lyricsFileReader.getExtraLyricsMode());
+    }
+
+    @Test
+    public void settingsApplyToDefaultReader() {
+        LyricsFileReader defaultReader = LyricsIOUtils.getLyricsFileReader("a.unknown");
+        // 默认读取器只有一个
+        assertTrue(LyricsIOUtils.getLyricsFileReader("b.unknown") == defaultReader);
+
+        LyricsIOUtils.setLazyWords(true);
+        LyricsIOUtils.setExtraLyricsMode(LyricsFileReader.EXTRA_LYRICS_BACKGROUND);
+        assertTrue(defaultReader.isLazyWords());
+        assertEquals(LyricsFileReader.EXTRA_LYRICS_BACKGROUND, defaultReader.getExtraLyricsMode());
+    }
+
+    private static class TestLyricsFileReader extends LrcLyricsFileReader {
+
+        @Override
+        public boolean isFileSupported(String ext) {
+            return ext.equalsIgnoreCase(getSupportFileExt());
+        }
+
+        @Override
+        public String getSupportFileExt() {
+            return "tst";
+        }
+    }
+}
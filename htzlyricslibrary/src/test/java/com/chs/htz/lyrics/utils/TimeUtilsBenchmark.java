@@ -0,0 +1,71 @@
+package com.chs.htz.lyrics.utils;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+/**
+ * @Description: 时间格式化与原 String.format 实现的耗时对比，结果输出到标准输出
+ */
+public class TimeUtilsBenchmark {
+
+    private static final int COUNT = 200000;
+    private static final int WARMUP_ROUNDS = 10;
+    private static final int ROUNDS = 10;
+
+    @Test
+    public void benchmark() {
+        int[] values = new int[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            // 每帧绘画的进度，约16毫秒一次
+            values[i] = i * 16;
+        }
+        char[] buffer = new char[16];
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            formatWithStringFormat(values);
+            formatToString(values);
+            formatToBuffer(values, buffer);
+        }
+        long stringFormatTime = Long.MAX_VALUE;
+        long stringTime = Long.MAX_VALUE;
+        long bufferTime = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            formatWithStringFormat(values);
+            stringFormatTime = Math.min(stringFormatTime, System.nanoTime() - start);
+            start = System.nanoTime();
+            formatToString(values);
+            stringTime = Math.min(stringTime, System.nanoTime() - start);
+            start = System.nanoTime();
+            formatToBuffer(values, buffer);
+            bufferTime = Math.min(bufferTime, System.nanoTime() - start);
+        }
+        System.out.println(String.format(Locale.US, "time format %d x 00:00.000: String.format %.2f ms, parseMMSSFFFString %.2f ms, formatMMSSFFF %.2f ms",
+                COUNT, stringFormatTime / 1e6, stringTime / 1e6, bufferTime / 1e6));
+    }
+
+    private static int formatWithStringFormat(int[] values) {
+        int length = 0;
+        for (int value : values) {
+            length += TimeUtilsTest.formatMMSSFFF(value).length();
+        }
+        return length;
+    }
+
+    private static int formatToString(int[] values) {
+        int length = 0;
+        for (int value : values) {
+            length += TimeUtils.parseMMSSFFFString(value).length();
+        }
+        return length;
+    }
+
+    private static int formatToBuffer(int[] values, char[] buffer) {
+        int length = 0;
+        for (int value : values) {
+            length += TimeUtils.formatMMSSFFF(value, buffer, 0);
+        }
+        return length;
+    }
+}
@@ -0,0 +1,103 @@
+package com.chs.htz.lyrics.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @Description: 时间格式化结果与原 String.format 实现对比
+ */
+public class TimeUtilsTest {
+
+    private static final int[] BOUNDARY_VALUES = {
+            0, 1, -1, 9, -9, 10, -10, 99, -99, 100, -100, 999, -999, 1000, -1000,
+            1001, -1001, 9999, 10000, 59999, -59999, 60000, -60000, 61010, -61010,
+            599999, 600000, 3599999, -3599999, 3600000, -3600000, 3600001, 86399999,
+            Integer.MAX_VALUE, Integer.MAX_VALUE - 1, Integer.MIN_VALUE, Integer.MIN_VALUE + 1
+    };
+
+    @Test
+    public void boundaryValues() {
+        for (int msecTotal : BOUNDARY_VALUES) {
+            assertSameAsStringFormat(msecTotal);
+        }
+    }
+
+    @Test
+    public void randomValues() {
+        Random random = new Random(17);
+        for (int i = 0; i < 200000; i++) {
+            // 一半在常见的歌曲时长范围内，一半覆盖整个int范围
+            int msecTotal = i % 2 == 0 ? random.nextInt(20000000) - 10000000 : random.nextInt();
+            assertSameAsStringFormat(msecTotal);
+        }
+    }
+
+    @Test
+    public void mmssFormatterCache() {
+        TimeUtils.MMSSFormatter formatter = new TimeUtils.MMSSFormatter();
+        int[] values = {0, 999, 1000, 1000, 59999, 60000, -1, -1000, -1001, 0, 3600000};
+        for (int msecTotal : values) {
+            assertEquals(formatMMSS(msecTotal), formatter.format(msecTotal));
+        }
+    }
+
+    private static void assertSameAsStringFormat(int msecTotal) {
+        String mmssfff = formatMMSSFFF(msecTotal);
+        String mmssff = formatMMSSFF(msecTotal);
+        String mmss = formatMMSS(msecTotal);
+        assertEquals(mmssfff, TimeUtils.parseMMSSFFFString(msecTotal));
+        assertEquals(mmssff, TimeUtils.parseMMSSFFString(msecTotal));
+        assertEquals(mmss, TimeUtils.parseMMSSString(msecTotal));
+
+        // 写入字符数组的非0位置，前后的字符不能被改动
+        char[] buffer = new char[20];
+        Arrays.fill(buffer, '#');
+        int length = TimeUtils.formatMMSSFFF(msecTotal, buffer, 2);
+        assertEquals("##" + mmssfff, new String(buffer, 0, 2 + length));
+        assertEquals('#', buffer[2 + length]);
+        Arrays.fill(buffer, '#');
+        length = TimeUtils.formatMMSSFF(msecTotal, buffer, 2);
+        assertEquals("##" + mmssff, new String(buffer, 0, 2 + length));
+        Arrays.fill(buffer, '#');
+        length = TimeUtils.formatMMSS(msecTotal, buffer, 2);
+        assertEquals("##" + mmss, new String(buffer, 0, 2 + length));
+
+        assertEquals("x" + mmssfff, TimeUtils.appendMMSSFFF(new StringBuilder("x"), msecTotal).toString());
+        assertEquals("x" + mmssff, TimeUtils.appendMMSSFF(new StringBuilder("x"), msecTotal).toString());
+        assertEquals("x" + mmss, TimeUtils.appendMMSS(new StringBuilder("x"), msecTotal).toString());
+    }
+
+    /**
+     * 原来的实现，固定使用 Locale.US 避免默认语言环境使用非ASCII数字
+     */
+    static String formatMMSSFFF(int msecTotal) {
+        int msec = msecTotal % 1000;
+        msecTotal /= 1000;
+        int minute = msecTotal / 60;
+        int second = msecTotal % 60;
+        minute %= 60;
+        return String.format(Locale.US, "%02d:%02d.%03d", minute, second, msec);
+    }
+
+    static String formatMMSSFF(int msecTotal) {
+        int msec = msecTotal % 1000 / 10;
+        msecTotal /= 1000;
+        int minute = msecTotal / 60;
+        int second = msecTotal % 60;
+        minute %= 60;
+        return String.format(Locale.US, "%02d:%02d.%02d", minute, second, msec);
+    }
+
+    static String formatMMSS(int msecTotal) {
+        msecTotal /= 1000;
+        int minute = msecTotal / 60;
+        int second = msecTotal % 60;
+        minute %= 60;
+        return String.format(Locale.US, "%02d:%02d", minute, second);
+    }
+}